@@ -0,0 +1,77 @@
+package benchmarks;
+
+import analysis.SensibleDataAnalysis;
+import analysis.abstraction.SensibilityLattice;
+import analysis.interprocedural.SummaryEngine;
+import analysis.pointsto.PointsToIndex;
+import analysis.pointsto.PointsToProvider;
+import dataflow.DivisionByZeroAnalysis;
+import dataflow.utils.GraphCache;
+import dataflow.utils.WorklistOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import soot.Body;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both analyses end to end, over every body of their subjects. Bodies, CFGs and points-to results are built in the
+ * setup, so each operation measures the fixpoint computation alone. Summaries start empty on each operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AnalysisBenchmark {
+
+    @Param({"REVERSE_POST_ORDER", "LOOP_NEST", "FIFO"})
+    public WorklistOrder order;
+
+    private final List<ExceptionalUnitGraph> leakGraphs = new ArrayList<>();
+    private final List<PointsToIndex> leakPointsTo = new ArrayList<>();
+    private final List<ExceptionalUnitGraph> arithmeticGraphs = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        for (Body body : BenchmarkScene.bodiesOf(BenchmarkScene.LEAK_SUBJECTS)) {
+            leakGraphs.add(SensibleDataAnalysis.graphFor(body));
+            leakPointsTo.add(PointsToProvider.shared().forBody(body));
+        }
+        for (Body body : BenchmarkScene.bodiesOf(BenchmarkScene.ARITHMETIC_SUBJECTS)) {
+            arithmeticGraphs.add(GraphCache.shared().graphOf(body));
+        }
+        SensibleDataAnalysis.setWorklistOrder(order);
+    }
+
+    @Benchmark
+    public void sensibleDataAnalysis(Blackhole blackhole) {
+        SummaryEngine summaries = new SummaryEngine();
+        for (int i = 0; i < leakGraphs.size(); i++) {
+            blackhole.consume(new SensibleDataAnalysis(leakGraphs.get(i), Collections.emptyMap(),
+                    SensibilityLattice.getBottom(), leakPointsTo.get(i), summaries));
+        }
+    }
+
+    @Benchmark
+    public void divisionByZeroAnalysis(Blackhole blackhole) {
+        for (ExceptionalUnitGraph graph : arithmeticGraphs) {
+            blackhole.consume(new DivisionByZeroAnalysis(graph, order));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package benchmarks;
+
+import benchmarks.subjects.ArithmeticSubject;
+import soot.Body;
+import soot.G;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Loads the classes analyzed by the benchmarks into Soot's {@link Scene}, once per benchmark JVM. Benchmarks call it
+ * from their {@code @Setup} methods, so loading classes and building bodies is never measured.
+ */
+public final class BenchmarkScene {
+
+    /**
+     * Programs from the leak-detector-test-classes module, analyzed by the sensible data benchmarks.
+     */
+    public static final List<String> LEAK_SUBJECTS = Collections.unmodifiableList(Arrays.asList(
+            "wtf.thepalbi.TestMain",
+            "wtf.thepalbi.SimpleInterprocedural",
+            "wtf.thepalbi.PrintOnCalledMethod",
+            "wtf.thepalbi.LeakOnBothIfBranches",
+            "wtf.thepalbi.SanitizationAvoidLeaks",
+            "wtf.thepalbi.SanitizeInOneIfBranch",
+            "wtf.thepalbi.SensibleInOneIfBranch",
+            "wtf.thepalbi.SensibleDataReturnedByKnownMethod",
+            "wtf.thepalbi.SensibleDataStoredInField",
+            "wtf.thepalbi.TestPointsToWithoutAnalysis"));
+
+    /**
+     * Programs analyzed by the division by zero benchmarks.
+     */
+    public static final List<String> ARITHMETIC_SUBJECTS =
+            Collections.singletonList(ArithmeticSubject.class.getName());
+
+    private static boolean loaded;
+
+    private BenchmarkScene() {
+    }
+
+    /**
+     * Resets Soot, and loads every subject class with its bodies. Does nothing if already loaded.
+     */
+    public static synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        reset();
+        List<String> subjects = new ArrayList<>(LEAK_SUBJECTS);
+        subjects.addAll(ARITHMETIC_SUBJECTS);
+        for (String subject : subjects) {
+            Scene.v().addBasicClass(subject, SootClass.BODIES);
+        }
+        Scene.v().loadNecessaryClasses();
+        for (String subject : subjects) {
+            Scene.v().getSootClass(subject).setApplicationClass();
+        }
+        loaded = true;
+    }
+
+    /**
+     * Resets Soot, and sets the options every benchmark runs with. Classes loaded before are lost.
+     */
+    public static synchronized void reset() {
+        G.reset();
+        loaded = false;
+        Options.v().set_soot_classpath(System.getProperty("java.class.path"));
+        // Use default JVM rt.jar
+        Options.v().set_prepend_classpath(true);
+        Options.v().set_allow_phantom_refs(true);
+        // Extract line-numbers from .class. NECESSARY
+        Options.v().set_keep_line_number(true);
+        Options.v().setPhaseOption("jb", "use-original-names: true");
+    }
+
+    /**
+     * @param classNames loaded subject classes
+     * @return the bodies of every concrete method of the classes, sorted by class and signature
+     */
+    public static synchronized List<Body> bodiesOf(List<String> classNames) {
+        load();
+        List<Body> bodies = new ArrayList<>();
+        for (String className : classNames) {
+            List<SootMethod> methods = new ArrayList<>(Scene.v().getSootClass(className).getMethods());
+            methods.sort(Comparator.comparing(SootMethod::getSignature));
+            for (SootMethod method : methods) {
+                if (method.isConcrete()) {
+                    bodies.add(method.retrieveActiveBody());
+                }
+            }
+        }
+        return bodies;
+    }
+}
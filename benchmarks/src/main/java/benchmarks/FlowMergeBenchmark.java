@@ -0,0 +1,91 @@
+package benchmarks;
+
+import analysis.SensibleDataAnalysis;
+import analysis.abstraction.SensibilityLattice;
+import analysis.pointsto.PointsToProvider;
+import dataflow.utils.PackedLatticeState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import soot.Body;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SensibleDataAnalysis#merge} and {@link SensibleDataAnalysis#copy} on the flows the analysis computed for a
+ * subject body, which is the work done on every edge of the worklist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FlowMergeBenchmark {
+
+    @Param({"wtf.thepalbi.TestMain", "wtf.thepalbi.LeakOnBothIfBranches"})
+    public String subject;
+
+    private MeasuredAnalysis analysis;
+    private PackedLatticeState<SensibilityLattice> first;
+    private PackedLatticeState<SensibilityLattice> second;
+    private PackedLatticeState<SensibilityLattice> out;
+
+    @Setup
+    public void setUp() {
+        Body body = BenchmarkScene.bodiesOf(Collections.singletonList(subject)).stream()
+                .filter(candidate -> candidate.getMethod().getName().equals("main"))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No main method in " + subject));
+        analysis = new MeasuredAnalysis(body);
+        // The flows at the start and at the end of the body differ the most
+        first = analysis.getFlowAfter(body.getUnits().getFirst());
+        second = analysis.getFlowAfter(body.getUnits().getLast());
+        out = analysis.initialFlow();
+    }
+
+    @Benchmark
+    public PackedLatticeState<SensibilityLattice> merge() {
+        analysis.mergeFlows(first, second, out);
+        return out;
+    }
+
+    @Benchmark
+    public PackedLatticeState<SensibilityLattice> copy() {
+        analysis.copyFlow(second, out);
+        return out;
+    }
+
+    /**
+     * Exposes the flow operations of the analysis to the benchmark.
+     */
+    private static class MeasuredAnalysis extends SensibleDataAnalysis {
+
+        MeasuredAnalysis(Body body) {
+            super(graphFor(body), Collections.emptyMap(), SensibilityLattice.getBottom(),
+                    PointsToProvider.shared().forBody(body), null);
+        }
+
+        void mergeFlows(PackedLatticeState<SensibilityLattice> input1, PackedLatticeState<SensibilityLattice> input2,
+                        PackedLatticeState<SensibilityLattice> out) {
+            merge(input1, input2, out);
+        }
+
+        void copyFlow(PackedLatticeState<SensibilityLattice> input, PackedLatticeState<SensibilityLattice> out) {
+            copy(input, out);
+        }
+
+        PackedLatticeState<SensibilityLattice> initialFlow() {
+            return newInitialFlow();
+        }
+    }
+}
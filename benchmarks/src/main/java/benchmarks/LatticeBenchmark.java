@@ -0,0 +1,54 @@
+package benchmarks;
+
+import analysis.abstraction.SensibilityLattice;
+import dataflow.abs.ZeroLattice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Joins of the lattices of both analyses, over every pair of values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LatticeBenchmark {
+
+    private static final int PAIRS = 16;
+
+    private final SensibilityLattice[] sensibility = SensibilityLattice.values();
+    private final ZeroLattice[] zero = ZeroLattice.values();
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void sensibilitySupremeBetween(Blackhole blackhole) {
+        for (SensibilityLattice first : sensibility) {
+            for (SensibilityLattice second : sensibility) {
+                blackhole.consume(SensibilityLattice.supremeBetween(first, second));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void zeroSupreme(Blackhole blackhole) {
+        for (ZeroLattice first : zero) {
+            for (ZeroLattice second : zero) {
+                blackhole.consume(first.supreme(second));
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import soot.Body;
+import soot.Unit;
+import soot.UnitUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UnitUtils#getLineNumberFromUnit} on every unit of the leak subjects, as done when reporting leaks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LineNumberBenchmark {
+
+    private final List<Unit> units = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        for (Body body : BenchmarkScene.bodiesOf(BenchmarkScene.LEAK_SUBJECTS)) {
+            units.addAll(body.getUnits());
+        }
+    }
+
+    @Benchmark
+    public void getLineNumberFromUnit(Blackhole blackhole) {
+        for (Unit unit : units) {
+            blackhole.consume(UnitUtils.getLineNumberFromUnit(unit));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package benchmarks;
+
+import analysis.AssigneeNameExtractor;
+import dataflow.ZeroLatticeValueVisitor;
+import dataflow.abs.ZeroLattice;
+import dataflow.utils.LocalNumbering;
+import dataflow.utils.PackedLatticeState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import soot.Body;
+import soot.Local;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.ArrayRef;
+import soot.jimple.DefinitionStmt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AssigneeNameExtractor#from} on every assignee of the leak subjects, and
+ * {@link dataflow.utils.AbstractValueVisitor#visit} through the {@link ZeroLatticeValueVisitor} on every assigned value
+ * of the arithmetic subjects. Each operation visits all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ValueVisitorBenchmark {
+
+    private final List<Value> assignees = new ArrayList<>();
+    private final List<Value> assignedValues = new ArrayList<>();
+    private final List<PackedLatticeState<ZeroLattice>> assignedValueLocals = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        for (Body body : BenchmarkScene.bodiesOf(BenchmarkScene.LEAK_SUBJECTS)) {
+            for (Unit unit : body.getUnits()) {
+                if (unit instanceof DefinitionStmt) {
+                    Value leftOp = ((DefinitionStmt) unit).getLeftOp();
+                    if (leftOp instanceof Local || leftOp instanceof ArrayRef) {
+                        assignees.add(leftOp);
+                    }
+                }
+            }
+        }
+        for (Body body : BenchmarkScene.bodiesOf(BenchmarkScene.ARITHMETIC_SUBJECTS)) {
+            PackedLatticeState<ZeroLattice> locals = new PackedLatticeState<>(LocalNumbering.of(body), ZeroLattice.class);
+            for (Unit unit : body.getUnits()) {
+                if (unit instanceof DefinitionStmt) {
+                    assignedValues.add(((DefinitionStmt) unit).getRightOp());
+                    assignedValueLocals.add(locals);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void assigneeNameExtractor(Blackhole blackhole) {
+        for (Value assignee : assignees) {
+            blackhole.consume(AssigneeNameExtractor.from(assignee));
+        }
+    }
+
+    @Benchmark
+    public void zeroLatticeValueVisitor(Blackhole blackhole) {
+        for (int i = 0; i < assignedValues.size(); i++) {
+            blackhole.consume(new ZeroLatticeValueVisitor(assignedValueLocals.get(i)).visit(assignedValues.get(i)).done());
+        }
+    }
+}
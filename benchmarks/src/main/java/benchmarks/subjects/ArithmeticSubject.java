@@ -0,0 +1,54 @@
+package benchmarks.subjects;
+
+/**
+ * Integer arithmetic analyzed by the division by zero benchmarks. Only locals, constants and the four arithmetic
+ * operations are used, since those are the values the division by zero analysis understands.
+ */
+public class ArithmeticSubject {
+
+    public static int straightLine(int a, int b) {
+        int c = a + b;
+        int d = c * 2;
+        int e = d - a;
+        int f = e / b;
+        int g = f + 7;
+        return g / c;
+    }
+
+    public static int branches(int a, int b) {
+        int c = 0;
+        if (a > b) {
+            c = a - b;
+        } else {
+            c = b - a;
+        }
+        int d = a / c;
+        if (d > 10) {
+            d = d * 3;
+        }
+        return d / b;
+    }
+
+    public static int loop(int n) {
+        int total = 0;
+        int step = 1;
+        for (int i = 0; i < n; i = i + 1) {
+            total = total + i * step;
+            step = step * 2;
+            total = total / step;
+        }
+        return total;
+    }
+
+    public static int nestedLoops(int n, int m) {
+        int total = 1;
+        for (int i = 0; i < n; i = i + 1) {
+            for (int j = 0; j < m; j = j + 1) {
+                total = total * 3 + j;
+                total = total / (i + 1);
+            }
+            total = total - i;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,180 @@
+package benchmarks.synthetic;
+
+import java.util.Random;
+
+/**
+ * Size and structure of a program built by the {@link SyntheticProgramGenerator}. Shapes are written as comma
+ * separated {@code key=value} pairs, where keys are:
+ * <ul>
+ * <li>{@code methods}: amount of generated static methods</li>
+ * <li>{@code depth}: levels of the call tree below {@code main}, each method only calls methods of the next level</li>
+ * <li>{@code fanOut}: methods called by each method above the last level</li>
+ * <li>{@code implementations}: classes implementing the interface called by every method</li>
+ * <li>{@code branches}: if-else diamonds in each method</li>
+ * <li>{@code locals}: locals of each method, half of them strings and half of them integers</li>
+ * <li>{@code nesting}: depth of the chain of records each block stores a string into, and reads another field of,
+ * or 0 for blocks without records</li>
+ * <li>{@code sources}, {@code sinks}: probability of a block in a method marking a value as sensible, or printing a
+ * value</li>
+ * <li>{@code seed}: seed of the random choices, so a shape always builds the same program</li>
+ * </ul>
+ * Keys not given take their {@link #DEFAULT} values, for example {@code methods=1000,depth=8}.
+ */
+public final class ProgramShape {
+
+    public static final ProgramShape DEFAULT = new ProgramShape(100, 4, 2, 2, 2, 4, 0, 0.1, 0.1, 42L);
+
+    private final int methods;
+    private final int depth;
+    private final int fanOut;
+    private final int implementations;
+    private final int branches;
+    private final int locals;
+    private final int nesting;
+    private final double sources;
+    private final double sinks;
+    private final long seed;
+
+    public ProgramShape(int methods, int depth, int fanOut, int implementations, int branches, int locals,
+                        int nesting, double sources, double sinks, long seed) {
+        if (methods < 1 || depth < 1 || depth > methods || fanOut < 0 || implementations < 0 || branches < 0
+                || locals < 2 || nesting < 0) {
+            throw new IllegalArgumentException(String.format("Unsupported program shape: methods=%d, depth=%d, "
+                    + "fanOut=%d, implementations=%d, branches=%d, locals=%d, nesting=%d", methods, depth, fanOut,
+                    implementations, branches, locals, nesting));
+        }
+        if (sources < 0 || sources > 1 || sinks < 0 || sinks > 1) {
+            throw new IllegalArgumentException("Source and sink densities must be between 0 and 1");
+        }
+        this.methods = methods;
+        this.depth = depth;
+        this.fanOut = fanOut;
+        this.implementations = implementations;
+        this.branches = branches;
+        this.locals = locals;
+        this.nesting = nesting;
+        this.sources = sources;
+        this.sinks = sinks;
+        this.seed = seed;
+    }
+
+    /**
+     * @param shape comma separated {@code key=value} pairs, overriding the {@link #DEFAULT} values
+     * @return the shape
+     * @throws IllegalArgumentException if some key is unknown, or some value is out of range
+     */
+    public static ProgramShape parse(String shape) {
+        int methods = DEFAULT.methods;
+        int depth = DEFAULT.depth;
+        int fanOut = DEFAULT.fanOut;
+        int implementations = DEFAULT.implementations;
+        int branches = DEFAULT.branches;
+        int locals = DEFAULT.locals;
+        int nesting = DEFAULT.nesting;
+        double sources = DEFAULT.sources;
+        double sinks = DEFAULT.sinks;
+        long seed = DEFAULT.seed;
+        for (String pair : shape.split(",")) {
+            if (pair.trim().isEmpty()) {
+                continue;
+            }
+            String[] keyAndValue = pair.split("=", 2);
+            if (keyAndValue.length != 2) {
+                throw new IllegalArgumentException("Malformed program shape entry: " + pair);
+            }
+            String value = keyAndValue[1].trim();
+            switch (keyAndValue[0].trim()) {
+                case "methods":
+                    methods = Integer.parseInt(value);
+                    break;
+                case "depth":
+                    depth = Integer.parseInt(value);
+                    break;
+                case "fanOut":
+                    fanOut = Integer.parseInt(value);
+                    break;
+                case "implementations":
+                    implementations = Integer.parseInt(value);
+                    break;
+                case "branches":
+                    branches = Integer.parseInt(value);
+                    break;
+                case "locals":
+                    locals = Integer.parseInt(value);
+                    break;
+                case "nesting":
+                    nesting = Integer.parseInt(value);
+                    break;
+                case "sources":
+                    sources = Double.parseDouble(value);
+                    break;
+                case "sinks":
+                    sinks = Double.parseDouble(value);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown program shape key: " + keyAndValue[0]);
+            }
+        }
+        return new ProgramShape(methods, depth, fanOut, implementations, branches, locals, nesting, sources, sinks,
+                seed);
+    }
+
+    /**
+     * @param methods amount of generated methods
+     * @return this shape with another amount of methods, keeping the depth no deeper than the methods
+     */
+    public ProgramShape withMethods(int methods) {
+        return new ProgramShape(methods, Math.min(depth, methods), fanOut, implementations, branches, locals, nesting,
+                sources, sinks, seed);
+    }
+
+    public int getMethods() {
+        return methods;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getFanOut() {
+        return fanOut;
+    }
+
+    public int getImplementations() {
+        return implementations;
+    }
+
+    public int getBranches() {
+        return branches;
+    }
+
+    public int getLocals() {
+        return locals;
+    }
+
+    public int getNesting() {
+        return nesting;
+    }
+
+    public double getSources() {
+        return sources;
+    }
+
+    public double getSinks() {
+        return sinks;
+    }
+
+    Random newRandom() {
+        return new Random(seed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("methods=%d,depth=%d,fanOut=%d,implementations=%d,branches=%d,locals=%d,nesting=%d,"
+                + "sources=%s,sinks=%s,seed=%d", methods, depth, fanOut, implementations, branches, locals, nesting,
+                sources, sinks, seed);
+    }
+}
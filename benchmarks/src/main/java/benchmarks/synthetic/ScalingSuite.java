@@ -0,0 +1,195 @@
+package benchmarks.synthetic;
+
+import analysis.SensibleDataAnalysis;
+import analysis.interprocedural.SummaryEngine;
+import analysis.paths.AccessPathTable;
+import analysis.pointsto.PointsToIndex;
+import analysis.pointsto.PointsToProvider;
+import analysis.provenance.ProvenanceTable;
+import benchmarks.BenchmarkScene;
+import dataflow.DivisionByZeroAnalysis;
+import dataflow.utils.ConvergenceStats;
+import dataflow.utils.GraphCache;
+import org.slf4j.Logger;
+import soot.Body;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Runs both analyses over synthetic programs of growing sizes, and writes a CSV row per analysis and size, with:
+ * <ul>
+ * <li>the shape of the program, and its amount of analyzed bodies and units</li>
+ * <li>the wall time of analyzing every body, building their CFGs included</li>
+ * <li>the peak heap while analyzing, as the sum of the peak usage of every heap memory pool</li>
+ * <li>the analyzed bodies per second, and the units reported by the analysis</li>
+ * <li>the access paths interned while analyzing</li>
+ * <li>the hit rate of the {@link GraphCache}, which starts empty on every row</li>
+ * </ul>
+ * The points-to result used by the leak analysis gets its own row, so its cost is not mixed with the analysis one. The
+ * leak analysis is run without and with provenance traces ({@code sensible-data-traced}), to measure their overhead,
+ * and then without traces for each access path length in {@link #ACCESS_PATH_LENGTHS} ({@code sensible-data-k<k>}),
+ * to measure how time, memory and findings change with it. Lengths only matter for shapes with nesting. It's also run
+ * with the graph cache disabled ({@code sensible-data-uncached}), to measure what building the CFG of every callee on
+ * every call site costs. Every size starts from a fresh {@link Scene}, and a garbage collection.
+ * <p>
+ * Usage: {@code ScalingSuite <results.csv> [sizes] [shape]}, where sizes are comma separated amounts of methods,
+ * {@value #DEFAULT_SIZES} by default, and the shape is a {@link ProgramShape} for every other parameter.
+ */
+public class ScalingSuite {
+
+    private static final Logger LOGGER = getLogger(ScalingSuite.class);
+
+    public static final String DEFAULT_SIZES = "100,200,400,800,1600,3200";
+    public static final int[] ACCESS_PATH_LENGTHS = {0, 1, 2, 3, 4, 6};
+    public static final String HEADER = "analysis,methods,depth,fan_out,implementations,branches,locals,nesting,bodies,"
+            + "units,wall_ms,peak_heap_bytes,bodies_per_second,findings,access_paths,graph_hit_rate";
+
+    private static final String PACKAGE = "synthetic";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: ScalingSuite <results.csv> [sizes] [shape]");
+            System.exit(1);
+        }
+        String sizes = args.length >= 2 ? args[1] : DEFAULT_SIZES;
+        ProgramShape shape = args.length == 3 ? ProgramShape.parse(args[2]) : ProgramShape.DEFAULT;
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(Paths.get(args[0]), StandardCharsets.UTF_8))) {
+            csv.println(HEADER);
+            for (String size : sizes.split(",")) {
+                ProgramShape sized = shape.withMethods(Integer.parseInt(size.trim()));
+                LOGGER.info("Analyzing {}", sized);
+                run(sized, csv);
+                csv.flush();
+            }
+        }
+    }
+
+    /**
+     * Generates a program of the given shape, analyzes it with both analyses, and writes their rows.
+     *
+     * @param shape the program shape
+     * @param csv   the results
+     */
+    public static void run(ProgramShape shape, PrintWriter csv) {
+        BenchmarkScene.reset();
+        PointsToProvider.shared().clear();
+        ConvergenceStats.shared().clear();
+        SyntheticProgramGenerator.addBasicClasses();
+        Scene.v().loadNecessaryClasses();
+        List<Body> bodies = new ArrayList<>();
+        for (SootClass sootClass : new SyntheticProgramGenerator(shape, PACKAGE).generate()) {
+            for (SootMethod method : sootClass.getMethods()) {
+                if (method.isConcrete()) {
+                    bodies.add(method.retrieveActiveBody());
+                }
+            }
+        }
+        Body main = Scene.v().getMainClass().getMethodByName("main").retrieveActiveBody();
+
+        PointsToIndex[] pointsTo = new PointsToIndex[1];
+        measure("points-to", shape, bodies, csv, () -> {
+            pointsTo[0] = PointsToProvider.shared().forEntryPoint(PACKAGE, main);
+            return 0;
+        });
+        for (boolean tracing : new boolean[]{false, true}) {
+            SensibleDataAnalysis.setTracing(tracing);
+            ProvenanceTable.shared().clear();
+            measure(tracing ? "sensible-data-traced" : "sensible-data", shape, bodies, csv,
+                    () -> analyzeLeaks(bodies, pointsTo[0]));
+        }
+        SensibleDataAnalysis.setTracing(false);
+        ProvenanceTable.shared().clear();
+        for (int length : ACCESS_PATH_LENGTHS) {
+            AccessPathTable.shared().setMaxLength(length);
+            measure("sensible-data-k" + length, shape, bodies, csv, () -> analyzeLeaks(bodies, pointsTo[0]));
+        }
+        AccessPathTable.shared().setMaxLength(AccessPathTable.DEFAULT_MAX_LENGTH);
+        long graphCacheWeight = GraphCache.shared().getMaxWeight();
+        GraphCache.shared().setMaxWeight(0);
+        measure("sensible-data-uncached", shape, bodies, csv, () -> analyzeLeaks(bodies, pointsTo[0]));
+        GraphCache.shared().setMaxWeight(graphCacheWeight);
+        measure("division-by-zero", shape, bodies, csv, () -> {
+            int divisions = 0;
+            for (Body body : bodies) {
+                DivisionByZeroAnalysis analysis = new DivisionByZeroAnalysis(GraphCache.shared().graphOf(body));
+                divisions += count(body, analysis::unitIsOffending);
+            }
+            return divisions;
+        });
+    }
+
+    private static int analyzeLeaks(List<Body> bodies, PointsToIndex pointsTo) {
+        SummaryEngine summaries = new SummaryEngine();
+        int leaks = 0;
+        for (Body body : bodies) {
+            SensibleDataAnalysis analysis = SensibleDataAnalysis.forBody(body, pointsTo, summaries);
+            leaks += count(body, analysis::possibleLeakInUnit);
+        }
+        return leaks;
+    }
+
+    private static void measure(String analysis, ProgramShape shape, List<Body> bodies, PrintWriter csv,
+                                Run run) {
+        AccessPathTable.shared().clear();
+        GraphCache.shared().clear();
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long start = System.nanoTime();
+        int findings = run.run();
+        long elapsed = System.nanoTime() - start;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        int units = 0;
+        for (Body body : bodies) {
+            units += body.getUnits().size();
+        }
+        csv.printf(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%.1f,%d,%d,%.3f%n", analysis, shape.getMethods(),
+                shape.getDepth(), shape.getFanOut(), shape.getImplementations(), shape.getBranches(),
+                shape.getLocals(), shape.getNesting(), bodies.size(), units, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                peakHeap, bodies.size() * 1e9 / Math.max(1, elapsed), findings, AccessPathTable.shared().size(),
+                GraphCache.shared().getHitRate());
+    }
+
+    private static int count(Body body, Predicate<Unit> offending) {
+        int count = 0;
+        for (Unit unit : body.getUnits()) {
+            if (offending.test(unit)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A measured run, returning how many units it reported.
+     */
+    private interface Run {
+        int run();
+    }
+}
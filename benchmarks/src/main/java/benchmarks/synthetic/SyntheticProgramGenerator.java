@@ -0,0 +1,440 @@
+package benchmarks.synthetic;
+
+import benchmarks.BenchmarkScene;
+import org.slf4j.Logger;
+import soot.ArrayType;
+import soot.Body;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.Printer;
+import soot.RefType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootFieldRef;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.Type;
+import soot.Unit;
+import soot.Value;
+import soot.VoidType;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.NopStmt;
+import soot.jimple.NullConstant;
+import soot.jimple.StringConstant;
+import soot.tagkit.LineNumberTag;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Builds programs of a given {@link ProgramShape} straight into Soot's {@link Scene}, as Jimple bodies. A program has:
+ * <ul>
+ * <li>a {@code Step} interface, with one {@code String apply(String)} method, and its implementations</li>
+ * <li>the shape's static methods, {@code String m<i>(String, Step)}, spread over {@code Methods<n>} classes. Methods
+ * form a call tree of the shape's depth, and each one calls {@code Step.apply} on the given step</li>
+ * <li>a {@code Main} class, whose {@code main} creates every step and calls the methods of the first level</li>
+ * <li>if the shape has nesting, {@code Record<i>} classes, each with {@code value} and {@code label} strings, and a
+ * {@code next} record of the following class but for the last one</li>
+ * </ul>
+ * Method bodies are made of if-else diamonds over their integer locals. Every block concatenates strings and does
+ * integer arithmetic, and by the shape's densities marks a string as sensible, or prints it. With nesting, every block
+ * also stores a string in a new chain of records, and prints the label at the end of the chain. Every unit gets its
+ * own line number.
+ * <p>
+ * Usage: {@code SyntheticProgramGenerator <output dir> [shape]}, which writes the program as {@code .jimple} files.
+ * Soot reads them back with {@code -src-prec jimple -process-dir <output dir>}.
+ */
+public class SyntheticProgramGenerator {
+
+    private static final Logger LOGGER = getLogger(SyntheticProgramGenerator.class);
+
+    public static final int METHODS_PER_CLASS = 64;
+
+    private static final String MARKER = "analysis.SensibilityMarker";
+
+    private final ProgramShape shape;
+    private final String packageName;
+    private final Random random;
+    private final List<SootClass> classes = new ArrayList<>();
+    private int lineNumber;
+
+    // Types belong to the current Scene, so they are not kept across resets
+    private final RefType objectType = RefType.v("java.lang.Object");
+    private final RefType stringType = RefType.v("java.lang.String");
+    private final RefType printStreamType = RefType.v("java.io.PrintStream");
+    private RefType stepType;
+    private SootMethodRef apply;
+    private SootMethodRef objectInit;
+    private SootMethodRef concat;
+    private SootMethodRef println;
+    private SootMethodRef markAsSensible;
+    private SootMethodRef sanitize;
+    private RefType[] recordTypes;
+    private SootMethodRef[] recordInits;
+    private SootFieldRef[] values;
+    private SootFieldRef[] labels;
+    private SootFieldRef[] nexts;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: SyntheticProgramGenerator <output dir> [shape]");
+            System.exit(1);
+        }
+        ProgramShape shape = args.length == 2 ? ProgramShape.parse(args[1]) : ProgramShape.DEFAULT;
+        BenchmarkScene.reset();
+        addBasicClasses();
+        Scene.v().loadNecessaryClasses();
+        List<SootClass> program = new SyntheticProgramGenerator(shape, "synthetic").generate();
+        writeJimple(program, Paths.get(args[0]));
+        LOGGER.info("Wrote {} classes with shape {} to {}", program.size(), shape, args[0]);
+    }
+
+    public SyntheticProgramGenerator(ProgramShape shape, String packageName) {
+        this.shape = shape;
+        this.packageName = packageName;
+        this.random = shape.newRandom();
+    }
+
+    /**
+     * Adds the classes called by generated programs to the {@link Scene}. Must be called before loading the necessary
+     * classes.
+     */
+    public static void addBasicClasses() {
+        Scene.v().addBasicClass(MARKER, SootClass.SIGNATURES);
+        Scene.v().addBasicClass("java.io.PrintStream", SootClass.SIGNATURES);
+        Scene.v().addBasicClass("java.lang.System", SootClass.SIGNATURES);
+    }
+
+    /**
+     * Builds the program as application classes of the {@link Scene}, and sets its {@code Main} as the main class.
+     *
+     * @return the program classes
+     */
+    public List<SootClass> generate() {
+        SootClass string = Scene.v().getSootClass(stringType.getClassName());
+        SootClass marker = Scene.v().getSootClass(MARKER);
+        objectInit = Scene.v().makeMethodRef(Scene.v().getSootClass(objectType.getClassName()), "<init>",
+                Collections.emptyList(), VoidType.v(), false);
+        concat = Scene.v().makeMethodRef(string, "concat", Collections.singletonList(stringType), stringType, false);
+        println = Scene.v().makeMethodRef(Scene.v().getSootClass(printStreamType.getClassName()), "println",
+                Collections.singletonList(stringType), VoidType.v(), false);
+        markAsSensible = Scene.v().makeMethodRef(marker, "markAsSensible", Collections.singletonList(objectType),
+                VoidType.v(), true);
+        sanitize = Scene.v().makeMethodRef(marker, "sanitize", Collections.singletonList(objectType), VoidType.v(),
+                true);
+
+        SootClass step = newClass("Step", Modifier.PUBLIC | Modifier.INTERFACE | Modifier.ABSTRACT);
+        stepType = step.getType();
+        step.addMethod(new SootMethod("apply", Collections.singletonList(stringType), stringType,
+                Modifier.PUBLIC | Modifier.ABSTRACT));
+        apply = Scene.v().makeMethodRef(step, "apply", Collections.singletonList(stringType), stringType, false);
+
+        List<SootClass> implementations = new ArrayList<>();
+        for (int i = 0; i < shape.getImplementations(); i++) {
+            SootClass implementation = newClass("Step" + i, Modifier.PUBLIC);
+            implementation.addInterface(step);
+            generateConstructor(implementation);
+            generateApply(implementation);
+            implementations.add(implementation);
+        }
+
+        generateRecords();
+
+        // Every method is declared before generating any body, so calls are made through declared methods
+        List<List<SootMethod>> levels = new ArrayList<>();
+        for (int level = 0; level < shape.getDepth(); level++) {
+            levels.add(new ArrayList<>());
+        }
+        SootClass methodsClass = null;
+        List<Type> parameters = Arrays.asList(stringType, stepType);
+        for (int i = 0; i < shape.getMethods(); i++) {
+            if (i % METHODS_PER_CLASS == 0) {
+                methodsClass = newClass("Methods" + i / METHODS_PER_CLASS, Modifier.PUBLIC);
+            }
+            SootMethod method = new SootMethod("m" + i, parameters, stringType, Modifier.PUBLIC | Modifier.STATIC);
+            methodsClass.addMethod(method);
+            levels.get((int) ((long) i * shape.getDepth() / shape.getMethods())).add(method);
+        }
+        for (int level = 0; level < levels.size(); level++) {
+            List<SootMethod> callable = level + 1 < levels.size() ? levels.get(level + 1) : Collections.emptyList();
+            List<SootMethod> methods = levels.get(level);
+            for (int i = 0; i < methods.size(); i++) {
+                List<SootMethod> callees = new ArrayList<>();
+                for (int call = 0; call < shape.getFanOut() && !callable.isEmpty(); call++) {
+                    // First calls go round robin, so the next level methods are all called
+                    int callee = call == 0 ? i % callable.size() : random.nextInt(callable.size());
+                    callees.add(callable.get(callee));
+                }
+                generateMethodBody(methods.get(i), callees);
+            }
+        }
+
+        generateMain(newClass("Main", Modifier.PUBLIC), implementations, levels.get(0));
+        return Collections.unmodifiableList(classes);
+    }
+
+    /**
+     * Writes each class as a {@code <class name>.jimple} file.
+     *
+     * @param classes   the classes
+     * @param directory the output directory, created if needed
+     */
+    public static void writeJimple(List<SootClass> classes, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (SootClass sootClass : classes) {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(
+                    directory.resolve(sootClass.getName() + ".jimple"), StandardCharsets.UTF_8))) {
+                Printer.v().printTo(sootClass, out);
+            }
+        }
+    }
+
+    private SootClass newClass(String simpleName, int modifiers) {
+        SootClass sootClass = new SootClass(packageName + "." + simpleName, modifiers);
+        sootClass.setResolvingLevel(SootClass.BODIES);
+        sootClass.setSuperclass(Scene.v().getSootClass(objectType.getClassName()));
+        Scene.v().addClass(sootClass);
+        sootClass.setApplicationClass();
+        classes.add(sootClass);
+        return sootClass;
+    }
+
+    private void generateConstructor(SootClass implementation) {
+        SootMethod constructor = new SootMethod("<init>", Collections.emptyList(), VoidType.v(), Modifier.PUBLIC);
+        implementation.addMethod(constructor);
+        JimpleBody body = newBody(constructor);
+        Local self = newLocal(body, "this", implementation.getType());
+        add(body, Jimple.v().newIdentityStmt(self, Jimple.v().newThisRef(implementation.getType())));
+        add(body, Jimple.v().newInvokeStmt(Jimple.v().newSpecialInvokeExpr(self, objectInit)));
+        add(body, Jimple.v().newReturnVoidStmt());
+    }
+
+    private void generateRecords() {
+        int nesting = shape.getNesting();
+        SootClass[] records = new SootClass[nesting];
+        recordTypes = new RefType[nesting];
+        recordInits = new SootMethodRef[nesting];
+        values = new SootFieldRef[nesting];
+        labels = new SootFieldRef[nesting];
+        nexts = new SootFieldRef[nesting];
+        for (int i = 0; i < nesting; i++) {
+            records[i] = newClass("Record" + i, Modifier.PUBLIC);
+            recordTypes[i] = records[i].getType();
+            generateConstructor(records[i]);
+            recordInits[i] = records[i].getMethodByName("<init>").makeRef();
+        }
+        for (int i = 0; i < nesting; i++) {
+            values[i] = addField(records[i], "value", stringType);
+            labels[i] = addField(records[i], "label", stringType);
+            if (i + 1 < nesting) {
+                nexts[i] = addField(records[i], "next", recordTypes[i + 1]);
+            }
+        }
+    }
+
+    private static SootFieldRef addField(SootClass sootClass, String name, Type type) {
+        SootField field = new SootField(name, type, Modifier.PUBLIC);
+        sootClass.addField(field);
+        return field.makeRef();
+    }
+
+    /**
+     * Steps return their input concatenated to itself, after marking it as sensible or sanitizing it.
+     */
+    private void generateApply(SootClass implementation) {
+        SootMethod method = new SootMethod("apply", Collections.singletonList(stringType), stringType, Modifier.PUBLIC);
+        implementation.addMethod(method);
+        JimpleBody body = newBody(method);
+        Local self = newLocal(body, "this", implementation.getType());
+        Local input = newLocal(body, "input", stringType);
+        Local output = newLocal(body, "output", stringType);
+        add(body, Jimple.v().newIdentityStmt(self, Jimple.v().newThisRef(implementation.getType())));
+        add(body, Jimple.v().newIdentityStmt(input, Jimple.v().newParameterRef(stringType, 0)));
+        add(body, Jimple.v().newAssignStmt(output, Jimple.v().newVirtualInvokeExpr(input, concat, input)));
+        if (random.nextDouble() < shape.getSources()) {
+            add(body, Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(markAsSensible, output)));
+        } else if (random.nextBoolean()) {
+            add(body, Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(sanitize, output)));
+        }
+        add(body, Jimple.v().newReturnStmt(output));
+    }
+
+    private void generateMethodBody(SootMethod method, List<SootMethod> callees) {
+        JimpleBody body = newBody(method);
+        Local input = newLocal(body, "input", stringType);
+        Local step = newLocal(body, "step", stepType);
+        add(body, Jimple.v().newIdentityStmt(input, Jimple.v().newParameterRef(stringType, 0)));
+        add(body, Jimple.v().newIdentityStmt(step, Jimple.v().newParameterRef(stepType, 1)));
+
+        Local[] strings = new Local[(shape.getLocals() + 1) / 2];
+        Local[] integers = new Local[shape.getLocals() / 2];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = newLocal(body, "s" + i, stringType);
+            add(body, Jimple.v().newAssignStmt(strings[i], input));
+        }
+        for (int i = 0; i < integers.length; i++) {
+            integers[i] = newLocal(body, "n" + i, IntType.v());
+            add(body, Jimple.v().newAssignStmt(integers[i], IntConstant.v(i + 1)));
+        }
+
+        for (int branch = 0; branch < shape.getBranches(); branch++) {
+            NopStmt elseBranch = Jimple.v().newNopStmt();
+            NopStmt join = Jimple.v().newNopStmt();
+            add(body, Jimple.v().newIfStmt(Jimple.v().newGtExpr(integers[branch % integers.length],
+                    IntConstant.v(branch)), elseBranch));
+            generateBlock(body, strings, integers);
+            add(body, Jimple.v().newGotoStmt(join));
+            add(body, elseBranch);
+            generateBlock(body, strings, integers);
+            add(body, join);
+        }
+        if (shape.getBranches() == 0) {
+            generateBlock(body, strings, integers);
+        }
+
+        for (SootMethod callee : callees) {
+            add(body, Jimple.v().newAssignStmt(pick(strings),
+                    Jimple.v().newStaticInvokeExpr(callee.makeRef(), pick(strings), step)));
+        }
+        if (shape.getImplementations() > 0) {
+            add(body, Jimple.v().newAssignStmt(pick(strings),
+                    Jimple.v().newInterfaceInvokeExpr(step, apply, pick(strings))));
+        }
+        add(body, Jimple.v().newReturnStmt(strings[0]));
+    }
+
+    private void generateBlock(JimpleBody body, Local[] strings, Local[] integers) {
+        Local string = pick(strings);
+        add(body, Jimple.v().newAssignStmt(string, Jimple.v().newVirtualInvokeExpr(pick(strings), concat,
+                pick(strings))));
+
+        // Only positive constants, and the operations understood by the division by zero analysis
+        Local left = pick(integers);
+        Value right = random.nextBoolean() ? pick(integers) : IntConstant.v(random.nextInt(4));
+        Value operation;
+        switch (random.nextInt(4)) {
+            case 0:
+                operation = Jimple.v().newAddExpr(left, right);
+                break;
+            case 1:
+                operation = Jimple.v().newSubExpr(left, right);
+                break;
+            case 2:
+                operation = Jimple.v().newMulExpr(left, right);
+                break;
+            default:
+                operation = Jimple.v().newDivExpr(left, right);
+        }
+        add(body, Jimple.v().newAssignStmt(pick(integers), operation));
+
+        if (random.nextDouble() < shape.getSources()) {
+            add(body, Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(markAsSensible, string)));
+        }
+        if (random.nextDouble() < shape.getSinks()) {
+            generatePrint(body, string);
+        }
+        if (shape.getNesting() > 0) {
+            generateRecordChain(body, string);
+        }
+    }
+
+    private void generatePrint(JimpleBody body, Local string) {
+        Local out = newLocal(body, "out" + body.getLocals().size(), printStreamType);
+        add(body, Jimple.v().newAssignStmt(out, Jimple.v().newStaticFieldRef(Scene.v().makeFieldRef(
+                Scene.v().getSootClass("java.lang.System"), "out", printStreamType, true))));
+        add(body, Jimple.v().newInvokeStmt(Jimple.v().newVirtualInvokeExpr(out, println, string)));
+    }
+
+    /**
+     * Stores the string as the value of the last record of a new chain, linked from the last record to the first one,
+     * and prints the label of the last record, read through the chain from the first one. The print only leaks for
+     * analyses that can't tell the value from the label that far from the first record.
+     */
+    private void generateRecordChain(JimpleBody body, Local string) {
+        int nesting = shape.getNesting();
+        Local[] chain = new Local[nesting];
+        for (int i = nesting - 1; i >= 0; i--) {
+            chain[i] = newLocal(body, "record" + body.getLocals().size(), recordTypes[i]);
+            add(body, Jimple.v().newAssignStmt(chain[i], Jimple.v().newNewExpr(recordTypes[i])));
+            add(body, Jimple.v().newInvokeStmt(Jimple.v().newSpecialInvokeExpr(chain[i], recordInits[i])));
+            if (i == nesting - 1) {
+                add(body, Jimple.v().newAssignStmt(Jimple.v().newInstanceFieldRef(chain[i], values[i]), string));
+                add(body, Jimple.v().newAssignStmt(Jimple.v().newInstanceFieldRef(chain[i], labels[i]),
+                        StringConstant.v("label")));
+            } else {
+                add(body, Jimple.v().newAssignStmt(Jimple.v().newInstanceFieldRef(chain[i], nexts[i]),
+                        chain[i + 1]));
+            }
+        }
+        Local read = chain[0];
+        for (int i = 0; i + 1 < nesting; i++) {
+            Local next = newLocal(body, "record" + body.getLocals().size(), recordTypes[i + 1]);
+            add(body, Jimple.v().newAssignStmt(next, Jimple.v().newInstanceFieldRef(read, nexts[i])));
+            read = next;
+        }
+        Local label = newLocal(body, "label" + body.getLocals().size(), stringType);
+        add(body, Jimple.v().newAssignStmt(label, Jimple.v().newInstanceFieldRef(read, labels[nesting - 1])));
+        generatePrint(body, label);
+    }
+
+    private void generateMain(SootClass mainClass, List<SootClass> implementations, List<SootMethod> firstLevel) {
+        SootMethod main = new SootMethod("main", Collections.singletonList(ArrayType.v(stringType, 1)), VoidType.v(),
+                Modifier.PUBLIC | Modifier.STATIC);
+        mainClass.addMethod(main);
+        JimpleBody body = newBody(main);
+        Local args = newLocal(body, "args", ArrayType.v(stringType, 1));
+        Local value = newLocal(body, "value", stringType);
+        Local step = newLocal(body, "step", stepType);
+        add(body, Jimple.v().newIdentityStmt(args, Jimple.v().newParameterRef(ArrayType.v(stringType, 1), 0)));
+        add(body, Jimple.v().newAssignStmt(value, StringConstant.v("input")));
+        add(body, Jimple.v().newAssignStmt(step, NullConstant.v()));
+        for (SootClass implementation : implementations) {
+            Local created = newLocal(body, "created" + body.getLocals().size(), implementation.getType());
+            add(body, Jimple.v().newAssignStmt(created, Jimple.v().newNewExpr(implementation.getType())));
+            add(body, Jimple.v().newInvokeStmt(Jimple.v().newSpecialInvokeExpr(created,
+                    implementation.getMethodByName("<init>").makeRef())));
+            add(body, Jimple.v().newAssignStmt(step, created));
+        }
+        for (SootMethod method : firstLevel) {
+            add(body, Jimple.v().newAssignStmt(value, Jimple.v().newStaticInvokeExpr(method.makeRef(), value, step)));
+        }
+        add(body, Jimple.v().newReturnVoidStmt());
+        Scene.v().setMainClass(mainClass);
+    }
+
+    private static JimpleBody newBody(SootMethod method) {
+        JimpleBody body = Jimple.v().newBody(method);
+        method.setActiveBody(body);
+        return body;
+    }
+
+    private static Local newLocal(Body body, String name, Type type) {
+        Local local = Jimple.v().newLocal(name, type);
+        body.getLocals().add(local);
+        return local;
+    }
+
+    private void add(Body body, Unit unit) {
+        unit.addTag(new LineNumberTag(++lineNumber));
+        body.getUnits().add(unit);
+    }
+
+    private Local pick(Local[] locals) {
+        return locals[random.nextInt(locals.length)];
+    }
+}
@@ -0,0 +1,28 @@
+package wtf.thepalbi;
+
+import analysis.SensibilityMarker;
+
+public class MutuallyRecursiveLeak {
+
+    public static void main(String[] args) {
+        String sensibleShit = "holis";
+        sensibleShit = sensibleShit + "b";
+        SensibilityMarker.markAsSensible(sensibleShit);
+        ping(sensibleShit, 3);
+    }
+
+    private static void ping(String value, int times) {
+        if (times > 0) {
+            pong(value, times - 1);
+        }
+    }
+
+    private static void pong(String value, int times) {
+        if (times == 0) {
+            System.out.println(value);
+        } else {
+            ping(value, times);
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package wtf.thepalbi;
+
+import analysis.SensibilityMarker;
+
+public class SensibleDataStoredInField {
+
+    public static void main(String[] args) {
+        String phone = "holis";
+        phone = phone.replace("i", "u");
+        SensibilityMarker.markAsSensible(phone);
+        Contact contact = new Contact();
+        contact.phone = phone;
+        contact.name = "public";
+        System.out.println(contact.name);
+        System.out.println(contact.phone);
+    }
+}
+
+class Contact {
+    String name;
+    String phone;
+}
@@ -1,13 +1,90 @@
 import analysis.SensibleDataWarningsYeller;
+import analysis.SummaryCache;
+import analysis.bodies.BodyProvider;
+import analysis.driver.ParallelLeakDriver;
+import analysis.ifds.IFDSLeakDriver;
+import analysis.interprocedural.SinkReachability;
+import analysis.interprocedural.SummaryEngine;
+import analysis.interprocedural.SummaryStore;
+import analysis.models.LibraryModels;
+import analysis.rules.RuleMatcher;
+import analysis.pointsto.PointsToProvider;
+import analysis.paths.AccessPathTable;
+import analysis.provenance.ProvenanceTable;
+import analysis.report.LeakReport;
+import dataflow.utils.AnalysisBudget;
+import dataflow.utils.AnalysisPhase;
+import dataflow.utils.ConvergenceStats;
+import dataflow.utils.GraphCache;
+import dataflow.utils.MetricsReport;
+import dataflow.utils.PhaseMetrics;
+import dataflow.utils.WarningCounters;
+import org.slf4j.Logger;
 import soot.PackManager;
 import soot.Transform;
 
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
 /**
- * Main analysis launcher class
+ * Main analysis launcher class. Arguments are Soot's options, unless the first one is {@code --reachable}, which
+ * analyzes only the methods reachable from the main class with {@link ParallelLeakDriver#runReachable(String[])},
+ * building their bodies on demand.
  */
 public class SensibilityLauncher {
+    private static final Logger LOGGER = getLogger(SensibilityLauncher.class);
+
     public static void main(String[] args) {
-        PackManager.v().getPack("jtp").add(new Transform("jtp.SensibleData", new SensibleDataWarningsYeller()));
-        soot.Main.main(args);
+        MetricsReport.dumpAtExitIfRequested();
+        Transform sensibleData = new Transform("jtp.SensibleData", new SensibleDataWarningsYeller());
+        sensibleData.setDeclaredOptions(SensibleDataWarningsYeller.DECLARED_OPTIONS);
+        sensibleData.setDefaultOptions(SensibleDataWarningsYeller.DEFAULT_OPTIONS);
+        PackManager.v().getPack("jtp").add(sensibleData);
+        Transform parallelDriver = new Transform(ParallelLeakDriver.PHASE_NAME, new ParallelLeakDriver());
+        parallelDriver.setDeclaredOptions(ParallelLeakDriver.DECLARED_OPTIONS);
+        parallelDriver.setDefaultOptions(ParallelLeakDriver.DEFAULT_OPTIONS);
+        PackManager.v().getPack("wjtp").add(parallelDriver);
+        Transform ifdsDriver = new Transform(IFDSLeakDriver.PHASE_NAME, new IFDSLeakDriver());
+        ifdsDriver.setDeclaredOptions(IFDSLeakDriver.DECLARED_OPTIONS);
+        ifdsDriver.setDefaultOptions(IFDSLeakDriver.DEFAULT_OPTIONS);
+        PackManager.v().getPack("wjtp").add(ifdsDriver);
+        PhaseMetrics.shared().begin(AnalysisPhase.SOOT_LOAD);
+        if (args.length > 0 && args[0].equals("--reachable")) {
+            ParallelLeakDriver.runReachable(Arrays.copyOfRange(args, 1, args.length));
+        } else {
+            soot.Main.main(args);
+        }
+        PhaseMetrics.shared().end(AnalysisPhase.SOOT_LOAD);
+        LeakReport.shared().close();
+        LOGGER.info("Bodies: {}", BodyProvider.shared());
+        LOGGER.info("Points-to: {}", PointsToProvider.shared());
+        LOGGER.info("Library models: {}", LibraryModels.shared());
+        LOGGER.info("Rules: {}", RuleMatcher.shared());
+        LOGGER.info("Provenance: {}", ProvenanceTable.shared());
+        LOGGER.info("Access paths: {}", AccessPathTable.shared());
+        LOGGER.info("Graph cache: {}", GraphCache.shared());
+        LOGGER.info("Called methods summary cache: {}", SummaryCache.shared());
+        LOGGER.info("Bottom-up summaries: {}", SummaryEngine.shared());
+        LOGGER.info("Sink reachability: {} bodies pruned, {} analyzed", SinkReachability.getPruned(),
+                SinkReachability.getKept());
+        SummaryStore store = SummaryEngine.shared().getStore();
+        if (store != null) {
+            try {
+                store.save();
+                LOGGER.info("Summary store: {}", store);
+            } catch (IOException e) {
+                LOGGER.error("Could not save the summary store {}", store.getFile(), e);
+            }
+        }
+        LOGGER.info("Solver convergence: {}", ConvergenceStats.shared());
+        ConvergenceStats.shared().byMethod().forEach((method, stats) -> LOGGER.debug("{}: {}", method, stats));
+        LOGGER.info("Phases: {}", PhaseMetrics.shared());
+        LOGGER.info("Budget: {}", AnalysisBudget.shared());
+        AnalysisBudget.shared().degraded().forEach((method, limit) -> LOGGER.warn("Degraded by the {} budget: {}",
+                limit.getOption(), method));
+        LOGGER.info("Warnings: {}", WarningCounters.shared());
+        WarningCounters.shared().counts().forEach((warning, count) -> LOGGER.info("{} times: {}", count, warning));
     }
 }
@@ -1,17 +1,24 @@
 package analysis;
 
 import analysis.abstraction.SensibilityLattice;
+import analysis.bodies.BodyProvider;
+import analysis.interprocedural.DispatchTable;
+import analysis.models.LibraryModels;
+import analysis.models.ModelKind;
+import analysis.pointsto.PointsToIndex;
+import dataflow.utils.AnalysisBudget;
+import dataflow.utils.WarningCounters;
 import org.slf4j.Logger;
 import soot.*;
 import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.InterfaceInvokeExpr;
 import soot.jimple.InvokeExpr;
-import wtf.thepalbi.HeapObject;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static analysis.StatementVisitor.getArgumentSensibilityFor;
-import static java.util.stream.Collectors.toList;
 import static org.slf4j.LoggerFactory.getLogger;
 
 public class InvocationVisitor {
@@ -29,19 +36,19 @@ public class InvocationVisitor {
         if (invokeExpr instanceof InterfaceInvokeExpr) {
             InstanceInvokeExpr instanceInvokeExpr = (InstanceInvokeExpr) invokeExpr;
             // Interface invoke. Use points to to resolve.
-            // Assuming that the base will be a local
-            Local base = (Local) instanceInvokeExpr.getBase();
-            List<HeapObject> basePointsTo = ctx.pointsToData.localPointsTo(ctx.inMethod, base.getName());
+            List<SootMethod> resolvedMethods = resolveTargets(invokeExpr, ctx.inMethod, ctx.pointsToData);
 
-            // Failed if nothing is resolved in points to set
-            if (basePointsTo.isEmpty()) {
-                LOGGER.warn("Cannot resolve points to set in call: {}", instanceInvokeExpr.toString());
+            // Failed if neither points-to nor the class hierarchy resolve anything
+            if (resolvedMethods.isEmpty()) {
+                WarningCounters.shared().warn(LOGGER, "Cannot resolve any target in call: {}", instanceInvokeExpr);
                 return InvocationResult.noResult();
             }
-
-            List<SootMethod> resolvedMethods = basePointsTo.stream()
-                    .map(heapObject -> Scene.v().getSootClass(heapObject.getType()).getMethod(instanceInvokeExpr.getMethodRef().getSubSignature()))
-                    .collect(toList());
+            if (!AnalysisBudget.shared().allowsCallees(resolvedMethods.size())) {
+                AnalysisBudget.shared().degrade(ctx.inMethod.getSignature(), AnalysisBudget.Limit.CALLEES);
+                WarningCounters.shared().warn(LOGGER, "Not analyzing the {} callees of call {}, over the budget",
+                        resolvedMethods.size(), instanceInvokeExpr);
+                return InvocationResult.degraded(invokeExpr.getMethodRef().getReturnType() instanceof VoidType);
+            }
 
             boolean someMethodReturnsSensibleValue = false;
             boolean someMethodCallLeaks = false;
@@ -50,10 +57,14 @@ public class InvocationVisitor {
             // Run the Sensibility analysis and merge back the result into this visitor
             for (SootMethod resolvedMethod : resolvedMethods) {
                 InvocationResult result;
-                if (!resolvedMethod.hasActiveBody()) {
-                    LOGGER.warn("Ignoring interface call to {}, on invocation {}. NO ACTIVE BODY",
+                int modelFlags = LibraryModels.shared().flagsOf(resolvedMethod);
+                if (modelFlags != 0) {
+                    result = handleModeledCall(modelFlags);
+                } else if (!BodyProvider.shared().hasBody(resolvedMethod)) {
+                    WarningCounters.shared().warn(LOGGER,
+                            "Ignoring interface call to {}, on invocation {}. NO ACTIVE BODY",
                             resolvedMethod.getSignature(),
-                            instanceInvokeExpr.toString());
+                            instanceInvokeExpr);
                     result = handleNoMethodBodyCall();
                 } else {
                     result = analyzeCalledMethod(resolvedMethod, instanceInvokeExpr.getArgs());
@@ -69,42 +80,90 @@ public class InvocationVisitor {
         }
     }
 
+    /**
+     * Resolves the methods that might be called by an invocation, through the {@link DispatchTable} of the given
+     * points-to index.
+     *
+     * @param invokeExpr the invocation
+     * @param inMethod   the method containing the invocation
+     * @param pointsTo   the points-to index
+     * @return the distinct possibly called methods
+     */
+    public static List<SootMethod> resolveTargets(InvokeExpr invokeExpr, SootMethod inMethod, PointsToIndex pointsTo) {
+        return pointsTo.getDispatchTable().targetsOf(invokeExpr, inMethod);
+    }
+
     private InvocationResult analyzeCalledMethod(SootMethod calledMethod, List<Value> arguments) {
-        SensibleDataAnalysis analysisResult = SensibleDataAnalysis.forBodyAndParams(calledMethod.getActiveBody(),
-                getArgumentSensibilityFor(ctx.localsSensibility, arguments), ctx.pointsToData);
+        SensibilityLattice receiver = getReceiverSensibility();
+        SensibilityLattice[] argumentsSensibility = getArgumentSensibilityFor(ctx.localsSensibility, arguments);
+
+        if (ctx.summaries != null) {
+            // Called methods are summarized bottom-up, once for every calling context
+            return ctx.summaries.summaryOf(calledMethod, ctx.pointsToData).apply(receiver, argumentsSensibility);
+        }
+
+        // The called method is analyzed once per sensibility vector, and reused by every call site
+        return SummaryCache.shared().get(ctx.pointsToData, calledMethod, receiver, argumentsSensibility, () -> {
+            Map<Integer, SensibilityLattice> params = new HashMap<>();
+            for (int i = 0; i < argumentsSensibility.length; i++) {
+                params.put(i, argumentsSensibility[i]);
+            }
+            SensibleDataAnalysis analysisResult = SensibleDataAnalysis.forBodyAndParams(calledMethod.getActiveBody(),
+                    params, receiver, ctx.pointsToData);
 
-        // TODO: Check for side effects (if the called method leaks a sensible value)
-        // TODO: Check leak in called method
-        return new InvocationResult(analysisResult.leaksSensibleValue(), analysisResult.isReturningSensibleValue());
+            // TODO: Check for side effects (if the called method leaks a sensible value)
+            // TODO: Check leak in called method
+            return new InvocationResult(analysisResult.leaksSensibleValue(), analysisResult.isReturningSensibleValue());
+        });
+    }
+
+    private SensibilityLattice getReceiverSensibility() {
+        if (invokeExpr instanceof InstanceInvokeExpr && ((InstanceInvokeExpr) invokeExpr).getBase() instanceof Local) {
+            return ctx.localsSensibility.getWithDerived((Local) ((InstanceInvokeExpr) invokeExpr).getBase());
+        }
+        return SensibilityLattice.getBottom();
     }
 
     private InvocationResult handleResolvedInvocation() {
-        if (!invokeExpr.getMethod().hasActiveBody()) {
-            LOGGER.warn("Ignoring non-interface call to {}, on invocation {}. NO ACTIVE BODY",
+        int modelFlags = LibraryModels.shared().flagsOf(invokeExpr.getMethod());
+        if (modelFlags != 0) {
+            return handleModeledCall(modelFlags);
+        }
+        if (!BodyProvider.shared().hasBody(invokeExpr.getMethod())) {
+            WarningCounters.shared().warn(LOGGER,
+                    "Ignoring non-interface call to {}, on invocation {}. NO ACTIVE BODY",
                     invokeExpr.getMethod().getSignature(),
-                    invokeExpr.toString());
+                    invokeExpr);
             return handleNoMethodBodyCall();
         }
         return analyzeCalledMethod(invokeExpr.getMethod(), invokeExpr.getArgs());
     }
 
+    /**
+     * Applies the library model of the called method, instead of analyzing its body.
+     *
+     * @param modelFlags the {@link ModelKind} flags of the called method
+     * @return the invocation result
+     */
+    private InvocationResult handleModeledCall(int modelFlags) {
+        boolean hasSensibleParameter = hasSensibleParameter();
+        boolean methodIsVoid = invokeExpr.getMethodRef().getReturnType() instanceof VoidType;
+        boolean returnsSensibleValue = ModelKind.SOURCE.in(modelFlags) || ModelKind.PROPAGATE.in(modelFlags)
+                && (hasSensibleParameter || SensibilityLattice.isSensible(getReceiverSensibility()));
+        return new InvocationResult(
+                ModelKind.SINK.in(modelFlags) && hasSensibleParameter,
+                !methodIsVoid && returnsSensibleValue);
+    }
+
     private InvocationResult handleNoMethodBodyCall() {
         // By default, assume that most non method body calls with one sensible parameter
         // will correspond to something like String.concat / StringBuilder.append.
         // Assume result sensible
 
-        boolean hasSensibleParameter = invokeExpr.getArgs().stream()
-                .filter(value -> value instanceof Local)
-                .map(parameter -> ctx.localsSensibility.get(((Local) parameter).getName()))
-                .map(SensibilityLattice::isSensible)
-                .anyMatch(v -> v);
+        boolean hasSensibleParameter = hasSensibleParameter();
 
-        boolean receiverIsSensible = false;
         // Also, if the receiver is a sensible value, consider the returned value will also be
-        if (invokeExpr instanceof InstanceInvokeExpr && ((InstanceInvokeExpr) invokeExpr).getBase() instanceof Local) {
-            Local base = (Local) ((InstanceInvokeExpr) invokeExpr).getBase();
-            receiverIsSensible = SensibilityLattice.isSensible(ctx.localsSensibility.get(base.getName()));
-        }
+        boolean receiverIsSensible = SensibilityLattice.isSensible(getReceiverSensibility());
 
         // Check that method is non-void returning
         boolean methodIsVoid = invokeExpr.getMethodRef().getReturnType() instanceof VoidType;
@@ -115,17 +174,41 @@ public class InvocationVisitor {
                 !methodIsVoid && (hasSensibleParameter || receiverIsSensible));
     }
 
+    private boolean hasSensibleParameter() {
+        return invokeExpr.getArgs().stream()
+                .filter(value -> value instanceof Local)
+                .map(parameter -> ctx.localsSensibility.getWithDerived((Local) parameter))
+                .anyMatch(SensibilityLattice::isSensible);
+    }
+
     public static class InvocationResult {
         public final boolean leakInCall;
         public final boolean returnsSensibleValue;
+        /**
+         * Whether the called methods were not analyzed, for lack of budget.
+         */
+        public final boolean degraded;
 
         public static InvocationResult noResult() {
             return new InvocationResult(false, false);
         }
 
+        /**
+         * @param methodIsVoid whether the called method returns nothing
+         * @return the result of a call whose callees were not analyzed: it might leak, and return a sensible value
+         */
+        public static InvocationResult degraded(boolean methodIsVoid) {
+            return new InvocationResult(true, !methodIsVoid, true);
+        }
+
         public InvocationResult(boolean leakInCall, boolean returnsSensibleValue) {
+            this(leakInCall, returnsSensibleValue, false);
+        }
+
+        private InvocationResult(boolean leakInCall, boolean returnsSensibleValue, boolean degraded) {
             this.leakInCall = leakInCall;
             this.returnsSensibleValue = returnsSensibleValue;
+            this.degraded = degraded;
         }
     }
 }
@@ -0,0 +1,34 @@
+package analysis;
+
+import analysis.provenance.Provenance;
+import dataflow.utils.AnalysisBudget;
+import soot.Unit;
+
+/**
+ * Results of analyzing a body for sensible data leaks, whatever the propagation strategy used.
+ */
+public interface LeakAnalysisResult {
+
+    boolean possibleLeakInUnit(Unit unit);
+
+    boolean leaksSensibleValue();
+
+    boolean isReturningSensibleValue();
+
+    /**
+     * @param unit a unit of the analyzed body
+     * @return the provenance of the value leaked by the unit, or null if it doesn't leak, its origin is unknown, or the
+     * analysis doesn't trace provenance
+     */
+    default Provenance provenanceOf(Unit unit) {
+        return null;
+    }
+
+    /**
+     * @return the budget limit that made the results of the body, or of a callee analyzed with it, fall back to top,
+     * or null if it was fully analyzed
+     */
+    default AnalysisBudget.Limit getDegradation() {
+        return null;
+    }
+}
@@ -1,29 +1,52 @@
 package analysis;
 
 import analysis.abstraction.SensibilityLattice;
+import analysis.bodies.BodyProvider;
+import analysis.interprocedural.SummaryEngine;
+import analysis.models.LibraryModels;
+import analysis.models.ModelKind;
+import analysis.pointsto.PointsToIndex;
+import analysis.pointsto.PointsToProvider;
+import analysis.provenance.Provenance;
+import analysis.provenance.ProvenanceTable;
+import analysis.provenance.TracedLocalsState;
+import dataflow.utils.AnalysisBudget;
+import dataflow.utils.ConvergenceStats;
+import dataflow.utils.ForwardDataflowSolver;
+import dataflow.utils.GraphCache;
+import dataflow.utils.LocalNumbering;
+import dataflow.utils.PackedLatticeState;
+import dataflow.utils.WarningCounters;
+import dataflow.utils.WorklistOrder;
 import org.slf4j.Logger;
 import soot.*;
+import soot.jimple.InvokeExpr;
 import soot.jimple.Stmt;
 import soot.toolkits.graph.ExceptionalUnitGraph;
-import soot.toolkits.scalar.ForwardFlowAnalysis;
 import wtf.thepalbi.PointsToResult;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import static analysis.abstraction.SensibilityLattice.HIGH;
+import static analysis.abstraction.SensibilityLattice.NOT_SENSIBLE;
 import static analysis.abstraction.SensibilityLattice.getBottom;
-import static analysis.abstraction.SensibilityLattice.supremeBetween;
 import static org.slf4j.LoggerFactory.getLogger;
 
-// TODO: Maybe it would be nice for the analysis to keep in the dataflow a trace from where each sensible data was originated.
+public class SensibleDataAnalysis extends ForwardDataflowSolver<Unit, PackedLatticeState<SensibilityLattice>>
+        implements LeakAnalysisResult {
 
-// TODO: Make this inter-procedural.
-
-// TODO: Add sensibility levels.
-
-// TODO: Add sanitization, and a larger collection of offending methods, even ones as VirtualInvokes, and possibly load all of them from a config file.
+    /**
+     * Worklist order used by every analysis in this run.
+     */
+    private static volatile WorklistOrder worklistOrder = WorklistOrder.REVERSE_POST_ORDER;
 
-public class SensibleDataAnalysis extends ForwardFlowAnalysis<Unit, Map<String, SensibilityLattice>> {
+    /**
+     * Whether analyses in this run keep the {@link Provenance} of sensible locals. Off by default, since every
+     * node is kept until the {@link ProvenanceTable} is cleared.
+     */
+    private static volatile boolean tracing = false;
 
     private final Logger LOGGER = getLogger(SensibleDataAnalysis.class);
     private final SootClass mainClass;
@@ -31,19 +54,65 @@ public class SensibleDataAnalysis extends ForwardFlowAnalysis<Unit, Map<String,
     /**
      * Results of the points to analysis run with this method as first reachable one.
      */
-    private final PointsToResult pointsTo;
+    private final PointsToIndex pointsTo;
     private final SootMethod method;
 
-    private Map<String, SensibilityLattice> startingLocalsMap;
-    private Map<Unit, Boolean> possibleLeakInUnit;
+    /**
+     * Summaries used for called methods, or null to re-analyze them on each call.
+     */
+    private final SummaryEngine summaries;
+
+    private PackedLatticeState<SensibilityLattice> startingLocalsMap;
+
+    /**
+     * Transfer function of each unit, compiled once per body, and whether each unit leaked, or returned a sensible
+     * value, on its last visit, by unit position.
+     */
+    private final UnitTransfer.Compiled transfers;
+    private final boolean[] leakingUnits;
+    private final boolean[] returningUnits;
+
+    /**
+     * Provenance of the value leaked by each unit on its last visit, by unit position, or null when not tracing.
+     */
+    private final Provenance[] leakProvenances;
     private boolean returningSensibleValue = false;
 
+    /**
+     * The budget limit that made this analysis, or a call it analyzed, fall back to top, if any.
+     */
+    private AnalysisBudget.Limit degradation;
+
     public static SensibleDataAnalysis forBody(Body body) {
-        return new SensibleDataAnalysis(new ExceptionalUnitGraph(body), new HashMap<>(), null);
+        return forBody(body, SummaryEngine.shared());
     }
 
     /**
-     * Creates a new {@link SensibleDataAnalysis} for the given body, and method params
+     * Creates a new {@link SensibleDataAnalysis} for the given body, with no sensible params
+     *
+     * @param body
+     * @param summaries the called methods summaries, or null to re-analyze called methods on each call site
+     * @return
+     */
+    public static SensibleDataAnalysis forBody(Body body, SummaryEngine summaries) {
+        return forBody(body, null, summaries);
+    }
+
+    /**
+     * Creates a new {@link SensibleDataAnalysis} for the given body, with no sensible params, reusing a points-to result
+     *
+     * @param body
+     * @param pointsTo  the points-to result, or null to use the run-wide one for this body
+     * @param summaries the called methods summaries, or null to re-analyze called methods on each call site
+     * @return
+     */
+    public static SensibleDataAnalysis forBody(Body body, PointsToIndex pointsTo, SummaryEngine summaries) {
+        return new SensibleDataAnalysis(graphFor(body), new HashMap<>(), getBottom(), pointsTo, summaries);
+    }
+
+    /**
+     * Creates a new {@link SensibleDataAnalysis} for the given body, and method params. The points-to result is indexed
+     * again on each call, so analyses sharing a result should index it once and pass the {@link PointsToIndex}.
      *
      * @param body
      * @param params   the method params sensibility map
@@ -51,92 +120,338 @@ public class SensibleDataAnalysis extends ForwardFlowAnalysis<Unit, Map<String,
      * @return
      */
     public static SensibleDataAnalysis forBodyAndParams(Body body, Map<Integer, SensibilityLattice> params, PointsToResult pointsTo) {
-        return new SensibleDataAnalysis(new ExceptionalUnitGraph(body), params, pointsTo);
+        return forBodyAndParams(body, params, getBottom(), PointsToIndex.of(pointsTo));
     }
 
-    public SensibleDataAnalysis(ExceptionalUnitGraph graph, Map<Integer, SensibilityLattice> methodParams, PointsToResult pointsTo) {
-        super(graph);
+    /**
+     * Creates a new {@link SensibleDataAnalysis} for the given body, method params and receiver
+     *
+     * @param body
+     * @param params   the method params sensibility map
+     * @param receiver the receiver sensibility. Ignored in static methods
+     * @param pointsTo
+     * @return
+     */
+    public static SensibleDataAnalysis forBodyAndParams(Body body, Map<Integer, SensibilityLattice> params,
+                                                        SensibilityLattice receiver, PointsToIndex pointsTo) {
+        return new SensibleDataAnalysis(graphFor(body), params, receiver, pointsTo);
+    }
+
+    /**
+     * Gets the CFG of a body from the run-wide {@link GraphCache}, so it's only built once however many call sites
+     * analyze the body.
+     *
+     * @param body
+     * @return
+     */
+    public static ExceptionalUnitGraph graphFor(Body body) {
+        return GraphCache.shared().graphOf(body);
+    }
+
+    public SensibleDataAnalysis(ExceptionalUnitGraph graph, Map<Integer, SensibilityLattice> methodParams, PointsToIndex pointsTo) {
+        this(graph, methodParams, getBottom(), pointsTo);
+    }
+
+    public SensibleDataAnalysis(ExceptionalUnitGraph graph, Map<Integer, SensibilityLattice> methodParams,
+                                SensibilityLattice receiver, PointsToIndex pointsTo) {
+        this(graph, methodParams, receiver, pointsTo, SummaryEngine.shared());
+    }
+
+    public SensibleDataAnalysis(ExceptionalUnitGraph graph, Map<Integer, SensibilityLattice> methodParams,
+                                SensibilityLattice receiver, PointsToIndex pointsTo, SummaryEngine summaries) {
+        super(graph, worklistOrder);
 
-        this.startingLocalsMap = new HashMap<>();
-        this.possibleLeakInUnit = new HashMap<>();
         Body methodBody = graph.getBody();
         this.mainClass = methodBody.getMethod().getDeclaringClass();
         this.method = methodBody.getMethod();
 
-        // Analysis just handling locals in method
-        // As starting point, save all locals as bottom
-        for (Local variable : methodBody.getLocals()) {
-            this.startingLocalsMap.put(variable.getName(), SensibilityLattice.getBottom());
-        }
+        // Locals, and the fields and array elements reachable from them, are tracked
+        // As starting point, save all of them as bottom
+        this.transfers = UnitTransfer.compile(graph);
+        LocalNumbering numbering = transfers.getPaths().getNumbering();
+        this.startingLocalsMap = tracing
+                ? new TracedLocalsState(numbering)
+                : new PackedLatticeState<>(numbering, SensibilityLattice.class);
 
         // Modify locals value method params bindings (IdentityStmts), as per methodParams says
         for (int i = 0; i < method.getParameterCount(); i++) {
             Local toLocal = methodBody.getParameterLocal(i);
-            this.startingLocalsMap.put(toLocal.getName(), methodParams.get(i) != null ? methodParams.get(i) : getBottom());
+            this.startingLocalsMap.set(toLocal, methodParams.get(i) != null ? methodParams.get(i) : getBottom());
+        }
+        if (!method.isStatic()) {
+            this.startingLocalsMap.set(methodBody.getThisLocal(), receiver);
         }
 
-        // NOTE: Is this necessary?
         if (pointsTo == null) {
-            try {
-                pointsTo = new wtf.thepalbi.PointToAnalysis(Scene.v()).forClassesUnderPackage(mainClass.getPackageName(), methodBody);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+            pointsTo = PointsToProvider.shared().forBody(methodBody);
         }
 
         this.pointsTo = pointsTo;
+        this.summaries = summaries;
+
+        this.leakingUnits = new boolean[transfers.size()];
+        this.returningUnits = new boolean[transfers.size()];
+        this.leakProvenances = startingLocalsMap instanceof TracedLocalsState ? new Provenance[transfers.size()] : null;
 
         doAnalysis();
+        // Each unit was last visited with its final flow, so the method returns a sensible value if any return does
+        for (boolean returning : returningUnits) {
+            returningSensibleValue |= returning;
+        }
+        if (getExhausted() != null) {
+            degradeToTop();
+            degradation = getExhausted();
+        } else if (degradation == null) {
+            degradation = getNestedExhausted();
+        }
+        ConvergenceStats.shared().record(method.getSignature(), this);
+    }
+
+    public static void setWorklistOrder(WorklistOrder order) {
+        worklistOrder = order;
+    }
+
+    public static void setTracing(boolean enabled) {
+        tracing = enabled;
     }
 
     @Override
-    protected void flowThrough(Map<String, SensibilityLattice> in, Unit unit,
-                               Map<String, SensibilityLattice> out) {
+    protected void flowThrough(PackedLatticeState<SensibilityLattice> in, Unit unit,
+                               PackedLatticeState<SensibilityLattice> out) {
+
+        // Transfers update the flowed locals in place. Only calls, and provenance nodes, allocate
+        in.copyTo(out);
+        UnitTransfer transfer = transfers.of(unit);
+        boolean leaks = false;
+        Provenance leaked = null;
+        boolean returnsSensibleValue = false;
+        switch (transfer.getKind()) {
+            case GEN_IF_ANY:
+                int assigned = firstSensible(out, transfer.getLocals());
+                if (assigned >= 0) {
+                    setTarget(out, transfer, HIGH, tracing()
+                            ? ProvenanceTable.shared().assignment(unit, provenanceOf(out, assigned))
+                            : null);
+                }
+                break;
+            case COPY:
+                // Copied values are read before the unit writes any, so copies between overlapping paths don't chain
+                int copied = firstSensible(in, transfer.getLocals());
+                if (copied >= 0) {
+                    setTarget(out, transfer, HIGH, tracing()
+                            ? ProvenanceTable.shared().assignment(unit, provenanceOf(in, copied))
+                            : null);
+                }
+                int[] pathSources = transfer.getPathSources();
+                for (int i = 0; i < pathSources.length; i++) {
+                    if (SensibilityLattice.isSensible(in.get(pathSources[i]))) {
+                        set(out, transfer.getPathTargets()[i], HIGH, tracing()
+                                ? ProvenanceTable.shared().assignment(unit, provenanceOf(in, pathSources[i]))
+                                : null);
+                    }
+                }
+                break;
+            case SOURCE:
+                setTarget(out, transfer, HIGH, tracing() ? ProvenanceTable.shared().source(unit) : null);
+                break;
+            case SANITIZE:
+                setTarget(out, transfer, NOT_SENSIBLE, null);
+                for (int derived : transfer.getLocals()) {
+                    out.set(derived, NOT_SENSIBLE);
+                }
+                break;
+            case SINK:
+                int leakedLocal = firstSensible(out, transfer.getLocals());
+                if (leakedLocal >= 0) {
+                    leaks = true;
+                    leaked = provenanceOf(out, leakedLocal);
+                } else if (invoke(out, transfer).leakInCall) {
+                    leaks = true;
+                    leaked = callProvenance(out, transfer);
+                }
+                break;
+            case CALL:
+                if (invoke(out, transfer).leakInCall) {
+                    leaks = true;
+                    leaked = callProvenance(out, transfer);
+                }
+                break;
+            case ASSIGN_CALL:
+                if (invoke(out, transfer).returnsSensibleValue) {
+                    setTarget(out, transfer, HIGH, callProvenance(out, transfer));
+                }
+                break;
+            case RETURN:
+                returnsSensibleValue = firstSensible(out, transfer.getLocals()) >= 0;
+                break;
+            case VISITOR:
+                StatementVisitor visitor = new StatementVisitor(context(out), transfer.getStatement()).visit();
+                leaks = visitor.doesStatementLeak();
+                returnsSensibleValue = visitor.getReturningSensibleValue();
+                break;
+            default:
+                break;
+        }
+
+        leakingUnits[transfer.getIndex()] = leaks;
+        returningUnits[transfer.getIndex()] = returnsSensibleValue;
+        if (tracing()) {
+            leakProvenances[transfer.getIndex()] = leaked;
+        }
+    }
+
+    /**
+     * @return the index of the first sensible local between the given ones, or -1 if none is
+     */
+    private static int firstSensible(PackedLatticeState<SensibilityLattice> locals, int[] indices) {
+        for (int index : indices) {
+            if (SensibilityLattice.isSensible(locals.get(index))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static void setTarget(PackedLatticeState<SensibilityLattice> locals, UnitTransfer transfer,
+                                  SensibilityLattice value, Provenance provenance) {
+        if (transfer.getTarget() >= 0) {
+            set(locals, transfer.getTarget(), value, provenance);
+        }
+    }
+
+    private static void set(PackedLatticeState<SensibilityLattice> locals, int index, SensibilityLattice value,
+                            Provenance provenance) {
+        if (provenance != null) {
+            ((TracedLocalsState) locals).set(index, value, provenance);
+        } else {
+            locals.set(index, value);
+        }
+    }
+
+    private boolean tracing() {
+        return leakProvenances != null;
+    }
+
+    private Provenance provenanceOf(PackedLatticeState<SensibilityLattice> locals, int index) {
+        return tracing() ? ((TracedLocalsState) locals).getProvenance(index) : null;
+    }
+
+    /**
+     * The value returned or leaked by a call is traced back to the first sensible local it was passed, if any.
+     */
+    private Provenance callProvenance(PackedLatticeState<SensibilityLattice> locals, UnitTransfer transfer) {
+        if (!tracing()) {
+            return null;
+        }
+        return ProvenanceTable.shared().call(transfer.getStatement(),
+                provenanceOf(locals, firstSensible(locals, transfer.getArguments())));
+    }
+
+    private InvocationVisitor.InvocationResult invoke(PackedLatticeState<SensibilityLattice> locals,
+                                                      UnitTransfer transfer) {
+        InvocationVisitor.InvocationResult result = new InvocationVisitor(context(locals), transfer.getInvokeExpr())
+                .visit();
+        if (result.degraded && degradation == null) {
+            degradation = AnalysisBudget.Limit.CALLEES;
+        }
+        return result;
+    }
 
-        Context ctx = new Context(in, mainClass, method, pointsTo);
-        StatementVisitor visitor = new StatementVisitor(ctx, (Stmt) unit).visit();
+    /**
+     * Replaces the results of a run out of budget with the ones of every local being
+     * {@link SensibilityLattice#getTop() top}: sinks leak, and so do calls to methods that are analyzed or modeled as
+     * sinks, while calls to unknown methods don't, as in a regular run. A non-void method returns a sensible value.
+     * The flows are left as they were when the run stopped.
+     */
+    private void degradeToTop() {
+        AnalysisBudget.shared().degrade(method.getSignature(), getExhausted());
+        WarningCounters.shared().warn(LOGGER, "Analysis budget {} exhausted in {}, falling back to top",
+                getExhausted().getOption(), method.getSignature());
+        for (int i = 0; i < transfers.size(); i++) {
+            leakingUnits[i] = mayLeakOnTop(transfers.get(i));
+        }
+        if (tracing()) {
+            Arrays.fill(leakProvenances, null);
+        }
+        returningSensibleValue = !(method.getReturnType() instanceof VoidType);
+    }
 
-        possibleLeakInUnit.put(unit, visitor.doesStatementLeak());
-        // Since a return statement is last in the CFG, it's not needed to prevent overwrites
-        returningSensibleValue = visitor.getReturningSensibleValue();
+    private boolean mayLeakOnTop(UnitTransfer transfer) {
+        switch (transfer.getKind()) {
+            case SINK:
+                return true;
+            case CALL:
+            case ASSIGN_CALL:
+            case VISITOR:
+                if (!transfer.getStatement().containsInvokeExpr()) {
+                    return false;
+                }
+                InvokeExpr invokeExpr = transfer.getStatement().getInvokeExpr();
+                if (StatementVisitor.isOffendingMethod(invokeExpr)) {
+                    return true;
+                }
+                for (SootMethod target : InvocationVisitor.resolveTargets(invokeExpr, method, pointsTo)) {
+                    int modelFlags = LibraryModels.shared().flagsOf(target);
+                    if (modelFlags != 0 ? ModelKind.SINK.in(modelFlags) : BodyProvider.shared().hasBody(target)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
 
-        out.clear();
-        out.putAll(in);
+    private Context context(PackedLatticeState<SensibilityLattice> locals) {
+        return new Context(locals, mainClass, method, pointsTo, summaries);
     }
 
+    @Override
     public boolean possibleLeakInUnit(Unit unit) {
-        return possibleLeakInUnit.getOrDefault(unit, false);
+        UnitTransfer transfer = transfers.of(unit);
+        return transfer != null && leakingUnits[transfer.getIndex()];
     }
 
     @Override
-    protected Map<String, SensibilityLattice> newInitialFlow() {
-        Map<String, SensibilityLattice> newMap = new DefaultHashMap<>(getBottom());
-        newMap.putAll(startingLocalsMap);
-        return newMap;
+    public Provenance provenanceOf(Unit unit) {
+        UnitTransfer transfer = transfers.of(unit);
+        return transfer != null && tracing() ? leakProvenances[transfer.getIndex()] : null;
     }
 
     @Override
-    protected void merge(Map<String, SensibilityLattice> input1, Map<String, SensibilityLattice> input2,
-                         Map<String, SensibilityLattice> out) {
-        out.clear();
-        out.putAll(input1);
+    public AnalysisBudget.Limit getDegradation() {
+        return degradation;
+    }
+
+    @Override
+    protected int sizeOf(PackedLatticeState<SensibilityLattice> flow) {
+        return flow.countNonBottom();
+    }
+
+    @Override
+    protected PackedLatticeState<SensibilityLattice> newInitialFlow() {
+        return startingLocalsMap.copy();
+    }
+
+    @Override
+    protected void merge(PackedLatticeState<SensibilityLattice> input1, PackedLatticeState<SensibilityLattice> input2,
+                         PackedLatticeState<SensibilityLattice> out) {
         // May analysis
         // On conflicting values, take supreme to make analysis sound
-        for (String variable : input2.keySet()) {
-            out.put(variable, supremeBetween(input2.get(variable), out.get(variable)));
-        }
+        input1.join(input2, out);
     }
 
     @Override
-    protected void copy(Map<String, SensibilityLattice> input, Map<String, SensibilityLattice> out) {
-        out.clear();
-        out.putAll(input);
+    protected void copy(PackedLatticeState<SensibilityLattice> input, PackedLatticeState<SensibilityLattice> out) {
+        input.copyTo(out);
     }
 
+    @Override
     public boolean isReturningSensibleValue() {
         return returningSensibleValue;
     }
 
+    @Override
     public boolean leaksSensibleValue() {
         return method.getActiveBody().getUnits().stream()
                 .map(unit -> possibleLeakInUnit(unit))
@@ -147,36 +462,25 @@ public class SensibleDataAnalysis extends ForwardFlowAnalysis<Unit, Map<String,
      * Object containing all the analysis-wide necessary variables.
      */
     public static class Context {
-        public final Map<String, SensibilityLattice> localsSensibility;
+        public final PackedLatticeState<SensibilityLattice> localsSensibility;
         public final SootClass inClass;
         public final SootMethod inMethod;
-        public final PointsToResult pointsToData;
+        public final PointsToIndex pointsToData;
+        public final SummaryEngine summaries;
 
         public Context(
-                Map<String, SensibilityLattice> localsSensibility,
+                PackedLatticeState<SensibilityLattice> localsSensibility,
                 SootClass inClass,
                 SootMethod inMethod,
-                PointsToResult pointsToData
+                PointsToIndex pointsToData,
+                SummaryEngine summaries
         ) {
 
             this.localsSensibility = localsSensibility;
             this.inClass = inClass;
             this.inMethod = inMethod;
             this.pointsToData = pointsToData;
-        }
-    }
-
-    public static class DefaultHashMap<K, V> extends HashMap<K, V> {
-
-        private V defaultGetValue;
-
-        public DefaultHashMap(V defaultGetValue) {
-            this.defaultGetValue = defaultGetValue;
-        }
-
-        @Override
-        public V get(Object key) {
-            return getOrDefault(key, defaultGetValue);
+            this.summaries = summaries;
         }
     }
 }
@@ -1,25 +1,141 @@
 package analysis;
 
-import org.slf4j.Logger;
+import analysis.interprocedural.SinkReachability;
+import analysis.interprocedural.SummaryEngine;
+import analysis.models.LibraryModels;
+import analysis.paths.AccessPathTable;
+import analysis.rules.RuleMatcher;
+import analysis.pointsto.PointsToProvider;
+import analysis.report.LeakReport;
+import analysis.sparse.SparseSensibleDataAnalysis;
+import dataflow.utils.AnalysisBudget;
+import dataflow.utils.AnalysisPhase;
+import dataflow.utils.GraphCache;
+import dataflow.utils.PhaseMetrics;
+import dataflow.utils.WorklistOrder;
 import soot.Body;
 import soot.BodyTransformer;
 
+import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static org.slf4j.LoggerFactory.getLogger;
-import static soot.UnitUtils.getLineNumberFromUnit;
+import static java.util.stream.Collectors.toList;
 
 public class SensibleDataWarningsYeller extends BodyTransformer {
 
-    private static final Logger LOGGER = getLogger(SensibleDataWarningsYeller.class);
+    /**
+     * Phase options understood by this transformer, and their defaults.
+     */
+    public static final String DECLARED_OPTIONS = "enabled interprocedural mode order store models rules report format traces prune "
+            + "access-path-length " + GraphCache.OPTION + " " + AnalysisBudget.OPTIONS;
+    public static final String DEFAULT_OPTIONS = "enabled:true interprocedural:summaries mode:dense order:rpo traces:false prune:true "
+            + "access-path-length:" + AccessPathTable.DEFAULT_MAX_LENGTH + " " + GraphCache.OPTION + ":"
+            + GraphCache.DEFAULT_MAX_WEIGHT;
+
+    /**
+     * Whether a body was transformed already, so Soot is done loading the classes.
+     */
+    private final AtomicBoolean loaded = new AtomicBoolean();
 
     @Override
     protected void internalTransform(Body body, String s, Map<String, String> map) {
-        SensibleDataAnalysis analysis = SensibleDataAnalysis.forBody(body);
-        body.getUnits().stream()
-                .filter(analysis::possibleLeakInUnit)
-                .forEach(unit -> LOGGER.warn("Possible leak found in line {}",
-                        getLineNumberFromUnit(unit)));
+        if (!loaded.get() && loaded.compareAndSet(false, true)) {
+            PhaseMetrics.shared().end(AnalysisPhase.SOOT_LOAD);
+        }
+        SensibleDataAnalysis.setWorklistOrder(WorklistOrder.fromOption(map.get("order")));
+        configureFrom(map);
+        SummaryEngine summaries = summariesFor(map);
+        if (prunes(map) && SinkReachability.ofApplication(PointsToProvider.shared().forBody(body))
+                .prune(body.getMethod())) {
+            return;
+        }
+        LeakAnalysisResult analysis;
+        try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.ANALYSIS)) {
+            if ("sparse".equals(map.get("mode"))) {
+                analysis = SparseSensibleDataAnalysis.forBody(body, null, summaries);
+            } else if (summaries != null && summaries.getStore() != null) {
+                analysis = summaries.resultOf(body, PointsToProvider.shared().forBody(body));
+            } else {
+                analysis = SensibleDataAnalysis.forBody(body, summaries);
+            }
+        }
+        try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.REPORTING)) {
+            LeakReport.shared().report(body.getMethod(), body.getUnits().stream()
+                    .filter(analysis::possibleLeakInUnit)
+                    .collect(toList()), analysis);
+        }
+    }
+
+    /**
+     * Library methods are modeled with the bundled models, unless the {@code models} phase option names a precompiled
+     * model index. Sources, sanitizers and sinks are the bundled rules, unless the {@code rules} phase option names
+     * a YAML rules file. Leaks are logged, unless the {@code report} phase option names a file to stream them to, as
+     * JSON lines or SARIF depending on the {@code format} phase option, or on the file extension if not set. The
+     * provenance of sensible values is traced, to report how each leaked value got to its sink, if the
+     * {@code traces} phase option is {@code true}. Fields and array elements are tracked as access paths of at most
+     * {@code access-path-length} fields. Control-flow graphs are cached up to {@code graph-cache-units} units, see
+     * {@link GraphCache}. Analyses are limited by the {@link AnalysisBudget} options given, if any. Changing the models,
+     * rules or access path length drops the results cached in the {@link SummaryCache}.
+     *
+     * @param options the phase options
+     */
+    public static void configureFrom(Map<String, String> options) {
+        boolean changed = false;
+        String modelsFile = options.get("models");
+        if (modelsFile != null && !modelsFile.isEmpty()) {
+            changed |= LibraryModels.shared().use(Paths.get(modelsFile));
+        }
+        String rulesFile = options.get("rules");
+        if (rulesFile != null && !rulesFile.isEmpty()) {
+            changed |= RuleMatcher.useRulesFile(Paths.get(rulesFile));
+        }
+        SensibleDataAnalysis.setTracing("true".equals(options.get("traces")));
+        String accessPathLength = options.get("access-path-length");
+        if (accessPathLength != null && !accessPathLength.isEmpty()) {
+            int maxLength = Integer.parseInt(accessPathLength);
+            changed |= maxLength != AccessPathTable.shared().getMaxLength();
+            AccessPathTable.shared().setMaxLength(maxLength);
+        }
+        if (changed) {
+            SummaryCache.shared().clear();
+        }
+        GraphCache.shared().configureFrom(options);
+        AnalysisBudget.shared().configureFrom(options);
+        String reportFile = options.get("report");
+        if (reportFile != null && !reportFile.isEmpty()) {
+            LeakReport.shared().use(Paths.get(reportFile), options.get("format"));
+        }
+    }
+
+    /**
+     * Bodies that can't reach both a source and a sink are skipped, as told by {@link SinkReachability}, unless the
+     * {@code prune} phase option is {@code false}.
+     *
+     * @param options the phase options
+     * @return whether to skip bodies that can't leak
+     */
+    public static boolean prunes(Map<String, String> options) {
+        return !"false".equals(options.get("prune"));
+    }
+
+    /**
+     * Called methods are summarized bottom-up, unless the {@code interprocedural} phase option is set to
+     * {@code recursive}, which re-analyzes them for each calling context. The {@code store} phase option names a
+     * file where summaries are kept between runs.
+     *
+     * @param options the phase options
+     * @return the summaries engine, or null for recursive re-analysis
+     */
+    public static SummaryEngine summariesFor(Map<String, String> options) {
+        if ("recursive".equals(options.get("interprocedural"))) {
+            return null;
+        }
+        String storeFile = options.get("store");
+        if (storeFile != null && !storeFile.isEmpty()) {
+            SummaryEngine.shared().useStore(Paths.get(storeFile));
+        }
+        return SummaryEngine.shared();
     }
 
 }
@@ -3,6 +3,8 @@ package analysis;
 
 import analysis.InvocationVisitor.InvocationResult;
 import analysis.abstraction.SensibilityLattice;
+import analysis.rules.RuleMatcher;
+import dataflow.utils.PackedLatticeState;
 import org.slf4j.Logger;
 import soot.Local;
 import soot.SootMethodRef;
@@ -10,9 +12,7 @@ import soot.Value;
 import soot.ValueBox;
 import soot.jimple.*;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static analysis.abstraction.SensibilityLattice.*;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -63,7 +63,7 @@ public class StatementVisitor {
     }
 
     private boolean isLocalSensible(Local local) {
-        return SensibilityLattice.isSensible(ctx.localsSensibility.get(local.getName()));
+        return SensibilityLattice.isSensible(ctx.localsSensibility.getWithDerived(local));
     }
 
     /**
@@ -76,15 +76,15 @@ public class StatementVisitor {
     private void visitInvoke(InvokeStmt invoke, InvokeExpr invokeExpr) {
         SootMethodRef invokedMethod = invokeExpr.getMethodRef();
         List<Value> arguments = invokeExpr.getArgs();
-        if (methodIdentifiedBy(invokedMethod, "analysis.SensibilityMarker", "markAsSensible")) {
+        if (isSensibilityMarker(invokedMethod)) {
             // Mark value as sensible invocation
             assert arguments.size() == 1;
             Local argument = (Local) arguments.get(0);
-            ctx.localsSensibility.put(AssigneeNameExtractor.from(arguments.get(0)), HIGH);
-        } else if (methodIdentifiedBy(invokedMethod, "analysis.SensibilityMarker", "sanitize")) {
+            ctx.localsSensibility.set(AssigneeNameExtractor.from(arguments.get(0)), HIGH);
+        } else if (isSanitizer(invokedMethod)) {
             // Clean value sensibility level
             assert arguments.size() == 1;
-            ctx.localsSensibility.put(AssigneeNameExtractor.from(arguments.get(0)), NOT_SENSIBLE);
+            ctx.localsSensibility.set(AssigneeNameExtractor.from(arguments.get(0)), NOT_SENSIBLE);
         } else if (DoesMethodLeak.check(invokeExpr, ctx.localsSensibility)) {
             // Check if there's a leak in the current invocation
             doesStatementLeak = true;
@@ -108,11 +108,6 @@ public class StatementVisitor {
     }
 
     private void visitAssignment(AssignStmt assignStmt) {
-        if (assignStmt.getLeftOp() instanceof FieldRef) {
-            // TODO: Handle field assignment
-            LOGGER.warn("Assignment to fields not supported yet: {}", assignStmt);
-        }
-
         Value rightOp = assignStmt.getRightOp();
 
         // Visiting the right operand of the assignment can have three outcomes:
@@ -126,7 +121,7 @@ public class StatementVisitor {
             // This is an assignment from an expression returned value
             InvocationResult result = new InvocationVisitor(ctx, (InvokeExpr) rightOp).visit();
             if (result.returnsSensibleValue) {
-                ctx.localsSensibility.put(
+                ctx.localsSensibility.set(
                         AssigneeNameExtractor.from(assignStmt.getLeftOp()),
                         HIGH
                 );
@@ -138,7 +133,7 @@ public class StatementVisitor {
                 Value rightUseValue = valueBox.getValue();
                 if (rightUseValue instanceof Local && isLocalSensible((Local) rightUseValue)) {
                     // If some of the use boxes in the right expression is sensible, make result sensible to be MAY (in a coarse way)
-                    ctx.localsSensibility.put(
+                    ctx.localsSensibility.set(
                             AssigneeNameExtractor.from(assignStmt.getLeftOp()),
                             HIGH);
                     break;
@@ -147,23 +142,52 @@ public class StatementVisitor {
         }
     }
 
-    private boolean methodIdentifiedBy(SootMethodRef method, String fqClassName, String methodName) {
-        return method.getDeclaringClass().getName().equals(fqClassName)
-                && method.getName().equals(methodName);
+    /**
+     * @param method the invoked method
+     * @return whether the invocation marks its argument as sensible
+     */
+    public static boolean isSensibilityMarker(SootMethodRef method) {
+        return RuleMatcher.shared().rulesOf(method).isSource();
+    }
+
+    /**
+     * @param method the invoked method
+     * @return whether the invocation cleans the sensibility of its argument
+     */
+    public static boolean isSanitizer(SootMethodRef method) {
+        return RuleMatcher.shared().rulesOf(method).isSanitizer();
+    }
+
+    /**
+     * @param invokeExpr the invocation
+     * @return whether the invocation leaks some of its arguments, if sensible
+     */
+    public static boolean isOffendingMethod(InvokeExpr invokeExpr) {
+        return RuleMatcher.shared().rulesOf(invokeExpr.getMethodRef()).isSink();
     }
 
-    public static Map<Integer, SensibilityLattice> getArgumentSensibilityFor(Map<String, SensibilityLattice> locals,
-                                                                             List<Value> arguments) {
-        Map<Integer, SensibilityLattice> parametersMap = new HashMap<>();
+    /**
+     * @param invokeExpr the invocation
+     * @param argument   an argument index
+     * @return whether the invocation leaks the argument, if sensible
+     */
+    public static boolean leaksArgument(InvokeExpr invokeExpr, int argument) {
+        return RuleMatcher.shared().rulesOf(invokeExpr.getMethodRef()).leaksArgument(argument);
+    }
+
+    public static SensibilityLattice[] getArgumentSensibilityFor(PackedLatticeState<SensibilityLattice> locals,
+                                                                 List<Value> arguments) {
+        SensibilityLattice[] parameters = new SensibilityLattice[arguments.size()];
         for (int i = 0; i < arguments.size(); i++) {
             Value currentArgument = arguments.get(i);
             if (currentArgument instanceof Local) {
-                parametersMap.put(i, locals.get(((Local) currentArgument).getName()));
+                // Objects are passed along with their fields, which the called method sees through the parameter
+                parameters[i] = locals.getWithDerived((Local) currentArgument);
             } else {
-                parametersMap.put(i, getBottom());
+                parameters[i] = getBottom();
             }
         }
-        return parametersMap;
+        return parameters;
     }
 
     public Boolean getReturningSensibleValue() {
@@ -175,13 +199,16 @@ public class StatementVisitor {
     }
 
     private static class DoesMethodLeak {
-        // TODO: Check methods that may leak its arguments here (eg. println, etc.).
-        // Notice that some of them might be static method calls.
-        public static boolean check(InvokeExpr invokeExpr, Map<String, SensibilityLattice> sensibilityValues) {
-            if (invokeExpr.getMethod().getDeclaringClass().getName().equals("java.io.PrintStream") &&
-                    invokeExpr.getMethod().getName().equals("println") &&
-                    SensibilityLattice.isSensible(sensibilityValues.get(AssigneeNameExtractor.from(invokeExpr.getArg(0))))) {
-                return true;
+        // Sinks are configured as rules, see RuleMatcher
+        public static boolean check(InvokeExpr invokeExpr, PackedLatticeState<SensibilityLattice> sensibilityValues) {
+            if (!isOffendingMethod(invokeExpr)) {
+                return false;
+            }
+            for (int i = 0; i < invokeExpr.getArgCount(); i++) {
+                if (leaksArgument(invokeExpr, i) && invokeExpr.getArg(i) instanceof Local &&
+                        SensibilityLattice.isSensible(sensibilityValues.getWithDerived((Local) invokeExpr.getArg(i)))) {
+                    return true;
+                }
             }
             return false;
         }
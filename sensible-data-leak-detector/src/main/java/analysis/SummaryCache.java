@@ -0,0 +1,132 @@
+package analysis;
+
+import analysis.InvocationVisitor.InvocationResult;
+import analysis.abstraction.SensibilityLattice;
+import analysis.pointsto.PointsToIndex;
+import soot.SootMethod;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Run-wide cache of called methods analysis results. Since a called method is analyzed just from the sensibility of
+ * its receiver and arguments, the {@link InvocationResult} of an analysis can be reused by every call site, and
+ * every fixpoint iteration, invoking it with the same sensibility vector.
+ * <p>
+ * Results are only valid for the points-to result the called method was analyzed with, so they are kept apart for each
+ * {@link PointsToIndex}, and dropped along with it. They also depend on the rules, library models and access path
+ * length in use, so the cache has to be cleared when any of them changes, or when Soot is reset.
+ */
+public class SummaryCache {
+
+    private static final SummaryCache SHARED = new SummaryCache();
+
+    private final Map<PointsToIndex, ConcurrentMap<Key, InvocationResult>> resultsByPointsTo = new WeakHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @return the cache shared by every analysis in this run
+     */
+    public static SummaryCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets the cached result of invoking a method with the given sensibility vector, analyzing it if not present.
+     *
+     * @param pointsTo  the points-to result the method is analyzed with
+     * @param method    the called method
+     * @param receiver  the sensibility of the receiver, or bottom for static invocations
+     * @param arguments the sensibility of each argument
+     * @param analysis  runs the analysis of the called method, on a cache miss
+     * @return the invocation result
+     */
+    public InvocationResult get(PointsToIndex pointsTo, SootMethod method, SensibilityLattice receiver,
+                                SensibilityLattice[] arguments, Supplier<InvocationResult> analysis) {
+        ConcurrentMap<Key, InvocationResult> results = resultsOf(pointsTo);
+        Key key = new Key(method, receiver, arguments);
+        InvocationResult result = results.get(key);
+        if (result != null) {
+            hits.incrementAndGet();
+            return result;
+        }
+        misses.incrementAndGet();
+        // Not using computeIfAbsent, since the analysis of the called method fills the cache for its own callees
+        result = analysis.get();
+        InvocationResult previous = results.putIfAbsent(key, result);
+        return previous != null ? previous : result;
+    }
+
+    private ConcurrentMap<Key, InvocationResult> resultsOf(PointsToIndex pointsTo) {
+        synchronized (resultsByPointsTo) {
+            return resultsByPointsTo.computeIfAbsent(pointsTo, ignored -> new ConcurrentHashMap<>());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the amount of cached results, for every points-to result
+     */
+    public int size() {
+        synchronized (resultsByPointsTo) {
+            return resultsByPointsTo.values().stream().mapToInt(Map::size).sum();
+        }
+    }
+
+    public void clear() {
+        synchronized (resultsByPointsTo) {
+            resultsByPointsTo.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d summaries, %d hits, %d misses", size(), getHits(), getMisses());
+    }
+
+    private static class Key {
+        private final SootMethod method;
+        private final SensibilityLattice receiver;
+        private final SensibilityLattice[] arguments;
+        private final int hash;
+
+        private Key(SootMethod method, SensibilityLattice receiver, SensibilityLattice[] arguments) {
+            this.method = method;
+            this.receiver = receiver;
+            this.arguments = arguments;
+            this.hash = 31 * (31 * method.hashCode() + receiver.hashCode()) + Arrays.hashCode(arguments);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return method.equals(other.method) && receiver == other.receiver && Arrays.equals(arguments, other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
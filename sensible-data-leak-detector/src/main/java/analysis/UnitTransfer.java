@@ -0,0 +1,331 @@
+package analysis;
+
+import analysis.abstraction.SensibilityLattice;
+import analysis.paths.AccessPath;
+import analysis.paths.AccessPathTable;
+import analysis.paths.BodyAccessPaths;
+import analysis.rules.MethodRules;
+import analysis.rules.RuleMatcher;
+import dataflow.utils.GraphCache;
+import dataflow.utils.LocalNumbering;
+import soot.Body;
+import soot.Local;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AssignStmt;
+import soot.jimple.InvokeExpr;
+import soot.jimple.InvokeStmt;
+import soot.jimple.ReturnStmt;
+import soot.jimple.Stmt;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transfer function of a single {@link Unit}, compiled once per body, so that revisiting the unit does no rule
+ * matching and no local name extraction, and only calls, which still go through an {@link InvocationVisitor} over the
+ * current flow, dispatch over statement types. It has the same semantics as the
+ * {@link StatementVisitor}, expressed over the indices of a {@link LocalNumbering}, extended with the fields and array
+ * elements tracked as {@link BodyAccessPaths}:
+ * <ul>
+ * <li>{@link Kind#GEN_IF_ANY}: the target becomes {@link SensibilityLattice#HIGH} if any used local is sensible.</li>
+ * <li>{@link Kind#COPY}: an assignment between locals, fields, array elements or casts. The target becomes
+ * {@link SensibilityLattice#HIGH} if the copied path or any of its prefixes is sensible, and so does each path
+ * extending the target whose matching extension of the copied path is.</li>
+ * <li>{@link Kind#SOURCE} and {@link Kind#SANITIZE}: the target becomes {@link SensibilityLattice#HIGH}, or
+ * {@link SensibilityLattice#NOT_SENSIBLE} along with every path derived from it.</li>
+ * <li>{@link Kind#SINK}: the unit leaks if any of the leaked argument locals is sensible, and is a regular call
+ * otherwise.</li>
+ * <li>{@link Kind#CALL} and {@link Kind#ASSIGN_CALL}: a call, which may leak or, when assigned, make the target
+ * {@link SensibilityLattice#HIGH}.</li>
+ * <li>{@link Kind#RETURN}: the method returns a sensible value if any used local is sensible.</li>
+ * </ul>
+ * Used, leaked and returned locals are read along with every path derived from them, so passing an object whose
+ * field is sensible counts as passing a sensible value. Units whose effect can't be told before running, like
+ * marking a constant, keep being run through a {@link StatementVisitor} ({@link Kind#VISITOR}).
+ */
+public final class UnitTransfer {
+
+    public enum Kind {
+        NONE, GEN_IF_ANY, COPY, SOURCE, SANITIZE, SINK, CALL, ASSIGN_CALL, RETURN, VISITOR
+    }
+
+    private static final int[] NO_LOCALS = new int[0];
+
+    private final int index;
+    private final Kind kind;
+    private final Stmt statement;
+    private final int target;
+    private final int[] locals;
+    private final int[] arguments;
+    private final int[] pathTargets;
+    private final int[] pathSources;
+
+    private UnitTransfer(int index, Kind kind, Stmt statement, int target, int[] locals) {
+        this(index, kind, statement, target, locals, NO_LOCALS);
+    }
+
+    private UnitTransfer(int index, Kind kind, Stmt statement, int target, int[] locals, int[] arguments) {
+        this(index, kind, statement, target, locals, arguments, NO_LOCALS, NO_LOCALS);
+    }
+
+    private UnitTransfer(int index, Kind kind, Stmt statement, int target, int[] locals, int[] arguments,
+                         int[] pathTargets, int[] pathSources) {
+        this.index = index;
+        this.kind = kind;
+        this.statement = statement;
+        this.target = target;
+        this.locals = locals;
+        this.arguments = arguments;
+        this.pathTargets = pathTargets;
+        this.pathSources = pathSources;
+    }
+
+    /**
+     * Gets the transfers of every unit of a body, compiling them the first time they're asked for with the current
+     * rules and max access path length. They are cached next to the graph of the body in the {@link GraphCache}, so
+     * analyzing the body again, from another call site or calling context, doesn't compile it again, and they are
+     * dropped along with the graph.
+     *
+     * @param graph the graph of the body, from the {@link GraphCache}
+     * @return the compiled transfers of the body
+     */
+    public static Compiled compile(ExceptionalUnitGraph graph) {
+        // Rules are replaced as a whole when they change, so the matcher in use identifies them
+        List<Object> key = Arrays.asList(Compiled.class, RuleMatcher.shared(),
+                AccessPathTable.shared().getMaxLength());
+        return GraphCache.shared().derivedOf(graph, key, compiled -> new Compiled(compiled.getBody()));
+    }
+
+    /**
+     * @param index     the position of the unit in its body
+     * @param unit      the unit
+     * @param paths     the access paths tracked in the body, and the numbering of its locals and paths
+     * @return the transfer function of the unit
+     */
+    public static UnitTransfer compile(int index, Unit unit, BodyAccessPaths paths) {
+        LocalNumbering numbering = paths.getNumbering();
+        Stmt statement = (Stmt) unit;
+        if (statement instanceof AssignStmt) {
+            return compileAssignment(index, (AssignStmt) statement, paths);
+        } else if (statement instanceof InvokeStmt) {
+            return compileInvoke(index, (InvokeStmt) statement, numbering);
+        } else if (statement instanceof ReturnStmt) {
+            return new UnitTransfer(index, Kind.RETURN, statement, -1, usedLocals(statement.getUseBoxes(), numbering));
+        }
+        return new UnitTransfer(index, Kind.NONE, statement, -1, NO_LOCALS);
+    }
+
+    private static UnitTransfer compileAssignment(int index, AssignStmt assignment, BodyAccessPaths paths) {
+        LocalNumbering numbering = paths.getNumbering();
+        // Assignees are resolved by name, like the visitor does, with fields and array elements named by their path
+        AccessPath assignee = paths.pathOf(assignment.getLeftOp());
+        if (assignee == null) {
+            return visitor(index, assignment);
+        }
+        int target = paths.slotOf(assignee);
+        Value assigned = assignment.getRightOp();
+        if (assigned instanceof InvokeExpr) {
+            return new UnitTransfer(index, Kind.ASSIGN_CALL, assignment, target, NO_LOCALS,
+                    usedLocals(assigned.getUseBoxes(), numbering));
+        }
+        AccessPath copied = paths.pathOf(assigned);
+        if (copied != null) {
+            int[][] extensions = paths.extensionsCopied(assignee, copied);
+            return new UnitTransfer(index, Kind.COPY, assignment, target, paths.slotsReading(copied), NO_LOCALS,
+                    extensions[0], extensions[1]);
+        }
+        return new UnitTransfer(index, Kind.GEN_IF_ANY, assignment, target,
+                usedLocals(assigned.getUseBoxes(), numbering));
+    }
+
+    private static UnitTransfer compileInvoke(int index, InvokeStmt invoke, LocalNumbering numbering) {
+        InvokeExpr invokeExpr = invoke.getInvokeExpr();
+        MethodRules rules = RuleMatcher.shared().rulesOf(invokeExpr.getMethodRef());
+        if (rules.isSource() || rules.isSanitizer()) {
+            // Marked values are resolved by name too, which constants other than integers don't have
+            if (invokeExpr.getArgCount() == 0 || !(invokeExpr.getArg(0) instanceof Local)) {
+                return visitor(index, invoke);
+            }
+            int target = numbering.indexOf(AssigneeNameExtractor.from(invokeExpr.getArg(0)));
+            if (rules.isSource()) {
+                return new UnitTransfer(index, Kind.SOURCE, invoke, target, NO_LOCALS);
+            }
+            return new UnitTransfer(index, Kind.SANITIZE, invoke, target,
+                    target >= 0 ? numbering.derivedFrom(target) : NO_LOCALS);
+        } else if (rules.isSink()) {
+            int[] leaked = new int[invokeExpr.getArgCount()];
+            int leakedCount = 0;
+            for (int i = 0; i < invokeExpr.getArgCount(); i++) {
+                Value argument = invokeExpr.getArg(i);
+                if (rules.leaksArgument(i) && argument instanceof Local) {
+                    int local = numbering.indexOf(((Local) argument).getName());
+                    if (local >= 0) {
+                        leaked[leakedCount++] = local;
+                    }
+                }
+            }
+            return new UnitTransfer(index, Kind.SINK, invoke, -1,
+                    withDerived(Arrays.copyOf(leaked, leakedCount), numbering),
+                    usedLocals(invokeExpr.getUseBoxes(), numbering));
+        }
+        return new UnitTransfer(index, Kind.CALL, invoke, -1, NO_LOCALS,
+                usedLocals(invokeExpr.getUseBoxes(), numbering));
+    }
+
+    private static UnitTransfer visitor(int index, Stmt statement) {
+        return new UnitTransfer(index, Kind.VISITOR, statement, -1, NO_LOCALS);
+    }
+
+    /**
+     * Locals outside the numbering always read as bottom, so they are dropped. The paths derived from the used locals
+     * are read too.
+     */
+    private static int[] usedLocals(List<ValueBox> useBoxes, LocalNumbering numbering) {
+        int[] used = new int[useBoxes.size()];
+        int usedCount = 0;
+        for (ValueBox useBox : useBoxes) {
+            Value use = useBox.getValue();
+            if (use instanceof Local) {
+                int local = numbering.indexOf((Local) use);
+                if (local >= 0) {
+                    used[usedCount++] = local;
+                }
+            }
+        }
+        return withDerived(usedCount == used.length ? used : Arrays.copyOf(used, usedCount), numbering);
+    }
+
+    private static int[] withDerived(int[] locals, LocalNumbering numbering) {
+        int derivedCount = 0;
+        for (int local : locals) {
+            derivedCount += numbering.derivedFrom(local).length;
+        }
+        if (derivedCount == 0) {
+            return locals;
+        }
+        int[] read = Arrays.copyOf(locals, locals.length + derivedCount);
+        int readCount = locals.length;
+        for (int local : locals) {
+            for (int derived : numbering.derivedFrom(local)) {
+                read[readCount++] = derived;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * @return the position of the unit in its body
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Stmt getStatement() {
+        return statement;
+    }
+
+    /**
+     * @return the index of the assigned, marked or sanitized local or path, or -1 if it's outside the numbering
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the indices of the used locals, of the leaked arguments for sinks, of the copied path and its prefixes
+     * for copies, or of the paths derived from the target for sanitizers. Must not be modified
+     */
+    public int[] getLocals() {
+        return locals;
+    }
+
+    /**
+     * @return the indices of the locals used by the invocation of {@link Kind#SINK}, {@link Kind#CALL} and
+     * {@link Kind#ASSIGN_CALL} units, receiver included. Must not be modified
+     */
+    public int[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * @return the indices of the paths extending the target of a {@link Kind#COPY}, each one copied from the path at
+     * the same position of {@link #getPathSources()}. Must not be modified
+     */
+    public int[] getPathTargets() {
+        return pathTargets;
+    }
+
+    public int[] getPathSources() {
+        return pathSources;
+    }
+
+    /**
+     * @return the invocation of {@link Kind#SINK}, {@link Kind#CALL} and {@link Kind#ASSIGN_CALL} units
+     */
+    public InvokeExpr getInvokeExpr() {
+        return statement.getInvokeExpr();
+    }
+
+    @Override
+    public String toString() {
+        return kind + "(" + target + ", " + Arrays.toString(locals) + "): " + statement;
+    }
+
+    /**
+     * The transfers of every unit of a body, and the access paths they're compiled over. Shared by every analysis of
+     * the body, so it must not be modified.
+     */
+    public static final class Compiled {
+        private final BodyAccessPaths paths;
+        private final UnitTransfer[] transfers;
+        private final Map<Unit, UnitTransfer> byUnit;
+
+        private Compiled(Body body) {
+            this.paths = BodyAccessPaths.of(body);
+            this.transfers = new UnitTransfer[body.getUnits().size()];
+            this.byUnit = new HashMap<>(transfers.length * 2);
+            int position = 0;
+            for (Unit unit : body.getUnits()) {
+                UnitTransfer transfer = compile(position, unit, paths);
+                transfers[position++] = transfer;
+                byUnit.put(unit, transfer);
+            }
+        }
+
+        public BodyAccessPaths getPaths() {
+            return paths;
+        }
+
+        /**
+         * @return the amount of units of the body
+         */
+        public int size() {
+            return transfers.length;
+        }
+
+        /**
+         * @param position the position of a unit in the body
+         * @return the transfer of the unit
+         */
+        public UnitTransfer get(int position) {
+            return transfers[position];
+        }
+
+        /**
+         * @param unit a unit
+         * @return the transfer of the unit, or null if it's not in the body
+         */
+        public UnitTransfer of(Unit unit) {
+            return byUnit.get(unit);
+        }
+    }
+}
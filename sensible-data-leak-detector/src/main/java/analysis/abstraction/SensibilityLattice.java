@@ -2,6 +2,10 @@ package analysis.abstraction;
 
 import heros.solver.Pair;
 
+/**
+ * Sensibility levels. Constants are declared as bottom, the two incomparable values, and top, which is the layout
+ * {@link dataflow.utils.PackedLatticeState} relies on.
+ */
 public enum SensibilityLattice {
     BOTTOM(0, 0), NOT_SENSIBLE(1, 0), HIGH(1, 1), MAYBE_SENSIBLE(3, 0);
 
@@ -0,0 +1,98 @@
+package analysis.bodies;
+
+import soot.Body;
+import soot.SootClass;
+import soot.SootMethod;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Run-wide source of the bodies of called methods. By default, the bodies are the ones Soot built before running the
+ * analysis transformers, and a method without an active body is handled as an unknown call.
+ * <p>
+ * When {@linkplain #setOnDemand(boolean) on demand}, a body is built the first time an analysis asks for it, so
+ * methods never called from the analyzed ones are never jimplified. Only concrete methods of application classes get
+ * a body: library, phantom and excluded classes are handled through their library model, if any, or as unknown
+ * calls, as in a regular run.
+ */
+public class BodyProvider {
+
+    private static final BodyProvider SHARED = new BodyProvider();
+
+    private volatile boolean onDemand;
+    private final AtomicLong built = new AtomicLong();
+    private final AtomicLong buildingNanos = new AtomicLong();
+
+    /**
+     * @return the body provider shared by every analysis in this run
+     */
+    public static BodyProvider shared() {
+        return SHARED;
+    }
+
+    public void setOnDemand(boolean onDemand) {
+        this.onDemand = onDemand;
+    }
+
+    public boolean isOnDemand() {
+        return onDemand;
+    }
+
+    /**
+     * Gets the body of a method, building it if on demand and it was not built yet. Bodies are built one at a time,
+     * since Soot's body resolution can't be run concurrently.
+     *
+     * @param method the method
+     * @return the active body of the method, or null if it has none
+     */
+    public Body bodyOf(SootMethod method) {
+        if (method.hasActiveBody()) {
+            return method.getActiveBody();
+        }
+        if (!onDemand || !canBuild(method)) {
+            return null;
+        }
+        synchronized (this) {
+            if (method.hasActiveBody()) {
+                return method.getActiveBody();
+            }
+            long start = System.nanoTime();
+            Body body = method.retrieveActiveBody();
+            buildingNanos.addAndGet(System.nanoTime() - start);
+            built.incrementAndGet();
+            return body;
+        }
+    }
+
+    /**
+     * @param method the method
+     * @return whether the method has a body to analyze. On demand, asking builds it
+     */
+    public boolean hasBody(SootMethod method) {
+        return bodyOf(method) != null;
+    }
+
+    /**
+     * @return the amount of bodies built on demand
+     */
+    public long getBuilt() {
+        return built.get();
+    }
+
+    public long getBuildingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(buildingNanos.get());
+    }
+
+    private static boolean canBuild(SootMethod method) {
+        SootClass declaringClass = method.getDeclaringClass();
+        return method.isConcrete() && declaringClass.isApplicationClass() && !declaringClass.isPhantom();
+    }
+
+    @Override
+    public String toString() {
+        return onDemand
+                ? String.format("%d bodies built on demand in %d ms", getBuilt(), getBuildingMillis())
+                : "built by Soot";
+    }
+}
@@ -0,0 +1,73 @@
+package analysis.bodies;
+
+import analysis.interprocedural.DispatchTable;
+import analysis.models.LibraryModels;
+import soot.Body;
+import soot.FastHierarchy;
+import soot.Scene;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.InterfaceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the methods reachable from a set of entry points, walking the invocations in their bodies, which are taken
+ * from the {@link BodyProvider}. Interface invocations reach every implementation in the class hierarchy, and any
+ * other invocation its declared method, so every callee the {@link DispatchTable} might resolve is reached, whatever
+ * points-to says later. Methods without a body and modeled library methods are not walked into.
+ */
+public final class ReachableMethods {
+
+    private ReachableMethods() {
+    }
+
+    /**
+     * @param entryPoints the methods the program starts from
+     * @return the reachable methods with a body, sorted by class name and method signature
+     */
+    public static List<SootMethod> from(Collection<SootMethod> entryPoints) {
+        FastHierarchy hierarchy = Scene.v().getOrMakeFastHierarchy();
+        Set<SootMethod> visited = new HashSet<>();
+        List<SootMethod> reachable = new ArrayList<>();
+        Deque<SootMethod> pending = new ArrayDeque<>(entryPoints);
+        while (!pending.isEmpty()) {
+            SootMethod method = pending.pop();
+            if (!visited.add(method) || LibraryModels.shared().isModeled(method)) {
+                continue;
+            }
+            Body body = BodyProvider.shared().bodyOf(method);
+            if (body == null) {
+                continue;
+            }
+            reachable.add(method);
+            for (Unit unit : body.getUnits()) {
+                Stmt stmt = (Stmt) unit;
+                if (stmt.containsInvokeExpr()) {
+                    pending.addAll(targetsOf(stmt.getInvokeExpr(), hierarchy));
+                }
+            }
+        }
+        reachable.sort(Comparator.comparing((SootMethod method) -> method.getDeclaringClass().getName())
+                .thenComparing(SootMethod::getSignature));
+        return reachable;
+    }
+
+    private static Collection<SootMethod> targetsOf(InvokeExpr invokeExpr, FastHierarchy hierarchy) {
+        SootMethod calledMethod = invokeExpr.getMethod();
+        if (!(invokeExpr instanceof InterfaceInvokeExpr)) {
+            return Collections.singletonList(calledMethod);
+        }
+        return hierarchy.resolveAbstractDispatch(calledMethod.getDeclaringClass(), calledMethod);
+    }
+}
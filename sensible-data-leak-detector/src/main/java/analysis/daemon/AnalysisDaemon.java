@@ -0,0 +1,192 @@
+package analysis.daemon;
+
+import analysis.LeakAnalysisResult;
+import analysis.SensibleDataAnalysis;
+import analysis.ifds.IFDSLeakDriver;
+import analysis.ifds.SensibleDataSolver;
+import analysis.interprocedural.SummaryEngine;
+import analysis.pointsto.PointsToIndex;
+import analysis.pointsto.PointsToProvider;
+import analysis.report.JsonLinesFindingWriter;
+import analysis.report.LeakFinding;
+import analysis.sparse.SparseSensibleDataAnalysis;
+import org.slf4j.Logger;
+import soot.Body;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static dataflow.utils.MetricsReport.quote;
+import static java.util.stream.Collectors.toList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Long-lived leak detection process. The Soot Scene is loaded once, and analysis requests are then answered over a
+ * loopback socket, without paying Soot's startup again. Points-to data and summaries are kept between requests, until
+ * a class they were computed from changes.
+ * <p>
+ * Each line sent to the socket is an {@link AnalysisRequest}, and is answered with a JSON line per leak found, as
+ * written by {@link JsonLinesFindingWriter}, followed by a summary line:
+ * <pre>
+ * {"done": true, "analysis": "dense", "bodies": 12, "findings": 1, "reloaded": 0, "millis": 35}
+ * </pre>
+ * Invalid requests are answered with {@code {"error": "..."}}. A connection can send any amount of requests, and
+ * connections are served concurrently on a thread pool.
+ * <p>
+ * Usage: {@code AnalysisDaemon [--port <port>] [--threads <threads>] <soot options>}, where Soot options are the same
+ * as for a regular run, and the port is picked by the system if not given.
+ */
+public class AnalysisDaemon {
+
+    private static final Logger LOGGER = getLogger(AnalysisDaemon.class);
+
+    private final WarmScene scene;
+    private final ExecutorService pool;
+
+    public AnalysisDaemon(WarmScene scene, int threads) {
+        this.scene = scene;
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int first = 0;
+        while (first + 1 < args.length && args[first].startsWith("--")) {
+            if (args[first].equals("--port")) {
+                port = Integer.parseInt(args[first + 1]);
+            } else if (args[first].equals("--threads")) {
+                threads = Integer.parseInt(args[first + 1]);
+            } else {
+                break;
+            }
+            first += 2;
+        }
+        WarmScene scene = WarmScene.load(Arrays.copyOfRange(args, first, args.length));
+        new AnalysisDaemon(scene, threads).serve(port);
+    }
+
+    /**
+     * Answers requests until the process is killed.
+     *
+     * @param port the loopback port to listen on, or 0 for any free one
+     */
+    public void serve(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            LOGGER.info("Listening on {}", server.getLocalSocketAddress());
+            while (!server.isClosed()) {
+                Socket connection = server.accept();
+                pool.execute(() -> serve(connection));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (Socket ignored = connection;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(),
+                     StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    answer(line, out);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Connection closed", e);
+        }
+    }
+
+    /**
+     * Answers a single request.
+     *
+     * @param line the request line
+     * @param out  where the answer is written
+     */
+    public void answer(String line, Writer out) throws IOException {
+        long start = System.nanoTime();
+        AnalysisRequest request;
+        int reloaded;
+        try {
+            request = AnalysisRequest.parse(line);
+            reloaded = scene.acquire(request.getRules());
+        } catch (RuntimeException e) {
+            writeError(e, out);
+            return;
+        }
+        try {
+            List<LeakFinding> findings = analyze(request);
+            JsonLinesFindingWriter writer = new JsonLinesFindingWriter(out);
+            for (LeakFinding finding : findings) {
+                writer.write(finding);
+            }
+            out.write(String.format("{\"done\": true, \"analysis\": %s, \"bodies\": %d, \"findings\": %d, "
+                            + "\"reloaded\": %d, \"millis\": %d}\n", quote(request.getKind().name().toLowerCase()),
+                    scene.getBodies().size(), findings.size(), reloaded,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            LOGGER.info("Answered {} with {} findings", request, findings.size());
+        } catch (IllegalArgumentException e) {
+            writeError(e, out);
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not analyze {}", request, e);
+            writeError(e, out);
+        } finally {
+            scene.release();
+        }
+    }
+
+    private static void writeError(RuntimeException error, Writer out) throws IOException {
+        out.write(String.format("{\"error\": %s}\n", quote(String.valueOf(error.getMessage()))));
+    }
+
+    private List<LeakFinding> analyze(AnalysisRequest request) {
+        SootClass entry = Scene.v().getSootClassUnsafe(request.getEntry());
+        if (entry == null || !entry.isApplicationClass() || !entry.declaresMethodByName("main")) {
+            throw new IllegalArgumentException("No application class with a main method: " + request.getEntry());
+        }
+        PointsToIndex pointsTo = PointsToProvider.shared()
+                .forEntryPoint(entry.getPackageName(), entry.getMethodByName("main").getActiveBody());
+
+        List<LeakFinding> findings = new ArrayList<>();
+        if (request.getKind() == AnalysisRequest.Kind.IFDS) {
+            List<SootMethod> methods = scene.getBodies().stream().map(Body::getMethod).collect(toList());
+            SensibleDataSolver solver = IFDSLeakDriver.solve(methods, pointsTo);
+            for (SootMethod method : methods) {
+                findings.addAll(LeakFinding.of(method, solver.leakingUnitsOf(method)));
+            }
+            return findings;
+        }
+        for (Body body : scene.getBodies()) {
+            LeakAnalysisResult result = request.getKind() == AnalysisRequest.Kind.SPARSE
+                    ? SparseSensibleDataAnalysis.forBody(body, pointsTo, SummaryEngine.shared())
+                    : SensibleDataAnalysis.forBody(body, pointsTo, SummaryEngine.shared());
+            List<Unit> leaks = body.getUnits().stream()
+                    .filter(result::possibleLeakInUnit)
+                    .collect(toList());
+            findings.addAll(LeakFinding.of(body.getMethod(), leaks, result));
+        }
+        return findings;
+    }
+}
@@ -0,0 +1,101 @@
+package analysis.daemon;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.util.Map;
+
+/**
+ * An analysis asked to the {@link AnalysisDaemon}, as a single line JSON object:
+ * <pre>
+ * {"entry": "wtf.thepalbi.TestMain", "rules": "my-rules.yaml", "analysis": "dense"}
+ * </pre>
+ * The entry class has to declare a {@code main} method, from which points-to data is computed. Rules default to the
+ * bundled ones, and the analysis to {@code dense}.
+ */
+public final class AnalysisRequest {
+
+    /**
+     * How leaks are searched for, as in a regular run: the dense or sparse body analyses, or the IFDS engine.
+     */
+    public enum Kind {
+        DENSE, SPARSE, IFDS;
+
+        static Kind fromName(String name) {
+            if (name == null || name.equals("dense")) {
+                return DENSE;
+            }
+            if (name.equals("sparse")) {
+                return SPARSE;
+            }
+            if (name.equals("ifds")) {
+                return IFDS;
+            }
+            throw new IllegalArgumentException("Unknown analysis: " + name);
+        }
+    }
+
+    private final String entry;
+    private final String rules;
+    private final Kind kind;
+
+    public AnalysisRequest(String entry, String rules, Kind kind) {
+        this.entry = entry;
+        this.rules = rules;
+        this.kind = kind;
+    }
+
+    /**
+     * @param line a request line. JSON objects are parsed as YAML flow mappings, so keys need a space after the colon
+     * @return the request
+     * @throws IllegalArgumentException if the line is not a valid request
+     */
+    public static AnalysisRequest parse(String line) {
+        Object document;
+        try {
+            document = new Yaml().load(line);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed request: " + e.getMessage());
+        }
+        if (!(document instanceof Map)) {
+            throw new IllegalArgumentException("Requests have to be objects, got: " + line);
+        }
+        Map<?, ?> fields = (Map<?, ?>) document;
+        for (Object field : fields.keySet()) {
+            if (!"entry".equals(field) && !"rules".equals(field) && !"analysis".equals(field)) {
+                throw new IllegalArgumentException("Unknown request field: " + field);
+            }
+        }
+        Object entry = fields.get("entry");
+        if (!(entry instanceof String) || ((String) entry).isEmpty()) {
+            throw new IllegalArgumentException("Requests need an entry class");
+        }
+        Object rules = fields.get("rules");
+        Object analysis = fields.get("analysis");
+        return new AnalysisRequest((String) entry, rules == null ? null : rules.toString(),
+                Kind.fromName(analysis == null ? null : analysis.toString()));
+    }
+
+    /**
+     * @return the name of the class whose {@code main} method is the entry point
+     */
+    public String getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return the rules file, or null for the bundled rules
+     */
+    public String getRules() {
+        return rules;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s from %s, rules: %s", kind.name().toLowerCase(), entry,
+                rules == null ? "bundled" : rules);
+    }
+}
@@ -0,0 +1,256 @@
+package analysis.daemon;
+
+import analysis.SummaryCache;
+import analysis.driver.ParallelLeakDriver;
+import analysis.interprocedural.SummaryEngine;
+import analysis.pointsto.PointsToProvider;
+import analysis.provenance.ProvenanceTable;
+import analysis.rules.RuleMatcher;
+import dataflow.utils.GraphCache;
+import org.slf4j.Logger;
+import soot.Body;
+import soot.Scene;
+import soot.SootClass;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.options.Options;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A Soot {@link Scene} loaded once, with every application body already retrieved, shared by the analyses of a
+ * long-lived process. Analyses read the Scene concurrently, while reloading classes and switching rules wait for
+ * running analyses to finish.
+ * <p>
+ * Before each analysis, the class files of the application classes are checked, and only the ones that changed are
+ * reloaded, together with the application classes referencing them, so no body keeps pointing to a stale class.
+ * Library and JDK classes are never reloaded. Only class files in classpath directories are checked, not the ones in
+ * jars.
+ */
+public class WarmScene {
+
+    private static final Logger LOGGER = getLogger(WarmScene.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Path> classPathDirectories = new ArrayList<>();
+    private final Map<String, ClassFile> classFiles = new HashMap<>();
+    private volatile List<Body> bodies;
+    private String rulesFile;
+
+    private WarmScene() {
+    }
+
+    /**
+     * Loads the Scene, and retrieves the bodies of every application class.
+     *
+     * @param sootArgs the Soot command line options, as for a regular run
+     * @return the loaded Scene
+     */
+    public static WarmScene load(String[] sootArgs) {
+        if (!Options.v().parse(sootArgs)) {
+            throw new IllegalArgumentException("Invalid Soot options");
+        }
+        long start = System.currentTimeMillis();
+        Scene.v().loadNecessaryClasses();
+        WarmScene scene = new WarmScene();
+        for (String entry : Scene.v().getSootClassPath().split(File.pathSeparator)) {
+            Path path = Paths.get(entry);
+            if (Files.isDirectory(path)) {
+                scene.classPathDirectories.add(path);
+            }
+        }
+        scene.bodies = ParallelLeakDriver.applicationBodies();
+        for (SootClass sootClass : Scene.v().getApplicationClasses()) {
+            scene.track(sootClass.getName());
+        }
+        LOGGER.info("Loaded {} bodies in {} ms, watching {} class files", scene.bodies.size(),
+                System.currentTimeMillis() - start, scene.classFiles.size());
+        return scene;
+    }
+
+    /**
+     * Reloads the classes that changed, and uses the given rules, then locks the Scene for reading until
+     * {@link #release()} is called.
+     *
+     * @param rules the rules file, or null for the bundled rules
+     * @return the amount of classes reloaded
+     */
+    public int acquire(String rules) {
+        lock.writeLock().lock();
+        try {
+            int reloaded = reloadChanged();
+            useRules(rules);
+            // Downgrade, so other analyses can run, but nothing changes the Scene under this one
+            lock.readLock().lock();
+            return reloaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void release() {
+        lock.readLock().unlock();
+    }
+
+    /**
+     * @return the bodies of every application class, sorted by class name and method signature. Only valid while
+     * acquired
+     */
+    public List<Body> getBodies() {
+        return bodies;
+    }
+
+    private void useRules(String rules) {
+        if (rules == null ? rulesFile == null : rules.equals(rulesFile)) {
+            return;
+        }
+        if (rules == null) {
+            RuleMatcher.useBundledRules();
+        } else {
+            RuleMatcher.useRulesFile(Paths.get(rules));
+        }
+        rulesFile = rules;
+        // Summaries depend on which methods are sources, sanitizers and sinks
+        SummaryEngine.shared().clear();
+        SummaryCache.shared().clear();
+    }
+
+    private int reloadChanged() {
+        Set<String> changed = new TreeSet<>();
+        for (Map.Entry<String, ClassFile> classFile : classFiles.entrySet()) {
+            if (classFile.getValue().hasChanged()) {
+                changed.add(classFile.getKey());
+            }
+        }
+        if (changed.isEmpty()) {
+            return 0;
+        }
+        long start = System.currentTimeMillis();
+        // Reloading a referrer replaces its class too, so the classes referring to it have to be reloaded as well
+        Set<String> reloaded = new TreeSet<>(changed);
+        Set<String> referrers = referrersOf(reloaded);
+        while (!referrers.isEmpty()) {
+            reloaded.addAll(referrers);
+            referrers = referrersOf(reloaded);
+        }
+        for (String className : reloaded) {
+            SootClass stale = Scene.v().getSootClassUnsafe(className);
+            if (stale != null) {
+                Scene.v().removeClass(stale);
+            }
+            classFiles.remove(className);
+            if (locate(className) != null) {
+                Scene.v().forceResolve(className, SootClass.BODIES).setApplicationClass();
+                track(className);
+            }
+        }
+        Scene.v().releaseActiveHierarchy();
+        Scene.v().releaseFastHierarchy();
+        bodies = ParallelLeakDriver.applicationBodies();
+        // Everything computed from the previous bodies is stale
+        PointsToProvider.shared().clear();
+        GraphCache.shared().clear();
+        SummaryEngine.shared().clear();
+        SummaryCache.shared().clear();
+        ProvenanceTable.shared().clear();
+        LOGGER.info("Reloaded {} classes in {} ms, {} of them changed: {}", reloaded.size(),
+                System.currentTimeMillis() - start, changed.size(), changed);
+        return reloaded.size();
+    }
+
+    /**
+     * @return the application classes calling, accessing fields of, or extending any of the given ones, apart from
+     * the given ones themselves
+     */
+    private Set<String> referrersOf(Set<String> classNames) {
+        Set<String> referrers = new TreeSet<>();
+        for (SootClass sootClass : Scene.v().getApplicationClasses()) {
+            if (classNames.contains(sootClass.getName())) {
+                continue;
+            }
+            boolean refers = sootClass.hasSuperclass() && classNames.contains(sootClass.getSuperclass().getName());
+            for (SootClass implemented : sootClass.getInterfaces()) {
+                refers |= classNames.contains(implemented.getName());
+            }
+            if (refers) {
+                referrers.add(sootClass.getName());
+            }
+        }
+        for (Body body : bodies) {
+            String owner = body.getMethod().getDeclaringClass().getName();
+            if (classNames.contains(owner) || referrers.contains(owner)) {
+                continue;
+            }
+            for (Unit unit : body.getUnits()) {
+                Stmt statement = (Stmt) unit;
+                if ((statement.containsInvokeExpr() && classNames.contains(
+                        statement.getInvokeExpr().getMethodRef().getDeclaringClass().getName()))
+                        || (statement.containsFieldRef() && classNames.contains(
+                        statement.getFieldRef().getFieldRef().declaringClass().getName()))) {
+                    referrers.add(owner);
+                    break;
+                }
+            }
+        }
+        return referrers;
+    }
+
+    private void track(String className) {
+        Path classFile = locate(className);
+        if (classFile != null) {
+            classFiles.put(className, ClassFile.of(classFile));
+        }
+    }
+
+    private Path locate(String className) {
+        String relative = className.replace('.', '/') + ".class";
+        for (Path directory : classPathDirectories) {
+            Path classFile = directory.resolve(relative);
+            if (Files.isRegularFile(classFile)) {
+                return classFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A class file, and its modification time and size when last loaded.
+     */
+    private static final class ClassFile {
+        private final Path path;
+        private final long modified;
+        private final long size;
+
+        private ClassFile(Path path, long modified, long size) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+        }
+
+        static ClassFile of(Path path) {
+            try {
+                return new ClassFile(path, Files.getLastModifiedTime(path).toMillis(), Files.size(path));
+            } catch (IOException e) {
+                return new ClassFile(path, -1, -1);
+            }
+        }
+
+        boolean hasChanged() {
+            ClassFile now = of(path);
+            return now.modified != modified || now.size != size;
+        }
+    }
+}
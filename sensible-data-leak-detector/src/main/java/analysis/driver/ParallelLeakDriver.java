@@ -0,0 +1,205 @@
+package analysis.driver;
+
+import analysis.LeakAnalysisResult;
+import analysis.SensibleDataAnalysis;
+import analysis.SensibleDataWarningsYeller;
+import analysis.bodies.BodyProvider;
+import analysis.bodies.ReachableMethods;
+import analysis.interprocedural.SinkReachability;
+import analysis.interprocedural.SummaryEngine;
+import analysis.paths.AccessPathTable;
+import analysis.pointsto.PointsToIndex;
+import analysis.pointsto.PointsToProvider;
+import analysis.provenance.ProvenanceTable;
+import analysis.report.LeakReport;
+import analysis.report.OrderedReport;
+import dataflow.utils.AnalysisBudget;
+import dataflow.utils.AnalysisPhase;
+import dataflow.utils.GraphCache;
+import dataflow.utils.PhaseMetrics;
+import org.slf4j.Logger;
+import soot.Body;
+import soot.PackManager;
+import soot.PhaseOptions;
+import soot.Scene;
+import soot.SceneTransformer;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.options.Options;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Whole-program driver for the sensible data analysis. Every application body is analyzed on a {@link ForkJoinPool},
+ * sharing a single points-to result computed from the program entry point, and a single {@link SummaryEngine}.
+ * <p>
+ * Called methods are summarized first, scheduling independent call graph components in parallel, so the analysis of
+ * each body just instantiates summaries. Bodies are sorted by class name and method signature, and the leaks of each
+ * body are reported through an {@link OrderedReport} as soon as every body before it is done, so the report is the
+ * same whatever the amount of threads.
+ * <p>
+ * With the {@code bodies:reachable} phase option, only the methods reachable from the entry point are analyzed, and
+ * their bodies are built by the {@link BodyProvider} when first asked for. {@link #runReachable(String[])} starts
+ * such a run without Soot's packs, which would otherwise build the body of every application class beforehand.
+ */
+public class ParallelLeakDriver extends SceneTransformer {
+
+    /**
+     * Phase options understood by this transformer, and their defaults. {@code threads:0} uses one thread per
+     * available processor.
+     */
+    public static final String PHASE_NAME = "wjtp.SensibleDataParallel";
+    public static final String DECLARED_OPTIONS = "enabled threads interprocedural store models rules report format traces bodies prune "
+            + "access-path-length " + GraphCache.OPTION + " " + AnalysisBudget.OPTIONS;
+    public static final String DEFAULT_OPTIONS = "enabled:false threads:0 interprocedural:summaries traces:false bodies:all prune:true "
+            + "access-path-length:" + AccessPathTable.DEFAULT_MAX_LENGTH + " " + GraphCache.OPTION + ":"
+            + GraphCache.DEFAULT_MAX_WEIGHT;
+
+    private static final Logger LOGGER = getLogger(ParallelLeakDriver.class);
+
+    @Override
+    protected void internalTransform(String phaseName, Map<String, String> options) {
+        PhaseMetrics.shared().end(AnalysisPhase.SOOT_LOAD);
+        if (!Scene.v().hasMainClass()) {
+            LOGGER.error("Whole program analysis needs a main class to compute points-to data from");
+            return;
+        }
+
+        SensibleDataWarningsYeller.configureFrom(options);
+        // Provenance nodes of a previous run only point to its units
+        ProvenanceTable.shared().clear();
+        SummaryEngine summaries = SensibleDataWarningsYeller.summariesFor(options);
+        List<Body> loaded = bodiesFor(options);
+        PointsToIndex pointsTo = pointsToFromEntryPoint();
+        List<Body> bodies = SensibleDataWarningsYeller.prunes(options) ? prune(loaded, pointsTo) : loaded;
+        ForkJoinPool pool = new ForkJoinPool(threadsFor(options));
+        LOGGER.info("Analyzing {} bodies with {} threads", bodies.size(), pool.getParallelism());
+
+        int leaks;
+        OrderedReport report = LeakReport.shared().ordered(bodies.size());
+        try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.ANALYSIS)) {
+            if (summaries != null) {
+                summaries.summarizeAll(bodies.stream().map(Body::getMethod).collect(toList()), pointsTo, pool);
+            }
+            leaks = pool.submit(() -> IntStream.range(0, bodies.size()).parallel()
+                    .map(position -> reportLeaksIn(bodies.get(position), position, report, pointsTo, summaries))
+                    .sum())
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+            report.flush();
+        }
+        LOGGER.info("Found {} possible leaks", leaks);
+    }
+
+    /**
+     * Analyzes the methods reachable from the main class, loading the Scene without running Soot's packs, so bodies
+     * are only built for methods reached. Classes under the packages excluded with Soot's {@code -exclude} option
+     * are loaded without bodies, and calls to them are handled through library models, or as unknown calls. Phase
+     * options for this driver are taken from the Soot options, as in a regular run.
+     *
+     * @param sootArgs the Soot command line options, as for a regular run
+     */
+    public static void runReachable(String[] sootArgs) {
+        if (!Options.v().parse(sootArgs)) {
+            throw new IllegalArgumentException("Invalid Soot options");
+        }
+        Options.v().set_no_bodies_for_excluded(true);
+        Options.v().set_allow_phantom_refs(true);
+        Scene.v().loadNecessaryClasses();
+        PhaseOptions.v().setPhaseOption(PHASE_NAME, "enabled:true");
+        PhaseOptions.v().setPhaseOption(PHASE_NAME, "bodies:reachable");
+        PackManager.v().getPhase(PHASE_NAME).apply();
+    }
+
+    private static List<Body> bodiesFor(Map<String, String> options) {
+        if (!"reachable".equals(options.get("bodies"))) {
+            return applicationBodies();
+        }
+        BodyProvider.shared().setOnDemand(true);
+        SootMethod main = Scene.v().getMainClass().getMethodByName("main");
+        List<Body> bodies = new ArrayList<>();
+        for (SootMethod method : ReachableMethods.from(Collections.singletonList(main))) {
+            if (method.getDeclaringClass().isApplicationClass()) {
+                bodies.add(method.getActiveBody());
+            }
+        }
+        LOGGER.info("{} methods reachable from {}, {}", bodies.size(), main.getSignature(), BodyProvider.shared());
+        return bodies;
+    }
+
+    /**
+     * Retrieves the bodies of every concrete application method, sorted by class name and method signature. Bodies
+     * are retrieved here, since Soot's body resolution can't be run concurrently.
+     */
+    public static List<Body> applicationBodies() {
+        List<SootClass> classes = new ArrayList<>(Scene.v().getApplicationClasses());
+        classes.sort(Comparator.comparing(SootClass::getName));
+        List<Body> bodies = new ArrayList<>();
+        for (SootClass sootClass : classes) {
+            List<SootMethod> methods = new ArrayList<>(sootClass.getMethods());
+            methods.sort(Comparator.comparing(SootMethod::getSignature));
+            for (SootMethod method : methods) {
+                if (method.isConcrete()) {
+                    bodies.add(method.retrieveActiveBody());
+                }
+            }
+        }
+        return bodies;
+    }
+
+    /**
+     * @return the bodies that might report a leak, as told by {@link SinkReachability}
+     */
+    private static List<Body> prune(List<Body> bodies, PointsToIndex pointsTo) {
+        SinkReachability reachability = new SinkReachability(bodies.stream().map(Body::getMethod).collect(toList()),
+                pointsTo);
+        List<Body> kept = bodies.stream()
+                .filter(body -> !reachability.prune(body.getMethod()))
+                .collect(toList());
+        LOGGER.info("Pruned {} of {} bodies, which can't reach both a source and a sink", bodies.size() - kept.size(),
+                bodies.size());
+        return kept;
+    }
+
+    private static PointsToIndex pointsToFromEntryPoint() {
+        SootClass mainClass = Scene.v().getMainClass();
+        return PointsToProvider.shared().forEntryPoint(mainClass.getPackageName(), mainClass.getMethodByName("main").getActiveBody());
+    }
+
+    private static int reportLeaksIn(Body body, int position, OrderedReport report, PointsToIndex pointsTo,
+                                     SummaryEngine summaries) {
+        // With a store, bodies were already analyzed when summarizing them, or their results reused
+        LeakAnalysisResult analysis = summaries != null && summaries.getStore() != null
+                ? summaries.resultOf(body, pointsTo)
+                : SensibleDataAnalysis.forBody(body, pointsTo, summaries);
+        List<Unit> leaks = body.getUnits().stream()
+                .filter(analysis::possibleLeakInUnit)
+                .collect(toList());
+        try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.REPORTING)) {
+            report.report(position, body.getMethod(), leaks, analysis);
+        }
+        return leaks.size();
+    }
+
+    static int threadsFor(Map<String, String> options) {
+        int threads = Integer.parseInt(options.getOrDefault("threads", "0"));
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,82 @@
+package analysis.ifds;
+
+import analysis.SensibleDataWarningsYeller;
+import analysis.driver.ParallelLeakDriver;
+import analysis.pointsto.PointsToIndex;
+import analysis.pointsto.PointsToProvider;
+import analysis.report.LeakReport;
+import dataflow.utils.AnalysisPhase;
+import dataflow.utils.PhaseMetrics;
+import org.slf4j.Logger;
+import soot.Body;
+import soot.Scene;
+import soot.SceneTransformer;
+import soot.SootClass;
+import soot.SootMethod;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Whole-program sensible data leak detection solved as an IFDS problem with heros, instead of re-analyzing called
+ * methods with the data-flow analysis. Every application method is a seed, and reports the same leaks
+ * {@link analysis.SensibleDataAnalysis} reports for its body.
+ */
+public class IFDSLeakDriver extends SceneTransformer {
+
+    /**
+     * Phase options understood by this transformer, and their defaults.
+     */
+    public static final String PHASE_NAME = "wjtp.SensibleDataIFDS";
+    public static final String DECLARED_OPTIONS = "enabled models rules report format";
+    public static final String DEFAULT_OPTIONS = "enabled:false";
+
+    private static final Logger LOGGER = getLogger(IFDSLeakDriver.class);
+
+    @Override
+    protected void internalTransform(String phaseName, Map<String, String> options) {
+        PhaseMetrics.shared().end(AnalysisPhase.SOOT_LOAD);
+        if (!Scene.v().hasMainClass()) {
+            LOGGER.error("Whole program analysis needs a main class to compute points-to data from");
+            return;
+        }
+        SensibleDataWarningsYeller.configureFrom(options);
+
+        List<SootMethod> methods = ParallelLeakDriver.applicationBodies().stream()
+                .map(Body::getMethod)
+                .collect(toList());
+        SootClass mainClass = Scene.v().getMainClass();
+        PointsToIndex pointsTo = PointsToProvider.shared()
+                .forEntryPoint(mainClass.getPackageName(), mainClass.getMethodByName("main").getActiveBody());
+
+        SensibleDataSolver solver;
+        try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.ANALYSIS)) {
+            solver = solve(methods, pointsTo);
+        }
+        try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.REPORTING)) {
+            for (SootMethod method : methods) {
+                LeakReport.shared().report(method, solver.leakingUnitsOf(method));
+            }
+        }
+    }
+
+    /**
+     * Solves the sensible data taint problem over the methods reachable from the given ones.
+     *
+     * @param methods  the analyzed methods, with their active bodies already retrieved
+     * @param pointsTo the points-to index used to resolve interface calls
+     * @return the solver, holding the results
+     */
+    public static SensibleDataSolver solve(List<SootMethod> methods, PointsToIndex pointsTo) {
+        long start = System.currentTimeMillis();
+        PointsToInterproceduralCFG icfg = new PointsToInterproceduralCFG(methods, pointsTo);
+        SensibleDataSolver solver = new SensibleDataSolver(new SensibleDataTaintProblem(icfg));
+        solver.solve();
+        LOGGER.info("IFDS problem over {} methods solved in {} ms", icfg.getMethods().size(),
+                System.currentTimeMillis() - start);
+        return solver;
+    }
+}
@@ -0,0 +1,186 @@
+package analysis.ifds;
+
+import analysis.InvocationVisitor;
+import analysis.bodies.BodyProvider;
+import analysis.SensibleDataAnalysis;
+import analysis.interprocedural.MethodCallGraph;
+import analysis.pointsto.PointsToIndex;
+import heros.InterproceduralCFG;
+import soot.SootMethod;
+import soot.Unit;
+import soot.UnitBox;
+import soot.jimple.Stmt;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interprocedural CFG over the methods reachable from a set of entry methods. Calls are resolved the same way
+ * {@link InvocationVisitor} does, so the IFDS engine sees exactly the callees the data-flow analysis would analyze,
+ * instead of the ones in Soot's call graph.
+ * <p>
+ * Every graph and call site is computed when the CFG is built, since Soot's CFG construction is not thread safe, so
+ * the CFG can then be read from the solver threads.
+ */
+public class PointsToInterproceduralCFG implements InterproceduralCFG<Unit, SootMethod> {
+
+    private final Map<SootMethod, ExceptionalUnitGraph> graphs = new HashMap<>();
+    private final Map<Unit, SootMethod> unitOwners = new HashMap<>();
+    private final Map<Unit, List<SootMethod>> calleesByCallSite = new HashMap<>();
+    private final Map<SootMethod, Set<Unit>> callSitesByMethod = new HashMap<>();
+    private final Map<SootMethod, Set<Unit>> callersByMethod = new HashMap<>();
+    private final Set<Unit> nonCallStartNodes = new HashSet<>();
+
+    /**
+     * @param entryMethods the methods from which the analyzed methods are reached
+     * @param pointsTo     the points-to index used to resolve interface calls
+     */
+    public PointsToInterproceduralCFG(Collection<SootMethod> entryMethods, PointsToIndex pointsTo) {
+        MethodCallGraph callGraph = new MethodCallGraph(pointsTo);
+        Deque<SootMethod> pending = new ArrayDeque<>();
+        for (SootMethod entryMethod : entryMethods) {
+            if (BodyProvider.shared().hasBody(entryMethod)) {
+                pending.push(entryMethod);
+            }
+        }
+        while (!pending.isEmpty()) {
+            SootMethod method = pending.pop();
+            if (graphs.containsKey(method)) {
+                continue;
+            }
+            add(method, pointsTo);
+            pending.addAll(callGraph.calleesOf(method));
+        }
+    }
+
+    private void add(SootMethod method, PointsToIndex pointsTo) {
+        ExceptionalUnitGraph graph = SensibleDataAnalysis.graphFor(method.getActiveBody());
+        graphs.put(method, graph);
+        Set<Unit> callSites = new LinkedHashSet<>();
+        for (Unit unit : graph) {
+            unitOwners.put(unit, method);
+            Stmt stmt = (Stmt) unit;
+            if (stmt.containsInvokeExpr()) {
+                List<SootMethod> callees = InvocationVisitor.resolveTargets(stmt.getInvokeExpr(), method, pointsTo);
+                calleesByCallSite.put(unit, callees);
+                callSites.add(unit);
+                for (SootMethod callee : callees) {
+                    callersByMethod.computeIfAbsent(callee, m -> new LinkedHashSet<>()).add(unit);
+                }
+            } else if (!graph.getHeads().contains(unit)) {
+                nonCallStartNodes.add(unit);
+            }
+        }
+        callSitesByMethod.put(method, callSites);
+    }
+
+    /**
+     * @return every method in this CFG
+     */
+    public Set<SootMethod> getMethods() {
+        return Collections.unmodifiableSet(graphs.keySet());
+    }
+
+    @Override
+    public SootMethod getMethodOf(Unit unit) {
+        return unitOwners.get(unit);
+    }
+
+    @Override
+    public List<Unit> getPredsOf(Unit unit) {
+        return graphOf(unit).getPredsOf(unit);
+    }
+
+    @Override
+    public List<Unit> getSuccsOf(Unit unit) {
+        return graphOf(unit).getSuccsOf(unit);
+    }
+
+    @Override
+    public Collection<SootMethod> getCalleesOfCallAt(Unit callSite) {
+        return calleesByCallSite.getOrDefault(callSite, Collections.emptyList());
+    }
+
+    @Override
+    public Collection<Unit> getCallersOf(SootMethod method) {
+        return callersByMethod.getOrDefault(method, Collections.emptySet());
+    }
+
+    @Override
+    public Set<Unit> getCallsFromWithin(SootMethod method) {
+        return callSitesByMethod.getOrDefault(method, Collections.emptySet());
+    }
+
+    @Override
+    public Collection<Unit> getStartPointsOf(SootMethod method) {
+        ExceptionalUnitGraph graph = graphs.get(method);
+        return graph != null ? graph.getHeads() : Collections.emptyList();
+    }
+
+    @Override
+    public Collection<Unit> getReturnSitesOfCallAt(Unit callSite) {
+        return getSuccsOf(callSite);
+    }
+
+    @Override
+    public boolean isCallStmt(Unit unit) {
+        return calleesByCallSite.containsKey(unit);
+    }
+
+    @Override
+    public boolean isExitStmt(Unit unit) {
+        return graphOf(unit).getTails().contains(unit);
+    }
+
+    @Override
+    public boolean isStartPoint(Unit unit) {
+        return graphOf(unit).getHeads().contains(unit);
+    }
+
+    @Override
+    public Set<Unit> allNonCallStartNodes() {
+        return Collections.unmodifiableSet(nonCallStartNodes);
+    }
+
+    @Override
+    public boolean isFallThroughSuccessor(Unit unit, Unit successor) {
+        return unit.fallsThrough() && graphOf(unit).getBody().getUnits().getSuccOf(unit) == successor;
+    }
+
+    @Override
+    public boolean isBranchTarget(Unit unit, Unit successor) {
+        if (!unit.branches()) {
+            return false;
+        }
+        for (UnitBox target : unit.getUnitBoxes()) {
+            if (target.getUnit() == successor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param method a method in this CFG
+     * @return the units of the method
+     */
+    public List<Unit> unitsOf(SootMethod method) {
+        List<Unit> units = new ArrayList<>();
+        graphs.get(method).forEach(units::add);
+        return units;
+    }
+
+    private ExceptionalUnitGraph graphOf(Unit unit) {
+        return graphs.get(unitOwners.get(unit));
+    }
+}
@@ -0,0 +1,53 @@
+package analysis.ifds;
+
+import heros.solver.IFDSSolver;
+import soot.SootMethod;
+import soot.Unit;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Tabulation solver for the {@link SensibleDataTaintProblem}. Besides the merged results of every calling context,
+ * it answers which leaks a method produces when entered with no sensible inputs, which is what
+ * {@link analysis.SensibleDataAnalysis#possibleLeakInUnit} answers for a body analyzed on its own.
+ */
+public class SensibleDataSolver extends IFDSSolver<Unit, TaintFact, SootMethod, PointsToInterproceduralCFG> {
+
+    private final PointsToInterproceduralCFG icfg;
+
+    public SensibleDataSolver(SensibleDataTaintProblem problem) {
+        super(problem);
+        this.icfg = problem.interproceduralCFG();
+    }
+
+    /**
+     * @param method a method of the solved CFG
+     * @return the units of the method leaking a sensible value, in the method units order
+     */
+    public Set<Unit> leakingUnitsOf(SootMethod method) {
+        Set<Unit> leaking = new LinkedHashSet<>();
+        for (Unit unit : icfg.unitsOf(method)) {
+            for (TaintFact fact : ifdsResultsAt(unit)) {
+                if (fact.isLeak() && holdsWithoutSensibleInputs(unit, fact)) {
+                    leaking.add(fact.getLeakingUnit());
+                }
+            }
+        }
+        Set<Unit> ordered = new LinkedHashSet<>();
+        for (Unit unit : icfg.unitsOf(method)) {
+            if (leaking.contains(unit)) {
+                ordered.add(unit);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * A fact holds in the context of the zero value when some path edge reaches it from the zero value at the start
+     * of its method.
+     */
+    private boolean holdsWithoutSensibleInputs(Unit unit, TaintFact fact) {
+        return jumpFn.reverseLookup(unit, fact).containsKey(zeroValue);
+    }
+}
@@ -0,0 +1,294 @@
+package analysis.ifds;
+
+import analysis.StatementVisitor;
+import analysis.bodies.BodyProvider;
+import analysis.models.LibraryModels;
+import analysis.models.ModelKind;
+import analysis.paths.AccessPath;
+import analysis.paths.AccessPathTable;
+import heros.FlowFunction;
+import heros.FlowFunctions;
+import heros.flowfunc.Identity;
+import heros.flowfunc.KillAll;
+import heros.template.DefaultIFDSTabulationProblem;
+import soot.Body;
+import soot.Local;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.VoidType;
+import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
+import soot.jimple.CastExpr;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.InvokeStmt;
+import soot.jimple.ReturnStmt;
+import soot.jimple.Stmt;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sensible data propagation expressed as an IFDS problem. A {@link TaintFact} holding at a unit means that the local,
+ * field or array element of its access path might hold a sensible value
+ * ({@link analysis.abstraction.SensibilityLattice#HIGH} or {@link analysis.abstraction.SensibilityLattice#MAYBE_SENSIBLE})
+ * there.
+ * <p>
+ * Flow functions follow the transfers the dense analysis compiles into {@link analysis.UnitTransfer}s: assignments
+ * only make their assignee sensible, and copies between locals, fields and array elements also copy the sensible paths
+ * extending the copied one. Reading a local reads every path reachable from it, so passing or leaking an object with a
+ * sensible field counts as passing or leaking a sensible value. Calls to modeled
+ * library methods follow their {@link LibraryModels} entry, calls to other methods without a body use the simplified
+ * invocation model, and only standalone invocations report leaks in called methods.
+ * Every method in the CFG is a seed, so leaks found from the zero value of a method are the ones the data-flow
+ * analysis of that body would report.
+ */
+public class SensibleDataTaintProblem
+        extends DefaultIFDSTabulationProblem<Unit, TaintFact, SootMethod, PointsToInterproceduralCFG> {
+
+    public SensibleDataTaintProblem(PointsToInterproceduralCFG icfg) {
+        super(icfg);
+    }
+
+    @Override
+    public Map<Unit, Set<TaintFact>> initialSeeds() {
+        Map<Unit, Set<TaintFact>> seeds = new HashMap<>();
+        for (SootMethod method : interproceduralCFG().getMethods()) {
+            for (Unit startPoint : interproceduralCFG().getStartPointsOf(method)) {
+                seeds.put(startPoint, Collections.singleton(zeroValue()));
+            }
+        }
+        return seeds;
+    }
+
+    @Override
+    protected TaintFact createZeroValue() {
+        return TaintFact.zero();
+    }
+
+    @Override
+    protected FlowFunctions<Unit, TaintFact, SootMethod> createFlowFunctionsFactory() {
+        return new FlowFunctions<Unit, TaintFact, SootMethod>() {
+
+            @Override
+            public FlowFunction<TaintFact> getNormalFlowFunction(Unit curr, Unit succ) {
+                if (!(curr instanceof AssignStmt)) {
+                    return Identity.v();
+                }
+                AssignStmt assignStmt = (AssignStmt) curr;
+                AccessPath assignee = AccessPathTable.shared().pathOf(assignStmt.getLeftOp());
+                if (assignee == null) {
+                    return Identity.v();
+                }
+                Local assigneeBase = baseOf(assignStmt.getLeftOp());
+                TaintFact assigned = TaintFact.sensible(assigneeBase, assignee);
+                AccessPath copied = AccessPathTable.shared().pathOf(assignStmt.getRightOp());
+                if (copied != null) {
+                    // The assignee is sensible if the copied path or a prefix of it is, and so is each extension of
+                    // the assignee whose matching extension of the copied path is
+                    return source -> {
+                        if (!source.isSensible()) {
+                            return Collections.singleton(source);
+                        }
+                        AccessPath path = source.getPath();
+                        if (copied.startsWith(path)) {
+                            return setOf(source, assigned);
+                        }
+                        if (path.length() > copied.length() && path.startsWith(copied)) {
+                            return setOf(source, TaintFact.sensible(assigneeBase,
+                                    AccessPathTable.shared().rebase(path, copied, assignee)));
+                        }
+                        return Collections.singleton(source);
+                    };
+                }
+                Set<Local> usedLocals = new HashSet<>();
+                for (ValueBox valueBox : assignStmt.getRightOp().getUseBoxes()) {
+                    if (valueBox.getValue() instanceof Local) {
+                        usedLocals.add((Local) valueBox.getValue());
+                    }
+                }
+                // The assignee keeps its previous value when nothing sensible is assigned
+                return source -> source.isSensible() && usedLocals.contains(source.getLocal())
+                        ? setOf(source, assigned)
+                        : Collections.singleton(source);
+            }
+
+            @Override
+            public FlowFunction<TaintFact> getCallFlowFunction(Unit callStmt, SootMethod destinationMethod) {
+                InvokeExpr invokeExpr = ((Stmt) callStmt).getInvokeExpr();
+                if (isHandledAtCallSite((Stmt) callStmt) || !BodyProvider.shared().hasBody(destinationMethod)
+                        || LibraryModels.shared().isModeled(destinationMethod)) {
+                    return KillAll.v();
+                }
+                Body calleeBody = destinationMethod.getActiveBody();
+                List<Value> arguments = invokeExpr.getArgs();
+                Value base = invokeExpr instanceof InstanceInvokeExpr ? ((InstanceInvokeExpr) invokeExpr).getBase() : null;
+                // Arguments holding a sensible value, or an object with a sensible path, are sensible in the callee
+                return source -> {
+                    if (!source.isSensible()) {
+                        return Collections.emptySet();
+                    }
+                    Set<TaintFact> targets = new HashSet<>();
+                    for (int i = 0; i < arguments.size() && i < destinationMethod.getParameterCount(); i++) {
+                        if (source.isReachableFrom(arguments.get(i))) {
+                            targets.add(TaintFact.sensible(calleeBody.getParameterLocal(i)));
+                        }
+                    }
+                    if (source.isReachableFrom(base) && !destinationMethod.isStatic()) {
+                        targets.add(TaintFact.sensible(calleeBody.getThisLocal()));
+                    }
+                    return targets;
+                };
+            }
+
+            @Override
+            public FlowFunction<TaintFact> getReturnFlowFunction(Unit callSite, SootMethod calleeMethod, Unit exitStmt,
+                                                                 Unit returnSite) {
+                Local returned = exitStmt instanceof ReturnStmt && ((ReturnStmt) exitStmt).getOp() instanceof Local
+                        ? (Local) ((ReturnStmt) exitStmt).getOp() : null;
+                TaintFact assignee = callSite instanceof AssignStmt ? assigneeOf(((AssignStmt) callSite).getLeftOp()) : null;
+                boolean reportsLeaks = callSite instanceof InvokeStmt;
+                return source -> {
+                    if (source.isLeak()) {
+                        return reportsLeaks ? Collections.singleton(TaintFact.leakAt(callSite)) : Collections.emptySet();
+                    }
+                    if (source.isSensible() && returned != null && source.isReachableFrom(returned) && assignee != null) {
+                        return Collections.singleton(assignee);
+                    }
+                    return Collections.emptySet();
+                };
+            }
+
+            @Override
+            public FlowFunction<TaintFact> getCallToReturnFlowFunction(Unit callSite, Unit returnSite) {
+                Stmt stmt = (Stmt) callSite;
+                InvokeExpr invokeExpr = stmt.getInvokeExpr();
+                List<Value> arguments = invokeExpr.getArgs();
+
+                if (stmt instanceof InvokeStmt && StatementVisitor.isSensibilityMarker(invokeExpr.getMethodRef())) {
+                    Local marked = (Local) arguments.get(0);
+                    return source -> source.equals(zeroValue())
+                            ? setOf(source, TaintFact.sensible(marked))
+                            : Collections.singleton(source);
+                }
+                if (stmt instanceof InvokeStmt && StatementVisitor.isSanitizer(invokeExpr.getMethodRef())) {
+                    // Every path reachable from the sanitized local is clean too
+                    Local sanitized = baseOf(arguments.get(0));
+                    return source -> source.isSensible() && sanitized != null && source.isReachableFrom(sanitized)
+                            ? Collections.emptySet()
+                            : Collections.singleton(source);
+                }
+                if (stmt instanceof InvokeStmt && StatementVisitor.isOffendingMethod(invokeExpr)) {
+                    Set<Value> leaked = new HashSet<>();
+                    for (int i = 0; i < arguments.size(); i++) {
+                        if (StatementVisitor.leaksArgument(invokeExpr, i)) {
+                            leaked.add(arguments.get(i));
+                        }
+                    }
+                    return source -> source.isSensible() && source.getLocal() != null && leaked.contains(source.getLocal())
+                            ? setOf(source, TaintFact.leakAt(callSite))
+                            : Collections.singleton(source);
+                }
+
+                // Modeled callees follow their model. Other called methods without a body return a sensible value if
+                // an argument or the receiver is sensible
+                Collection<SootMethod> callees = interproceduralCFG().getCalleesOfCallAt(callSite);
+                int modelFlags = modelFlagsOf(callees);
+                TaintFact assignee = stmt instanceof AssignStmt ? assigneeOf(((AssignStmt) stmt).getLeftOp()) : null;
+                boolean returnsValue = assignee != null && !(invokeExpr.getMethodRef().getReturnType() instanceof VoidType);
+                boolean propagates = returnsValue
+                        && (ModelKind.PROPAGATE.in(modelFlags) || hasUnmodeledCalleeWithoutBody(callees));
+                boolean generates = returnsValue && ModelKind.SOURCE.in(modelFlags);
+                boolean leaks = stmt instanceof InvokeStmt && ModelKind.SINK.in(modelFlags);
+                if (!propagates && !generates && !leaks) {
+                    return Identity.v();
+                }
+                Value base = invokeExpr instanceof InstanceInvokeExpr ? ((InstanceInvokeExpr) invokeExpr).getBase() : null;
+                return source -> {
+                    Set<TaintFact> targets = new HashSet<>(2);
+                    targets.add(source);
+                    if (generates && source.equals(zeroValue())) {
+                        targets.add(assignee);
+                    }
+                    if (source.isSensible() && source.getLocal() != null) {
+                        boolean isArgument = arguments.contains(source.getLocal());
+                        if (propagates && (isArgument || source.isReachableFrom(base))) {
+                            targets.add(assignee);
+                        }
+                        if (leaks && isArgument) {
+                            targets.add(TaintFact.leakAt(callSite));
+                        }
+                    }
+                    return targets;
+                };
+            }
+        };
+    }
+
+    /**
+     * Standalone marker, sanitizer and offending method invocations are modeled at the call site, without entering
+     * the callee.
+     */
+    private static boolean isHandledAtCallSite(Stmt stmt) {
+        if (!(stmt instanceof InvokeStmt)) {
+            return false;
+        }
+        InvokeExpr invokeExpr = stmt.getInvokeExpr();
+        return StatementVisitor.isSensibilityMarker(invokeExpr.getMethodRef())
+                || StatementVisitor.isSanitizer(invokeExpr.getMethodRef())
+                || StatementVisitor.isOffendingMethod(invokeExpr);
+    }
+
+    private static boolean hasUnmodeledCalleeWithoutBody(Collection<SootMethod> callees) {
+        return callees.stream().anyMatch(callee -> !BodyProvider.shared().hasBody(callee) && !LibraryModels.shared().isModeled(callee));
+    }
+
+    /**
+     * @return the model flags of every modeled callee, joined
+     */
+    private static int modelFlagsOf(Collection<SootMethod> callees) {
+        int flags = 0;
+        for (SootMethod callee : callees) {
+            flags |= LibraryModels.shared().flagsOf(callee);
+        }
+        return flags;
+    }
+
+    /**
+     * @return the fact of the value assigned to a local, field or array element holding a sensible value, or null for
+     * any other assignee
+     */
+    private static TaintFact assigneeOf(Value value) {
+        AccessPath path = AccessPathTable.shared().pathOf(value);
+        return path != null ? TaintFact.sensible(baseOf(value), path) : null;
+    }
+
+    /**
+     * @return the local a path of the value is reachable from, or null for static fields and any other value
+     */
+    private static Local baseOf(Value value) {
+        if (value instanceof InstanceFieldRef) {
+            value = ((InstanceFieldRef) value).getBase();
+        } else if (value instanceof ArrayRef) {
+            value = ((ArrayRef) value).getBase();
+        } else if (value instanceof CastExpr) {
+            value = ((CastExpr) value).getOp();
+        }
+        return value instanceof Local ? (Local) value : null;
+    }
+
+    private static Set<TaintFact> setOf(TaintFact first, TaintFact second) {
+        Set<TaintFact> facts = new HashSet<>(2);
+        facts.add(first);
+        facts.add(second);
+        return facts;
+    }
+}
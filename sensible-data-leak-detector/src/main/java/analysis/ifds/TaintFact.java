@@ -0,0 +1,124 @@
+package analysis.ifds;
+
+import analysis.paths.AccessPath;
+import analysis.paths.AccessPathTable;
+import soot.Local;
+import soot.Unit;
+import soot.Value;
+
+import java.util.Objects;
+
+/**
+ * Data-flow fact of the {@link SensibleDataTaintProblem}. A fact is either the IFDS zero value, an {@link AccessPath}
+ * holding a sensible value, or the record of a leak produced by some statement of the method the fact flows through.
+ * <p>
+ * Paths are a local, or a field or array element reachable from it, or a static field, interned and k-limited by the
+ * shared {@link AccessPathTable}, like the ones the dense analysis tracks. A path holding a sensible value makes every
+ * path extending it sensible too.
+ * <p>
+ * Leak facts let a leak inside a called method be attributed to the call site, only in the calling contexts that
+ * actually make the callee leak.
+ */
+public final class TaintFact {
+
+    private static final TaintFact ZERO = new TaintFact(null, null, null);
+
+    private final Local local;
+    private final AccessPath path;
+    private final Unit leakingUnit;
+
+    private TaintFact(Local local, AccessPath path, Unit leakingUnit) {
+        this.local = local;
+        this.path = path;
+        this.leakingUnit = leakingUnit;
+    }
+
+    public static TaintFact zero() {
+        return ZERO;
+    }
+
+    /**
+     * @param local a local
+     * @return the fact of the local holding a sensible value
+     */
+    public static TaintFact sensible(Local local) {
+        return new TaintFact(local, AccessPathTable.shared().base(local.getName()), null);
+    }
+
+    /**
+     * @param local the base local of the path, or null for static fields
+     * @param path  a path of the shared table
+     * @return the fact of the path holding a sensible value
+     */
+    public static TaintFact sensible(Local local, AccessPath path) {
+        return new TaintFact(local, path, null);
+    }
+
+    public static TaintFact leakAt(Unit unit) {
+        return new TaintFact(null, null, unit);
+    }
+
+    public boolean isSensible() {
+        return path != null;
+    }
+
+    public boolean isLeak() {
+        return leakingUnit != null;
+    }
+
+    /**
+     * @param value a value
+     * @return whether this fact is the value of the given local, or of a path reachable from it
+     */
+    public boolean isReachableFrom(Value value) {
+        return local != null && local == value;
+    }
+
+    /**
+     * @return the base local of the sensible path, or null if this is not a path fact, or a static field one
+     */
+    public Local getLocal() {
+        return local;
+    }
+
+    /**
+     * @return the sensible path, or null if this is not a path fact
+     */
+    public AccessPath getPath() {
+        return path;
+    }
+
+    /**
+     * @return the leaking unit, or null if this is not a leak fact
+     */
+    public Unit getLeakingUnit() {
+        return leakingUnit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TaintFact)) {
+            return false;
+        }
+        TaintFact other = (TaintFact) o;
+        // Paths are interned, so they are compared by identity
+        return local == other.local && path == other.path && leakingUnit == other.leakingUnit;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(local), System.identityHashCode(path),
+                System.identityHashCode(leakingUnit));
+    }
+
+    @Override
+    public String toString() {
+        if (isSensible()) {
+            return "sensible(" + path + ")";
+        }
+        return isLeak() ? "leakAt(" + leakingUnit + ")" : "zero";
+    }
+}
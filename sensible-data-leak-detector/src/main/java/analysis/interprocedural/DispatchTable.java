@@ -0,0 +1,102 @@
+package analysis.interprocedural;
+
+import analysis.pointsto.HeapSet;
+import analysis.pointsto.PointsToIndex;
+import org.slf4j.Logger;
+import soot.FastHierarchy;
+import soot.Local;
+import soot.Scene;
+import soot.SootMethod;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InterfaceInvokeExpr;
+import soot.jimple.InvokeExpr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Call site dispatch table for a points-to result. The targets of each invocation are resolved once, and reused by
+ * every fixpoint iteration and calling context analyzing it.
+ * <p>
+ * Interface invocations are dispatched through {@link FastHierarchy} on the class of each heap object their base
+ * might point to, so inherited implementations are found and repeated targets collapse. When nothing is known about
+ * the base, the class hierarchy answer for the called method is used instead, and cached per method. Any other
+ * invocation resolves to its declared method.
+ */
+public class DispatchTable {
+
+    private static final Logger LOGGER = getLogger(DispatchTable.class);
+
+    private final PointsToIndex pointsTo;
+    private final FastHierarchy hierarchy;
+    private final Map<InvokeExpr, List<SootMethod>> targetsByCallSite = new ConcurrentHashMap<>();
+    private final Map<SootMethod, List<SootMethod>> hierarchyTargets = new ConcurrentHashMap<>();
+    private final AtomicLong hierarchyFallbacks = new AtomicLong();
+
+    /**
+     * Creates an empty dispatch table. Each index keeps its own, so use {@link PointsToIndex#getDispatchTable()} to
+     * share it.
+     *
+     * @param pointsTo the points-to index
+     */
+    public DispatchTable(PointsToIndex pointsTo) {
+        this.pointsTo = pointsTo;
+        this.hierarchy = Scene.v().getOrMakeFastHierarchy();
+    }
+
+    /**
+     * @param invokeExpr the invocation
+     * @param inMethod   the method containing the invocation
+     * @return the distinct methods that might be called by the invocation
+     */
+    public List<SootMethod> targetsOf(InvokeExpr invokeExpr, SootMethod inMethod) {
+        if (!(invokeExpr instanceof InterfaceInvokeExpr)) {
+            return Collections.singletonList(invokeExpr.getMethod());
+        }
+        List<SootMethod> targets = targetsByCallSite.get(invokeExpr);
+        if (targets == null) {
+            targets = resolve((InstanceInvokeExpr) invokeExpr, inMethod);
+            targetsByCallSite.put(invokeExpr, targets);
+        }
+        return targets;
+    }
+
+    /**
+     * @return the amount of call sites resolved with the class hierarchy, since points-to knew nothing of their base
+     */
+    public long getHierarchyFallbacks() {
+        return hierarchyFallbacks.get();
+    }
+
+    private List<SootMethod> resolve(InstanceInvokeExpr invokeExpr, SootMethod inMethod) {
+        SootMethod calledMethod = invokeExpr.getMethod();
+        // Assuming that the base will be a local
+        HeapSet basePointsTo = pointsTo.pointsTo(inMethod, (Local) invokeExpr.getBase());
+        if (basePointsTo.isEmpty()) {
+            hierarchyFallbacks.incrementAndGet();
+            LOGGER.debug("Empty points-to set in call {}, resolving it with the class hierarchy", invokeExpr);
+            return hierarchyTargets.computeIfAbsent(calledMethod, this::resolveWithHierarchy);
+        }
+        Set<SootMethod> targets = new LinkedHashSet<>();
+        basePointsTo.forEach(heapObject -> {
+            SootMethod target = hierarchy.resolveConcreteDispatch(pointsTo.classOf(heapObject), calledMethod);
+            if (target != null) {
+                targets.add(target);
+            }
+        });
+        return Collections.unmodifiableList(new ArrayList<>(targets));
+    }
+
+    private List<SootMethod> resolveWithHierarchy(SootMethod calledMethod) {
+        Set<SootMethod> targets = hierarchy.resolveAbstractDispatch(calledMethod.getDeclaringClass(), calledMethod);
+        return Collections.unmodifiableList(new ArrayList<>(targets));
+    }
+}
@@ -0,0 +1,69 @@
+package analysis.interprocedural;
+
+import analysis.InvocationVisitor;
+import analysis.bodies.BodyProvider;
+import analysis.models.LibraryModels;
+import analysis.pointsto.PointsToIndex;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Call graph between analyzable methods (the ones with a body, as given by {@link BodyProvider}). Call sites are resolved the same way
+ * {@link InvocationVisitor} does, and each method callees are computed on first request. It can be queried from
+ * several threads.
+ */
+public class MethodCallGraph {
+
+    private final PointsToIndex pointsTo;
+    private final Map<SootMethod, List<SootMethod>> callees = new ConcurrentHashMap<>();
+
+    public MethodCallGraph(PointsToIndex pointsTo) {
+        this.pointsTo = pointsTo;
+    }
+
+    public PointsToIndex getPointsTo() {
+        return pointsTo;
+    }
+
+    /**
+     * @param method the caller
+     * @return the distinct methods with a body called from {@code method}
+     */
+    public List<SootMethod> calleesOf(SootMethod method) {
+        List<SootMethod> result = callees.get(method);
+        if (result == null) {
+            result = resolveCallees(method);
+            callees.put(method, result);
+        }
+        return result;
+    }
+
+    private List<SootMethod> resolveCallees(SootMethod method) {
+        if (!BodyProvider.shared().hasBody(method)) {
+            return Collections.emptyList();
+        }
+        Set<SootMethod> targets = new LinkedHashSet<>();
+        for (Unit unit : method.getActiveBody().getUnits()) {
+            Stmt stmt = (Stmt) unit;
+            if (!stmt.containsInvokeExpr()) {
+                continue;
+            }
+            for (SootMethod target : InvocationVisitor.resolveTargets(stmt.getInvokeExpr(), method, pointsTo)) {
+                // Modeled library methods are never analyzed, even if their body is loaded
+                if (BodyProvider.shared().hasBody(target) && !LibraryModels.shared().isModeled(target)) {
+                    targets.add(target);
+                }
+            }
+        }
+        return new ArrayList<>(targets);
+    }
+}
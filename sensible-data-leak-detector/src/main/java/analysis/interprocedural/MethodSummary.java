@@ -0,0 +1,114 @@
+package analysis.interprocedural;
+
+import analysis.InvocationVisitor.InvocationResult;
+import analysis.abstraction.SensibilityLattice;
+
+/**
+ * Context independent summary of a method, describing which of its inputs make it return a sensible value, or leak
+ * one. Inputs are numbered as slots: slot 0 is the receiver, and slot {@code i + 1} is the parameter {@code i}.
+ * Parameters past the 63rd share the last slot.
+ */
+public class MethodSummary {
+
+    private static final int LAST_SLOT = Long.SIZE - 1;
+
+    private static final MethodSummary BOTTOM = new MethodSummary(false, false, 0L, 0L);
+
+    private final boolean alwaysReturnsSensibleValue;
+    private final boolean alwaysLeaks;
+    private final long slotsReturned;
+    private final long slotsLeaked;
+
+    public MethodSummary(boolean alwaysReturnsSensibleValue, boolean alwaysLeaks, long slotsReturned, long slotsLeaked) {
+        this.alwaysReturnsSensibleValue = alwaysReturnsSensibleValue;
+        this.alwaysLeaks = alwaysLeaks;
+        this.slotsReturned = slotsReturned;
+        this.slotsLeaked = slotsLeaked;
+    }
+
+    /**
+     * @return the summary of a method that neither leaks nor returns a sensible value
+     */
+    public static MethodSummary bottom() {
+        return BOTTOM;
+    }
+
+    public static int receiverSlot() {
+        return 0;
+    }
+
+    public static int parameterSlot(int parameter) {
+        return Math.min(parameter + 1, LAST_SLOT);
+    }
+
+    /**
+     * Instantiates the summary for a call site.
+     *
+     * @param receiver  the receiver sensibility, or bottom for static invocations
+     * @param arguments the sensibility of each argument
+     * @return the result of the invocation
+     */
+    public InvocationResult apply(SensibilityLattice receiver, SensibilityLattice[] arguments) {
+        long sensibleSlots = SensibilityLattice.isSensible(receiver) ? 1L << receiverSlot() : 0L;
+        for (int i = 0; i < arguments.length; i++) {
+            if (SensibilityLattice.isSensible(arguments[i])) {
+                sensibleSlots |= 1L << parameterSlot(i);
+            }
+        }
+        return new InvocationResult(
+                alwaysLeaks || (slotsLeaked & sensibleSlots) != 0,
+                alwaysReturnsSensibleValue || (slotsReturned & sensibleSlots) != 0);
+    }
+
+    public MethodSummary join(MethodSummary other) {
+        return new MethodSummary(
+                alwaysReturnsSensibleValue || other.alwaysReturnsSensibleValue,
+                alwaysLeaks || other.alwaysLeaks,
+                slotsReturned | other.slotsReturned,
+                slotsLeaked | other.slotsLeaked);
+    }
+
+    public boolean isAlwaysReturningSensibleValue() {
+        return alwaysReturnsSensibleValue;
+    }
+
+    public boolean isAlwaysLeaking() {
+        return alwaysLeaks;
+    }
+
+    public long getSlotsReturned() {
+        return slotsReturned;
+    }
+
+    public long getSlotsLeaked() {
+        return slotsLeaked;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MethodSummary)) {
+            return false;
+        }
+        MethodSummary other = (MethodSummary) o;
+        return alwaysReturnsSensibleValue == other.alwaysReturnsSensibleValue
+                && alwaysLeaks == other.alwaysLeaks
+                && slotsReturned == other.slotsReturned
+                && slotsLeaked == other.slotsLeaked;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (alwaysReturnsSensibleValue ? 1 : 0) + (alwaysLeaks ? 2 : 0);
+        result = 31 * result + Long.hashCode(slotsReturned);
+        return 31 * result + Long.hashCode(slotsLeaked);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("returns: %s/%s, leaks: %s/%s", alwaysReturnsSensibleValue,
+                Long.toBinaryString(slotsReturned), alwaysLeaks, Long.toBinaryString(slotsLeaked));
+    }
+}
@@ -0,0 +1,186 @@
+package analysis.interprocedural;
+
+import analysis.InvocationVisitor;
+import analysis.bodies.BodyProvider;
+import analysis.models.LibraryModels;
+import analysis.models.ModelKind;
+import analysis.pointsto.PointsToIndex;
+import analysis.rules.MethodRules;
+import analysis.rules.RuleMatcher;
+import dataflow.utils.AnalysisPhase;
+import dataflow.utils.PhaseMetrics;
+import org.slf4j.Logger;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Pre-pass over the call graph, telling which bodies can report a leak at all. A body analyzed on its own starts with
+ * no sensible parameters, so it can only leak if it, or some method it transitively calls, calls a sink, and it, or
+ * some method it transitively calls, sees a source. Both sets are found walking the call graph backwards from the
+ * methods calling a sink or a source directly, as matched by the rules or the library models.
+ * <p>
+ * Bodies outside the intersection are pruned: nothing is reported for them, without analyzing them. Calls to them
+ * from other bodies are still analyzed as usual, since they might get sensible arguments.
+ */
+public class SinkReachability {
+
+    private static final Logger LOGGER = getLogger(SinkReachability.class);
+    private static final Map<PointsToIndex, SinkReachability> APPLICATION = new WeakHashMap<>();
+    private static final AtomicLong PRUNED = new AtomicLong();
+    private static final AtomicLong KEPT = new AtomicLong();
+
+    private final Set<SootMethod> methods;
+    private final Set<SootMethod> reachingSink = new HashSet<>();
+    private final Set<SootMethod> seeingSource = new HashSet<>();
+
+    /**
+     * @param roots    the analyzed methods. Every method they transitively call is walked too
+     * @param pointsTo the points-to index used to resolve calls
+     */
+    public SinkReachability(Collection<SootMethod> roots, PointsToIndex pointsTo) {
+        long start = System.currentTimeMillis();
+        methods = new LinkedHashSet<>();
+        try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.PRUNING)) {
+            MethodCallGraph callGraph = new MethodCallGraph(pointsTo);
+            Map<SootMethod, List<SootMethod>> callers = new HashMap<>();
+            Deque<SootMethod> pending = new ArrayDeque<>(roots);
+            while (!pending.isEmpty()) {
+                SootMethod method = pending.pop();
+                if (!methods.add(method) || !BodyProvider.shared().hasBody(method)) {
+                    continue;
+                }
+                for (SootMethod callee : callGraph.calleesOf(method)) {
+                    callers.computeIfAbsent(callee, caller -> new ArrayList<>()).add(method);
+                    pending.push(callee);
+                }
+                scanCallSites(method, pointsTo);
+            }
+            propagateToCallers(reachingSink, callers);
+            propagateToCallers(seeingSource, callers);
+        }
+        LOGGER.info("{} methods walked in {} ms, {} reaching a sink, {} seeing a source", methods.size(),
+                System.currentTimeMillis() - start, reachingSink.size(), seeingSource.size());
+    }
+
+    /**
+     * Gets the reachability of every application method with a body, computing it on first request.
+     *
+     * @param pointsTo the points-to index used to resolve calls
+     * @return the reachability
+     */
+    public static SinkReachability ofApplication(PointsToIndex pointsTo) {
+        synchronized (APPLICATION) {
+            return APPLICATION.computeIfAbsent(pointsTo, ignored -> {
+                List<SootMethod> roots = new ArrayList<>();
+                for (SootClass sootClass : new ArrayList<>(Scene.v().getApplicationClasses())) {
+                    for (SootMethod method : new ArrayList<>(sootClass.getMethods())) {
+                        if (method.isConcrete()) {
+                            roots.add(method);
+                        }
+                    }
+                }
+                return new SinkReachability(roots, pointsTo);
+            });
+        }
+    }
+
+    /**
+     * @param method an analyzed method
+     * @return whether the body of the method might report a leak. Methods that were not walked might
+     */
+    public boolean canLeak(SootMethod method) {
+        return !methods.contains(method) || reachingSink.contains(method) && seeingSource.contains(method);
+    }
+
+    /**
+     * Checks whether the body of a method can be skipped, counting it as pruned if so.
+     *
+     * @param method an analyzed method
+     * @return whether the body can't report any leak
+     */
+    public boolean prune(SootMethod method) {
+        if (canLeak(method)) {
+            KEPT.incrementAndGet();
+            return false;
+        }
+        PRUNED.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return the amount of bodies skipped in this run, since they can't report any leak
+     */
+    public static long getPruned() {
+        return PRUNED.get();
+    }
+
+    /**
+     * @return the amount of bodies analyzed in this run after checking they might leak
+     */
+    public static long getKept() {
+        return KEPT.get();
+    }
+
+    private void scanCallSites(SootMethod method, PointsToIndex pointsTo) {
+        for (Unit unit : method.getActiveBody().getUnits()) {
+            Stmt stmt = (Stmt) unit;
+            if (!stmt.containsInvokeExpr()) {
+                continue;
+            }
+            InvokeExpr invokeExpr = stmt.getInvokeExpr();
+            MethodRules rules = RuleMatcher.shared().rulesOf(invokeExpr.getMethodRef());
+            if (rules.isSink()) {
+                reachingSink.add(method);
+            }
+            if (rules.isSource()) {
+                seeingSource.add(method);
+            }
+            for (SootMethod target : InvocationVisitor.resolveTargets(invokeExpr, method, pointsTo)) {
+                int modelFlags = LibraryModels.shared().flagsOf(target);
+                if (ModelKind.SINK.in(modelFlags)) {
+                    reachingSink.add(method);
+                }
+                if (ModelKind.SOURCE.in(modelFlags)) {
+                    seeingSource.add(method);
+                }
+            }
+        }
+    }
+
+    private static void propagateToCallers(Set<SootMethod> marked, Map<SootMethod, List<SootMethod>> callers) {
+        Deque<SootMethod> pending = new ArrayDeque<>(marked);
+        while (!pending.isEmpty()) {
+            for (SootMethod caller : callers.getOrDefault(pending.pop(), Collections.emptyList())) {
+                if (marked.add(caller)) {
+                    pending.push(caller);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d methods, %d reaching a sink, %d seeing a source", methods.size(),
+                reachingSink.size(), seeingSource.size());
+    }
+}
@@ -0,0 +1,575 @@
+package analysis.interprocedural;
+
+import analysis.InvocationVisitor;
+import analysis.LeakAnalysisResult;
+import analysis.SensibleDataAnalysis;
+import analysis.bodies.BodyProvider;
+import analysis.models.LibraryModels;
+import analysis.rules.RuleMatcher;
+import analysis.abstraction.SensibilityLattice;
+import analysis.paths.AccessPathTable;
+import analysis.pointsto.PointsToIndex;
+import dataflow.utils.AnalysisBudget;
+import org.slf4j.Logger;
+import soot.Body;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static analysis.abstraction.SensibilityLattice.HIGH;
+import static analysis.abstraction.SensibilityLattice.getBottom;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Bottom-up interprocedural engine. The strongly connected components of the {@link MethodCallGraph} reachable from
+ * a requested method are computed, and summarized in reverse topological order, so every called method outside a
+ * component is already summarized when the component is analyzed. Components with recursion are iterated until
+ * their summaries reach a fixpoint.
+ * <p>
+ * Each method is analyzed once with no sensible inputs, and once per input slot marked as {@link SensibilityLattice#HIGH},
+ * producing a {@link MethodSummary} that any call site can instantiate. Summaries are kept for the whole run, apart for
+ * each points-to result, since they are only valid for the one resolving their calls.
+ * <p>
+ * Summaries are published once their component is done, so they can be read from any thread without locking. Every
+ * member of a component is published with the same immutable {@link Published} results, so a member summary is never
+ * seen without its leaking units, nor with the ones of another iteration. The summaries of a component being iterated
+ * are only visible to the thread iterating it. Components are found without
+ * locking, and each one is summarized by a single thread at a time, so threads only wait for each other when they need
+ * the same component.
+ * <p>
+ * With a {@link SummaryStore}, a component whose members and callees did not change since the previous run takes the
+ * summaries stored by it, instead of being analyzed again.
+ */
+public class SummaryEngine {
+
+    private static final Logger LOGGER = getLogger(SummaryEngine.class);
+    private static final SummaryEngine SHARED = new SummaryEngine();
+
+    private final Map<PointsToIndex, Scope> scopes = new ConcurrentHashMap<>();
+    private volatile SummaryStore store;
+
+    private final AtomicInteger components = new AtomicInteger();
+    private final AtomicInteger recursiveComponents = new AtomicInteger();
+    private final AtomicInteger bodyAnalyses = new AtomicInteger();
+
+    /**
+     * @return the engine shared by every analysis in this run
+     */
+    public static SummaryEngine shared() {
+        return SHARED;
+    }
+
+    /**
+     * Summaries computed with a single points-to result, and the call graph they were computed over.
+     */
+    private static final class Scope {
+        private final MethodCallGraph callGraph;
+        private final Map<SootMethod, Published> published = new ConcurrentHashMap<>();
+        private final ThreadLocal<Map<SootMethod, MethodSummary>> componentInProgress = new ThreadLocal<>();
+
+        /**
+         * Store keys of every summarized method.
+         */
+        private final Map<SootMethod, String> storeKeys = new ConcurrentHashMap<>();
+
+        /**
+         * Lock of each component, by the least signature of its members, which is the same whatever method the
+         * component was reached from.
+         */
+        private final Map<String, Object> componentLocks = new ConcurrentHashMap<>();
+
+        private Scope(PointsToIndex pointsTo) {
+            this.callGraph = new MethodCallGraph(pointsTo);
+        }
+
+        private boolean isSummarized(SootMethod method) {
+            return published.containsKey(method);
+        }
+
+        /**
+         * @return the published summary of the method, or null if it was not summarized yet
+         */
+        private MethodSummary summaryOf(SootMethod method) {
+            Published results = published.get(method);
+            return results != null ? results.summaries.get(method) : null;
+        }
+
+        /**
+         * Publishes the results of a whole component, once it's done.
+         */
+        private void publish(Map<SootMethod, MethodSummary> summaries, Map<SootMethod, BitSet> leakingUnits) {
+            Published results = new Published(summaries, leakingUnits);
+            for (SootMethod member : summaries.keySet()) {
+                published.put(member, results);
+            }
+        }
+    }
+
+    /**
+     * Summaries of the members of a component, and their units leaking with no sensible inputs, by position in the
+     * body. Never modified once published.
+     */
+    private static final class Published {
+        private final Map<SootMethod, MethodSummary> summaries;
+        private final Map<SootMethod, BitSet> leakingUnits;
+
+        private Published(Map<SootMethod, MethodSummary> summaries, Map<SootMethod, BitSet> leakingUnits) {
+            this.summaries = Collections.unmodifiableMap(new HashMap<>(summaries));
+            this.leakingUnits = Collections.unmodifiableMap(new HashMap<>(leakingUnits));
+        }
+    }
+
+    private Scope scopeOf(PointsToIndex pointsTo) {
+        return scopes.computeIfAbsent(pointsTo, Scope::new);
+    }
+
+    /**
+     * Gets the summary of a method, summarizing it and every method reachable from it if needed. While a component is
+     * being iterated, the summaries of its members are the ones of the last iteration.
+     *
+     * @param method   a method with an active body
+     * @param pointsTo the points-to result used to resolve interface calls
+     * @return the method summary
+     */
+    public MethodSummary summaryOf(SootMethod method, PointsToIndex pointsTo) {
+        Scope scope = scopeOf(pointsTo);
+        MethodSummary summary = scope.summaryOf(method);
+        if (summary != null) {
+            return summary;
+        }
+        Map<SootMethod, MethodSummary> inProgress = scope.componentInProgress.get();
+        if (inProgress != null && inProgress.containsKey(method)) {
+            return inProgress.get(method);
+        }
+        forEachComponentReachableFrom(Collections.singleton(method), scope,
+                component -> summarizeOnce(component, scope));
+        return scope.summaryOf(method);
+    }
+
+    /**
+     * Gets the results of analyzing a body with no sensible inputs, from the summary of its method. The body is only
+     * analyzed if the method was not summarized yet, and its summary is not stored. Methods that can't be summarized,
+     * like the ones whose body the {@link BodyProvider} doesn't provide, have no leaks.
+     *
+     * @param body     the body
+     * @param pointsTo the points-to result used to resolve interface calls
+     * @return the leaks of the body
+     */
+    public LeakAnalysisResult resultOf(Body body, PointsToIndex pointsTo) {
+        SootMethod method = body.getMethod();
+        summaryOf(method, pointsTo);
+        Published results = scopeOf(pointsTo).published.get(method);
+        MethodSummary summary = results != null ? results.summaries.get(method) : MethodSummary.bottom();
+        BitSet leakingPositions = results != null ? results.leakingUnits.get(method) : new BitSet();
+        Set<Unit> leaking = new HashSet<>();
+        int position = 0;
+        for (Unit unit : body.getUnits()) {
+            if (leakingPositions.get(position++)) {
+                leaking.add(unit);
+            }
+        }
+        return new LeakAnalysisResult() {
+            @Override
+            public boolean possibleLeakInUnit(Unit unit) {
+                return leaking.contains(unit);
+            }
+
+            @Override
+            public boolean leaksSensibleValue() {
+                return summary.isAlwaysLeaking();
+            }
+
+            @Override
+            public boolean isReturningSensibleValue() {
+                return summary.isAlwaysReturningSensibleValue();
+            }
+        };
+    }
+
+    /**
+     * Uses a store to reuse the summaries of a previous run, and to record the ones of this run. Only components
+     * summarized afterwards are looked up in the store.
+     *
+     * @param file the summary store file
+     */
+    public synchronized void useStore(Path file) {
+        if (store == null || !store.getFile().equals(file)) {
+            store = SummaryStore.open(file);
+        }
+    }
+
+    /**
+     * @return the summary store in use, or null if there is none
+     */
+    public SummaryStore getStore() {
+        return store;
+    }
+
+    /**
+     * Summarizes every method reachable from {@code methods}, analyzing independent components in parallel. A
+     * component is scheduled as soon as all the components it calls are summarized.
+     *
+     * @param methods  the methods to summarize
+     * @param pointsTo the points-to result used to resolve interface calls
+     * @param pool     the pool running the component analyses
+     */
+    public void summarizeAll(Collection<SootMethod> methods, PointsToIndex pointsTo, ForkJoinPool pool)
+            throws InterruptedException {
+        Scope scope = scopeOf(pointsTo);
+        MethodCallGraph callGraph = scope.callGraph;
+        List<List<SootMethod>> pending = new ArrayList<>();
+        forEachComponentReachableFrom(methods, scope, pending::add);
+
+        // Components are found callees first, so every dependency of a component has a lower index
+        Map<SootMethod, Integer> componentOf = new HashMap<>();
+        for (int i = 0; i < pending.size(); i++) {
+            for (SootMethod member : pending.get(i)) {
+                componentOf.put(member, i);
+            }
+        }
+        List<List<Integer>> dependents = new ArrayList<>();
+        AtomicInteger[] missingCallees = new AtomicInteger[pending.size()];
+        for (int i = 0; i < pending.size(); i++) {
+            dependents.add(new ArrayList<>());
+            missingCallees[i] = new AtomicInteger();
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            Set<Integer> callees = new HashSet<>();
+            for (SootMethod member : pending.get(i)) {
+                for (SootMethod callee : callGraph.calleesOf(member)) {
+                    Integer calleeComponent = componentOf.get(callee);
+                    if (calleeComponent != null && calleeComponent != i && callees.add(calleeComponent)) {
+                        dependents.get(calleeComponent).add(i);
+                    }
+                }
+            }
+            missingCallees[i].set(callees.size());
+        }
+
+        CountDownLatch done = new CountDownLatch(pending.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int i = 0; i < pending.size(); i++) {
+            if (missingCallees[i].get() == 0) {
+                schedule(i, pending, dependents, missingCallees, scope, pool, done, failure);
+            }
+        }
+        done.await();
+        Throwable failed = failure.get();
+        if (failed instanceof RuntimeException) {
+            throw (RuntimeException) failed;
+        } else if (failed instanceof Error) {
+            throw (Error) failed;
+        } else if (failed != null) {
+            throw new IllegalStateException("Failed to summarize a component", failed);
+        }
+    }
+
+    private void schedule(int component, List<List<SootMethod>> pending, List<List<Integer>> dependents,
+                          AtomicInteger[] missingCallees, Scope scope, ForkJoinPool pool,
+                          CountDownLatch done, AtomicReference<Throwable> failure) {
+        pool.execute(() -> {
+            if (failure.get() != null) {
+                return;
+            }
+            try {
+                summarizeOnce(pending.get(component), scope);
+                for (int dependent : dependents.get(component)) {
+                    if (missingCallees[dependent].decrementAndGet() == 0) {
+                        schedule(dependent, pending, dependents, missingCallees, scope, pool, done, failure);
+                    }
+                }
+            } catch (Throwable t) {
+                // Errors too, like running out of memory, or the caller would wait forever. Dependents will never be
+                // scheduled, so release everyone waiting for them
+                failure.compareAndSet(null, t);
+                while (done.getCount() > 0) {
+                    done.countDown();
+                }
+                return;
+            }
+            done.countDown();
+        });
+    }
+
+    public synchronized void clear() {
+        scopes.clear();
+        store = null;
+        components.set(0);
+        recursiveComponents.set(0);
+        bodyAnalyses.set(0);
+    }
+
+    /**
+     * Iterative Tarjan over the not yet summarized methods reachable from {@code roots}. Components are completed in
+     * reverse topological order, which is the order they have to be summarized in.
+     */
+    private void forEachComponentReachableFrom(Collection<SootMethod> roots, Scope scope,
+                                               Consumer<List<SootMethod>> onComponent) {
+        MethodCallGraph callGraph = scope.callGraph;
+        Map<SootMethod, Integer> index = new HashMap<>();
+        Map<SootMethod, Integer> lowLink = new HashMap<>();
+        Deque<SootMethod> componentStack = new ArrayDeque<>();
+        Set<SootMethod> onComponentStack = new HashSet<>();
+        Deque<Frame> callStack = new ArrayDeque<>();
+
+        for (SootMethod root : new LinkedHashSet<>(roots)) {
+            if (scope.isSummarized(root) || index.containsKey(root) || !BodyProvider.shared().hasBody(root)) {
+                continue;
+            }
+            discover(root, callGraph, index, lowLink, componentStack, onComponentStack, callStack);
+            while (!callStack.isEmpty()) {
+                Frame frame = callStack.peek();
+                if (frame.callees.hasNext()) {
+                    SootMethod callee = frame.callees.next();
+                    if (scope.isSummarized(callee)) {
+                        continue;
+                    }
+                    if (!index.containsKey(callee)) {
+                        discover(callee, callGraph, index, lowLink, componentStack, onComponentStack, callStack);
+                    } else if (onComponentStack.contains(callee)) {
+                        lowLink.put(frame.method, Math.min(lowLink.get(frame.method), index.get(callee)));
+                    }
+                    continue;
+                }
+
+                callStack.pop();
+                if (!callStack.isEmpty()) {
+                    SootMethod caller = callStack.peek().method;
+                    lowLink.put(caller, Math.min(lowLink.get(caller), lowLink.get(frame.method)));
+                }
+                if (lowLink.get(frame.method).equals(index.get(frame.method))) {
+                    List<SootMethod> component = new ArrayList<>();
+                    SootMethod member;
+                    do {
+                        member = componentStack.pop();
+                        onComponentStack.remove(member);
+                        component.add(member);
+                    } while (member != frame.method);
+                    onComponent.accept(component);
+                }
+            }
+        }
+    }
+
+    private void discover(SootMethod method, MethodCallGraph callGraph, Map<SootMethod, Integer> index,
+                          Map<SootMethod, Integer> lowLink, Deque<SootMethod> componentStack,
+                          Set<SootMethod> onComponentStack, Deque<Frame> callStack) {
+        index.put(method, index.size());
+        lowLink.put(method, index.get(method));
+        componentStack.push(method);
+        onComponentStack.add(method);
+        callStack.push(new Frame(method, callGraph.calleesOf(method).iterator()));
+    }
+
+    /**
+     * Summarizes a component, unless another thread did it while this one was waiting for the component lock.
+     */
+    private void summarizeOnce(List<SootMethod> component, Scope scope) {
+        String leader = component.stream().map(SootMethod::getSignature).min(String::compareTo).get();
+        synchronized (scope.componentLocks.computeIfAbsent(leader, ignored -> new Object())) {
+            if (!component.stream().allMatch(scope::isSummarized)) {
+                summarizeComponent(component, scope);
+            }
+        }
+    }
+
+    private void summarizeComponent(List<SootMethod> component, Scope scope) {
+        MethodCallGraph callGraph = scope.callGraph;
+        components.incrementAndGet();
+        boolean recursive = component.size() > 1 || callGraph.calleesOf(component.get(0)).contains(component.get(0));
+        if (recursive) {
+            recursiveComponents.incrementAndGet();
+        }
+
+        SummaryStore store = this.store;
+        Map<SootMethod, String> keys = store != null ? keysOf(component, scope) : null;
+        if (keys != null && restore(component, keys, store, scope)) {
+            return;
+        }
+
+        // Members start optimistically as bottom, and grow on each iteration
+        Map<SootMethod, MethodSummary> inProgress = new HashMap<>();
+        Map<SootMethod, BitSet> leaking = new HashMap<>();
+        for (SootMethod member : component) {
+            inProgress.put(member, MethodSummary.bottom());
+        }
+        Map<SootMethod, MethodSummary> enclosing = scope.componentInProgress.get();
+        scope.componentInProgress.set(inProgress);
+        try {
+            boolean changed;
+            do {
+                changed = false;
+                for (SootMethod member : component) {
+                    MethodSummary previous = inProgress.get(member);
+                    MethodSummary current = summarize(member, callGraph.getPointsTo(), leaking).join(previous);
+                    if (!current.equals(previous)) {
+                        inProgress.put(member, current);
+                        changed = true;
+                    }
+                }
+            } while (recursive && changed);
+        } finally {
+            scope.componentInProgress.set(enclosing);
+        }
+        // Summaries that fell back to top are not stored, so a run with a larger budget computes them again
+        if (keys != null && component.stream().noneMatch(
+                member -> AnalysisBudget.shared().isDegraded(member.getSignature()))) {
+            scope.storeKeys.putAll(keys);
+            for (SootMethod member : component) {
+                store.put(keys.get(member), new SummaryStore.Entry(inProgress.get(member), leaking.get(member)));
+            }
+        }
+        scope.publish(inProgress, leaking);
+    }
+
+    /**
+     * Publishes the stored summaries of a component, if every member has one.
+     */
+    private boolean restore(List<SootMethod> component, Map<SootMethod, String> keys, SummaryStore store,
+                            Scope scope) {
+        Map<SootMethod, SummaryStore.Entry> entries = new HashMap<>();
+        for (SootMethod member : component) {
+            SummaryStore.Entry entry = store.lookup(keys.get(member));
+            if (entry == null) {
+                return false;
+            }
+            entries.put(member, entry);
+        }
+        Map<SootMethod, MethodSummary> summaries = new HashMap<>();
+        Map<SootMethod, BitSet> leakingUnits = new HashMap<>();
+        entries.forEach((member, entry) -> {
+            summaries.put(member, entry.getSummary());
+            leakingUnits.put(member, entry.getLeakingUnits());
+        });
+        scope.storeKeys.putAll(keys);
+        scope.publish(summaries, leakingUnits);
+        LOGGER.debug("Reused stored summaries of {}", component);
+        return true;
+    }
+
+    /**
+     * Keys each member of a component by the bodies of the component, and the targets of every call in it: the key
+     * of called methods outside the component, or the signature of the ones without a body. Since callees are
+     * summarized first, their keys already cover their own callees.
+     *
+     * @return the keys of the members, or null if a callee was summarized without a key
+     */
+    private Map<SootMethod, String> keysOf(List<SootMethod> component, Scope scope) {
+        Set<String> memberDigests = new TreeSet<>();
+        for (SootMethod member : component) {
+            StringBuilder digest = new StringBuilder(SummaryStore.hashOf(member.getActiveBody()));
+            int position = 0;
+            for (Unit unit : member.getActiveBody().getUnits()) {
+                Stmt stmt = (Stmt) unit;
+                if (stmt.containsInvokeExpr()) {
+                    digest.append('\n').append(position);
+                    for (SootMethod target : InvocationVisitor.resolveTargets(stmt.getInvokeExpr(), member,
+                            scope.callGraph.getPointsTo())) {
+                        String targetKey;
+                        if (!BodyProvider.shared().hasBody(target) || component.contains(target)
+                                || LibraryModels.shared().isModeled(target)) {
+                            targetKey = target.getSignature();
+                        } else if ((targetKey = scope.storeKeys.get(target)) == null) {
+                            return null;
+                        }
+                        digest.append(' ').append(targetKey);
+                    }
+                }
+                position++;
+            }
+            memberDigests.add(SummaryStore.hashOf(digest));
+        }
+        // Models and rules decide what calls to library methods do, and the access path length what fields are told
+        // apart, so changing them invalidates every summary
+        memberDigests.add(Long.toHexString(LibraryModels.shared().getChecksum()));
+        memberDigests.add(Integer.toHexString(RuleMatcher.shared().getFingerprint()));
+        memberDigests.add("access-path-length:" + AccessPathTable.shared().getMaxLength());
+        String componentKey = SummaryStore.hashOf(String.join("\n", memberDigests));
+        Map<SootMethod, String> keys = new HashMap<>();
+        for (SootMethod member : component) {
+            keys.put(member, SummaryStore.hashOf(componentKey + '\n' + member.getSignature()));
+        }
+        return keys;
+    }
+
+    private MethodSummary summarize(SootMethod method, PointsToIndex pointsTo, Map<SootMethod, BitSet> leaking) {
+        // The same graph is used by every probe of this method
+        ExceptionalUnitGraph graph = SensibleDataAnalysis.graphFor(method.getActiveBody());
+
+        SensibleDataAnalysis withoutSensibleInputs = analyze(graph, Collections.emptyMap(), getBottom(), pointsTo);
+        boolean alwaysReturns = withoutSensibleInputs.isReturningSensibleValue();
+        boolean alwaysLeaks = withoutSensibleInputs.leaksSensibleValue();
+        BitSet leakingPositions = new BitSet();
+        int position = 0;
+        for (Unit unit : method.getActiveBody().getUnits()) {
+            leakingPositions.set(position++, withoutSensibleInputs.possibleLeakInUnit(unit));
+        }
+        leaking.put(method, leakingPositions);
+        long slotsReturned = 0L;
+        long slotsLeaked = 0L;
+
+        // Nothing else to learn from each input if the method already returns and leaks sensible values
+        if (!(alwaysReturns && alwaysLeaks)) {
+            if (!method.isStatic()) {
+                SensibleDataAnalysis probe = analyze(graph, Collections.emptyMap(), HIGH, pointsTo);
+                slotsReturned |= probe.isReturningSensibleValue() ? 1L << MethodSummary.receiverSlot() : 0L;
+                slotsLeaked |= probe.leaksSensibleValue() ? 1L << MethodSummary.receiverSlot() : 0L;
+            }
+            for (int i = 0; i < method.getParameterCount(); i++) {
+                SensibleDataAnalysis probe = analyze(graph, Collections.singletonMap(i, HIGH), getBottom(), pointsTo);
+                slotsReturned |= probe.isReturningSensibleValue() ? 1L << MethodSummary.parameterSlot(i) : 0L;
+                slotsLeaked |= probe.leaksSensibleValue() ? 1L << MethodSummary.parameterSlot(i) : 0L;
+            }
+        }
+
+        MethodSummary summary = new MethodSummary(alwaysReturns, alwaysLeaks, slotsReturned, slotsLeaked);
+        LOGGER.debug("Summarized {}: {}", method.getSignature(), summary);
+        return summary;
+    }
+
+    private SensibleDataAnalysis analyze(ExceptionalUnitGraph graph, Map<Integer, SensibilityLattice> params,
+                                         SensibilityLattice receiver, PointsToIndex pointsTo) {
+        bodyAnalyses.incrementAndGet();
+        return new SensibleDataAnalysis(graph, params, receiver, pointsTo, this);
+    }
+
+    @Override
+    public String toString() {
+        int summaries = scopes.values().stream().mapToInt(scope -> scope.published.size()).sum();
+        return String.format("%d summaries, %d components (%d recursive), %d body analyses",
+                summaries, components.get(), recursiveComponents.get(), bodyAnalyses.get());
+    }
+
+    private static class Frame {
+        private final SootMethod method;
+        private final Iterator<SootMethod> callees;
+
+        private Frame(SootMethod method, Iterator<SootMethod> callees) {
+            this.method = method;
+            this.callees = callees;
+        }
+    }
+}
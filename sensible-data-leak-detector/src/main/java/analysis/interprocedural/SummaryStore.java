@@ -0,0 +1,234 @@
+package analysis.interprocedural;
+
+import org.slf4j.Logger;
+import soot.Body;
+import soot.Unit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * On-disk store of method summaries, reused across runs. Each entry is keyed by a hash of the method body together
+ * with the keys of every method it might call, so changing a method invalidates its own entry and the entries of
+ * every method that transitively calls it, and nothing else.
+ * <p>
+ * Besides the {@link MethodSummary}, an entry keeps the units of the body that leak when it's analyzed with no
+ * sensible inputs, so the leaks of an unchanged body can be reported without analyzing it.
+ * <p>
+ * Only the entries used by a run are written back, so entries of deleted or changed methods don't pile up.
+ */
+public class SummaryStore {
+
+    private static final Logger LOGGER = getLogger(SummaryStore.class);
+
+    private static final int MAGIC = 0x534c5353;
+    /**
+     * Has to be increased whenever the analysis changes the results it produces for the same bodies.
+     */
+    private static final int VERSION = 2;
+
+    private final Path file;
+    private final Map<String, Entry> previousRun;
+    private final Map<String, Entry> thisRun = new ConcurrentHashMap<>();
+    private final AtomicInteger reused = new AtomicInteger();
+    private final AtomicInteger analyzed = new AtomicInteger();
+
+    private SummaryStore(Path file, Map<String, Entry> previousRun) {
+        this.file = file;
+        this.previousRun = previousRun;
+    }
+
+    /**
+     * Opens a store, loading the entries written by the previous run if the file exists. A store written by another
+     * version of the analysis, or that can't be read, is discarded.
+     *
+     * @param file the store file
+     * @return the store
+     */
+    public static SummaryStore open(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return new SummaryStore(file, Collections.emptyMap());
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                LOGGER.warn("Discarding summary store {}, written by another version", file);
+                return new SummaryStore(file, Collections.emptyMap());
+            }
+            int size = input.readInt();
+            Map<String, Entry> entries = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                String key = input.readUTF();
+                entries.put(key, Entry.read(input));
+            }
+            LOGGER.info("Loaded {} summaries from {}", size, file);
+            return new SummaryStore(file, entries);
+        } catch (IOException e) {
+            LOGGER.warn("Discarding unreadable summary store {}", file, e);
+            return new SummaryStore(file, Collections.emptyMap());
+        }
+    }
+
+    /**
+     * @param key the method key
+     * @return the entry stored by the previous run for the key, or null if there is none
+     */
+    public Entry lookup(String key) {
+        Entry entry = previousRun.get(key);
+        if (entry != null) {
+            thisRun.put(key, entry);
+            reused.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Records the entry of a method analyzed in this run.
+     *
+     * @param key   the method key
+     * @param entry the analysis results
+     */
+    public void put(String key, Entry entry) {
+        thisRun.put(key, entry);
+        analyzed.incrementAndGet();
+    }
+
+    /**
+     * Writes every entry used by this run. The file is replaced at once, so an interrupted write keeps the previous
+     * store.
+     */
+    public void save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(thisRun.size());
+            for (Map.Entry<String, Entry> entry : thisRun.entrySet()) {
+                output.writeUTF(entry.getKey());
+                entry.getValue().write(output);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the amount of methods whose summary was taken from the previous run
+     */
+    public int getReused() {
+        return reused.get();
+    }
+
+    /**
+     * @return the amount of methods analyzed in this run, since they were new or invalidated
+     */
+    public int getAnalyzed() {
+        return analyzed.get();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Hashes the Jimple of a body, which only changes when the compiled method does.
+     *
+     * @param body the body
+     * @return the body hash
+     */
+    public static String hashOf(Body body) {
+        StringBuilder text = new StringBuilder(body.getMethod().getSignature()).append('\n');
+        for (Unit unit : body.getUnits()) {
+            text.append(unit).append('\n');
+        }
+        return hashOf(text);
+    }
+
+    /**
+     * @param text the text to hash
+     * @return the hex SHA-256 of the text
+     */
+    public static String hashOf(CharSequence text) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] hash = digest.digest(text.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d reused, %d analyzed", file, getReused(), getAnalyzed());
+    }
+
+    /**
+     * Stored analysis results of a method.
+     */
+    public static class Entry {
+        private final MethodSummary summary;
+        private final BitSet leakingUnits;
+
+        /**
+         * @param summary      the method summary
+         * @param leakingUnits the positions in the body of the units leaking with no sensible inputs
+         */
+        public Entry(MethodSummary summary, BitSet leakingUnits) {
+            this.summary = summary;
+            this.leakingUnits = leakingUnits;
+        }
+
+        public MethodSummary getSummary() {
+            return summary;
+        }
+
+        public BitSet getLeakingUnits() {
+            return leakingUnits;
+        }
+
+        private void write(DataOutputStream output) throws IOException {
+            output.writeBoolean(summary.isAlwaysReturningSensibleValue());
+            output.writeBoolean(summary.isAlwaysLeaking());
+            output.writeLong(summary.getSlotsReturned());
+            output.writeLong(summary.getSlotsLeaked());
+            long[] words = leakingUnits.toLongArray();
+            output.writeInt(words.length);
+            for (long word : words) {
+                output.writeLong(word);
+            }
+        }
+
+        private static Entry read(DataInputStream input) throws IOException {
+            MethodSummary summary = new MethodSummary(input.readBoolean(), input.readBoolean(),
+                    input.readLong(), input.readLong());
+            long[] words = new long[input.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = input.readLong();
+            }
+            return new Entry(summary, BitSet.valueOf(words));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package analysis.models;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiles a text file of library models into a {@link LibraryModelIndex}. Each line holds a comma separated list of
+ * {@link ModelKind} names and a Soot method signature, for example:
+ * <pre>
+ * propagate &lt;java.lang.String: java.lang.String concat(java.lang.String)&gt;
+ * </pre>
+ * Empty lines and lines starting with {@code #} are ignored. Kinds of a signature listed more than once are joined.
+ * <p>
+ * Usage: {@code LibraryModelCompiler <models.txt> <models.idx>}
+ */
+public class LibraryModelCompiler {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: LibraryModelCompiler <models.txt> <models.idx>");
+            System.exit(1);
+        }
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            compile(reader, Paths.get(args[1]));
+        }
+    }
+
+    /**
+     * @param models the text models
+     * @param index  the index file to write
+     * @return the amount of modeled methods
+     */
+    public static int compile(Reader models, Path index) throws IOException {
+        Map<String, Integer> flagsBySignature = parse(models);
+        LibraryModelIndex.write(flagsBySignature, index);
+        return flagsBySignature.size();
+    }
+
+    static Map<String, Integer> parse(Reader models) throws IOException {
+        Map<String, Integer> flagsBySignature = new LinkedHashMap<>();
+        BufferedReader lines = new BufferedReader(models);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int signatureStart = line.indexOf('<');
+            if (signatureStart <= 0 || !line.endsWith(">")) {
+                throw new IllegalArgumentException("Malformed model in line " + lineNumber + ": " + line);
+            }
+            int flags = 0;
+            for (String kind : line.substring(0, signatureStart).split(",")) {
+                flags |= ModelKind.fromName(kind).bit();
+            }
+            flagsBySignature.merge(line.substring(signatureStart), flags, (a, b) -> a | b);
+        }
+        return flagsBySignature;
+    }
+}
@@ -0,0 +1,140 @@
+package analysis.models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped index of library models. The file is an open addressing hash table of 16 byte slots, each one holding
+ * the 64-bit hash of a method signature and its {@link ModelKind} flags. Lookups hash the signature and probe the
+ * mapped table, so they don't allocate, and no more of the file than the header and the probed slots is ever read. The
+ * checksum of the table is computed when writing the index, and kept in the header.
+ * <p>
+ * Signatures themselves are not stored: two modeled signatures sharing a 64-bit hash are rejected when writing the
+ * index.
+ */
+public class LibraryModelIndex {
+
+    private static final int MAGIC = 0x4c4d4958;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 24;
+    private static final int SLOT_BYTES = 16;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ByteBuffer table;
+    private final int mask;
+    private final int size;
+    private final long checksum;
+
+    private LibraryModelIndex(ByteBuffer table, int capacity, int size, long checksum) {
+        this.table = table;
+        this.mask = capacity - 1;
+        this.size = size;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Maps an index file written by {@link #write(Map, Path)}.
+     *
+     * @param file the index file
+     * @return the index
+     * @throws IOException if the file can't be read, or is not an index
+     */
+    public static LibraryModelIndex map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.BIG_ENDIAN);
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a library model index");
+            }
+            int capacity = buffer.getInt(8);
+            int size = buffer.getInt(12);
+            if (Integer.bitCount(capacity) != 1 || buffer.capacity() != HEADER_BYTES + (long) capacity * SLOT_BYTES) {
+                throw new IOException("Truncated library model index " + file);
+            }
+            return new LibraryModelIndex(buffer, capacity, size, buffer.getLong(16));
+        }
+    }
+
+    /**
+     * Writes an index for the given models.
+     *
+     * @param flagsBySignature the {@link ModelKind} flags of each modeled method, by Soot signature
+     * @param file             the index file
+     */
+    public static void write(Map<String, Integer> flagsBySignature, Path file) throws IOException {
+        int capacity = Integer.highestOneBit(Math.max(2, flagsBySignature.size() * 2 - 1)) << 1;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + capacity * SLOT_BYTES).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, capacity).putInt(12, flagsBySignature.size());
+        for (Map.Entry<String, Integer> model : flagsBySignature.entrySet()) {
+            long hash = hashOf(model.getKey());
+            int slot = (int) hash & (capacity - 1);
+            while (buffer.getLong(offsetOf(slot)) != 0L) {
+                if (buffer.getLong(offsetOf(slot)) == hash) {
+                    throw new IllegalArgumentException("Signature hash collision on " + model.getKey());
+                }
+                slot = (slot + 1) & (capacity - 1);
+            }
+            buffer.putLong(offsetOf(slot), hash).putInt(offsetOf(slot) + 8, model.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, capacity * SLOT_BYTES);
+        buffer.putLong(16, crc.getValue());
+        Files.write(file, buffer.array());
+    }
+
+    /**
+     * @param signature a Soot method signature
+     * @return the {@link ModelKind} flags of the method, or 0 if it isn't modeled
+     */
+    public int flagsOf(String signature) {
+        long hash = hashOf(signature);
+        int slot = (int) hash & mask;
+        long slotHash;
+        // The table is at most half full, so there is always an empty slot ending the probe
+        while ((slotHash = table.getLong(offsetOf(slot))) != 0L) {
+            if (slotHash == hash) {
+                return table.getInt(offsetOf(slot) + 8);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the amount of modeled methods
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a checksum of the table, which changes with any model
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    private static int offsetOf(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * FNV-1a over the signature chars. Zero marks empty slots, so it's never returned.
+     */
+    static long hashOf(CharSequence signature) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < signature.length(); i++) {
+            hash ^= signature.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash != 0L ? hash : 1L;
+    }
+}
@@ -0,0 +1,135 @@
+package analysis.models;
+
+import org.slf4j.Logger;
+import soot.SootMethod;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Run-wide library models, telling how called methods behave without analyzing their bodies. Models are read from a
+ * {@link LibraryModelIndex} given with {@link #use(Path)}, or else from the models bundled in
+ * {@value #BUNDLED_MODELS}, compiled on first use.
+ * <p>
+ * The flags of each method are also kept by method, so repeated lookups of the same callee don't even hash its
+ * signature.
+ */
+public class LibraryModels {
+
+    public static final String BUNDLED_MODELS = "/library-models.txt";
+
+    private static final Logger LOGGER = getLogger(LibraryModels.class);
+    private static final LibraryModels SHARED = new LibraryModels();
+
+    private volatile LibraryModelIndex index;
+    private Path indexFile;
+    private final Map<SootMethod, Integer> flagsByMethod = new ConcurrentHashMap<>();
+
+    /**
+     * @return the models shared by every analysis in this run
+     */
+    public static LibraryModels shared() {
+        return SHARED;
+    }
+
+    /**
+     * Uses the models of a precompiled index file, instead of the bundled ones. Does nothing if the file is already
+     * in use.
+     *
+     * @param indexFile the index file
+     * @return whether the models in use changed
+     */
+    public synchronized boolean use(Path indexFile) {
+        if (indexFile.equals(this.indexFile)) {
+            return false;
+        }
+        try {
+            index = LibraryModelIndex.map(indexFile);
+            this.indexFile = indexFile;
+            flagsByMethod.clear();
+            LOGGER.info("Loaded {} library models from {}", index.size(), indexFile);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param method a called method
+     * @return the {@link ModelKind} flags of the method, or 0 if it isn't modeled
+     */
+    public int flagsOf(SootMethod method) {
+        Integer flags = flagsByMethod.get(method);
+        if (flags == null) {
+            flags = index().flagsOf(method.getSignature());
+            flagsByMethod.put(method, flags);
+        }
+        return flags;
+    }
+
+    /**
+     * @param method a called method
+     * @return whether the method is modeled, so its body doesn't have to be analyzed
+     */
+    public boolean isModeled(SootMethod method) {
+        return flagsOf(method) != 0;
+    }
+
+    /**
+     * @return a checksum of the models in use
+     */
+    public long getChecksum() {
+        return index().getChecksum();
+    }
+
+    private LibraryModelIndex index() {
+        LibraryModelIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    index = compileBundledModels();
+                }
+                current = index;
+            }
+        }
+        return current;
+    }
+
+    private static LibraryModelIndex compileBundledModels() {
+        try (InputStream models = LibraryModels.class.getResourceAsStream(BUNDLED_MODELS)) {
+            Path indexFile = Files.createTempFile("library-models", ".idx");
+            indexFile.toFile().deleteOnExit();
+            if (models == null) {
+                LOGGER.warn("No bundled library models found in {}", BUNDLED_MODELS);
+                LibraryModelIndex.write(Collections.emptyMap(), indexFile);
+            } else {
+                try (Reader reader = new InputStreamReader(models, StandardCharsets.UTF_8)) {
+                    LibraryModelCompiler.compile(reader, indexFile);
+                }
+            }
+            LibraryModelIndex bundled = LibraryModelIndex.map(indexFile);
+            LOGGER.debug("Compiled {} bundled library models", bundled.size());
+            return bundled;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        LibraryModelIndex current = index;
+        return current == null ? "not loaded" : String.format("%d models, %d methods looked up",
+                current.size(), flagsByMethod.size());
+    }
+}
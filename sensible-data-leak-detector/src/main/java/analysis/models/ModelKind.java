@@ -0,0 +1,44 @@
+package analysis.models;
+
+/**
+ * What a library model says about a method. A method can have several kinds, packed as bits in an {@code int}.
+ */
+public enum ModelKind {
+    /**
+     * The returned value is always sensible.
+     */
+    SOURCE,
+    /**
+     * The method leaks any sensible argument.
+     */
+    SINK,
+    /**
+     * The returned value is sensible if an argument or the receiver is.
+     */
+    PROPAGATE,
+    /**
+     * The returned value is never sensible.
+     */
+    SANITIZE;
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * @param flags the model flags of a method
+     * @return whether the flags include this kind
+     */
+    public boolean in(int flags) {
+        return (flags & bit()) != 0;
+    }
+
+    /**
+     * @param name the kind name, in any case
+     * @return the kind
+     * @throws IllegalArgumentException if no kind has the given name
+     */
+    public static ModelKind fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,105 @@
+package analysis.paths;
+
+import java.util.Objects;
+
+/**
+ * A value reachable from a local, like {@code dto.address.street}: a base, followed by a chain of field names, where
+ * {@link #ARRAY_ELEMENT} stands for any element of an array. Bases are local names, or the declaring class of a
+ * static field.
+ * <p>
+ * Paths are created by an {@link AccessPathTable}, which interns them and limits their length, so each distinct path
+ * is a single instance, and paths sharing a prefix share its instance too.
+ */
+public final class AccessPath {
+
+    /**
+     * Field name of the elements of an array. Elements are not told apart by index.
+     */
+    public static final String ARRAY_ELEMENT = "[]";
+
+    private final String base;
+    private final AccessPath prefix;
+    private final String field;
+    private final int length;
+    private final int hash;
+
+    AccessPath(String base) {
+        this.base = base;
+        this.prefix = null;
+        this.field = null;
+        this.length = 0;
+        this.hash = base.hashCode();
+    }
+
+    AccessPath(AccessPath prefix, String field) {
+        this.base = prefix.base;
+        this.prefix = prefix;
+        this.field = field;
+        this.length = prefix.length + 1;
+        this.hash = 31 * prefix.hash + field.hashCode();
+    }
+
+    public String getBase() {
+        return base;
+    }
+
+    /**
+     * @return this path without its last field, or null if it's a base
+     */
+    public AccessPath getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the last field of this path, or null if it's a base
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * @return the amount of fields in this path
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @param other an interned path
+     * @return whether this path is the given one, or extends it
+     */
+    public boolean startsWith(AccessPath other) {
+        AccessPath path = this;
+        while (path != null && path.length > other.length) {
+            path = path.prefix;
+        }
+        return path == other;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AccessPath)) {
+            return false;
+        }
+        AccessPath other = (AccessPath) o;
+        // Prefixes are interned, so they are compared by identity
+        return hash == other.hash && prefix == other.prefix && base.equals(other.base)
+                && Objects.equals(field, other.field);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        if (prefix == null) {
+            return base;
+        }
+        return prefix + (ARRAY_ELEMENT.equals(field) ? field : "." + field);
+    }
+}
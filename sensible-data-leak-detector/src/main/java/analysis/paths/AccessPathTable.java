@@ -0,0 +1,154 @@
+package analysis.paths;
+
+import soot.Local;
+import soot.Value;
+import soot.jimple.ArrayRef;
+import soot.jimple.CastExpr;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.StaticFieldRef;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interning table of {@link AccessPath}s, shared by every analysis in this run. Paths are k-limited: extending a path
+ * of the {@linkplain #getMaxLength() max length} gives back the same path, which then stands for itself and every
+ * extension of it. So a body can only have a bounded amount of paths, however long its field chains are.
+ * <p>
+ * A max length of zero collapses every field and array element into its base.
+ */
+public class AccessPathTable {
+
+    public static final int DEFAULT_MAX_LENGTH = 3;
+
+    /**
+     * Rough size of a path and its table entry, in bytes, with compressed references.
+     */
+    static final int BYTES_PER_PATH = 72;
+
+    private static final AccessPathTable SHARED = new AccessPathTable();
+
+    private final ConcurrentHashMap<AccessPath, AccessPath> paths = new ConcurrentHashMap<>();
+    private volatile int maxLength = DEFAULT_MAX_LENGTH;
+
+    /**
+     * @return the table shared by every analysis in this run
+     */
+    public static AccessPathTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return the most fields a path may have
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(int maxLength) {
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Negative access path length: " + maxLength);
+        }
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @param base a local name, or the declaring class of a static field
+     * @return the path of the base alone
+     */
+    public AccessPath base(String base) {
+        return intern(new AccessPath(base));
+    }
+
+    /**
+     * @param prefix an interned path
+     * @param field  a field name, or {@link AccessPath#ARRAY_ELEMENT}
+     * @return the prefix followed by the field, or the prefix itself if it's already of the max length
+     */
+    public AccessPath append(AccessPath prefix, String field) {
+        if (prefix.length() >= maxLength) {
+            return prefix;
+        }
+        return intern(new AccessPath(prefix, field));
+    }
+
+    /**
+     * @param value a value of a body
+     * @return the path of a local, an instance or static field, an array element, or a cast local, limited to the
+     * max length, or null for any other value
+     */
+    public AccessPath pathOf(Value value) {
+        if (value instanceof Local) {
+            return base(((Local) value).getName());
+        }
+        if (value instanceof InstanceFieldRef && ((InstanceFieldRef) value).getBase() instanceof Local) {
+            InstanceFieldRef ref = (InstanceFieldRef) value;
+            return append(pathOf(ref.getBase()), ref.getFieldRef().name());
+        }
+        if (value instanceof ArrayRef && ((ArrayRef) value).getBase() instanceof Local) {
+            return append(pathOf(((ArrayRef) value).getBase()), AccessPath.ARRAY_ELEMENT);
+        }
+        if (value instanceof StaticFieldRef) {
+            StaticFieldRef ref = (StaticFieldRef) value;
+            return append(base(ref.getFieldRef().declaringClass().getName()), ref.getFieldRef().name());
+        }
+        if (value instanceof CastExpr && ((CastExpr) value).getOp() instanceof Local) {
+            return pathOf(((CastExpr) value).getOp());
+        }
+        return null;
+    }
+
+    /**
+     * Moves the fields a path has after one of its prefixes to another path, as copying the prefix to it does.
+     * Extensions the max length cuts short give back the longest path standing for them, which might be {@code to}
+     * itself.
+     *
+     * @param path an interned path extending {@code from}
+     * @param from an interned prefix of the path
+     * @param to   an interned path
+     * @return {@code to} extended with the fields of {@code path} after {@code from}
+     */
+    public AccessPath rebase(AccessPath path, AccessPath from, AccessPath to) {
+        Deque<String> fields = new ArrayDeque<>();
+        for (AccessPath current = path; current != from; current = current.getPrefix()) {
+            fields.push(current.getField());
+        }
+        AccessPath rebased = to;
+        for (String field : fields) {
+            rebased = append(rebased, field);
+        }
+        return rebased;
+    }
+
+    private AccessPath intern(AccessPath path) {
+        AccessPath existing = paths.putIfAbsent(path, path);
+        return existing != null ? existing : path;
+    }
+
+    /**
+     * @return the amount of distinct paths created in this run, bases included
+     */
+    public int size() {
+        return paths.size();
+    }
+
+    /**
+     * @return an estimate of the memory used by the paths, in bytes
+     */
+    public long estimatedBytes() {
+        return (long) paths.size() * BYTES_PER_PATH;
+    }
+
+    /**
+     * Drops every path. Paths still referenced keep working, but are no longer shared with new ones.
+     */
+    public void clear() {
+        paths.clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("k=%d, %d paths, ~%d KB", maxLength, size(), estimatedBytes() / 1024);
+    }
+}
@@ -0,0 +1,199 @@
+package analysis.paths;
+
+import dataflow.utils.LocalNumbering;
+import soot.Body;
+import soot.Local;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.ArrayRef;
+import soot.jimple.AssignStmt;
+import soot.jimple.InstanceFieldRef;
+import soot.jimple.StaticFieldRef;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link AccessPath}s tracked in a body, numbered after its locals as values derived from their base local, so
+ * each of them takes two bits of every flow state, like a local.
+ * <p>
+ * Tracked paths are the fields and array elements the body reads or writes, their prefixes, and the paths any of them
+ * is copied from or to. An assignment between a local, a field, an array element or a cast copies every path
+ * extending its source to the same path extending its assignee, in both directions, until no new path shows up.
+ * Since paths are k-limited, that always ends.
+ */
+public final class BodyAccessPaths {
+
+    private static final int[] NO_SLOTS = new int[0];
+
+    private final AccessPathTable table;
+    private final LocalNumbering numbering;
+    private final Set<AccessPath> tracked;
+
+    private BodyAccessPaths(Body body, AccessPathTable table) {
+        this.table = table;
+        this.tracked = new LinkedHashSet<>();
+        List<AccessPath[]> copies = new ArrayList<>();
+        for (Unit unit : body.getUnits()) {
+            for (ValueBox box : unit.getUseAndDefBoxes()) {
+                Value value = box.getValue();
+                if (value instanceof InstanceFieldRef || value instanceof ArrayRef || value instanceof StaticFieldRef) {
+                    track(pathOf(value));
+                }
+            }
+            if (unit instanceof AssignStmt) {
+                AccessPath assignee = pathOf(((AssignStmt) unit).getLeftOp());
+                AccessPath assigned = pathOf(((AssignStmt) unit).getRightOp());
+                if (assignee != null && assigned != null && assignee != assigned) {
+                    copies.add(new AccessPath[]{assignee, assigned});
+                }
+            }
+        }
+        boolean changed = !tracked.isEmpty();
+        while (changed) {
+            changed = false;
+            for (AccessPath[] copy : copies) {
+                changed |= trackExtensions(copy[0], copy[1]);
+                changed |= trackExtensions(copy[1], copy[0]);
+            }
+        }
+
+        Map<String, Local> localsByName = new HashMap<>();
+        for (Local local : body.getLocals()) {
+            localsByName.put(local.getName(), local);
+        }
+        Map<String, Local> derived = new LinkedHashMap<>();
+        for (AccessPath path : tracked) {
+            // Paths of static fields are derived from no local
+            derived.put(path.toString(), localsByName.get(path.getBase()));
+        }
+        this.numbering = LocalNumbering.of(body, derived);
+    }
+
+    /**
+     * Finds the paths tracked in a body, limited to the max length of the shared table.
+     *
+     * @param body the body
+     * @return its paths
+     */
+    public static BodyAccessPaths of(Body body) {
+        return new BodyAccessPaths(body, AccessPathTable.shared());
+    }
+
+    /**
+     * @return the numbering of the body locals, followed by its tracked paths
+     */
+    public LocalNumbering getNumbering() {
+        return numbering;
+    }
+
+    /**
+     * @return the amount of tracked paths
+     */
+    public int size() {
+        return tracked.size();
+    }
+
+    /**
+     * @param value a value of the body
+     * @return the path of a local, an instance or static field, an array element, or a cast local, limited to the
+     * max length, or null for any other value
+     */
+    public AccessPath pathOf(Value value) {
+        return table.pathOf(value);
+    }
+
+    /**
+     * @param path a path
+     * @return the index of the path in the numbering, or -1 if it's not tracked, or a base that isn't a local
+     */
+    public int slotOf(AccessPath path) {
+        return numbering.indexOf(path.toString());
+    }
+
+    /**
+     * A path holds a sensible value if it or any of its prefixes does, since everything reachable from a sensible
+     * value is sensible too.
+     *
+     * @param path a path
+     * @return the indices of the path and its prefixes, the ones that are numbered
+     */
+    public int[] slotsReading(AccessPath path) {
+        int[] slots = new int[path.length() + 1];
+        int count = 0;
+        for (AccessPath prefix = path; prefix != null; prefix = prefix.getPrefix()) {
+            int slot = slotOf(prefix);
+            if (slot >= 0) {
+                slots[count++] = slot;
+            }
+        }
+        return count == slots.length ? slots : Arrays.copyOf(slots, count);
+    }
+
+    /**
+     * Pairs each tracked path extending the copied path with the same extension of the assignee. Extensions the max
+     * length cuts short are paired with the longest path standing for them, which might be the assignee itself.
+     *
+     * @param assignee the path assigned
+     * @param assigned the path copied
+     * @return the indices of the assignee extensions, and of the copied extensions, at the same positions
+     */
+    public int[][] extensionsCopied(AccessPath assignee, AccessPath assigned) {
+        List<int[]> pairs = new ArrayList<>();
+        for (AccessPath path : tracked) {
+            if (path.length() > assigned.length() && path.startsWith(assigned)) {
+                int target = slotOf(table.rebase(path, assigned, assignee));
+                int source = slotOf(path);
+                if (target >= 0 && target != source) {
+                    pairs.add(new int[]{target, source});
+                }
+            }
+        }
+        if (pairs.isEmpty()) {
+            return new int[][]{NO_SLOTS, NO_SLOTS};
+        }
+        int[][] copied = new int[2][pairs.size()];
+        for (int i = 0; i < pairs.size(); i++) {
+            copied[0][i] = pairs.get(i)[0];
+            copied[1][i] = pairs.get(i)[1];
+        }
+        return copied;
+    }
+
+    private void track(AccessPath path) {
+        for (AccessPath prefix = path; prefix != null && prefix.length() > 0; prefix = prefix.getPrefix()) {
+            tracked.add(prefix);
+        }
+    }
+
+    /**
+     * Tracks the extensions of {@code to} matching the tracked extensions of {@code from}.
+     *
+     * @return whether some path was not tracked before
+     */
+    private boolean trackExtensions(AccessPath from, AccessPath to) {
+        boolean changed = false;
+        for (AccessPath path : new ArrayList<>(tracked)) {
+            if (path.length() > from.length() && path.startsWith(from)) {
+                AccessPath extended = table.rebase(path, from, to);
+                if (extended.length() > 0 && !tracked.contains(extended)) {
+                    track(extended);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return tracked.toString();
+    }
+}
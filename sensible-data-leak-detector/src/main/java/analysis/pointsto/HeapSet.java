@@ -0,0 +1,120 @@
+package analysis.pointsto;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable set of heap object ids. Each set is stored in the smaller of two encodings: a sorted {@code int[]} for
+ * sparse sets, or a {@code long[]} bitmap starting at the word of its lowest id for dense ones. Reading a set never
+ * allocates.
+ */
+public final class HeapSet {
+
+    public static final HeapSet EMPTY = new HeapSet(new int[0], null, 0, 0);
+
+    /**
+     * Sorted ids, or null when encoded as a bitmap.
+     */
+    private final int[] ids;
+    private final long[] bitmap;
+    private final int firstWord;
+    private final int size;
+
+    private HeapSet(int[] ids, long[] bitmap, int firstWord, int size) {
+        this.ids = ids;
+        this.bitmap = bitmap;
+        this.firstWord = firstWord;
+        this.size = size;
+    }
+
+    /**
+     * Creates a set with the given ids.
+     *
+     * @param ids the ids in the set. Might be unsorted and contain duplicates, and is not kept by the set
+     * @return the set
+     */
+    public static HeapSet of(int[] ids) {
+        if (ids.length == 0) {
+            return EMPTY;
+        }
+        int[] sorted = Arrays.stream(ids).sorted().distinct().toArray();
+        int firstWord = sorted[0] >>> 6;
+        int words = (sorted[sorted.length - 1] >>> 6) - firstWord + 1;
+        // A bitmap word takes two ints
+        if (2 * words >= sorted.length) {
+            return new HeapSet(sorted, null, 0, sorted.length);
+        }
+        long[] bitmap = new long[words];
+        for (int id : sorted) {
+            bitmap[(id >>> 6) - firstWord] |= 1L << id;
+        }
+        return new HeapSet(null, bitmap, firstWord, sorted.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int id) {
+        if (ids != null) {
+            return Arrays.binarySearch(ids, id) >= 0;
+        }
+        int word = (id >>> 6) - firstWord;
+        return word >= 0 && word < bitmap.length && (bitmap[word] & (1L << id)) != 0;
+    }
+
+    /**
+     * Calls {@code action} with each id in the set, in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        if (ids != null) {
+            for (int id : ids) {
+                action.accept(id);
+            }
+            return;
+        }
+        for (int word = 0; word < bitmap.length; word++) {
+            long bits = bitmap[word];
+            while (bits != 0) {
+                action.accept(((firstWord + word) << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * @return the approximate amount of bytes retained by the set contents
+     */
+    public long retainedBytes() {
+        return ids != null ? 4L * ids.length : 8L * bitmap.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HeapSet)) {
+            return false;
+        }
+        HeapSet other = (HeapSet) o;
+        return size == other.size && firstWord == other.firstWord
+                && Arrays.equals(ids, other.ids) && Arrays.equals(bitmap, other.bitmap);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Arrays.hashCode(ids) + Arrays.hashCode(bitmap)) + firstWord;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        forEach(id -> builder.append(builder.length() > 1 ? ", " : "").append(id));
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,218 @@
+package analysis.pointsto;
+
+import analysis.bodies.BodyProvider;
+import analysis.interprocedural.DispatchTable;
+import soot.Body;
+import soot.Local;
+import soot.RefLikeType;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import wtf.thepalbi.HeapObject;
+import wtf.thepalbi.PointsToResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact, queryable copy of a {@link PointsToResult}. Heap objects are interned and numbered densely, every
+ * (method, local) pair gets an int id, and the points-to set of each id is stored as a {@link HeapSet}. Equal sets are
+ * shared between locals.
+ * <p>
+ * Methods are indexed as a whole the first time one of their locals is queried, unless {@link #indexAll} indexed them
+ * beforehand. Queries can be run from several threads, and do not allocate once the method is indexed.
+ */
+public class PointsToIndex {
+
+    private final PointsToResult result;
+
+    private final Map<HeapObject, Integer> heapIds = new HashMap<>();
+    private final List<HeapObject> heapObjects = new ArrayList<>();
+    private final Map<String, SootClass> classesByType = new HashMap<>();
+    private volatile SootClass[] heapClasses = new SootClass[0];
+
+    private final Map<HeapSet, HeapSet> internedSets = new HashMap<>();
+    private final Map<Local, Integer> localIds = new ConcurrentHashMap<>();
+    private final Set<SootMethod> indexedMethods = ConcurrentHashMap.newKeySet();
+    private volatile HeapSet[] setsByLocal = new HeapSet[0];
+    private volatile DispatchTable dispatchTable;
+
+    private PointsToIndex(PointsToResult result) {
+        this.result = result;
+    }
+
+    /**
+     * Creates an index of a points-to result. Indexes are not registered anywhere, so whoever creates one keeps it for
+     * as long as the result is used, like the {@link PointsToProvider} does, and both are collected together.
+     *
+     * @param result the points-to result
+     * @return the index, or null if {@code result} is null
+     */
+    public static PointsToIndex of(PointsToResult result) {
+        return result != null ? new PointsToIndex(result) : null;
+    }
+
+    /**
+     * Indexes every concrete method of the application classes under a package. When bodies are built on demand,
+     * only the methods whose body was already built are, and the rest are indexed when first queried.
+     *
+     * @param packageName the package the points-to result was computed for
+     */
+    public void indexAll(String packageName) {
+        for (SootClass sootClass : new ArrayList<>(Scene.v().getApplicationClasses())) {
+            if (!sootClass.getPackageName().startsWith(packageName)) {
+                continue;
+            }
+            for (SootMethod method : new ArrayList<>(sootClass.getMethods())) {
+                if (method.isConcrete() && (!BodyProvider.shared().isOnDemand() || method.hasActiveBody())) {
+                    index(method, method.retrieveActiveBody());
+                }
+            }
+        }
+    }
+
+    /**
+     * @param method the method declaring the local
+     * @param local  a local of {@code method}'s active body
+     * @return the heap objects the local might point to
+     */
+    public HeapSet pointsTo(SootMethod method, Local local) {
+        Integer id = localIds.get(local);
+        if (id == null) {
+            if (!indexedMethods.contains(method)) {
+                index(method, method.getActiveBody());
+            }
+            id = localIds.get(local);
+            if (id == null) {
+                return HeapSet.EMPTY;
+            }
+        }
+        return setsByLocal[id];
+    }
+
+    /**
+     * Gets the dispatch table resolving calls with this index, creating it on first request. It lives as long as the
+     * index does.
+     *
+     * @return the dispatch table
+     */
+    public DispatchTable getDispatchTable() {
+        DispatchTable table = dispatchTable;
+        if (table == null) {
+            synchronized (this) {
+                table = dispatchTable;
+                if (table == null) {
+                    table = new DispatchTable(this);
+                    dispatchTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return the class of the heap object with the given id
+     */
+    public SootClass classOf(int heapId) {
+        return heapClasses[heapId];
+    }
+
+    public HeapObject heapObject(int heapId) {
+        synchronized (this) {
+            return heapObjects.get(heapId);
+        }
+    }
+
+    public synchronized int heapObjectCount() {
+        return heapObjects.size();
+    }
+
+    public int localCount() {
+        return localIds.size();
+    }
+
+    /**
+     * @return the amount of distinct points-to sets
+     */
+    public synchronized int setCount() {
+        return internedSets.size();
+    }
+
+    /**
+     * @return the approximate amount of bytes retained by the points-to sets
+     */
+    public synchronized long retainedBytes() {
+        return internedSets.keySet().stream().mapToLong(HeapSet::retainedBytes).sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d heap objects, %d locals, %d distinct sets (%d bytes)",
+                heapObjectCount(), localCount(), setCount(), retainedBytes());
+    }
+
+    private synchronized void index(SootMethod method, Body body) {
+        if (indexedMethods.contains(method)) {
+            return;
+        }
+        HeapSet[] sets = setsByLocal;
+        int next = localIds.size();
+        Map<Local, Integer> ids = new HashMap<>();
+        for (Local local : body.getLocals()) {
+            if (!(local.getType() instanceof RefLikeType)) {
+                continue;
+            }
+            if (next == sets.length) {
+                sets = Arrays.copyOf(sets, Math.max(16, 2 * sets.length));
+            }
+            sets[next] = intern(setOf(method, local));
+            ids.put(local, next++);
+        }
+        // Sets are published before their ids, so any id read from another thread already has its set
+        setsByLocal = sets;
+        localIds.putAll(ids);
+        indexedMethods.add(method);
+    }
+
+    private HeapSet setOf(SootMethod method, Local local) {
+        List<HeapObject> heapObjects;
+        synchronized (result) {
+            heapObjects = result.localPointsTo(method, local.getName());
+        }
+        if (heapObjects == null || heapObjects.isEmpty()) {
+            return HeapSet.EMPTY;
+        }
+        int[] ids = new int[heapObjects.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = heapIdOf(heapObjects.get(i));
+        }
+        return HeapSet.of(ids);
+    }
+
+    private int heapIdOf(HeapObject heapObject) {
+        Integer id = heapIds.get(heapObject);
+        if (id == null) {
+            id = heapObjects.size();
+            heapIds.put(heapObject, id);
+            heapObjects.add(heapObject);
+            SootClass[] classes = heapClasses;
+            if (id == classes.length) {
+                classes = Arrays.copyOf(classes, Math.max(16, 2 * classes.length));
+            }
+            classes[id] = classesByType.computeIfAbsent(heapObject.getType(), Scene.v()::getSootClass);
+            // Published along with the sets using the new id
+            heapClasses = classes;
+        }
+        return id;
+    }
+
+    private HeapSet intern(HeapSet set) {
+        HeapSet interned = internedSets.putIfAbsent(set, set);
+        return interned != null ? interned : set;
+    }
+}
@@ -0,0 +1,171 @@
+package analysis.pointsto;
+
+import dataflow.utils.AnalysisPhase;
+import dataflow.utils.PhaseMetrics;
+import org.slf4j.Logger;
+import soot.Body;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import wtf.thepalbi.PointsToResult;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Run-wide provider of points-to results. A result is computed the first time a package and entry point pair is
+ * requested, indexed into a {@link PointsToIndex}, and reused by every analyzed body and called method analysis after
+ * that.
+ * <p>
+ * The entry point of a body is the program main method when the body belongs to the main class package, or the body
+ * itself otherwise. Results depend on the {@link Scene}, so the provider has to be cleared when Soot is reset.
+ */
+public class PointsToProvider {
+
+    private static final Logger LOGGER = getLogger(PointsToProvider.class);
+    private static final PointsToProvider SHARED = new PointsToProvider();
+
+    private final ConcurrentMap<Key, Lazy> results = new ConcurrentHashMap<>();
+    private final AtomicInteger computations = new AtomicInteger();
+    private final AtomicLong computingNanos = new AtomicLong();
+
+    /**
+     * @return the provider shared by every analysis in this run
+     */
+    public static PointsToProvider shared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets the points-to result to be used when analyzing a body, computing it if needed.
+     *
+     * @param body the analyzed body
+     * @return the points-to index
+     */
+    public PointsToIndex forBody(Body body) {
+        SootClass analyzedClass = body.getMethod().getDeclaringClass();
+        if (Scene.v().hasMainClass()) {
+            SootClass mainClass = Scene.v().getMainClass();
+            SootMethod main = mainClass.getMethodByName("main");
+            if (mainClass.getPackageName().equals(analyzedClass.getPackageName()) && main.isConcrete()) {
+                return forEntryPoint(analyzedClass.getPackageName(), main.retrieveActiveBody());
+            }
+        }
+        return forEntryPoint(analyzedClass.getPackageName(), body);
+    }
+
+    /**
+     * Gets the points-to result for the classes under a package, reached from an entry point, computing it if needed.
+     * Concurrent requests for the same pair wait for a single computation.
+     *
+     * @param packageName the analyzed package
+     * @param entryPoint  the body of the first reachable method
+     * @return the points-to index
+     */
+    public PointsToIndex forEntryPoint(String packageName, Body entryPoint) {
+        return results.computeIfAbsent(new Key(packageName, entryPoint.getMethod()), key -> new Lazy())
+                .get(packageName, entryPoint);
+    }
+
+    public int getComputations() {
+        return computations.get();
+    }
+
+    public long getComputingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(computingNanos.get());
+    }
+
+    public void clear() {
+        results.clear();
+        computations.set(0);
+        computingNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d results, computed in %d ms", getComputations(), getComputingMillis());
+    }
+
+    private PointsToIndex compute(String packageName, Body entryPoint) {
+        long start = System.nanoTime();
+        PointsToResult result;
+        long computed;
+        PointsToIndex index;
+        try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.POINTS_TO)) {
+            // The points-to analysis walks the whole Scene, so only one runs at a time
+            synchronized (PointsToProvider.class) {
+                try {
+                    result = new wtf.thepalbi.PointToAnalysis(Scene.v()).forClassesUnderPackage(packageName,
+                            entryPoint);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            computed = System.nanoTime();
+            index = PointsToIndex.of(result);
+            index.indexAll(packageName);
+        }
+        long elapsed = System.nanoTime() - start;
+        computations.incrementAndGet();
+        computingNanos.addAndGet(elapsed);
+        LOGGER.info("Points-to for package {} from {} computed in {} ms, indexed in {} ms: {}", packageName,
+                entryPoint.getMethod().getSignature(), TimeUnit.NANOSECONDS.toMillis(computed - start),
+                TimeUnit.NANOSECONDS.toMillis(elapsed - (computed - start)), index);
+        return index;
+    }
+
+    /**
+     * Holder computing its result on first request. Kept out of {@link ConcurrentHashMap#computeIfAbsent}, so a long
+     * computation does not block other keys.
+     */
+    private class Lazy {
+        private volatile PointsToIndex result;
+
+        private PointsToIndex get(String packageName, Body entryPoint) {
+            PointsToIndex current = result;
+            if (current == null) {
+                synchronized (this) {
+                    current = result;
+                    if (current == null) {
+                        current = compute(packageName, entryPoint);
+                        result = current;
+                    }
+                }
+            }
+            return current;
+        }
+    }
+
+    private static class Key {
+        private final String packageName;
+        private final SootMethod entryPoint;
+
+        private Key(String packageName, SootMethod entryPoint) {
+            this.packageName = packageName;
+            this.entryPoint = entryPoint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return packageName.equals(other.packageName) && entryPoint.equals(other.entryPoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(packageName, entryPoint);
+        }
+    }
+}
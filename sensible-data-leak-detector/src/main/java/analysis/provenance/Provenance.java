@@ -0,0 +1,125 @@
+package analysis.provenance;
+
+import soot.Unit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where a sensible value came from: a node of a DAG whose roots are the units marking values as sensible, and whose
+ * other nodes are the assignments and calls the value went through, each pointing to the node it came from.
+ * <p>
+ * Nodes are hash-consed by a {@link ProvenanceTable}, so flow states share them instead of copying traces, and equal
+ * nodes are the same instance. Nodes are immutable, and only hold the unit and previous node, so equality and hashing
+ * don't walk the DAG.
+ */
+public final class Provenance {
+
+    public enum Kind {
+        /**
+         * The value was marked as sensible by a source.
+         */
+        SOURCE("source"),
+        /**
+         * The value was assigned from another sensible local.
+         */
+        ASSIGNMENT("assignment"),
+        /**
+         * The value was returned by a call, or passed to a call leaking it.
+         */
+        CALL("call");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final Kind kind;
+    private final Unit unit;
+    private final Provenance previous;
+    private final int hash;
+
+    Provenance(Kind kind, Unit unit, Provenance previous) {
+        this.kind = kind;
+        this.unit = unit;
+        this.previous = previous;
+        this.hash = (31 * (31 * kind.hashCode() + System.identityHashCode(unit)))
+                + System.identityHashCode(previous);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Unit getUnit() {
+        return unit;
+    }
+
+    /**
+     * @return the node the value came from, or null for sources, and for values of unknown origin
+     */
+    public Provenance getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Builds the witness path of this node: the nodes from the origin of the value up to this one. Units the value went
+     * through more than once, around a loop, are only kept the last time.
+     *
+     * @return the path, starting at the origin of the value
+     */
+    public List<Provenance> witness() {
+        List<Provenance> path = new ArrayList<>();
+        Map<Unit, Boolean> visited = new IdentityHashMap<>();
+        for (Provenance node = this; node != null; node = node.previous) {
+            if (visited.put(node.unit, true) == null) {
+                path.add(node);
+            }
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * @return the node the value first came from
+     */
+    public Provenance origin() {
+        Provenance node = this;
+        while (node.previous != null) {
+            node = node.previous;
+        }
+        return node;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Provenance)) {
+            return false;
+        }
+        // Previous nodes are interned, so they are compared by identity
+        Provenance other = (Provenance) o;
+        return hash == other.hash && kind == other.kind && unit == other.unit && previous == other.previous;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return kind.getLabel() + ": " + unit;
+    }
+}
@@ -0,0 +1,90 @@
+package analysis.provenance;
+
+import soot.Unit;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash-consing table of {@link Provenance} nodes, shared by every analysis in this run. Each distinct node is created
+ * once, so the memory used by traces is the amount of nodes in this table, whatever the amount of flow states
+ * referencing them.
+ */
+public class ProvenanceTable {
+
+    /**
+     * Rough size of a node and its table entry, in bytes, with compressed references.
+     */
+    static final int BYTES_PER_NODE = 64;
+
+    private static final ProvenanceTable SHARED = new ProvenanceTable();
+
+    private final ConcurrentHashMap<Provenance, Provenance> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * @return the table shared by every analysis in this run
+     */
+    public static ProvenanceTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param source the unit marking a value as sensible
+     * @return the node of values marked by the unit
+     */
+    public Provenance source(Unit source) {
+        return intern(new Provenance(Provenance.Kind.SOURCE, source, null));
+    }
+
+    /**
+     * @param assignment the unit assigning a sensible value
+     * @param previous   the node of the assigned value, or null if unknown
+     * @return the node of the assigned value
+     */
+    public Provenance assignment(Unit assignment, Provenance previous) {
+        if (previous != null && previous.getUnit() == assignment) {
+            // Values assigned from themselves in a loop keep their node, instead of growing a chain per iteration
+            return previous;
+        }
+        return intern(new Provenance(Provenance.Kind.ASSIGNMENT, assignment, previous));
+    }
+
+    /**
+     * @param call     the unit calling a method that returns or leaks a sensible value
+     * @param previous the node of the sensible argument passed, or null if none or unknown
+     * @return the node of the value returned or leaked by the call
+     */
+    public Provenance call(Unit call, Provenance previous) {
+        return intern(new Provenance(Provenance.Kind.CALL, call, previous));
+    }
+
+    private Provenance intern(Provenance node) {
+        Provenance existing = nodes.putIfAbsent(node, node);
+        return existing != null ? existing : node;
+    }
+
+    /**
+     * @return the amount of distinct nodes created in this run
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return an estimate of the memory used by the nodes, in bytes
+     */
+    public long estimatedBytes() {
+        return (long) nodes.size() * BYTES_PER_NODE;
+    }
+
+    /**
+     * Drops every node. Nodes still referenced keep working, but are no longer shared with new ones.
+     */
+    public void clear() {
+        nodes.clear();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d nodes, ~%d KB", size(), estimatedBytes() / 1024);
+    }
+}
@@ -0,0 +1,83 @@
+package analysis.provenance;
+
+import analysis.abstraction.SensibilityLattice;
+import dataflow.utils.LocalNumbering;
+import dataflow.utils.PackedLatticeState;
+
+import java.util.Arrays;
+
+/**
+ * Locals sensibility that also references the {@link Provenance} of each sensible local. Copying and joining states
+ * only copies references to the shared nodes.
+ * <p>
+ * Provenance doesn't take part in equality, so it never makes the analysis iterate more: each sensible local keeps the
+ * provenance it had when it first became sensible at a unit, which is one witness of how it got there, not every one.
+ * Values set without a provenance, like the ones set by visitors, have an unknown origin.
+ */
+public class TracedLocalsState extends PackedLatticeState<SensibilityLattice> {
+
+    private final Provenance[] provenances;
+
+    /**
+     * Creates a new state with every local set to bottom.
+     *
+     * @param numbering the numbering of the analyzed body locals
+     */
+    public TracedLocalsState(LocalNumbering numbering) {
+        super(numbering, SensibilityLattice.class);
+        this.provenances = new Provenance[numbering.size()];
+    }
+
+    private TracedLocalsState(TracedLocalsState other) {
+        super(other);
+        this.provenances = other.provenances.clone();
+    }
+
+    /**
+     * @param index the local index
+     * @return the provenance of the local, or null if it isn't sensible, or its origin is unknown
+     */
+    public Provenance getProvenance(int index) {
+        return index < 0 ? null : provenances[index];
+    }
+
+    /**
+     * Sets a local to a value coming from the given provenance.
+     */
+    public void set(int index, SensibilityLattice value, Provenance provenance) {
+        super.set(index, value);
+        provenances[index] = SensibilityLattice.isSensible(value) ? provenance : null;
+    }
+
+    @Override
+    public void set(int index, SensibilityLattice value) {
+        set(index, value, null);
+    }
+
+    @Override
+    public void join(PackedLatticeState<SensibilityLattice> other, PackedLatticeState<SensibilityLattice> out) {
+        Provenance[] otherProvenances = ((TracedLocalsState) other).provenances;
+        Provenance[] outProvenances = ((TracedLocalsState) out).provenances;
+        for (int i = 0; i < provenances.length; i++) {
+            outProvenances[i] = provenances[i] != null ? provenances[i] : otherProvenances[i];
+        }
+        super.join(other, out);
+    }
+
+    @Override
+    public void copyTo(PackedLatticeState<SensibilityLattice> dest) {
+        super.copyTo(dest);
+        System.arraycopy(provenances, 0, ((TracedLocalsState) dest).provenances, 0, provenances.length);
+    }
+
+    @Override
+    public TracedLocalsState copy() {
+        return new TracedLocalsState(this);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(provenances, null);
+    }
+}
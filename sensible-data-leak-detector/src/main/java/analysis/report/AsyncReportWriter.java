@@ -0,0 +1,130 @@
+package analysis.report;
+
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Writes findings on a dedicated thread, so analysis threads never block on I/O. Findings are submitted by method,
+ * through a bounded queue: when the writer falls behind, submitting blocks until there is room, instead of holding
+ * every finding of the run in memory.
+ * <p>
+ * The output is flushed whenever the queue runs empty, so findings can be read while the run goes on. If writing
+ * fails, the remaining findings are discarded, and the failure is thrown when closing.
+ */
+public class AsyncReportWriter implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final Logger LOGGER = getLogger(AsyncReportWriter.class);
+    private static final List<LeakFinding> END = Collections.emptyList();
+
+    private final FindingWriter writer;
+    private final BlockingQueue<List<LeakFinding>> queue;
+    private final Thread thread;
+    private volatile boolean closed = false;
+    private volatile IOException failure;
+    private volatile long written = 0;
+
+    public AsyncReportWriter(FindingWriter writer) {
+        this(writer, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param writer   the writer of the findings, only used from the writing thread
+     * @param capacity the amount of methods whose findings can be waiting to be written
+     */
+    public AsyncReportWriter(FindingWriter writer, int capacity) {
+        this.writer = writer;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::writeAll, "leak-report-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the findings of a method, waiting for room in the queue if needed.
+     *
+     * @param findings the findings of a method
+     */
+    public void submit(List<LeakFinding> findings) {
+        if (closed) {
+            throw new IllegalStateException("Report writer already closed");
+        }
+        if (findings.isEmpty()) {
+            return;
+        }
+        try {
+            queue.put(findings);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeAll() {
+        try {
+            while (true) {
+                List<LeakFinding> findings = queue.take();
+                if (findings == END) {
+                    break;
+                }
+                if (failure != null) {
+                    continue;
+                }
+                try {
+                    for (LeakFinding finding : findings) {
+                        writer.write(finding);
+                        written++;
+                    }
+                    if (queue.isEmpty()) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("Could not write leak report, discarding the remaining findings", e);
+                    failure = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for every queued finding to be written, and closes the writer.
+     *
+     * @throws IOException if writing any finding, or closing, failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        writer.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the amount of findings written so far. Exact once closed
+     */
+    public long getWritten() {
+        return written;
+    }
+}
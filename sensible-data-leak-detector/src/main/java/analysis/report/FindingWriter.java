@@ -0,0 +1,18 @@
+package analysis.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes {@link LeakFinding}s in some format. Writers are only used from the {@link AsyncReportWriter} thread, so they
+ * don't need to be thread safe.
+ */
+public interface FindingWriter extends Closeable {
+
+    void write(LeakFinding finding) throws IOException;
+
+    /**
+     * Makes the findings written so far visible to readers of the output.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,60 @@
+package analysis.report;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import static dataflow.utils.MetricsReport.quote;
+
+/**
+ * Writes a JSON object per finding and line:
+ * <pre>
+ * {"class": "A", "method": "&lt;A: void main(java.lang.String[])&gt;", "line": 11,
+ *  "sink": "&lt;java.io.PrintStream: void println(java.lang.String)&gt;", "source": "&lt;A: void markAsSensible(...)&gt;"}
+ * </pre>
+ * Missing sinks and sources are written as {@code null}. Findings with a known provenance also have a
+ * {@code trace}, with the kind, line and unit of each step, and findings of methods that ran out of analysis budget a
+ * {@code degraded} field, naming the limit hit.
+ */
+public class JsonLinesFindingWriter implements FindingWriter {
+
+    private final Writer out;
+
+    public JsonLinesFindingWriter(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(LeakFinding finding) throws IOException {
+        out.write(String.format("{\"class\": %s, \"method\": %s, \"line\": %d, \"sink\": %s, \"source\": %s",
+                quote(finding.getClassName()), quote(finding.getMethodSignature()), finding.getLine(),
+                quoteOrNull(finding.getSink()), quoteOrNull(finding.getSource())));
+        if (!finding.getTrace().isEmpty()) {
+            out.write(", \"trace\": [");
+            String separator = "";
+            for (LeakFinding.Step step : finding.getTrace()) {
+                out.write(String.format("%s{\"kind\": %s, \"line\": %d, \"unit\": %s}", separator,
+                        quote(step.getKind()), step.getLine(), quote(step.getUnit())));
+                separator = ", ";
+            }
+            out.write("]");
+        }
+        if (finding.getDegradation() != null) {
+            out.write(", \"degraded\": " + quote(finding.getDegradation()));
+        }
+        out.write("}\n");
+    }
+
+    static String quoteOrNull(String text) {
+        return text == null ? "null" : quote(text);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
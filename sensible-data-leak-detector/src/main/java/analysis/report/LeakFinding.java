@@ -0,0 +1,217 @@
+package analysis.report;
+
+import analysis.LeakAnalysisResult;
+import analysis.provenance.Provenance;
+import analysis.rules.RuleMatcher;
+import soot.SootMethod;
+import soot.Unit;
+import soot.jimple.Stmt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static soot.UnitUtils.getLineNumberFromUnit;
+
+/**
+ * A possible leak found by the analysis: the unit where sensible data reaches a sink, either directly or through the
+ * called method. Findings are built on the analysis threads, and only hold strings, so they can be written later on
+ * any thread.
+ */
+public final class LeakFinding {
+
+    private final String className;
+    private final String methodSignature;
+    private final int line;
+    private final String sink;
+    private final String source;
+    private final List<Step> trace;
+    private final String degradation;
+
+    public LeakFinding(String className, String methodSignature, int line, String sink, String source) {
+        this(className, methodSignature, line, sink, source, Collections.emptyList());
+    }
+
+    public LeakFinding(String className, String methodSignature, int line, String sink, String source,
+                       List<Step> trace) {
+        this(className, methodSignature, line, sink, source, trace, null);
+    }
+
+    public LeakFinding(String className, String methodSignature, int line, String sink, String source,
+                       List<Step> trace, String degradation) {
+        this.className = className;
+        this.methodSignature = methodSignature;
+        this.line = line;
+        this.sink = sink;
+        this.source = source;
+        this.trace = trace;
+        this.degradation = degradation;
+    }
+
+    /**
+     * Builds the findings of a method, with no provenance.
+     *
+     * @see #of(SootMethod, Collection, LeakAnalysisResult)
+     */
+    public static List<LeakFinding> of(SootMethod method, Collection<Unit> leakingUnits) {
+        return of(method, leakingUnits, null);
+    }
+
+    /**
+     * Builds the findings of a method. The trace of each finding is the witness path of the leaked value, built here
+     * from its {@link Provenance}, and its source is the unit the path starts at. Without a known provenance, the
+     * trace is empty, and the source is the first source called in the method, if any, before the leaking unit.
+     * Findings of a method whose results fell back to top are flagged with the budget limit it hit.
+     *
+     * @param method       the analyzed method, with its active body
+     * @param leakingUnits the units of the method reported by the analysis
+     * @param result       the analysis result, giving the provenance of each leak, or null if not traced
+     * @return a finding per leaking unit, in body order
+     */
+    public static List<LeakFinding> of(SootMethod method, Collection<Unit> leakingUnits, LeakAnalysisResult result) {
+        List<LeakFinding> findings = new ArrayList<>(leakingUnits.size());
+        if (leakingUnits.isEmpty()) {
+            return findings;
+        }
+        String className = method.getDeclaringClass().getName();
+        String signature = method.getSignature();
+        String degradation = result != null && result.getDegradation() != null
+                ? result.getDegradation().getOption()
+                : null;
+        Set<Unit> leaking = new HashSet<>(leakingUnits);
+        String firstSource = null;
+        for (Unit unit : method.getActiveBody().getUnits()) {
+            Stmt statement = (Stmt) unit;
+            if (leaking.contains(unit)) {
+                Provenance provenance = result != null ? result.provenanceOf(unit) : null;
+                if (provenance != null) {
+                    findings.add(new LeakFinding(className, signature, getLineNumberFromUnit(unit), sinkOf(statement),
+                            sourceOf(provenance), traceOf(provenance), degradation));
+                } else {
+                    findings.add(new LeakFinding(className, signature, getLineNumberFromUnit(unit), sinkOf(statement),
+                            firstSource, Collections.emptyList(), degradation));
+                }
+            }
+            if (firstSource == null && isSource(statement)) {
+                firstSource = statement.getInvokeExpr().getMethodRef().getSignature();
+            }
+        }
+        return findings;
+    }
+
+    private static boolean isSource(Stmt statement) {
+        return statement.containsInvokeExpr()
+                && RuleMatcher.shared().rulesOf(statement.getInvokeExpr().getMethodRef()).isSource();
+    }
+
+    private static String sinkOf(Stmt statement) {
+        return statement.containsInvokeExpr() ? statement.getInvokeExpr().getMethodRef().getSignature() : null;
+    }
+
+    private static String sourceOf(Provenance provenance) {
+        Provenance origin = provenance.origin();
+        Stmt statement = (Stmt) origin.getUnit();
+        return origin.getKind() == Provenance.Kind.SOURCE && statement.containsInvokeExpr()
+                ? statement.getInvokeExpr().getMethodRef().getSignature()
+                : null;
+    }
+
+    private static List<Step> traceOf(Provenance provenance) {
+        List<Step> trace = new ArrayList<>();
+        for (Provenance node : provenance.witness()) {
+            trace.add(new Step(node.getKind().getLabel(), getLineNumberFromUnit(node.getUnit()),
+                    node.getUnit().toString()));
+        }
+        return trace;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodSignature() {
+        return methodSignature;
+    }
+
+    /**
+     * @return the source line of the leaking unit, or -1 if the class has no line numbers
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the signature of the method called by the leaking unit, either a sink or a method leaking inside
+     */
+    public String getSink() {
+        return sink;
+    }
+
+    /**
+     * @return the signature of the source the leaked value came from, or null if the sensible data came from
+     * elsewhere, like a parameter or a called method
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the units the leaked value went through, from its origin up to the leaking unit, excluded. Empty if
+     * the provenance of the value is unknown
+     */
+    public List<Step> getTrace() {
+        return trace;
+    }
+
+    /**
+     * @return the option of the budget limit that made the results of the method fall back to top, so the finding
+     * might be spurious, or null if the method was fully analyzed
+     */
+    public String getDegradation() {
+        return degradation;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s line %d, sink: %s, source: %s%s", methodSignature, line, sink, source,
+                degradation == null ? "" : ", degraded: " + degradation);
+    }
+
+    /**
+     * A unit in the trace of a finding.
+     */
+    public static final class Step {
+        private final String kind;
+        private final int line;
+        private final String unit;
+
+        public Step(String kind, int line, String unit) {
+            this.kind = kind;
+            this.line = line;
+            this.unit = unit;
+        }
+
+        /**
+         * @return the {@link Provenance.Kind} label of the step
+         */
+        public String getKind() {
+            return kind;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s line %d: %s", kind, line, unit);
+        }
+    }
+}
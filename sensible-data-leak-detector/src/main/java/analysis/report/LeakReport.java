@@ -0,0 +1,144 @@
+package analysis.report;
+
+import analysis.LeakAnalysisResult;
+import org.slf4j.Logger;
+import soot.SootMethod;
+import soot.Unit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Report of the leaks found in this run, shared by every analysis. Each analysis reports the leaks of a method as soon
+ * as it's done with it, and they are written by an {@link AsyncReportWriter}: logged as warnings by default, or
+ * streamed to the file set with {@link #use(Path, String)}, as JSON lines or SARIF.
+ */
+public class LeakReport {
+
+    private static final Logger LOGGER = getLogger(LeakReport.class);
+    private static final LeakReport SHARED = new LeakReport();
+
+    private AsyncReportWriter writer;
+    private Path file;
+
+    /**
+     * @return the report shared by every analysis in this run
+     */
+    public static LeakReport shared() {
+        return SHARED;
+    }
+
+    /**
+     * Streams the findings to a file, instead of logging them. Does nothing if the file is already in use.
+     *
+     * @param file   the report file
+     * @param format {@code jsonl} or {@code sarif}. If null, SARIF is used for {@code .sarif} and {@code .sarif.json}
+     *               files, and JSON lines for any other
+     */
+    public synchronized void use(Path file, String format) {
+        if (file.equals(this.file)) {
+            return;
+        }
+        close();
+        try {
+            Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            writer = new AsyncReportWriter(isSarif(file, format) ? new SarifFindingWriter(out)
+                    : new JsonLinesFindingWriter(out));
+            this.file = file;
+            LOGGER.info("Writing leak report to {}", file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return whether the report is written as SARIF
+     */
+    private static boolean isSarif(Path file, String format) {
+        if (format == null || format.isEmpty()) {
+            String name = file.getFileName().toString();
+            return name.endsWith(".sarif") || name.endsWith(".sarif.json");
+        }
+        if (format.equals("sarif")) {
+            return true;
+        }
+        if (format.equals("jsonl")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown report format: " + format);
+    }
+
+    /**
+     * Reports the leaks found in a method. Safe to call from any thread.
+     *
+     * @param method       the analyzed method, with its active body
+     * @param leakingUnits the units of the method reported by the analysis
+     */
+    public void report(SootMethod method, Collection<Unit> leakingUnits) {
+        report(method, leakingUnits, null);
+    }
+
+    /**
+     * Reports the leaks found in a method, with their traces if the analysis kept their provenance. Safe to call from
+     * any thread.
+     *
+     * @param method       the analyzed method, with its active body
+     * @param leakingUnits the units of the method reported by the analysis
+     * @param result       the analysis result, or null if it has no provenance
+     */
+    public void report(SootMethod method, Collection<Unit> leakingUnits, LeakAnalysisResult result) {
+        if (leakingUnits.isEmpty()) {
+            return;
+        }
+        writer().submit(LeakFinding.of(method, leakingUnits, result));
+    }
+
+    /**
+     * Starts reporting a known list of methods, analyzed concurrently, whose findings are written in list order
+     * whatever order they're reported in.
+     *
+     * @param methods the amount of methods to be reported
+     * @return the buffer to report each method through
+     */
+    public OrderedReport ordered(int methods) {
+        return new OrderedReport(methods, findings -> writer().submit(findings));
+    }
+
+    private synchronized AsyncReportWriter writer() {
+        if (writer == null) {
+            writer = new AsyncReportWriter(new LogFindingWriter());
+        }
+        return writer;
+    }
+
+    /**
+     * Waits for every reported finding to be written, and closes the report file, if any. Reporting again afterwards
+     * logs the findings.
+     */
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.error("Could not write leak report {}", file, e);
+        }
+        LOGGER.info("Leak report: {}", this);
+        writer = null;
+        file = null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long written = writer == null ? 0 : writer.getWritten();
+        return String.format("%d findings %s", written, file == null ? "logged" : "written to " + file);
+    }
+}
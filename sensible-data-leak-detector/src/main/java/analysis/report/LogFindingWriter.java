@@ -0,0 +1,34 @@
+package analysis.report;
+
+import org.slf4j.Logger;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Logs each finding as a warning, which is how leaks are reported when no report file is set.
+ */
+public class LogFindingWriter implements FindingWriter {
+
+    private static final Logger LOGGER = getLogger(LogFindingWriter.class);
+
+    @Override
+    public void write(LeakFinding finding) {
+        if (finding.getDegradation() == null) {
+            LOGGER.warn("Possible leak found in {} line {}", finding.getMethodSignature(), finding.getLine());
+        } else {
+            LOGGER.warn("Possible leak found in {} line {}, analysis degraded by the {} budget",
+                    finding.getMethodSignature(), finding.getLine(), finding.getDegradation());
+        }
+        for (LeakFinding.Step step : finding.getTrace()) {
+            LOGGER.info("  from {}", step);
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,93 @@
+package analysis.report;
+
+import analysis.LeakAnalysisResult;
+import soot.SootMethod;
+import soot.Unit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reorder buffer for the findings of a known list of methods analyzed concurrently. Each method reports its findings,
+ * possibly none, at its position in the list, and they are released as soon as every method before it has reported.
+ * The output is then the same however many threads analyzed the methods, while methods are still reported as soon as
+ * their turn comes, instead of at the end of the run.
+ * <p>
+ * Findings of methods done ahead of their turn are held until then, so a slow method holds back the findings of the
+ * methods after it.
+ */
+public class OrderedReport {
+
+    private final Consumer<List<LeakFinding>> released;
+    private final List<LeakFinding>[] pending;
+    private final boolean[] reported;
+    private int next = 0;
+
+    /**
+     * @param methods  the amount of methods to be reported
+     * @param released takes the findings of each method, in method order, on the thread reporting the last one needed
+     */
+    @SuppressWarnings("unchecked")
+    public OrderedReport(int methods, Consumer<List<LeakFinding>> released) {
+        this.released = released;
+        this.pending = new List[methods];
+        this.reported = new boolean[methods];
+    }
+
+    /**
+     * Reports the leaks found in a method. Safe to call from any thread.
+     *
+     * @param position     the position of the method in the reported list
+     * @param method       the analyzed method, with its active body
+     * @param leakingUnits the units of the method reported by the analysis
+     * @param result       the analysis result, or null if it has no provenance
+     */
+    public void report(int position, SootMethod method, Collection<Unit> leakingUnits, LeakAnalysisResult result) {
+        submit(position, LeakFinding.of(method, leakingUnits, result));
+    }
+
+    /**
+     * Reports the findings of a method, releasing them along with the ones of the methods after it that were waiting
+     * for its turn.
+     *
+     * @param position the position of the method in the reported list
+     * @param findings the findings of the method, possibly none
+     */
+    public synchronized void submit(int position, List<LeakFinding> findings) {
+        if (reported[position]) {
+            throw new IllegalStateException("Method " + position + " already reported");
+        }
+        reported[position] = true;
+        pending[position] = findings;
+        release();
+    }
+
+    /**
+     * Releases every finding still held, skipping the methods that never reported, as when their analysis failed.
+     */
+    public synchronized void flush() {
+        while (next < pending.length) {
+            reported[next] = true;
+            release();
+        }
+    }
+
+    private void release() {
+        while (next < pending.length && reported[next]) {
+            List<LeakFinding> findings = pending[next];
+            pending[next] = null;
+            next++;
+            if (findings != null && !findings.isEmpty()) {
+                released.accept(findings);
+            }
+        }
+    }
+
+    /**
+     * @return the amount of methods whose findings were released
+     */
+    public synchronized int getReleased() {
+        return next;
+    }
+}
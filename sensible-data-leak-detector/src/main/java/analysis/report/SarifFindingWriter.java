@@ -0,0 +1,94 @@
+package analysis.report;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import static analysis.report.JsonLinesFindingWriter.quoteOrNull;
+import static dataflow.utils.MetricsReport.quote;
+
+/**
+ * Writes findings as a SARIF 2.1.0 log with a single run. Results are streamed as they are written, and the log is only
+ * valid JSON once the writer is closed.
+ * <p>
+ * Each result is located in the source file of its class, guessed from the class name, and in its method. The sink
+ * and source are kept as result properties, and the trace, if any, as a code flow.
+ */
+public class SarifFindingWriter implements FindingWriter {
+
+    public static final String RULE_ID = "sensible-data-leak";
+
+    private final Writer out;
+    private String separator = "";
+
+    public SarifFindingWriter(Writer out) throws IOException {
+        this.out = out;
+        out.write("{\"version\": \"2.1.0\",\n"
+                + "\"$schema\": \"https://json.schemastore.org/sarif-2.1.0.json\",\n"
+                + "\"runs\": [{\"tool\": {\"driver\": {\"name\": \"sensible-data-leak-detector\", \"rules\": [\n"
+                + "  {\"id\": \"" + RULE_ID + "\", \"shortDescription\": {\"text\": \"Sensible data reaches a sink\"}}"
+                + "]}},\n"
+                + "\"results\": [");
+    }
+
+    @Override
+    public void write(LeakFinding finding) throws IOException {
+        String region = regionOf(finding.getLine());
+        out.write(String.format("%s\n  {\"ruleId\": \"%s\", \"level\": \"warning\", \"message\": {\"text\": %s}, "
+                        + "\"locations\": [{\"physicalLocation\": {\"artifactLocation\": {\"uri\": %s}%s}, "
+                        + "\"logicalLocations\": [{\"fullyQualifiedName\": %s, \"kind\": \"function\"}]}], "
+                        + "%s\"properties\": {\"sink\": %s, \"source\": %s%s}}",
+                separator, RULE_ID, quote("Possible leak found in " + finding.getMethodSignature()),
+                quote(sourceFileOf(finding.getClassName())), region, quote(finding.getMethodSignature()),
+                codeFlowOf(finding), quoteOrNull(finding.getSink()), quoteOrNull(finding.getSource()),
+                finding.getDegradation() == null ? "" : ", \"degraded\": " + quote(finding.getDegradation())));
+        separator = ",";
+    }
+
+    /**
+     * The trace of a finding is written as a code flow, ending at the leaking unit.
+     */
+    private static String codeFlowOf(LeakFinding finding) {
+        if (finding.getTrace().isEmpty()) {
+            return "";
+        }
+        String uri = quote(sourceFileOf(finding.getClassName()));
+        StringBuilder flow = new StringBuilder("\"codeFlows\": [{\"threadFlows\": [{\"locations\": [");
+        for (LeakFinding.Step step : finding.getTrace()) {
+            flow.append(threadFlowLocation(uri, step.getLine(), step.getKind() + ": " + step.getUnit())).append(", ");
+        }
+        flow.append(threadFlowLocation(uri, finding.getLine(), "leak"));
+        return flow.append("]}]}], ").toString();
+    }
+
+    private static String threadFlowLocation(String uri, int line, String message) {
+        return String.format("{\"location\": {\"physicalLocation\": {\"artifactLocation\": {\"uri\": %s}%s}, "
+                + "\"message\": {\"text\": %s}}}", uri, regionOf(line), quote(message));
+    }
+
+    /**
+     * Lines are 1-based, so units without line numbers are only located in their file.
+     */
+    private static String regionOf(int line) {
+        return line > 0 ? String.format(", \"region\": {\"startLine\": %d}", line) : "";
+    }
+
+    /**
+     * Nested classes are declared in the source file of their outermost class.
+     */
+    static String sourceFileOf(String className) {
+        int nested = className.indexOf('$');
+        String outermost = nested < 0 ? className : className.substring(0, nested);
+        return outermost.replace('.', '/') + ".java";
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.write("]}]}\n");
+        out.close();
+    }
+}
@@ -0,0 +1,68 @@
+package analysis.rules;
+
+/**
+ * The rules matching a called method, joined. Sources mark their first argument as sensible, sanitizers clean it, and
+ * sinks leak the arguments listed by their rules.
+ */
+public final class MethodRules {
+
+    private static final MethodRules NONE = new MethodRules(false, false, 0L);
+
+    private final boolean source;
+    private final boolean sanitizer;
+    /**
+     * Arguments leaked by the method, one bit each. Arguments past the 63rd share the last bit.
+     */
+    private final long leakedArguments;
+
+    MethodRules(boolean source, boolean sanitizer, long leakedArguments) {
+        this.source = source;
+        this.sanitizer = sanitizer;
+        this.leakedArguments = leakedArguments;
+    }
+
+    /**
+     * @return the rules of a method no rule matches
+     */
+    public static MethodRules none() {
+        return NONE;
+    }
+
+    static long argumentBit(int argument) {
+        return 1L << Math.min(argument, Long.SIZE - 1);
+    }
+
+    public boolean isSource() {
+        return source;
+    }
+
+    public boolean isSanitizer() {
+        return sanitizer;
+    }
+
+    public boolean isSink() {
+        return leakedArguments != 0L;
+    }
+
+    /**
+     * @param argument an argument index
+     * @return whether the method leaks the argument
+     */
+    public boolean leaksArgument(int argument) {
+        return (leakedArguments & argumentBit(argument)) != 0L;
+    }
+
+    MethodRules join(MethodRules other) {
+        if (other == NONE) {
+            return this;
+        }
+        return new MethodRules(source || other.source, sanitizer || other.sanitizer,
+                leakedArguments | other.leakedArguments);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("source: %s, sanitizer: %s, leaked arguments: %s", source, sanitizer,
+                Long.toBinaryString(leakedArguments));
+    }
+}
@@ -0,0 +1,268 @@
+package analysis.rules;
+
+import org.slf4j.Logger;
+import org.yaml.snakeyaml.Yaml;
+import soot.SootMethodRef;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Source, sanitizer and sink rules, compiled into indexes by signature, by class, and by package. Package rules are
+ * kept in a trie of package segments, so a class is matched against every package rule by walking its name once.
+ * <p>
+ * Rules are written in YAML, as lists of {@code sources}, {@code sanitizers} and {@code sinks}. Each rule picks
+ * methods by {@code signature}, or by {@code class} or {@code package} (which includes its subpackages) and an optional
+ * {@code method} name. Sinks can list the {@code arguments} they leak, and leak the first one by default:
+ * <pre>
+ * sinks:
+ *   - class: java.io.PrintStream
+ *     method: println
+ *   - package: com.acme.audit
+ *     arguments: [0, 1]
+ * </pre>
+ * The rules matching each {@link SootMethodRef} are resolved once, so invocations are matched without any string work
+ * after the first one, and without resolving the invoked method.
+ */
+public class RuleMatcher {
+
+    public static final String BUNDLED_RULES = "/sensible-data-rules.yaml";
+
+    private static final Logger LOGGER = getLogger(RuleMatcher.class);
+
+    private static volatile RuleMatcher shared;
+    private static Path sharedRulesFile;
+
+    private final Map<String, MethodRules> bySignature = new HashMap<>();
+    private final Map<String, NameRules> byClass = new HashMap<>();
+    private final PackageNode packages = new PackageNode();
+    private final Map<SootMethodRef, MethodRules> byMethodRef = new ConcurrentHashMap<>();
+    private int size;
+    private int fingerprint;
+
+    /**
+     * @return the rules used by every analysis in this run, the bundled ones unless others were set
+     */
+    public static RuleMatcher shared() {
+        RuleMatcher current = shared;
+        if (current == null) {
+            synchronized (RuleMatcher.class) {
+                if (shared == null) {
+                    shared = bundled();
+                }
+                current = shared;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Uses the rules of a YAML file for the rest of the run. Does nothing if the file is already in use.
+     *
+     * @param rulesFile the rules file
+     * @return whether the rules in use changed
+     */
+    public static synchronized boolean useRulesFile(Path rulesFile) {
+        if (rulesFile.equals(sharedRulesFile)) {
+            return false;
+        }
+        try (InputStream rules = Files.newInputStream(rulesFile)) {
+            shared = compile(rules);
+            sharedRulesFile = rulesFile;
+            LOGGER.info("Loaded {} rules from {}", shared.size(), rulesFile);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Goes back to the bundled rules for the rest of the run.
+     */
+    public static synchronized void useBundledRules() {
+        if (sharedRulesFile == null && shared != null) {
+            return;
+        }
+        shared = bundled();
+        sharedRulesFile = null;
+    }
+
+    private static RuleMatcher bundled() {
+        try (InputStream rules = RuleMatcher.class.getResourceAsStream(BUNDLED_RULES)) {
+            if (rules == null) {
+                throw new IllegalStateException("No bundled rules found in " + BUNDLED_RULES);
+            }
+            return compile(rules);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param yaml the rules
+     * @return the compiled rules
+     * @throws IllegalArgumentException if some rule is malformed
+     */
+    public static RuleMatcher compile(InputStream yaml) {
+        Map<String, Object> document = new Yaml().load(yaml);
+        RuleMatcher matcher = new RuleMatcher();
+        if (document == null) {
+            return matcher;
+        }
+        matcher.fingerprint = document.toString().hashCode();
+        for (String section : document.keySet()) {
+            if (!section.equals("sources") && !section.equals("sanitizers") && !section.equals("sinks")) {
+                throw new IllegalArgumentException("Unknown rules section: " + section);
+            }
+        }
+        matcher.addAll(document.get("sources"), "sources");
+        matcher.addAll(document.get("sanitizers"), "sanitizers");
+        matcher.addAll(document.get("sinks"), "sinks");
+        return matcher;
+    }
+
+    /**
+     * @param methodRef an invoked method
+     * @return the rules matching the method, joined
+     */
+    public MethodRules rulesOf(SootMethodRef methodRef) {
+        MethodRules rules = byMethodRef.get(methodRef);
+        if (rules == null) {
+            rules = resolve(methodRef);
+            byMethodRef.put(methodRef, rules);
+        }
+        return rules;
+    }
+
+    /**
+     * @return a hash of the rules, which changes with any rule
+     */
+    public int getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the amount of compiled rules
+     */
+    public int size() {
+        return size;
+    }
+
+    private MethodRules resolve(SootMethodRef methodRef) {
+        String className = methodRef.getDeclaringClass().getName();
+        String methodName = methodRef.getName();
+        MethodRules rules = MethodRules.none();
+        if (!bySignature.isEmpty()) {
+            rules = rules.join(bySignature.getOrDefault(methodRef.getSignature(), MethodRules.none()));
+        }
+        NameRules classRules = byClass.get(className);
+        if (classRules != null) {
+            rules = rules.join(classRules.of(methodName));
+        }
+        // Every package of the class, outermost first
+        PackageNode node = packages;
+        int segmentStart = 0;
+        int segmentEnd;
+        while (node != null && (segmentEnd = className.indexOf('.', segmentStart)) >= 0) {
+            node = node.children.get(className.substring(segmentStart, segmentEnd));
+            if (node != null && node.rules != null) {
+                rules = rules.join(node.rules.of(methodName));
+            }
+            segmentStart = segmentEnd + 1;
+        }
+        return rules;
+    }
+
+    private void addAll(Object section, String sectionName) {
+        if (section == null) {
+            return;
+        }
+        if (!(section instanceof List)) {
+            throw new IllegalArgumentException("Rules section " + sectionName + " must be a list");
+        }
+        for (Object rule : (List<?>) section) {
+            if (!(rule instanceof Map)) {
+                throw new IllegalArgumentException("Malformed rule in " + sectionName + ": " + rule);
+            }
+            add(sectionName, (Map<?, ?>) rule);
+        }
+    }
+
+    private void add(String sectionName, Map<?, ?> rule) {
+        MethodRules rules = rulesFor(sectionName, rule);
+        String method = (String) rule.get("method");
+        if (rule.containsKey("signature")) {
+            bySignature.merge((String) rule.get("signature"), rules, MethodRules::join);
+        } else if (rule.containsKey("class")) {
+            byClass.computeIfAbsent((String) rule.get("class"), c -> new NameRules()).add(method, rules);
+        } else if (rule.containsKey("package")) {
+            PackageNode node = packages;
+            for (String segment : ((String) rule.get("package")).split("\\.")) {
+                node = node.children.computeIfAbsent(segment, s -> new PackageNode());
+            }
+            if (node.rules == null) {
+                node.rules = new NameRules();
+            }
+            node.rules.add(method, rules);
+        } else {
+            throw new IllegalArgumentException("Rule in " + sectionName + " needs a signature, class or package: " + rule);
+        }
+        size++;
+    }
+
+    private static MethodRules rulesFor(String sectionName, Map<?, ?> rule) {
+        switch (sectionName) {
+            case "sources":
+                return new MethodRules(true, false, 0L);
+            case "sanitizers":
+                return new MethodRules(false, true, 0L);
+            default:
+                Object arguments = rule.get("arguments");
+                long leaked = 0L;
+                for (Object argument : arguments == null ? Collections.singletonList(0) : (List<?>) arguments) {
+                    leaked |= MethodRules.argumentBit((Integer) argument);
+                }
+                return new MethodRules(false, false, leaked);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rules, %d methods matched", size, byMethodRef.size());
+    }
+
+    /**
+     * Rules of a class or package, by method name.
+     */
+    private static class NameRules {
+        private final Map<String, MethodRules> byName = new HashMap<>();
+        private MethodRules anyName = MethodRules.none();
+
+        private void add(String methodName, MethodRules rules) {
+            if (methodName == null) {
+                anyName = anyName.join(rules);
+            } else {
+                byName.merge(methodName, rules, MethodRules::join);
+            }
+        }
+
+        private MethodRules of(String methodName) {
+            return anyName.join(byName.getOrDefault(methodName, MethodRules.none()));
+        }
+    }
+
+    private static class PackageNode {
+        private final Map<String, PackageNode> children = new HashMap<>();
+        private NameRules rules;
+    }
+}
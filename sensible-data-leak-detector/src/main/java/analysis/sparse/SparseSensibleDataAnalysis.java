@@ -0,0 +1,494 @@
+package analysis.sparse;
+
+import analysis.InvocationVisitor;
+import analysis.InvocationVisitor.InvocationResult;
+import analysis.LeakAnalysisResult;
+import analysis.SensibleDataAnalysis;
+import analysis.UnitTransfer;
+import analysis.abstraction.SensibilityLattice;
+import analysis.interprocedural.SummaryEngine;
+import analysis.pointsto.PointsToIndex;
+import analysis.pointsto.PointsToProvider;
+import dataflow.utils.LocalNumbering;
+import dataflow.utils.PackedLatticeState;
+import soot.Body;
+import soot.Local;
+import soot.SootMethod;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.IdentityStmt;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.scalar.LocalDefs;
+import soot.toolkits.scalar.SimpleLocalDefs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static analysis.abstraction.SensibilityLattice.HIGH;
+import static analysis.abstraction.SensibilityLattice.getBottom;
+
+/**
+ * Sparse version of {@link SensibleDataAnalysis}. Instead of flowing the sensibility of every local through every
+ * unit, each unit writing a local, or a field or array element reachable from it, is linked to the units reading the
+ * value it writes, and sensibility is propagated along those def-use edges only, from the units producing sensible
+ * values towards the ones leaking them.
+ * <p>
+ * Units are evaluated with the same {@link UnitTransfer}s as the dense analysis, over the same numbering of locals and
+ * tracked access paths: assignments keep the assignee previous value when nothing sensible is assigned, so an
+ * assignment also reads its assignee, copies read the copied path and its prefixes and write the matching extensions
+ * of the assignee, and reading a local reads every path derived from it. Only standalone invocations report leaks.
+ * Locals only written by their definitions reach their readers through {@link SimpleLocalDefs}. The writes reaching
+ * each unit of the few locals and paths written otherwise, by markers, sanitizers, and field or array stores, are
+ * found with a single forward pass over the CFG.
+ */
+public class SparseSensibleDataAnalysis implements LeakAnalysisResult {
+
+    private static final int[] NO_SLOTS = new int[0];
+
+    private final Body body;
+    private final SootMethod method;
+    private final PointsToIndex pointsTo;
+    private final SummaryEngine summaries;
+    private final UnitTransfer.Compiled transfers;
+    private final LocalNumbering numbering;
+    private final ExceptionalUnitGraph graph;
+    private final Map<Local, SensibilityLattice> initialValues = new HashMap<>();
+
+    // The writes of each unit are numbered consecutively, in the order of its written slots
+    private final Map<Unit, int[]> writtenSlots = new HashMap<>();
+    private final Map<Unit, Integer> firstWrites = new HashMap<>();
+    private final List<Unit> writingUnits = new ArrayList<>();
+    private final Map<Unit, Map<Integer, BitSet>> reachingWrites = new HashMap<>();
+    private final List<List<Unit>> readers = new ArrayList<>();
+    private int defUseEdges;
+
+    private final BitSet sensibleWrites = new BitSet();
+    private final Deque<Unit> worklist = new ArrayDeque<>();
+    private final Set<Unit> queued = new LinkedHashSet<>();
+    private final Set<Unit> leakingUnits = new HashSet<>();
+    private boolean returningSensibleValue = false;
+    private int evaluations;
+
+    /**
+     * Creates a new {@link SparseSensibleDataAnalysis} for the given body, with no sensible params
+     *
+     * @param body
+     * @param pointsTo  the points-to index, or null to use the run-wide one for this body
+     * @param summaries the called methods summaries, or null to re-analyze called methods on each call site
+     * @return
+     */
+    public static SparseSensibleDataAnalysis forBody(Body body, PointsToIndex pointsTo, SummaryEngine summaries) {
+        return new SparseSensibleDataAnalysis(body, Collections.emptyMap(), getBottom(), pointsTo, summaries);
+    }
+
+    public SparseSensibleDataAnalysis(Body body, Map<Integer, SensibilityLattice> methodParams,
+                                      SensibilityLattice receiver, PointsToIndex pointsTo, SummaryEngine summaries) {
+        this.body = body;
+        this.method = body.getMethod();
+        this.pointsTo = pointsTo != null ? pointsTo : PointsToProvider.shared().forBody(body);
+        this.summaries = summaries;
+        this.graph = SensibleDataAnalysis.graphFor(body);
+        this.transfers = UnitTransfer.compile(graph);
+        this.numbering = transfers.getPaths().getNumbering();
+
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            SensibilityLattice value = methodParams.get(i);
+            initialValues.put(body.getParameterLocal(i), value != null ? value : getBottom());
+        }
+        if (!method.isStatic()) {
+            initialValues.put(body.getThisLocal(), receiver);
+        }
+
+        buildDefUseGraph();
+        propagate();
+    }
+
+    private void buildDefUseGraph() {
+        Map<Unit, int[]> readSlots = new HashMap<>();
+        Set<Integer> locallyTrackedSlots = new HashSet<>();
+        for (Unit unit : body.getUnits()) {
+            int[] written = writtenSlotsOf(unit);
+            if (written.length > 0) {
+                writtenSlots.put(unit, written);
+                firstWrites.put(unit, writingUnits.size());
+                for (int slot : written) {
+                    writingUnits.add(unit);
+                    readers.add(new ArrayList<>());
+                    if (!isDefinitionOf(unit, slot)) {
+                        locallyTrackedSlots.add(slot);
+                    }
+                }
+            }
+            readSlots.put(unit, readSlotsOf(unit));
+        }
+
+        LocalDefs localDefs = new SimpleLocalDefs(graph);
+        Map<Unit, BitSet> reachingTracked = locallyTrackedSlots.isEmpty()
+                ? Collections.emptyMap()
+                : reachingWritesOf(locallyTrackedSlots);
+        for (Unit unit : body.getUnits()) {
+            Map<Integer, BitSet> writes = new HashMap<>();
+            for (int slot : readSlots.get(unit)) {
+                if (writes.containsKey(slot)) {
+                    continue;
+                }
+                BitSet reaching = locallyTrackedSlots.contains(slot)
+                        ? writesOf(slot, reachingTracked.get(unit))
+                        : definitionsOf(slot, unit, localDefs);
+                writes.put(slot, reaching);
+                for (int write = reaching.nextSetBit(0); write >= 0; write = reaching.nextSetBit(write + 1)) {
+                    readers.get(write).add(unit);
+                    defUseEdges++;
+                }
+            }
+            reachingWrites.put(unit, writes);
+        }
+    }
+
+    /**
+     * Finds the writes of the given slots reaching each unit, as reaching definitions: the writes reaching a unit are
+     * the ones leaving any of its predecessors, and a unit writing a slot replaces every other write of it. Units are
+     * only revisited when the writes leaving a predecessor grow, instead of walking the CFG backwards from every unit
+     * reading the slots.
+     *
+     * @param slots the locals and paths to find the writes of
+     * @return the writes reaching each unit, before it runs
+     */
+    private Map<Unit, BitSet> reachingWritesOf(Set<Integer> slots) {
+        Map<Integer, BitSet> writesBySlot = new HashMap<>();
+        for (int write = 0; write < writingUnits.size(); write++) {
+            int slot = slotOf(write);
+            if (slots.contains(slot)) {
+                writesBySlot.computeIfAbsent(slot, s -> new BitSet()).set(write);
+            }
+        }
+
+        Map<Unit, BitSet> reachingIn = new HashMap<>();
+        Map<Unit, BitSet> reachingOut = new HashMap<>();
+        Deque<Unit> worklist = new ArrayDeque<>(body.getUnits());
+        Set<Unit> queued = new HashSet<>(body.getUnits());
+        while (!worklist.isEmpty()) {
+            Unit unit = worklist.poll();
+            queued.remove(unit);
+            BitSet in = new BitSet();
+            for (Unit pred : graph.getPredsOf(unit)) {
+                BitSet predOut = reachingOut.get(pred);
+                if (predOut != null) {
+                    in.or(predOut);
+                }
+            }
+            reachingIn.put(unit, in);
+            BitSet out = (BitSet) in.clone();
+            int[] written = writtenSlots.getOrDefault(unit, NO_SLOTS);
+            for (int i = 0; i < written.length; i++) {
+                BitSet slotWrites = writesBySlot.get(written[i]);
+                if (slotWrites != null) {
+                    out.andNot(slotWrites);
+                    out.set(firstWrites.get(unit) + i);
+                }
+            }
+            if (!out.equals(reachingOut.get(unit))) {
+                reachingOut.put(unit, out);
+                for (Unit succ : graph.getSuccsOf(unit)) {
+                    if (queued.add(succ)) {
+                        worklist.add(succ);
+                    }
+                }
+            }
+        }
+        return reachingIn;
+    }
+
+    /**
+     * @return the writes of {@code slot} between the reaching ones
+     */
+    private BitSet writesOf(int slot, BitSet reaching) {
+        BitSet writing = new BitSet();
+        for (int write = reaching.nextSetBit(0); write >= 0; write = reaching.nextSetBit(write + 1)) {
+            if (slotOf(write) == slot) {
+                writing.set(write);
+            }
+        }
+        return writing;
+    }
+
+    /**
+     * @return the writes of the definitions of the local at {@code slot} reaching the unit
+     */
+    private BitSet definitionsOf(int slot, Unit unit, LocalDefs localDefs) {
+        BitSet writing = new BitSet();
+        if (slot >= body.getLocals().size()) {
+            // A path nothing writes
+            return writing;
+        }
+        for (Unit definition : localDefs.getDefsOfAt(numbering.localAt(slot), unit)) {
+            int write = writeOf(definition, slot);
+            if (write >= 0) {
+                writing.set(write);
+            }
+        }
+        return writing;
+    }
+
+    private void propagate() {
+        worklist.addAll(body.getUnits());
+        queued.addAll(body.getUnits());
+        while (!worklist.isEmpty()) {
+            Unit unit = worklist.poll();
+            queued.remove(unit);
+            evaluations++;
+            evaluate(unit);
+        }
+    }
+
+    /**
+     * Evaluates a unit with the current sensibility of the values it reads, as the dense analysis applies its
+     * transfer, recording leaks and sensible returns, and marking the writes found sensible.
+     */
+    private void evaluate(Unit unit) {
+        if (unit instanceof IdentityStmt) {
+            Value assignee = ((IdentityStmt) unit).getLeftOp();
+            SensibilityLattice initial = initialValues.get(assignee);
+            if (initial != null && SensibilityLattice.isSensible(initial)) {
+                markSensible(unit, numbering.indexOf((Local) assignee));
+            }
+            return;
+        }
+        UnitTransfer transfer = transfers.of(unit);
+        int target = transfer.getTarget();
+        switch (transfer.getKind()) {
+            case GEN_IF_ANY:
+                if (isSensibleAt(unit, target) || anySensibleAt(unit, transfer.getLocals())) {
+                    markSensible(unit, target);
+                }
+                break;
+            case COPY:
+                if (isSensibleAt(unit, target) || anySensibleAt(unit, transfer.getLocals())) {
+                    markSensible(unit, target);
+                }
+                int[] pathTargets = transfer.getPathTargets();
+                int[] pathSources = transfer.getPathSources();
+                for (int i = 0; i < pathTargets.length; i++) {
+                    if (isSensibleAt(unit, pathTargets[i]) || isSensibleAt(unit, pathSources[i])) {
+                        markSensible(unit, pathTargets[i]);
+                    }
+                }
+                break;
+            case SOURCE:
+                markSensible(unit, target);
+                break;
+            case SINK:
+                if (anySensibleAt(unit, transfer.getLocals()) || invoke(unit, transfer).leakInCall) {
+                    leakingUnits.add(unit);
+                }
+                break;
+            case CALL:
+                if (invoke(unit, transfer).leakInCall) {
+                    leakingUnits.add(unit);
+                }
+                break;
+            case ASSIGN_CALL:
+                if (isSensibleAt(unit, target) || invoke(unit, transfer).returnsSensibleValue) {
+                    markSensible(unit, target);
+                }
+                break;
+            case RETURN:
+                returningSensibleValue |= anySensibleAt(unit, transfer.getLocals());
+                break;
+            default:
+                // Sanitizers only write values that are not sensible
+                break;
+        }
+    }
+
+    /**
+     * Marks the write of the slot by the unit as sensible, queueing the units reading it the first time.
+     */
+    private void markSensible(Unit unit, int slot) {
+        int write = writeOf(unit, slot);
+        if (write < 0 || sensibleWrites.get(write)) {
+            return;
+        }
+        sensibleWrites.set(write);
+        for (Unit reader : readers.get(write)) {
+            if (queued.add(reader)) {
+                worklist.add(reader);
+            }
+        }
+    }
+
+    private InvocationResult invoke(Unit unit, UnitTransfer transfer) {
+        // The invocation only reads its receiver and arguments, and the paths derived from them, so just those are set
+        PackedLatticeState<SensibilityLattice> locals = new PackedLatticeState<>(numbering, SensibilityLattice.class);
+        for (int slot : transfer.getArguments()) {
+            locals.set(slot, isSensibleAt(unit, slot) ? HIGH : getBottom());
+        }
+        SensibleDataAnalysis.Context ctx = new SensibleDataAnalysis.Context(locals, method.getDeclaringClass(), method,
+                pointsTo, summaries);
+        return new InvocationVisitor(ctx, transfer.getInvokeExpr()).visit();
+    }
+
+    private boolean anySensibleAt(Unit unit, int[] slots) {
+        for (int slot : slots) {
+            if (isSensibleAt(unit, slot)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSensibleAt(Unit unit, int slot) {
+        BitSet writes = reachingWrites.get(unit).get(slot);
+        return writes != null && writes.intersects(sensibleWrites);
+    }
+
+    /**
+     * @return the locals and paths the unit writes, the same ones its transfer sets
+     */
+    private int[] writtenSlotsOf(Unit unit) {
+        Set<Integer> written = new LinkedHashSet<>();
+        if (unit instanceof IdentityStmt) {
+            Value assignee = ((IdentityStmt) unit).getLeftOp();
+            if (assignee instanceof Local) {
+                written.add(numbering.indexOf((Local) assignee));
+            }
+        } else {
+            UnitTransfer transfer = transfers.of(unit);
+            switch (transfer.getKind()) {
+                case COPY:
+                    written.add(transfer.getTarget());
+                    for (int pathTarget : transfer.getPathTargets()) {
+                        written.add(pathTarget);
+                    }
+                    break;
+                case SANITIZE:
+                    written.add(transfer.getTarget());
+                    for (int derived : transfer.getLocals()) {
+                        written.add(derived);
+                    }
+                    break;
+                case GEN_IF_ANY:
+                case SOURCE:
+                case ASSIGN_CALL:
+                    written.add(transfer.getTarget());
+                    break;
+                default:
+                    break;
+            }
+        }
+        written.remove(-1);
+        return toArray(written);
+    }
+
+    /**
+     * @return the locals and paths the unit reads, which for assignments include the written ones
+     */
+    private int[] readSlotsOf(Unit unit) {
+        if (unit instanceof IdentityStmt) {
+            return NO_SLOTS;
+        }
+        UnitTransfer transfer = transfers.of(unit);
+        Set<Integer> read = new LinkedHashSet<>();
+        switch (transfer.getKind()) {
+            case GEN_IF_ANY:
+            case COPY:
+            case ASSIGN_CALL:
+                for (int slot : writtenSlots.getOrDefault(unit, NO_SLOTS)) {
+                    read.add(slot);
+                }
+                addAll(read, transfer.getLocals());
+                addAll(read, transfer.getPathSources());
+                addAll(read, transfer.getArguments());
+                break;
+            case SINK:
+            case CALL:
+            case RETURN:
+                addAll(read, transfer.getLocals());
+                addAll(read, transfer.getArguments());
+                break;
+            default:
+                break;
+        }
+        return toArray(read);
+    }
+
+    /**
+     * @return the id of the write of the slot by the unit, or -1 if the unit doesn't write it
+     */
+    private int writeOf(Unit unit, int slot) {
+        int[] written = writtenSlots.get(unit);
+        if (written == null) {
+            return -1;
+        }
+        for (int i = 0; i < written.length; i++) {
+            if (written[i] == slot) {
+                return firstWrites.get(unit) + i;
+            }
+        }
+        return -1;
+    }
+
+    private int slotOf(int write) {
+        Unit unit = writingUnits.get(write);
+        return writtenSlots.get(unit)[write - firstWrites.get(unit)];
+    }
+
+    private boolean isDefinitionOf(Unit unit, int slot) {
+        return slot < body.getLocals().size() && unit instanceof DefinitionStmt
+                && ((DefinitionStmt) unit).getLeftOp() == numbering.localAt(slot);
+    }
+
+    private static void addAll(Set<Integer> slots, int[] added) {
+        for (int slot : added) {
+            slots.add(slot);
+        }
+    }
+
+    private static int[] toArray(Set<Integer> slots) {
+        int[] array = new int[slots.size()];
+        int i = 0;
+        for (int slot : slots) {
+            array[i++] = slot;
+        }
+        return array;
+    }
+
+    @Override
+    public boolean possibleLeakInUnit(Unit unit) {
+        return leakingUnits.contains(unit);
+    }
+
+    @Override
+    public boolean leaksSensibleValue() {
+        return !leakingUnits.isEmpty();
+    }
+
+    @Override
+    public boolean isReturningSensibleValue() {
+        return returningSensibleValue;
+    }
+
+    /**
+     * @return the amount of def-use edges sensibility is propagated along
+     */
+    public int getDefUseEdges() {
+        return defUseEdges;
+    }
+
+    /**
+     * @return the amount of unit evaluations until no more sensible values were found
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+}
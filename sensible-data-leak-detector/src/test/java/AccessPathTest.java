@@ -0,0 +1,50 @@
+import analysis.paths.AccessPath;
+import analysis.paths.AccessPathTable;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class AccessPathTest {
+
+    private final AccessPathTable table = new AccessPathTable();
+
+    @Test
+    public void equalPathsAreTheSameInstance() {
+        AccessPath first = table.append(table.append(table.base("dto"), "address"), "street");
+        AccessPath second = table.append(table.append(table.base("dto"), "address"), "street");
+
+        assertThat(second, sameInstance(first));
+        assertThat(second.getPrefix(), sameInstance(first.getPrefix()));
+        assertThat(table.size(), is(3));
+    }
+
+    @Test
+    public void pathsAreCutShortAtTheMaxLength() {
+        table.setMaxLength(2);
+        AccessPath limited = table.append(table.append(table.base("dto"), "address"), "street");
+
+        assertThat(table.append(limited, "number"), sameInstance(limited));
+        assertThat(limited.length(), is(2));
+        assertThat(limited.toString(), is("dto.address.street"));
+        assertThat(limited.startsWith(limited.getPrefix()), is(true));
+        assertThat(limited.getPrefix().startsWith(limited), is(false));
+    }
+
+    @Test
+    public void noFieldsAreKeptWithZeroLength() {
+        table.setMaxLength(0);
+        AccessPath array = table.base("values");
+
+        assertThat(table.append(array, AccessPath.ARRAY_ELEMENT), sameInstance(array));
+        assertThat(table.size(), is(1));
+    }
+
+    @Test
+    public void arrayElementsAreWrittenAfterTheirArray() {
+        AccessPath element = table.append(table.append(table.base("values"), AccessPath.ARRAY_ELEMENT), "name");
+
+        assertThat(element.toString(), is("values[].name"));
+    }
+}
@@ -0,0 +1,37 @@
+import analysis.daemon.AnalysisRequest;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class AnalysisRequestTest {
+
+    @Test
+    public void requestsDefaultToTheDenseAnalysisWithBundledRules() {
+        AnalysisRequest request = AnalysisRequest.parse("{\"entry\": \"wtf.thepalbi.TestMain\"}");
+
+        assertThat(request.getEntry(), is("wtf.thepalbi.TestMain"));
+        assertThat(request.getRules(), is(nullValue()));
+        assertThat(request.getKind(), is(AnalysisRequest.Kind.DENSE));
+    }
+
+    @Test
+    public void requestsNameTheirRulesAndAnalysis() {
+        AnalysisRequest request = AnalysisRequest.parse(
+                "{\"entry\": \"wtf.thepalbi.TestMain\", \"rules\": \"rules.yaml\", \"analysis\": \"ifds\"}");
+
+        assertThat(request.getRules(), is("rules.yaml"));
+        assertThat(request.getKind(), is(AnalysisRequest.Kind.IFDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requestsNeedAnEntryClass() {
+        AnalysisRequest.parse("{\"analysis\": \"sparse\"}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownAnalysesAreRejected() {
+        AnalysisRequest.parse("{\"entry\": \"wtf.thepalbi.TestMain\", \"analysis\": \"fast\"}");
+    }
+}
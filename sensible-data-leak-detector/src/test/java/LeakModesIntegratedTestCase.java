@@ -0,0 +1,273 @@
+import analysis.SensibleDataAnalysis;
+import analysis.ifds.IFDSLeakDriver;
+import analysis.ifds.SensibleDataSolver;
+import analysis.abstraction.SensibilityLattice;
+import analysis.bodies.BodyProvider;
+import analysis.bodies.ReachableMethods;
+import analysis.interprocedural.MethodSummary;
+import analysis.interprocedural.SinkReachability;
+import analysis.interprocedural.SummaryEngine;
+import analysis.rules.RuleMatcher;
+import analysis.pointsto.PointsToIndex;
+import analysis.sparse.SparseSensibleDataAnalysis;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import soot.*;
+import soot.options.Options;
+import wtf.thepalbi.PointToAnalysis;
+import wtf.thepalbi.PointsToResult;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static analysis.abstraction.SensibilityLattice.*;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+import static soot.UnitUtils.getLineNumberFromUnit;
+
+/**
+ * Checks that every way of running the analysis reports the same leaks as the dense one, on each of the
+ * leak-detector-test-classes programs.
+ */
+public class LeakModesIntegratedTestCase {
+
+    private static final List<String> PROGRAMS = Arrays.asList(
+            "wtf.thepalbi.TestMain",
+            "wtf.thepalbi.SimpleInterprocedural",
+            "wtf.thepalbi.PrintOnCalledMethod",
+            "wtf.thepalbi.SensibleDataReturnedByKnownMethod",
+            "wtf.thepalbi.SensibleDataStoredInField",
+            "wtf.thepalbi.SanitizationAvoidLeaks",
+            "wtf.thepalbi.SanitizeInOneIfBranch",
+            "wtf.thepalbi.LeakOnBothIfBranches",
+            "wtf.thepalbi.SensibleInOneIfBranch",
+            "wtf.thepalbi.TestPointsToWithoutAnalysis",
+            "wtf.thepalbi.TestPointsToWithoutAnalysis2");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sparseAndDenseReportTheSameLeaks() throws Exception {
+        for (String program : PROGRAMS) {
+            PointsToIndex pointsTo = loadProgram(program);
+            assertThat(program, leaksOf(program,
+                    body -> SparseSensibleDataAnalysis.forBody(body, pointsTo, null)::possibleLeakInUnit),
+                    is(denseLeaksOf(program, pointsTo)));
+        }
+    }
+
+    @Test
+    public void ifdsAndDenseReportTheSameLeaks() throws Exception {
+        for (String program : PROGRAMS) {
+            PointsToIndex pointsTo = loadProgram(program);
+            SensibleDataSolver solver = IFDSLeakDriver.solve(methodsOf(program), pointsTo);
+            assertThat(program, leaksOf(program, body -> solver.leakingUnitsOf(body.getMethod())::contains),
+                    is(denseLeaksOf(program, pointsTo)));
+        }
+    }
+
+    @Test
+    public void summariesAndDenseReportTheSameLeaks() throws Exception {
+        for (String program : PROGRAMS) {
+            PointsToIndex pointsTo = loadProgram(program);
+            SummaryEngine summaries = new SummaryEngine();
+            assertThat(program, leaksOf(program,
+                    body -> SensibleDataAnalysis.forBody(body, pointsTo, summaries)::possibleLeakInUnit),
+                    is(denseLeaksOf(program, pointsTo)));
+        }
+    }
+
+    @Test
+    public void mutuallyRecursiveMethodsAreSummarizedUntilFixpoint() throws Exception {
+        // Without summaries, the dense analysis would analyze the recursion forever
+        String program = "wtf.thepalbi.MutuallyRecursiveLeak";
+        PointsToIndex pointsTo = loadProgram(program);
+        SummaryEngine summaries = new SummaryEngine();
+        SootClass programClass = Scene.v().getSootClass(program);
+        for (String name : Arrays.asList("ping", "pong")) {
+            MethodSummary summary = summaries.summaryOf(programClass.getMethodByName(name), pointsTo);
+            assertThat(name, summary.apply(getBottom(), new SensibilityLattice[]{HIGH, NOT_SENSIBLE}).leakInCall,
+                    is(true));
+            assertThat(name, summary.apply(getBottom(), new SensibilityLattice[]{NOT_SENSIBLE, NOT_SENSIBLE})
+                    .leakInCall, is(false));
+        }
+        Map<String, List<Integer>> leaks =
+                leaksOf(program, body -> summaries.resultOf(body, pointsTo)::possibleLeakInUnit);
+        assertThat(leaks.get("<wtf.thepalbi.MutuallyRecursiveLeak: void main(java.lang.String[])>"),
+                contains(is(11)));
+    }
+
+    @Test
+    public void storedSummariesAreReusedUntilTheRulesChange() throws Exception {
+        String program = "wtf.thepalbi.SimpleInterprocedural";
+        PointsToIndex pointsTo = loadProgram(program);
+        Map<String, List<Integer>> dense = denseLeaksOf(program, pointsTo);
+        Path store = folder.getRoot().toPath().resolve("summaries.bin");
+
+        SummaryEngine firstRun = new SummaryEngine();
+        firstRun.useStore(store);
+        assertThat(leaksOf(program, body -> firstRun.resultOf(body, pointsTo)::possibleLeakInUnit), is(dense));
+        firstRun.getStore().save();
+        int analyzed = firstRun.getStore().getAnalyzed();
+        assertThat(analyzed, is(not(0)));
+
+        SummaryEngine secondRun = new SummaryEngine();
+        secondRun.useStore(store);
+        assertThat(leaksOf(program, body -> secondRun.resultOf(body, pointsTo)::possibleLeakInUnit), is(dense));
+        assertThat(secondRun.getStore().getReused(), is(analyzed));
+        assertThat(secondRun.getStore().getAnalyzed(), is(0));
+
+        // Any change to the rules invalidates every stored summary
+        Path rules = folder.newFile().toPath();
+        try (InputStream bundled = RuleMatcher.class.getResourceAsStream(RuleMatcher.BUNDLED_RULES)) {
+            Files.copy(bundled, rules, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.write(rules, "\n  - class: com.acme.Unused\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        try {
+            RuleMatcher.useRulesFile(rules);
+            SummaryEngine thirdRun = new SummaryEngine();
+            thirdRun.useStore(store);
+            assertThat(leaksOf(program, body -> thirdRun.resultOf(body, pointsTo)::possibleLeakInUnit), is(dense));
+            assertThat(thirdRun.getStore().getReused(), is(0));
+            assertThat(thirdRun.getStore().getAnalyzed(), is(analyzed));
+        } finally {
+            RuleMatcher.useBundledRules();
+        }
+    }
+
+    @Test
+    public void bodiesBuiltOnDemandReportTheSameLeaks() throws Exception {
+        for (String program : PROGRAMS) {
+            PointsToIndex pointsTo = loadProgram(program);
+            Map<String, List<Integer>> dense = denseLeaksOf(program, pointsTo);
+
+            // Load the program again, without building any body
+            G.reset();
+            configureCommonSootOptions();
+            Scene.v().loadNecessaryClasses();
+            BodyProvider.shared().setOnDemand(true);
+            try {
+                long built = BodyProvider.shared().getBuilt();
+                SootClass programClass = Scene.v().getSootClass(program);
+                for (SootMethod method : ReachableMethods.from(
+                        Collections.singletonList(programClass.getMethodByName("main")))) {
+                    if (!method.getDeclaringClass().equals(programClass)) {
+                        continue;
+                    }
+                    Body body = method.getActiveBody();
+                    List<Integer> lines = leakingLinesOf(body,
+                            SensibleDataAnalysis.forBody(body, pointsTo, null)::possibleLeakInUnit);
+                    assertThat(method.getSignature(), lines, is(dense.get(method.getSignature())));
+                }
+                assertThat(program, BodyProvider.shared().getBuilt() > built, is(true));
+                // The constructor is never called by the program, so its body is not built
+                assertThat(program, programClass.getMethodByName("<init>").hasActiveBody(), is(false));
+            } finally {
+                BodyProvider.shared().setOnDemand(false);
+            }
+        }
+    }
+
+    @Test
+    public void pruningKeepsEveryMethodTheDenseAnalysisReportsALeakIn() throws Exception {
+        for (String program : PROGRAMS) {
+            PointsToIndex pointsTo = loadProgram(program);
+            SinkReachability reachability = new SinkReachability(methodsOf(program), pointsTo);
+            List<String> pruned = new ArrayList<>();
+            for (Map.Entry<String, List<Integer>> leaks : denseLeaksOf(program, pointsTo).entrySet()) {
+                if (!leaks.getValue().isEmpty() && !reachability.canLeak(Scene.v().getMethod(leaks.getKey()))) {
+                    pruned.add(leaks.getKey());
+                }
+            }
+            assertThat(program, pruned, empty());
+        }
+    }
+
+    private Map<String, List<Integer>> denseLeaksOf(String program, PointsToIndex pointsTo) {
+        return leaksOf(program, body -> SensibleDataAnalysis.forBody(body, pointsTo, null)::possibleLeakInUnit);
+    }
+
+    /**
+     * @return the lines reported by the analysis in each method of the program, by method signature
+     */
+    private Map<String, List<Integer>> leaksOf(String program, Function<Body, Predicate<Unit>> analysis) {
+        Map<String, List<Integer>> leaks = new TreeMap<>();
+        for (SootMethod method : methodsOf(program)) {
+            Body body = method.getActiveBody();
+            leaks.put(method.getSignature(), leakingLinesOf(body, analysis.apply(body)));
+        }
+        return leaks;
+    }
+
+    private static List<Integer> leakingLinesOf(Body body, Predicate<Unit> leaking) {
+        List<Integer> lines = new ArrayList<>();
+        for (Unit unit : body.getUnits()) {
+            if (leaking.test(unit)) {
+                lines.add(getLineNumberFromUnit(unit));
+            }
+        }
+        return lines;
+    }
+
+    private List<SootMethod> methodsOf(String program) {
+        List<SootMethod> methods = new ArrayList<>();
+        for (SootMethod method : Scene.v().getSootClass(program).getMethods()) {
+            if (method.isConcrete()) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Loads the program classes with their bodies built, and computes points-to from the main method of the program.
+     */
+    private PointsToIndex loadProgram(String program) throws Exception {
+        G.reset();
+        configureCommonSootOptions();
+
+        // First do a run, and calculate points to
+        Scene.v().loadNecessaryClasses();
+        PackManager.v().runBodyPacks();
+        PointsToResult result = new PointToAnalysis(Scene.v()).forClassesUnderPackage(
+                "wtf.thepalbi",
+                Scene.v().getSootClass(program).getMethodByName("main").getActiveBody());
+
+        // Reset soot, and build the bodies again
+        G.reset();
+        configureCommonSootOptions();
+        Scene.v().loadNecessaryClasses();
+        PackManager.v().runBodyPacks();
+        return PointsToIndex.of(result);
+    }
+
+    private void configureCommonSootOptions() {
+        String testSourcesPath =
+                new File(
+                        getClass().getProtectionDomain().getCodeSource().getLocation().getPath(),
+                        "../../../leak-detector-test-classes/target/classes"
+                ).getPath();
+
+        Options.v().set_process_dir(Arrays.asList(testSourcesPath));
+        // Use default JVM rt.jar
+        Options.v().set_prepend_classpath(true);
+        // Extract line-numbers from .class. NECESSARY
+        Options.v().set_keep_line_number(true);
+
+        Options.v().setPhaseOption("jb", "use-original-names: true");
+    }
+}
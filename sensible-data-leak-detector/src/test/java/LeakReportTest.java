@@ -0,0 +1,120 @@
+import analysis.report.AsyncReportWriter;
+import analysis.report.JsonLinesFindingWriter;
+import analysis.report.LeakFinding;
+import analysis.report.OrderedReport;
+import analysis.report.SarifFindingWriter;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class LeakReportTest {
+
+    private static final LeakFinding PRINTED = new LeakFinding("wtf.thepalbi.TestMain",
+            "<wtf.thepalbi.TestMain: void main(java.lang.String[])>", 11,
+            "<java.io.PrintStream: void println(java.lang.String)>",
+            "<wtf.thepalbi.TestMain: void markAsSensible(java.lang.Object)>");
+    private static final LeakFinding UNKNOWN_LINE = new LeakFinding("wtf.thepalbi.TestMain$Inner",
+            "<wtf.thepalbi.TestMain$Inner: void leak(java.lang.String)>", -1, null, null);
+
+    @Test
+    public void findingsAreWrittenAsJsonLinesInSubmissionOrder() throws Exception {
+        StringWriter out = new StringWriter();
+        AsyncReportWriter writer = new AsyncReportWriter(new JsonLinesFindingWriter(out), 1);
+        writer.submit(Collections.singletonList(PRINTED));
+        writer.submit(Collections.singletonList(UNKNOWN_LINE));
+        writer.close();
+
+        assertThat(writer.getWritten(), is(2L));
+        assertThat(out.toString(), is("{\"class\": \"wtf.thepalbi.TestMain\", "
+                + "\"method\": \"<wtf.thepalbi.TestMain: void main(java.lang.String[])>\", \"line\": 11, "
+                + "\"sink\": \"<java.io.PrintStream: void println(java.lang.String)>\", "
+                + "\"source\": \"<wtf.thepalbi.TestMain: void markAsSensible(java.lang.Object)>\"}\n"
+                + "{\"class\": \"wtf.thepalbi.TestMain$Inner\", "
+                + "\"method\": \"<wtf.thepalbi.TestMain$Inner: void leak(java.lang.String)>\", \"line\": -1, "
+                + "\"sink\": null, \"source\": null}\n"));
+    }
+
+    @Test
+    public void findingsOfDegradedMethodsNameTheBudgetLimit() throws Exception {
+        LeakFinding degraded = new LeakFinding("wtf.thepalbi.TestMain",
+                "<wtf.thepalbi.TestMain: void loop()>", 20, "<java.io.PrintStream: void println(java.lang.String)>",
+                null, Collections.emptyList(), "method-visits");
+        StringWriter json = new StringWriter();
+        AsyncReportWriter jsonWriter = new AsyncReportWriter(new JsonLinesFindingWriter(json));
+        jsonWriter.submit(Arrays.asList(PRINTED, degraded));
+        jsonWriter.close();
+        StringWriter sarif = new StringWriter();
+        AsyncReportWriter sarifWriter = new AsyncReportWriter(new SarifFindingWriter(sarif));
+        sarifWriter.submit(Collections.singletonList(degraded));
+        sarifWriter.close();
+
+        String[] lines = json.toString().split("\n");
+        assertThat(lines[0], not(containsString("degraded")));
+        assertThat(lines[1].endsWith(", \"source\": null, \"degraded\": \"method-visits\"}"), is(true));
+        assertThat(sarif.toString(), containsString("\"source\": null, \"degraded\": \"method-visits\"}"));
+    }
+
+    @Test
+    public void sarifLogIsClosedAndLocatesResultsInTheOutermostClassFile() throws Exception {
+        StringWriter out = new StringWriter();
+        AsyncReportWriter writer = new AsyncReportWriter(new SarifFindingWriter(out));
+        writer.submit(Arrays.asList(PRINTED, UNKNOWN_LINE));
+        writer.close();
+
+        String sarif = out.toString();
+        assertThat(sarif, containsString("\"version\": \"2.1.0\""));
+        assertThat(sarif, containsString("{\"uri\": \"wtf/thepalbi/TestMain.java\"}, \"region\": {\"startLine\": 11}}"));
+        assertThat(sarif, containsString("{\"uri\": \"wtf/thepalbi/TestMain.java\"}}"));
+        assertThat(sarif, not(containsString("\"startLine\": -1")));
+        assertThat(sarif.trim().endsWith("]}]}"), is(true));
+    }
+
+    @Test
+    public void orderedReportReleasesFindingsInMethodOrder() {
+        List<LeakFinding> released = new ArrayList<>();
+        OrderedReport report = new OrderedReport(3, released::addAll);
+        report.submit(2, Collections.singletonList(UNKNOWN_LINE));
+        report.submit(1, Collections.emptyList());
+
+        assertThat(released.isEmpty(), is(true));
+        report.submit(0, Collections.singletonList(PRINTED));
+        assertThat(released, is(Arrays.asList(PRINTED, UNKNOWN_LINE)));
+        assertThat(report.getReleased(), is(3));
+    }
+
+    @Test
+    public void orderedReportIsTheSameWhateverTheAmountOfThreads() {
+        List<LeakFinding> findings = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            findings.add(new LeakFinding("wtf.thepalbi.TestMain", "<wtf.thepalbi.TestMain: void m" + i + "()>", i,
+                    null, null));
+        }
+        List<LeakFinding> released = Collections.synchronizedList(new ArrayList<>());
+        OrderedReport report = new OrderedReport(findings.size(), released::addAll);
+        IntStream.range(0, findings.size()).parallel()
+                .forEach(i -> report.submit(i, Collections.singletonList(findings.get(i))));
+
+        assertThat(released, is(findings));
+    }
+
+    @Test
+    public void flushingSkipsMethodsThatNeverReported() {
+        List<LeakFinding> released = new ArrayList<>();
+        OrderedReport report = new OrderedReport(3, released::addAll);
+        report.submit(2, Collections.singletonList(UNKNOWN_LINE));
+        report.submit(0, Collections.singletonList(PRINTED));
+        report.flush();
+
+        assertThat(released, is(Arrays.asList(PRINTED, UNKNOWN_LINE)));
+    }
+}
@@ -0,0 +1,66 @@
+import analysis.models.LibraryModelCompiler;
+import analysis.models.LibraryModelIndex;
+import analysis.models.ModelKind;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LibraryModelIndexTest {
+
+    private static final String MODELS = String.join("\n",
+            "# comment",
+            "propagate <java.lang.String: java.lang.String concat(java.lang.String)>",
+            "",
+            "sink <java.io.PrintStream: void print(java.lang.String)>",
+            "source,propagate <java.lang.System: java.lang.String getenv(java.lang.String)>",
+            "sanitize <java.lang.String: int length()>");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void compiledModelsAreFoundBySignature() throws Exception {
+        LibraryModelIndex index = compile(MODELS);
+
+        assertThat(index.size(), is(4));
+        assertThat(index.flagsOf("<java.lang.String: java.lang.String concat(java.lang.String)>"),
+                is(ModelKind.PROPAGATE.bit()));
+        assertThat(index.flagsOf("<java.io.PrintStream: void print(java.lang.String)>"), is(ModelKind.SINK.bit()));
+        assertThat(index.flagsOf("<java.lang.System: java.lang.String getenv(java.lang.String)>"),
+                is(ModelKind.SOURCE.bit() | ModelKind.PROPAGATE.bit()));
+        assertThat(index.flagsOf("<java.lang.String: int length()>"), is(ModelKind.SANITIZE.bit()));
+    }
+
+    @Test
+    public void unknownSignaturesAreNotModeled() throws Exception {
+        LibraryModelIndex index = compile(MODELS);
+
+        assertThat(index.flagsOf("<java.lang.String: java.lang.String trim()>"), is(0));
+        assertThat(compile("").flagsOf("<java.lang.String: int length()>"), is(0));
+    }
+
+    @Test
+    public void checksumChangesWithTheModels() throws Exception {
+        LibraryModelIndex index = compile(MODELS);
+
+        assertThat(compile(MODELS).getChecksum(), is(index.getChecksum()));
+        assertThat(compile(MODELS.replace("sink <", "sanitize <")).getChecksum() == index.getChecksum(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownKindsAreRejected() throws Exception {
+        compile("leak <java.io.PrintStream: void print(java.lang.String)>");
+    }
+
+    private LibraryModelIndex compile(String models) throws Exception {
+        Path indexFile = folder.newFile().toPath();
+        LibraryModelCompiler.compile(new StringReader(models), indexFile);
+        return LibraryModelIndex.map(indexFile);
+    }
+}
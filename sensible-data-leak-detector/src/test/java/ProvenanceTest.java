@@ -0,0 +1,56 @@
+import analysis.provenance.Provenance;
+import analysis.provenance.ProvenanceTable;
+import org.junit.Test;
+import soot.Unit;
+import soot.jimple.Jimple;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ProvenanceTest {
+
+    private final ProvenanceTable table = new ProvenanceTable();
+    private final Unit source = Jimple.v().newNopStmt();
+    private final Unit assignment = Jimple.v().newNopStmt();
+    private final Unit call = Jimple.v().newNopStmt();
+
+    @Test
+    public void equalNodesAreTheSameInstance() {
+        Provenance first = table.call(call, table.assignment(assignment, table.source(source)));
+        Provenance second = table.call(call, table.assignment(assignment, table.source(source)));
+
+        assertThat(second, sameInstance(first));
+        assertThat(table.size(), is(3));
+    }
+
+    @Test
+    public void witnessGoesFromTheSourceToTheLastStep() {
+        Provenance leaked = table.call(call, table.assignment(assignment, table.source(source)));
+
+        List<Provenance> witness = leaked.witness();
+        assertThat(witness.size(), is(3));
+        assertThat(witness.get(0).getKind(), is(Provenance.Kind.SOURCE));
+        assertThat(witness.get(0).getUnit(), sameInstance(source));
+        assertThat(witness.get(1).getUnit(), sameInstance(assignment));
+        assertThat(witness.get(2).getUnit(), sameInstance(call));
+        assertThat(leaked.origin(), sameInstance(witness.get(0)));
+    }
+
+    @Test
+    public void loopsDoNotGrowTraces() {
+        Provenance assigned = table.assignment(assignment, table.source(source));
+
+        assertThat(table.assignment(assignment, assigned), sameInstance(assigned));
+
+        // Going around a loop through another unit only keeps each unit once in the witness
+        Provenance looped = table.assignment(assignment, table.call(call, assigned));
+        List<Provenance> witness = looped.witness();
+        assertThat(witness.size(), is(3));
+        assertThat(witness.get(0).getUnit(), sameInstance(source));
+        assertThat(witness.get(1).getUnit(), sameInstance(call));
+        assertThat(witness.get(2).getUnit(), sameInstance(assignment));
+    }
+}
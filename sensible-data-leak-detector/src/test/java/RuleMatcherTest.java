@@ -0,0 +1,105 @@
+import analysis.rules.MethodRules;
+import analysis.rules.RuleMatcher;
+import org.junit.Test;
+import soot.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RuleMatcherTest {
+
+    private static final String RULES = String.join("\n",
+            "sources:",
+            "  - signature: <com.acme.Vault: java.lang.String secret(java.lang.String)>",
+            "sanitizers:",
+            "  - class: com.acme.Hasher",
+            "    method: hash",
+            "sinks:",
+            "  - class: java.io.PrintStream",
+            "  - package: com.acme.audit",
+            "    method: record",
+            "    arguments: [1, 2]");
+
+    @Test
+    public void methodsAreMatchedBySignature() {
+        RuleMatcher matcher = compile(RULES);
+
+        assertThat(matcher.rulesOf(methodRef("com.acme.Vault", "secret")).isSource(), is(true));
+        assertThat(matcher.rulesOf(methodRef("com.acme.Vault", "open")).isSource(), is(false));
+        assertThat(matcher.rulesOf(methodRef("com.acme.OtherVault", "secret")).isSource(), is(false));
+    }
+
+    @Test
+    public void methodsAreMatchedByClassAndName() {
+        RuleMatcher matcher = compile(RULES);
+
+        assertThat(matcher.rulesOf(methodRef("com.acme.Hasher", "hash")).isSanitizer(), is(true));
+        assertThat(matcher.rulesOf(methodRef("com.acme.Hasher", "salt")).isSanitizer(), is(false));
+        // A class rule without a method name matches every method of the class
+        assertThat(matcher.rulesOf(methodRef("java.io.PrintStream", "println")).isSink(), is(true));
+        assertThat(matcher.rulesOf(methodRef("java.io.PrintStream", "print")).isSink(), is(true));
+    }
+
+    @Test
+    public void methodsAreMatchedByPackagePrefix() {
+        RuleMatcher matcher = compile(RULES);
+
+        assertThat(matcher.rulesOf(methodRef("com.acme.audit.Log", "record")).isSink(), is(true));
+        assertThat(matcher.rulesOf(methodRef("com.acme.audit.remote.Log", "record")).isSink(), is(true));
+        assertThat(matcher.rulesOf(methodRef("com.acme.audit.Log", "flush")).isSink(), is(false));
+        assertThat(matcher.rulesOf(methodRef("com.acme.auditing.Log", "record")).isSink(), is(false));
+        assertThat(matcher.rulesOf(methodRef("com.acme.Log", "record")).isSink(), is(false));
+    }
+
+    @Test
+    public void sinksLeakTheListedArguments() {
+        RuleMatcher matcher = compile(RULES);
+
+        MethodRules record = matcher.rulesOf(methodRef("com.acme.audit.Log", "record"));
+        assertThat(record.leaksArgument(0), is(false));
+        assertThat(record.leaksArgument(1), is(true));
+        assertThat(record.leaksArgument(2), is(true));
+        // Sinks leak their first argument by default
+        MethodRules println = matcher.rulesOf(methodRef("java.io.PrintStream", "println"));
+        assertThat(println.leaksArgument(0), is(true));
+        assertThat(println.leaksArgument(1), is(false));
+    }
+
+    @Test
+    public void rulesMatchingTheSameMethodAreJoined() {
+        RuleMatcher matcher = compile(String.join("\n",
+                "sources:",
+                "  - package: com.acme",
+                "sinks:",
+                "  - class: com.acme.Pipe",
+                "    method: write"));
+
+        MethodRules rules = matcher.rulesOf(methodRef("com.acme.Pipe", "write"));
+        assertThat(rules.isSource(), is(true));
+        assertThat(rules.isSink(), is(true));
+        assertThat(rules.isSanitizer(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownSectionsAreRejected() {
+        compile("leaks:\n  - class: java.io.PrintStream");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rulesWithoutAMethodSelectorAreRejected() {
+        compile("sinks:\n  - method: println");
+    }
+
+    private static RuleMatcher compile(String rules) {
+        return RuleMatcher.compile(new ByteArrayInputStream(rules.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static SootMethodRef methodRef(String className, String methodName) {
+        return new SootMethodRefImpl(new SootClass(className), methodName,
+                Collections.singletonList(RefType.v("java.lang.String")), RefType.v("java.lang.String"), false);
+    }
+}
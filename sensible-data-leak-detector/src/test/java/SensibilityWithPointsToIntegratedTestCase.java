@@ -90,6 +90,14 @@ public class SensibilityWithPointsToIntegratedTestCase {
         assertThat(offendingLines, contains(is(14)));
     }
 
+    @Test
+    public void sensibleValueInFieldIsOnlyLeakedThroughThatField() throws Exception {
+        runPointsToAndSootForClass("wtf.thepalbi.SensibleDataStoredInField");
+        assertThat(offendingLines.size(), is(1));
+        // Printing another field of the same object doesn't leak
+        assertThat(offendingLines, contains(is(15)));
+    }
+
     @Test
     public void sensibleVariableIsNotLeakedAfterSanitize() throws Exception {
         runPointsToAndSootForClass("wtf.thepalbi.SanitizationAvoidLeaks");
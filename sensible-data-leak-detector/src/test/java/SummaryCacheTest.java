@@ -0,0 +1,65 @@
+import analysis.InvocationVisitor.InvocationResult;
+import analysis.SummaryCache;
+import analysis.abstraction.SensibilityLattice;
+import org.junit.Test;
+import soot.SootMethod;
+import soot.VoidType;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static analysis.abstraction.SensibilityLattice.*;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class SummaryCacheTest {
+
+    private final SummaryCache cache = new SummaryCache();
+    private final SootMethod method = new SootMethod("called", Collections.emptyList(), VoidType.v());
+    private final AtomicInteger analyses = new AtomicInteger();
+
+    @Test
+    public void sameSensibilityVectorIsAnalyzedOnce() {
+        InvocationResult result = invoke(method, BOTTOM, HIGH, NOT_SENSIBLE);
+
+        assertThat(invoke(method, BOTTOM, HIGH, NOT_SENSIBLE), sameInstance(result));
+        assertThat(analyses.get(), is(1));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void otherSensibilityVectorsAreAnalyzedAgain() {
+        invoke(method, BOTTOM, HIGH);
+        invoke(method, BOTTOM, NOT_SENSIBLE);
+        invoke(method, HIGH, HIGH);
+        invoke(new SootMethod("other", Collections.emptyList(), VoidType.v()), BOTTOM, HIGH);
+
+        assertThat(analyses.get(), is(4));
+        assertThat(cache.getHits(), is(0L));
+        assertThat(cache.size(), is(4));
+    }
+
+    @Test
+    public void clearingDropsEveryResult() {
+        InvocationResult result = invoke(method, BOTTOM, HIGH);
+        cache.clear();
+
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getMisses(), is(0L));
+        assertThat(invoke(method, BOTTOM, HIGH) == result, is(false));
+        assertThat(analyses.get(), is(2));
+    }
+
+    private InvocationResult invoke(SootMethod called, SensibilityLattice receiver, SensibilityLattice... arguments) {
+        Supplier<InvocationResult> analysis = () -> {
+            analyses.incrementAndGet();
+            return new InvocationResult(false, receiver == HIGH);
+        };
+        // Without points-to, as when analyzing against the run-wide result
+        return cache.get(null, called, receiver, arguments, analysis);
+    }
+}
@@ -0,0 +1,87 @@
+import analysis.interprocedural.MethodSummary;
+import analysis.interprocedural.SummaryStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SummaryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void entriesAreReusedByTheNextRun() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("summaries.bin");
+        SummaryStore firstRun = SummaryStore.open(file);
+        assertThat(firstRun.lookup("caller"), is(nullValue()));
+        firstRun.put("caller", entry(true, 3));
+        firstRun.save();
+
+        SummaryStore secondRun = SummaryStore.open(file);
+        SummaryStore.Entry entry = secondRun.lookup("caller");
+
+        assertThat(entry.getSummary(), is(new MethodSummary(false, true, 0L, 1L)));
+        assertThat(entry.getLeakingUnits(), is(leakingUnits(3)));
+        assertThat(secondRun.getReused(), is(1));
+        assertThat(secondRun.getAnalyzed(), is(0));
+    }
+
+    @Test
+    public void onlyEntriesUsedByTheRunAreWrittenBack() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("summaries.bin");
+        SummaryStore firstRun = SummaryStore.open(file);
+        firstRun.put("unchanged", entry(false, 1));
+        firstRun.put("changed", entry(true, 2));
+        firstRun.save();
+
+        // The changed method has another key in the second run
+        SummaryStore secondRun = SummaryStore.open(file);
+        secondRun.lookup("unchanged");
+        secondRun.put("changed again", entry(true, 4));
+        secondRun.save();
+
+        SummaryStore thirdRun = SummaryStore.open(file);
+        assertThat(thirdRun.lookup("changed"), is(nullValue()));
+        assertThat(thirdRun.lookup("unchanged"), is(notNullValue()));
+        assertThat(thirdRun.lookup("changed again").getLeakingUnits(), is(leakingUnits(4)));
+    }
+
+    @Test
+    public void storesOfAnotherVersionAreDiscarded() throws Exception {
+        Path file = folder.newFile().toPath();
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(file))) {
+            output.writeInt(0x534c5353);
+            output.writeInt(1);
+            output.writeInt(1);
+            output.writeUTF("caller");
+        }
+
+        assertThat(SummaryStore.open(file).lookup("caller"), is(nullValue()));
+    }
+
+    @Test
+    public void unreadableStoresAreDiscarded() throws Exception {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[]{1, 2, 3});
+
+        assertThat(SummaryStore.open(file).lookup("caller"), is(nullValue()));
+    }
+
+    private static SummaryStore.Entry entry(boolean leaks, int leakingUnit) {
+        return new SummaryStore.Entry(new MethodSummary(false, leaks, 0L, leaks ? 1L : 0L), leakingUnits(leakingUnit));
+    }
+
+    private static BitSet leakingUnits(int leakingUnit) {
+        BitSet leakingUnits = new BitSet();
+        leakingUnits.set(leakingUnit);
+        return leakingUnits;
+    }
+}
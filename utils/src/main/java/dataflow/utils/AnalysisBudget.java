@@ -0,0 +1,195 @@
+package dataflow.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Run-wide limits on {@link ForwardDataflowSolver} runs, so a single pathological method can't stall a whole run.
+ * Each solver run is limited in wall time, in visits (its {@code flowThrough} calls), and in how deep it's nested in
+ * other runs on the same thread. All runs together are limited in wall time and visits too, counted from the first
+ * run checking them. Analyses resolving calls can also limit how many callees a call site may have, see
+ * {@link #allowsCallees(int)}.
+ * <p>
+ * A solver run out of budget stops iterating, and tells the {@link Limit} it hit through
+ * {@link ForwardDataflowSolver#getExhausted()}, so the analysis can fall back to a sound result. Degraded methods are
+ * kept, to be reported at the end of the run. Every limit is disabled (zero) by default.
+ */
+public class AnalysisBudget {
+
+    /**
+     * The limits, and the phase options setting them. {@link #DEPTH} is the most solver runs running at once on a
+     * thread.
+     */
+    public enum Limit {
+        METHOD_MILLIS("method-millis"),
+        METHOD_VISITS("method-visits"),
+        DEPTH("depth"),
+        CALLEES("callees"),
+        RUN_MILLIS("run-millis"),
+        RUN_VISITS("run-visits");
+
+        private final String option;
+
+        Limit(String option) {
+            this.option = option;
+        }
+
+        public String getOption() {
+            return option;
+        }
+    }
+
+    /**
+     * The phase options of every limit, to be declared by transformers configuring budgets.
+     */
+    public static final String OPTIONS = "method-millis method-visits depth callees run-millis run-visits";
+
+    private static final AnalysisBudget SHARED = new AnalysisBudget();
+
+    /**
+     * Replaced on every change, so checking a visit reads it once, without locking.
+     */
+    private volatile long[] limits = new long[Limit.values().length];
+    private final AtomicLong runStart = new AtomicLong();
+    private final AtomicLong runVisits = new AtomicLong();
+    private final ConcurrentMap<String, Limit> degraded = new ConcurrentHashMap<>();
+
+    /**
+     * @return the budget shared by every analysis in this run
+     */
+    public static AnalysisBudget shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param limit the limit
+     * @param value the new value, in milliseconds for time limits, or zero to disable it
+     */
+    public synchronized void set(Limit limit, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative " + limit.getOption() + " budget: " + value);
+        }
+        long[] changed = limits.clone();
+        changed[limit.ordinal()] = value;
+        limits = changed;
+    }
+
+    public long get(Limit limit) {
+        return limits[limit.ordinal()];
+    }
+
+    /**
+     * Sets every limit given in the phase options, keeping the others.
+     *
+     * @param options the phase options
+     */
+    public void configureFrom(Map<String, String> options) {
+        for (Limit limit : Limit.values()) {
+            String value = options.get(limit.getOption());
+            if (value != null && !value.isEmpty()) {
+                set(limit, Long.parseLong(value));
+            }
+        }
+    }
+
+    /**
+     * @param callees the amount of methods a call might dispatch to
+     * @return whether all of them can be analyzed
+     */
+    public boolean allowsCallees(int callees) {
+        long limit = get(Limit.CALLEES);
+        return limit == 0 || callees <= limit;
+    }
+
+    /**
+     * Called by solvers before each visit.
+     *
+     * @param depth     the amount of solver runs the checking one is nested in
+     * @param startNanos when the checking run started
+     * @param visits    the visits of the checking run so far
+     * @return the limit hit, or null if there's budget for another visit
+     */
+    Limit check(int depth, long startNanos, int visits) {
+        long[] current = limits;
+        if (exceeds(current, Limit.DEPTH, depth)) {
+            return Limit.DEPTH;
+        }
+        if (exceeds(current, Limit.METHOD_VISITS, visits)) {
+            return Limit.METHOD_VISITS;
+        }
+        // The shared counters are only touched when limited, so unlimited runs don't contend on them
+        if (current[Limit.RUN_VISITS.ordinal()] != 0
+                && exceeds(current, Limit.RUN_VISITS, runVisits.incrementAndGet())) {
+            return Limit.RUN_VISITS;
+        }
+        if (current[Limit.METHOD_MILLIS.ordinal()] == 0 && current[Limit.RUN_MILLIS.ordinal()] == 0) {
+            return null;
+        }
+        long now = System.nanoTime();
+        runStart.compareAndSet(0, now);
+        if (exceeds(current, Limit.METHOD_MILLIS, TimeUnit.NANOSECONDS.toMillis(now - startNanos))) {
+            return Limit.METHOD_MILLIS;
+        }
+        if (exceeds(current, Limit.RUN_MILLIS, TimeUnit.NANOSECONDS.toMillis(now - runStart.get()))) {
+            return Limit.RUN_MILLIS;
+        }
+        return null;
+    }
+
+    private static boolean exceeds(long[] limits, Limit limit, long value) {
+        long max = limits[limit.ordinal()];
+        return max != 0 && value >= max;
+    }
+
+    /**
+     * Records a method whose results fell back to top, keeping the first limit it hit.
+     *
+     * @param method the signature of the method
+     * @param limit  the limit hit
+     */
+    public void degrade(String method, Limit limit) {
+        degraded.putIfAbsent(method, limit);
+    }
+
+    /**
+     * @param method the signature of a method
+     * @return whether the results of the method fell back to top in this run
+     */
+    public boolean isDegraded(String method) {
+        return degraded.containsKey(method);
+    }
+
+    /**
+     * @return the limit hit by each degraded method, sorted by signature
+     */
+    public Map<String, Limit> degraded() {
+        return new TreeMap<>(degraded);
+    }
+
+    /**
+     * Forgets the degraded methods, and starts counting the run budgets again.
+     */
+    public void clear() {
+        degraded.clear();
+        runStart.set(0);
+        runVisits.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder limitsText = new StringBuilder();
+        for (Limit limit : Limit.values()) {
+            long value = get(limit);
+            if (value != 0) {
+                limitsText.append(limitsText.length() == 0 ? "" : ", ").append(limit.getOption()).append(' ')
+                        .append(value);
+            }
+        }
+        return String.format("%s, %d methods degraded", limitsText.length() == 0 ? "unlimited" : limitsText,
+                degraded.size());
+    }
+}
@@ -0,0 +1,31 @@
+package dataflow.utils;
+
+/**
+ * Phases of an analysis run, timed by {@link PhaseMetrics}.
+ */
+public enum AnalysisPhase {
+    /**
+     * Loading classes into the Soot Scene, until the first analysis transformer runs.
+     */
+    SOOT_LOAD("soot-load"),
+    POINTS_TO("points-to"),
+    /**
+     * Finding the bodies that can't leak, so they are not analyzed.
+     */
+    PRUNING("pruning"),
+    ANALYSIS("analysis"),
+    /**
+     * Reporting the findings of the analyses.
+     */
+    REPORTING("reporting");
+
+    private final String label;
+
+    AnalysisPhase(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,117 @@
+package dataflow.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run-wide convergence counters of {@link ForwardDataflowSolver} runs, per analyzed method. A method analyzed several
+ * times (for example, once per calling context) accumulates its visits (its {@code flowThrough} calls), nested runs
+ * and elapsed time, and keeps its largest iteration count and flow size.
+ * <p>
+ * Each recorded run is also emitted as a JFR event, when recording.
+ */
+public class ConvergenceStats {
+
+    private static final ConvergenceStats SHARED = new ConvergenceStats();
+
+    private final ConcurrentMap<String, MethodStats> byMethod = new ConcurrentHashMap<>();
+
+    /**
+     * @return the statistics shared by every analysis in this run
+     */
+    public static ConvergenceStats shared() {
+        return SHARED;
+    }
+
+    /**
+     * Records a finished solver run.
+     *
+     * @param method the signature of the analyzed method
+     * @param solver the solver, after running
+     */
+    public void record(String method, ForwardDataflowSolver<?, ?> solver) {
+        byMethod.computeIfAbsent(method, m -> new MethodStats()).add(solver);
+        JfrEvents.methodAnalyzed(method, solver);
+    }
+
+    /**
+     * @return the statistics of each method, sorted by signature
+     */
+    public Map<String, MethodStats> byMethod() {
+        return new TreeMap<>(byMethod);
+    }
+
+    public void clear() {
+        byMethod.clear();
+    }
+
+    @Override
+    public String toString() {
+        long runs = 0;
+        long visits = 0;
+        int iterations = 0;
+        int flowSize = 0;
+        for (MethodStats stats : byMethod.values()) {
+            runs += stats.getRuns();
+            visits += stats.getVisits();
+            iterations = Math.max(iterations, stats.getIterations());
+            flowSize = Math.max(flowSize, stats.getMaxFlowSize());
+        }
+        return String.format("%d methods, %d solver runs, %d node visits, at most %d iterations, largest flow %d",
+                byMethod.size(), runs, visits, iterations, flowSize);
+    }
+
+    public static class MethodStats {
+        private int runs;
+        private long visits;
+        private int iterations;
+        private long nestedRuns;
+        private int maxFlowSize;
+        private long elapsedNanos;
+
+        private synchronized void add(ForwardDataflowSolver<?, ?> solver) {
+            this.runs++;
+            this.visits += solver.getVisits();
+            this.iterations = Math.max(this.iterations, solver.getIterations());
+            this.nestedRuns += solver.getNestedRuns();
+            this.maxFlowSize = Math.max(this.maxFlowSize, solver.getMaxFlowSize());
+            this.elapsedNanos += solver.getElapsedNanos();
+        }
+
+        public synchronized int getRuns() {
+            return runs;
+        }
+
+        public synchronized long getVisits() {
+            return visits;
+        }
+
+        public synchronized int getIterations() {
+            return iterations;
+        }
+
+        public synchronized long getNestedRuns() {
+            return nestedRuns;
+        }
+
+        public synchronized int getMaxFlowSize() {
+            return maxFlowSize;
+        }
+
+        /**
+         * @return the time taken by every run, nested runs included
+         */
+        public synchronized long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%d runs, %d visits, %d iterations, %d nested runs, largest flow %d, %d us", runs,
+                    visits, iterations, nestedRuns, maxFlowSize, TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package dataflow.utils;
+
+import soot.toolkits.graph.DirectedGraph;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Worklist solver for forward monotone data-flow problems, with the same hooks as Soot's
+ * {@link soot.toolkits.scalar.ForwardFlowAnalysis}, but a pluggable {@link WorklistOrder} and convergence counters.
+ * <p>
+ * The flow before a node is the merge of the flows after its predecessors (plus {@link #entryInitialFlow()} for
+ * heads). A node is visited again only when the flow after one of its predecessors changes. Flows must implement
+ * {@code equals}.
+ * <p>
+ * Each run also measures its elapsed time, the largest flow seen (as told by {@link #sizeOf(Object)}), and how many
+ * other solver runs were nested in it on the same thread, like callee analyses started from {@link #flowThrough}.
+ * <p>
+ * Runs are limited by an {@link AnalysisBudget}, checked before each visit. A run out of budget stops iterating, so
+ * its flows are not a fixpoint, and {@link #getExhausted()} tells the limit it hit.
+ *
+ * @param <N> the nodes type
+ * @param <A> the flow type
+ */
+public abstract class ForwardDataflowSolver<N, A> {
+
+    private static final ThreadLocal<ForwardDataflowSolver<?, ?>> RUNNING = new ThreadLocal<>();
+
+    protected final DirectedGraph<N> graph;
+    private final WorklistOrder order;
+    private final AnalysisBudget budget;
+
+    private final Map<N, A> flowBefore = new HashMap<>();
+    private final Map<N, A> flowAfter = new HashMap<>();
+    private final Map<N, Integer> rankOf = new HashMap<>();
+    private int[] visitsByRank;
+    private List<N> ranked;
+    private int visits;
+    private int nestedRuns;
+    private int maxFlowSize;
+    private long elapsedNanos;
+    private int depth;
+    private AnalysisBudget.Limit exhausted;
+    private AnalysisBudget.Limit nestedExhausted;
+
+    public ForwardDataflowSolver(DirectedGraph<N> graph, WorklistOrder order) {
+        this(graph, order, AnalysisBudget.shared());
+    }
+
+    public ForwardDataflowSolver(DirectedGraph<N> graph, WorklistOrder order, AnalysisBudget budget) {
+        this.graph = graph;
+        this.order = order;
+        this.budget = budget;
+    }
+
+    protected abstract void flowThrough(A in, N node, A out);
+
+    protected abstract A newInitialFlow();
+
+    protected A entryInitialFlow() {
+        return newInitialFlow();
+    }
+
+    protected abstract void merge(A in1, A in2, A out);
+
+    protected abstract void copy(A source, A dest);
+
+    /**
+     * @param flow a flow after some node
+     * @return the size of the flow, reported as a metric. Zero by default
+     */
+    protected int sizeOf(A flow) {
+        return 0;
+    }
+
+    /**
+     * Runs the worklist until no flow changes.
+     */
+    protected void doAnalysis() {
+        ForwardDataflowSolver<?, ?> outer = RUNNING.get();
+        RUNNING.set(this);
+        depth = outer == null ? 0 : outer.depth + 1;
+        long start = System.nanoTime();
+        try {
+            solve(start);
+        } finally {
+            elapsedNanos = System.nanoTime() - start;
+            RUNNING.set(outer);
+            if (outer != null) {
+                outer.nestedRuns += nestedRuns + 1;
+                if (outer.nestedExhausted == null) {
+                    outer.nestedExhausted = exhausted != null ? exhausted : nestedExhausted;
+                }
+            }
+        }
+    }
+
+    private void solve(long start) {
+        ranked = order.rank(graph);
+        Set<N> heads = new HashSet<>(graph.getHeads());
+        for (int i = 0; i < ranked.size(); i++) {
+            N node = ranked.get(i);
+            rankOf.put(node, i);
+            flowBefore.put(node, newInitialFlow());
+            flowAfter.put(node, newInitialFlow());
+        }
+        visitsByRank = new int[ranked.size()];
+
+        Worklist worklist = order == WorklistOrder.FIFO ? new FifoWorklist(ranked.size()) : new RankWorklist(ranked.size());
+        for (int i = 0; i < ranked.size(); i++) {
+            worklist.add(i);
+        }
+
+        A entry = entryInitialFlow();
+        A initial = newInitialFlow();
+        A out = newInitialFlow();
+        while (!worklist.isEmpty()) {
+            exhausted = budget.check(depth, start, visits);
+            if (exhausted != null) {
+                break;
+            }
+            int rank = worklist.poll();
+            N node = ranked.get(rank);
+            visitsByRank[rank]++;
+            visits++;
+
+            A in = flowBefore.get(node);
+            copy(heads.contains(node) ? entry : initial, in);
+            for (N predecessor : graph.getPredsOf(node)) {
+                merge(in, flowAfter.get(predecessor), in);
+            }
+
+            flowThrough(in, node, out);
+            A previousOut = flowAfter.get(node);
+            // Every node is queued once at the start, so successors only need to be queued again on changes
+            if (!out.equals(previousOut)) {
+                copy(out, previousOut);
+                // Flows only grow, so their largest size is seen on changes
+                maxFlowSize = Math.max(maxFlowSize, sizeOf(out));
+                for (N successor : graph.getSuccsOf(node)) {
+                    worklist.add(rankOf.get(successor));
+                }
+            }
+        }
+    }
+
+    public A getFlowBefore(N node) {
+        return flowBefore.get(node);
+    }
+
+    public A getFlowAfter(N node) {
+        return flowAfter.get(node);
+    }
+
+    /**
+     * @return the amount of times any node was visited until convergence
+     */
+    public int getVisits() {
+        return visits;
+    }
+
+    /**
+     * @return the amount of times a node was visited
+     */
+    public int getVisits(N node) {
+        Integer rank = rankOf.get(node);
+        return rank == null ? 0 : visitsByRank[rank];
+    }
+
+    /**
+     * @return the iterations until convergence, as the most times a single node was visited
+     */
+    public int getIterations() {
+        int iterations = 0;
+        for (int nodeVisits : visitsByRank) {
+            iterations = Math.max(iterations, nodeVisits);
+        }
+        return iterations;
+    }
+
+    /**
+     * @return the amount of solver runs started on this thread while this one was running, at any depth
+     */
+    public int getNestedRuns() {
+        return nestedRuns;
+    }
+
+    /**
+     * @return the largest {@link #sizeOf(Object)} of the flow after any node
+     */
+    public int getMaxFlowSize() {
+        return maxFlowSize;
+    }
+
+    /**
+     * @return the time taken by the last run, nested runs included
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the budget limit the last run hit, or null if it reached a fixpoint
+     */
+    public AnalysisBudget.Limit getExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * @return the first budget limit hit by a run nested in this one, at any depth, or null if none ran out of budget
+     */
+    public AnalysisBudget.Limit getNestedExhausted() {
+        return nestedExhausted;
+    }
+
+    public WorklistOrder getOrder() {
+        return order;
+    }
+
+    private interface Worklist {
+        void add(int rank);
+
+        int poll();
+
+        boolean isEmpty();
+    }
+
+    /**
+     * Pending nodes are polled lowest rank first.
+     */
+    private static class RankWorklist implements Worklist {
+        private final BitSet pending;
+
+        private RankWorklist(int size) {
+            this.pending = new BitSet(size);
+        }
+
+        @Override
+        public void add(int rank) {
+            pending.set(rank);
+        }
+
+        @Override
+        public int poll() {
+            int rank = pending.nextSetBit(0);
+            pending.clear(rank);
+            return rank;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return pending.isEmpty();
+        }
+    }
+
+    /**
+     * Pending nodes are polled in the order they were added. A node already pending is not added twice.
+     */
+    private static class FifoWorklist implements Worklist {
+        private final ArrayDeque<Integer> queue = new ArrayDeque<>();
+        private final BitSet pending;
+
+        private FifoWorklist(int size) {
+            this.pending = new BitSet(size);
+        }
+
+        @Override
+        public void add(int rank) {
+            if (!pending.get(rank)) {
+                pending.set(rank);
+                queue.add(rank);
+            }
+        }
+
+        @Override
+        public int poll() {
+            int rank = queue.poll();
+            pending.clear(rank);
+            return rank;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package dataflow.utils;
+
+import soot.Body;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Run-wide cache of the control-flow graph of each {@link Body}, shared by every analysis in this run. Building an
+ * {@link ExceptionalUnitGraph} runs a throw analysis on every unit, so the same body analyzed from several call sites,
+ * or by several analyses, should only pay for it once.
+ * <p>
+ * Each graph weighs the amount of units of its body. Once the cached graphs weigh more than the
+ * {@linkplain #getMaxWeight() max weight}, the least recently used ones are evicted. A max weight of zero disables the
+ * cache, so every graph is built anew. Graphs of different bodies are built concurrently, outside of any lock, while
+ * concurrent requests for the same body wait for a single build. Only the recency and weight bookkeeping is locked.
+ * <p>
+ * Data derived from a graph, like compiled transfer functions, can be cached next to it with
+ * {@link #derivedOf(UnitGraph, Object, Function)}, and is dropped along with it.
+ * <p>
+ * A cached graph is only valid while its body isn't changed. Changing a body needs an {@link #invalidate(Body)}.
+ *
+ * @param <G> the type of the cached graphs
+ */
+public class GraphCache<G extends UnitGraph> {
+
+    /**
+     * The phase option setting the max weight, to be declared by transformers configuring the cache.
+     */
+    public static final String OPTION = "graph-cache-units";
+
+    public static final long DEFAULT_MAX_WEIGHT = 250_000;
+
+    private static final GraphCache<ExceptionalUnitGraph> SHARED = new GraphCache<>(ExceptionalUnitGraph::new);
+
+    private final Function<Body, G> builder;
+    private final ConcurrentMap<Body, Entry<G>> graphs = new ConcurrentHashMap<>();
+    // Cached entries from least to most recently used, guarded by itself along with weight and evictions
+    private final LinkedHashMap<Body, Entry<G>> recency = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile long maxWeight = DEFAULT_MAX_WEIGHT;
+    private long weight;
+    private long evictions;
+
+    private static final class Entry<G> {
+        final FutureTask<G> graph;
+        final int weight;
+        final ConcurrentMap<Object, Object> derived = new ConcurrentHashMap<>();
+
+        Entry(FutureTask<G> graph, int weight) {
+            this.graph = graph;
+            this.weight = weight;
+        }
+
+        boolean holds(UnitGraph built) {
+            if (!graph.isDone()) {
+                return false;
+            }
+            try {
+                return graph.get() == built;
+            } catch (InterruptedException | ExecutionException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @param builder builds the graph of a body, possibly from several threads at once
+     */
+    public GraphCache(Function<Body, G> builder) {
+        this.builder = builder;
+    }
+
+    /**
+     * @return the cache shared by every analysis in this run
+     */
+    public static GraphCache<ExceptionalUnitGraph> shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param body a body
+     * @return the cached graph of the body, built and cached if missing
+     */
+    public G graphOf(Body body) {
+        int units = body.getUnits().size();
+        long limit = maxWeight;
+        if (limit == 0 || units > limit) {
+            misses.incrementAndGet();
+            return builder.apply(body);
+        }
+        Entry<G> entry = graphs.get(body);
+        if (entry == null) {
+            Entry<G> created = new Entry<>(new FutureTask<>(() -> builder.apply(body)), units);
+            entry = graphs.putIfAbsent(body, created);
+            if (entry == null) {
+                misses.incrementAndGet();
+                admit(body, created);
+                created.graph.run();
+                return await(body, created);
+            }
+        }
+        hits.incrementAndGet();
+        synchronized (recency) {
+            recency.get(body);
+        }
+        return await(body, entry);
+    }
+
+    private G await(Body body, Entry<G> entry) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return entry.graph.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    synchronized (recency) {
+                        forget(body, entry);
+                    }
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Gets data derived from a graph, computing and caching it next to the graph if missing. Data of a graph that
+     * isn't cached, or was replaced since, is computed anew every time.
+     *
+     * @param graph   a graph got from this cache
+     * @param key     identifies the derived data, and whatever it depends on other than the graph
+     * @param compute computes the data from the graph
+     * @param <T>     the type of the derived data
+     * @return the derived data
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T derivedOf(G graph, Object key, Function<? super G, ? extends T> compute) {
+        Entry<G> entry = graphs.get(graph.getBody());
+        if (entry == null || !entry.holds(graph)) {
+            return compute.apply(graph);
+        }
+        return (T) entry.derived.computeIfAbsent(key, ignored -> compute.apply(graph));
+    }
+
+    /**
+     * @return the most units the cached graphs may have together
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @param maxWeight the most units the cached graphs may have together, or zero to disable the cache
+     */
+    public void setMaxWeight(long maxWeight) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("Negative graph cache weight: " + maxWeight);
+        }
+        synchronized (recency) {
+            this.maxWeight = maxWeight;
+            evictOver(maxWeight);
+        }
+    }
+
+    /**
+     * Sets the max weight if given in the phase options, keeping it otherwise.
+     *
+     * @param options the phase options
+     */
+    public void configureFrom(Map<String, String> options) {
+        String value = options.get(OPTION);
+        if (value != null && !value.isEmpty()) {
+            setMaxWeight(Long.parseLong(value));
+        }
+    }
+
+    /**
+     * Drops the graph of a changed body, if cached, along with the data derived from it.
+     *
+     * @param body the body
+     */
+    public void invalidate(Body body) {
+        synchronized (recency) {
+            Entry<G> entry = graphs.get(body);
+            if (entry != null) {
+                forget(body, entry);
+            }
+        }
+    }
+
+    private void admit(Body body, Entry<G> entry) {
+        synchronized (recency) {
+            // Invalidated or cleared before being admitted
+            if (graphs.get(body) != entry) {
+                return;
+            }
+            recency.put(body, entry);
+            weight += entry.weight;
+            evictOver(maxWeight);
+        }
+    }
+
+    private void forget(Body body, Entry<G> entry) {
+        if (graphs.remove(body, entry) && recency.remove(body) != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    private void evictOver(long limit) {
+        Iterator<Map.Entry<Body, Entry<G>>> eldest = recency.entrySet().iterator();
+        while (weight > limit && eldest.hasNext()) {
+            Map.Entry<Body, Entry<G>> evicted = eldest.next();
+            graphs.remove(evicted.getKey(), evicted.getValue());
+            weight -= evicted.getValue().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * @return the amount of cached graphs
+     */
+    public int size() {
+        synchronized (recency) {
+            return recency.size();
+        }
+    }
+
+    /**
+     * @return the amount of units of the cached graphs
+     */
+    public long getWeight() {
+        synchronized (recency) {
+            return weight;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        synchronized (recency) {
+            return evictions;
+        }
+    }
+
+    /**
+     * @return the fraction of graphs found cached, or zero if none was asked for
+     */
+    public double getHitRate() {
+        long found = hits.get();
+        long requests = found + misses.get();
+        return requests == 0 ? 0 : (double) found / requests;
+    }
+
+    /**
+     * Drops every graph, and resets the counters.
+     */
+    public void clear() {
+        synchronized (recency) {
+            graphs.clear();
+            recency.clear();
+            weight = 0;
+            evictions = 0;
+            hits.set(0);
+            misses.set(0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (recency) {
+            return String.format("%d graphs, %d/%d units, %.1f%% hits, %d evictions", recency.size(), weight,
+                    maxWeight, 100 * getHitRate(), evictions);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package dataflow.utils;
+
+/**
+ * Emits the analysis JFR events, only if the JVM supports JFR. Event classes are not even loaded otherwise.
+ */
+final class JfrEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private JfrEvents() {
+    }
+
+    static void phaseTimed(AnalysisPhase phase, long elapsedNanos) {
+        if (AVAILABLE) {
+            PhaseEvent.emit(phase, elapsedNanos);
+        }
+    }
+
+    static void methodAnalyzed(String method, ForwardDataflowSolver<?, ?> solver) {
+        if (AVAILABLE) {
+            MethodAnalysisEvent.emit(method, solver);
+        }
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
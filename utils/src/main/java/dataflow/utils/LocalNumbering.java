@@ -0,0 +1,129 @@
+package dataflow.utils;
+
+import soot.Body;
+import soot.Local;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dense numbering of the {@link Local}s of a {@link Body}. It is computed once per analyzed body, and shared by every
+ * {@link PackedLatticeState} of that analysis.
+ * <p>
+ * Locals can be followed by values derived from them, like the fields of the objects they reference, which are only
+ * addressed by name. Each of them is numbered after every local, and is derived from at most one local.
+ */
+public class LocalNumbering {
+
+    private static final int[] NOT_DERIVED = new int[0];
+
+    private final Local[] locals;
+    private final String[] names;
+    private final int[][] derivedByLocal;
+    private final Map<Local, Integer> indexByLocal;
+    private final Map<String, Integer> indexByName;
+
+    private LocalNumbering(Local[] locals, Map<String, Local> derived) {
+        this.locals = locals;
+        this.names = new String[locals.length + derived.size()];
+        this.derivedByLocal = new int[locals.length][];
+        this.indexByLocal = new HashMap<>(locals.length * 2);
+        this.indexByName = new HashMap<>(names.length * 2);
+        for (int i = 0; i < locals.length; i++) {
+            indexByLocal.put(locals[i], i);
+            names[i] = locals[i].getName();
+            indexByName.put(names[i], i);
+        }
+        int[] derivedCounts = new int[locals.length];
+        int index = locals.length;
+        for (Map.Entry<String, Local> value : derived.entrySet()) {
+            names[index] = value.getKey();
+            indexByName.put(value.getKey(), index++);
+            int from = indexOf(value.getValue());
+            if (from >= 0) {
+                derivedCounts[from]++;
+            }
+        }
+        for (int i = 0; i < locals.length; i++) {
+            derivedByLocal[i] = derivedCounts[i] == 0 ? NOT_DERIVED : new int[derivedCounts[i]];
+        }
+        Arrays.fill(derivedCounts, 0);
+        index = locals.length;
+        for (Local from : derived.values()) {
+            int fromIndex = indexOf(from);
+            if (fromIndex >= 0) {
+                derivedByLocal[fromIndex][derivedCounts[fromIndex]++] = index;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Numbers the locals of the given {@link Body}, following their declaration order.
+     *
+     * @param body the body whose locals are numbered
+     * @return the numbering
+     */
+    public static LocalNumbering of(Body body) {
+        return of(body, Collections.emptyMap());
+    }
+
+    /**
+     * Numbers the locals of the given {@link Body}, following their declaration order, and then the given derived
+     * values, following the map iteration order.
+     *
+     * @param body    the body whose locals are numbered
+     * @param derived the name of each derived value, mapped to the local it's derived from, or to null if none
+     * @return the numbering
+     */
+    public static LocalNumbering of(Body body, Map<String, Local> derived) {
+        return new LocalNumbering(body.getLocals().toArray(new Local[0]), derived);
+    }
+
+    /**
+     * @return the amount of numbered locals and derived values
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param local the local to look up
+     * @return the index of the local, or -1 if it does not belong to the numbered body
+     */
+    public int indexOf(Local local) {
+        Integer index = indexByLocal.get(local);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @param name the name of the local or derived value to look up
+     * @return the index of the local or derived value, or -1 if none has that name
+     */
+    public int indexOf(String name) {
+        Integer index = indexByName.get(name);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @param index the index of a local, not of a derived value
+     * @return the local
+     */
+    public Local localAt(int index) {
+        return locals[index];
+    }
+
+    public String nameAt(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param index the index of a local
+     * @return the indices of the values derived from the local. Must not be modified
+     */
+    public int[] derivedFrom(int index) {
+        return index < derivedByLocal.length ? derivedByLocal[index] : NOT_DERIVED;
+    }
+}
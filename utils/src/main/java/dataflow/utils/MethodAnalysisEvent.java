@@ -0,0 +1,50 @@
+package dataflow.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of a finished {@link ForwardDataflowSolver} run over a method.
+ */
+@Name("dataflow.MethodAnalysis")
+@Label("Method Analysis")
+@Category("Data-flow Analysis")
+@Description("A data-flow solver run over a method body")
+class MethodAnalysisEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Flow Through Calls")
+    int visits;
+
+    @Label("Iterations")
+    int iterations;
+
+    @Label("Nested Runs")
+    int nestedRuns;
+
+    @Label("Largest Flow")
+    int maxFlowSize;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    static void emit(String method, ForwardDataflowSolver<?, ?> solver) {
+        MethodAnalysisEvent event = new MethodAnalysisEvent();
+        if (event.isEnabled()) {
+            event.method = method;
+            event.visits = solver.getVisits();
+            event.iterations = solver.getIterations();
+            event.nestedRuns = solver.getNestedRuns();
+            event.maxFlowSize = solver.getMaxFlowSize();
+            event.elapsed = solver.getElapsedNanos();
+            event.commit();
+        }
+    }
+}
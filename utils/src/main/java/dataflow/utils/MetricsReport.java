@@ -0,0 +1,130 @@
+package dataflow.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON dump of the run metrics: the {@link PhaseMetrics}, the {@link ConvergenceStats} of every method, the
+ * {@link WarningCounters}, the methods degraded by the {@link AnalysisBudget}, and the {@link GraphCache} counters. The
+ * dump is written when the JVM exits, to the file named by the {@value #PROPERTY} system property, if set:
+ * <pre>
+ * {"phases": {"analysis": {"count": 1, "millis": 12}},
+ *  "methods": {"&lt;A: void main(java.lang.String[])&gt;": {"runs": 1, "visits": 9, ...}},
+ *  "warnings": {"Assignment to fields not supported yet: {}": 3},
+ *  "degraded": {"&lt;A: void loop()&gt;": "method-visits"},
+ *  "graphs": {"hits": 40, "misses": 12, "evictions": 0, "units": 310}}
+ * </pre>
+ */
+public class MetricsReport {
+
+    public static final String PROPERTY = "dataflow.metrics";
+
+    private MetricsReport() {
+    }
+
+    /**
+     * Writes the dump at exit, if the {@value #PROPERTY} system property names a file.
+     */
+    public static void dumpAtExitIfRequested() {
+        String file = System.getProperty(PROPERTY);
+        if (file == null || file.isEmpty()) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                write(Paths.get(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, "metrics-report"));
+    }
+
+    /**
+     * @param file the file to write the current metrics to
+     */
+    public static void write(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\"phases\": {");
+            String separator = "";
+            for (AnalysisPhase phase : AnalysisPhase.values()) {
+                if (PhaseMetrics.shared().getCount(phase) == 0) {
+                    continue;
+                }
+                out.write(String.format("%s\n  %s: {\"count\": %d, \"millis\": %d}", separator,
+                        quote(phase.getLabel()), PhaseMetrics.shared().getCount(phase),
+                        TimeUnit.NANOSECONDS.toMillis(PhaseMetrics.shared().getNanos(phase))));
+                separator = ",";
+            }
+            out.write("},\n\"methods\": {");
+            separator = "";
+            for (Map.Entry<String, ConvergenceStats.MethodStats> method :
+                    ConvergenceStats.shared().byMethod().entrySet()) {
+                ConvergenceStats.MethodStats stats = method.getValue();
+                out.write(String.format("%s\n  %s: {\"runs\": %d, \"visits\": %d, \"iterations\": %d, "
+                                + "\"nestedRuns\": %d, \"maxFlowSize\": %d, \"micros\": %d}", separator,
+                        quote(method.getKey()), stats.getRuns(), stats.getVisits(), stats.getIterations(),
+                        stats.getNestedRuns(), stats.getMaxFlowSize(),
+                        TimeUnit.NANOSECONDS.toMicros(stats.getElapsedNanos())));
+                separator = ",";
+            }
+            out.write("},\n\"warnings\": {");
+            separator = "";
+            for (Map.Entry<String, Long> warning : WarningCounters.shared().counts().entrySet()) {
+                out.write(String.format("%s\n  %s: %d", separator, quote(warning.getKey()), warning.getValue()));
+                separator = ",";
+            }
+            out.write("},\n\"degraded\": {");
+            separator = "";
+            for (Map.Entry<String, AnalysisBudget.Limit> method : AnalysisBudget.shared().degraded().entrySet()) {
+                out.write(String.format("%s\n  %s: %s", separator, quote(method.getKey()),
+                        quote(method.getValue().getOption())));
+                separator = ",";
+            }
+            GraphCache<?> graphs = GraphCache.shared();
+            out.write(String.format("},\n\"graphs\": {\"hits\": %d, \"misses\": %d, \"evictions\": %d, \"units\": %d}}\n",
+                    graphs.getHits(), graphs.getMisses(), graphs.getEvictions(), graphs.getWeight()));
+        }
+    }
+
+    /**
+     * @param text a text
+     * @return the text as a JSON string
+     */
+    public static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,187 @@
+package dataflow.utils;
+
+import soot.Local;
+
+import java.util.Arrays;
+
+/**
+ * Flow state mapping each {@link Local} of a body to a value of a four element lattice, packing every value in 2 bits
+ * of a {@code long[]}. Locals are addressed through a shared {@link LocalNumbering}.
+ * <p>
+ * The lattice enum constants have to be declared as: bottom, two incomparable elements, and top. With that layout the
+ * ordinal of the supreme of two values is the bitwise OR of their ordinals, so joins, copies and equality checks are
+ * done one word (32 locals) at a time.
+ * <p>
+ * Values for locals outside the numbering read as bottom, and writes to them are dropped. Values derived from locals,
+ * if numbered, are kept the same way as locals.
+ *
+ * @param <L> the lattice
+ */
+public class PackedLatticeState<L extends Enum<L>> {
+
+    private static final int BITS_PER_VALUE = 2;
+    private static final int VALUES_PER_WORD = Long.SIZE / BITS_PER_VALUE;
+    private static final long VALUE_MASK = 3L;
+
+    private final LocalNumbering numbering;
+    private final L[] values;
+    private final long[] words;
+
+    /**
+     * Creates a new state with every local set to bottom.
+     *
+     * @param numbering the numbering of the analyzed body locals
+     * @param lattice   the lattice enum class
+     */
+    public PackedLatticeState(LocalNumbering numbering, Class<L> lattice) {
+        this(numbering, latticeValues(lattice), new long[wordsFor(numbering.size())]);
+    }
+
+    protected PackedLatticeState(LocalNumbering numbering, L[] values, long[] words) {
+        this.numbering = numbering;
+        this.values = values;
+        this.words = words;
+    }
+
+    /**
+     * Creates a copy of a state, for subclasses keeping more data along each value.
+     */
+    protected PackedLatticeState(PackedLatticeState<L> other) {
+        this(other.numbering, other.values, other.words.clone());
+    }
+
+    private static <L extends Enum<L>> L[] latticeValues(Class<L> lattice) {
+        L[] values = lattice.getEnumConstants();
+        if (values.length != 4) {
+            throw new IllegalArgumentException("Packed states need a four element lattice, got " + lattice.getName());
+        }
+        return values;
+    }
+
+    private static int wordsFor(int size) {
+        return (size + VALUES_PER_WORD - 1) / VALUES_PER_WORD;
+    }
+
+    public LocalNumbering getNumbering() {
+        return numbering;
+    }
+
+    public L get(int index) {
+        int shift = (index % VALUES_PER_WORD) * BITS_PER_VALUE;
+        return values[(int) ((words[index / VALUES_PER_WORD] >>> shift) & VALUE_MASK)];
+    }
+
+    public L get(Local local) {
+        int index = numbering.indexOf(local);
+        return index < 0 ? values[0] : get(index);
+    }
+
+    public L get(String localName) {
+        int index = numbering.indexOf(localName);
+        return index < 0 ? values[0] : get(index);
+    }
+
+    /**
+     * @param index the index of a local
+     * @return the supreme of the local value and the values derived from it
+     */
+    public L getWithDerived(int index) {
+        int ordinal = get(index).ordinal();
+        for (int derived : numbering.derivedFrom(index)) {
+            ordinal |= get(derived).ordinal();
+        }
+        return values[ordinal];
+    }
+
+    public L getWithDerived(Local local) {
+        int index = numbering.indexOf(local);
+        return index < 0 ? values[0] : getWithDerived(index);
+    }
+
+    public void set(int index, L value) {
+        int word = index / VALUES_PER_WORD;
+        int shift = (index % VALUES_PER_WORD) * BITS_PER_VALUE;
+        words[word] = (words[word] & ~(VALUE_MASK << shift)) | ((long) value.ordinal() << shift);
+    }
+
+    public void set(Local local, L value) {
+        int index = numbering.indexOf(local);
+        if (index >= 0) {
+            set(index, value);
+        }
+    }
+
+    public void set(String localName, L value) {
+        int index = numbering.indexOf(localName);
+        if (index >= 0) {
+            set(index, value);
+        }
+    }
+
+    /**
+     * Stores in {@code out} the supreme between this state and {@code other}. {@code out} might be any of both.
+     */
+    public void join(PackedLatticeState<L> other, PackedLatticeState<L> out) {
+        for (int i = 0; i < words.length; i++) {
+            out.words[i] = words[i] | other.words[i];
+        }
+    }
+
+    public void copyTo(PackedLatticeState<L> dest) {
+        System.arraycopy(words, 0, dest.words, 0, words.length);
+    }
+
+    public PackedLatticeState<L> copy() {
+        return new PackedLatticeState<>(numbering, values, words.clone());
+    }
+
+    /**
+     * Sets every local back to bottom.
+     */
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    /**
+     * @return the amount of locals whose value is not bottom
+     */
+    public int countNonBottom() {
+        int count = 0;
+        for (long word : words) {
+            // Fold each 2 bit value into its lower bit, and count those
+            count += Long.bitCount((word | (word >>> 1)) & 0x5555555555555555L);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PackedLatticeState)) {
+            return false;
+        }
+        return Arrays.equals(words, ((PackedLatticeState<?>) o).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < numbering.size(); i++) {
+            L value = get(i);
+            if (value.ordinal() != 0) {
+                if (builder.length() > 1) {
+                    builder.append(", ");
+                }
+                builder.append(numbering.nameAt(i)).append('=').append(value);
+            }
+        }
+        return builder.append('}').toString();
+    }
+}
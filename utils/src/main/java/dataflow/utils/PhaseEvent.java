@@ -0,0 +1,34 @@
+package dataflow.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of a timed {@link AnalysisPhase}.
+ */
+@Name("dataflow.Phase")
+@Label("Analysis Phase")
+@Category("Data-flow Analysis")
+@Description("Time spent in a phase of an analysis run")
+class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    static void emit(AnalysisPhase phase, long elapsedNanos) {
+        PhaseEvent event = new PhaseEvent();
+        if (event.isEnabled()) {
+            event.phase = phase.getLabel();
+            event.elapsed = elapsedNanos;
+            event.commit();
+        }
+    }
+}
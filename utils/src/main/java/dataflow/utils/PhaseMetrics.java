@@ -0,0 +1,133 @@
+package dataflow.utils;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Run-wide time spent in each {@link AnalysisPhase}. Phases timed from several threads at once add up the time of
+ * every thread, and phases can nest, like points-to computed on demand while analyzing, in which case the outer phase
+ * includes the inner one. Each timed phase is also emitted as a JFR event, when recording.
+ * <p>
+ * Phases are usually timed with a scope:
+ * <pre>
+ * try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.ANALYSIS)) {
+ *     ...
+ * }
+ * </pre>
+ * Phases not enclosed by a single block, like {@link AnalysisPhase#SOOT_LOAD}, are {@link #begin begun} and
+ * {@link #end ended} instead.
+ */
+public class PhaseMetrics {
+
+    private static final PhaseMetrics SHARED = new PhaseMetrics();
+
+    private final AtomicLongArray nanos = new AtomicLongArray(AnalysisPhase.values().length);
+    private final AtomicLongArray counts = new AtomicLongArray(AnalysisPhase.values().length);
+    private final Map<AnalysisPhase, Scope> begun = new EnumMap<>(AnalysisPhase.class);
+
+    /**
+     * @return the metrics shared by every analysis in this run
+     */
+    public static PhaseMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * @param phase the phase
+     * @return a scope timing the phase until closed
+     */
+    public Scope time(AnalysisPhase phase) {
+        return new Scope(phase);
+    }
+
+    /**
+     * Starts timing a phase, until {@link #end ended}. Does nothing if the phase was already begun.
+     *
+     * @param phase the phase
+     */
+    public synchronized void begin(AnalysisPhase phase) {
+        begun.putIfAbsent(phase, new Scope(phase));
+    }
+
+    /**
+     * Stops timing a begun phase. Does nothing if the phase was not begun, or was already ended.
+     *
+     * @param phase the phase
+     */
+    public void end(AnalysisPhase phase) {
+        Scope scope;
+        synchronized (this) {
+            scope = begun.remove(phase);
+        }
+        if (scope != null) {
+            scope.close();
+        }
+    }
+
+    public long getNanos(AnalysisPhase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    public long getCount(AnalysisPhase phase) {
+        return counts.get(phase.ordinal());
+    }
+
+    /**
+     * @return the milliseconds spent in each timed phase, in phase order
+     */
+    public Map<AnalysisPhase, Long> millisByPhase() {
+        Map<AnalysisPhase, Long> millis = new LinkedHashMap<>();
+        for (AnalysisPhase phase : AnalysisPhase.values()) {
+            if (getCount(phase) > 0) {
+                millis.put(phase, TimeUnit.NANOSECONDS.toMillis(getNanos(phase)));
+            }
+        }
+        return millis;
+    }
+
+    public void clear() {
+        for (int i = 0; i < nanos.length(); i++) {
+            nanos.set(i, 0);
+            counts.set(i, 0);
+        }
+        synchronized (this) {
+            begun.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder();
+        millisByPhase().forEach((phase, millis) -> description.append(description.length() == 0 ? "" : ", ")
+                .append(phase.getLabel()).append(' ').append(millis).append(" ms"));
+        return description.length() == 0 ? "no phases timed" : description.toString();
+    }
+
+    /**
+     * A phase being timed. Closing it more than once has no effect.
+     */
+    public class Scope implements AutoCloseable {
+        private final AnalysisPhase phase;
+        private final long start = System.nanoTime();
+        private boolean closed;
+
+        private Scope(AnalysisPhase phase) {
+            this.phase = phase;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long elapsed = System.nanoTime() - start;
+            nanos.addAndGet(phase.ordinal(), elapsed);
+            counts.incrementAndGet(phase.ordinal());
+            JfrEvents.phaseTimed(phase, elapsed);
+        }
+    }
+}
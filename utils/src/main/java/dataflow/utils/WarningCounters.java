@@ -0,0 +1,66 @@
+package dataflow.utils;
+
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Run-wide counters of repeated warnings, by message. Only the first occurrence of a message is logged as a warning,
+ * later ones are logged at debug level and counted, so warnings raised for every statement of some kind don't flood
+ * the log.
+ */
+public class WarningCounters {
+
+    private static final WarningCounters SHARED = new WarningCounters();
+
+    private final ConcurrentMap<String, AtomicLong> byMessage = new ConcurrentHashMap<>();
+
+    /**
+     * @return the counters shared by every analysis in this run
+     */
+    public static WarningCounters shared() {
+        return SHARED;
+    }
+
+    /**
+     * Counts a warning, logging it if it's the first one with its message.
+     *
+     * @param logger    the logger of the warning
+     * @param message   the message, with slf4j placeholders. Warnings are counted by message, not by arguments
+     * @param arguments the message arguments
+     */
+    public void warn(Logger logger, String message, Object... arguments) {
+        long count = byMessage.computeIfAbsent(message, m -> new AtomicLong()).incrementAndGet();
+        if (count == 1) {
+            logger.warn(message + " (repetitions are counted, and logged at debug level)", arguments);
+        } else {
+            logger.debug(message, arguments);
+        }
+    }
+
+    /**
+     * @return the times each warning was raised, sorted by message
+     */
+    public Map<String, Long> counts() {
+        Map<String, Long> counts = new TreeMap<>();
+        byMessage.forEach((message, count) -> counts.put(message, count.get()));
+        return counts;
+    }
+
+    public void clear() {
+        byMessage.clear();
+    }
+
+    @Override
+    public String toString() {
+        long total = 0;
+        for (AtomicLong count : byMessage.values()) {
+            total += count.get();
+        }
+        return String.format("%d warnings, %d distinct", total, byMessage.size());
+    }
+}
@@ -0,0 +1,188 @@
+package dataflow.utils;
+
+import soot.toolkits.graph.DirectedGraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Order in which {@link ForwardDataflowSolver} picks pending nodes from its worklist.
+ */
+public enum WorklistOrder {
+    /**
+     * Lowest reverse post-order first, so a node is usually visited after all its forward predecessors.
+     */
+    REVERSE_POST_ORDER,
+    /**
+     * Strongly connected components in topological order, reverse post-order inside each one. Every loop nest
+     * stabilizes before the code following it is visited.
+     */
+    LOOP_NEST,
+    /**
+     * Plain first in, first out queue, starting with the graph iteration order.
+     */
+    FIFO;
+
+    /**
+     * Parses a phase option value: {@code rpo}, {@code loop} or {@code fifo}.
+     *
+     * @param option the option value, or null for the default order
+     * @return the order
+     */
+    public static WorklistOrder fromOption(String option) {
+        if (option == null || option.equals("rpo")) {
+            return REVERSE_POST_ORDER;
+        }
+        if (option.equals("loop")) {
+            return LOOP_NEST;
+        }
+        if (option.equals("fifo")) {
+            return FIFO;
+        }
+        throw new IllegalArgumentException("Unknown worklist order: " + option);
+    }
+
+    /**
+     * Ranks the nodes of a graph. Pending nodes with lower ranks are visited first.
+     *
+     * @param graph the graph
+     * @param <N>   the nodes type
+     * @return the nodes, sorted by rank
+     */
+    public <N> List<N> rank(DirectedGraph<N> graph) {
+        switch (this) {
+            case REVERSE_POST_ORDER:
+                return reversePostOrder(graph);
+            case LOOP_NEST:
+                return loopNestOrder(graph);
+            default:
+                List<N> nodes = new ArrayList<>(graph.size());
+                graph.forEach(nodes::add);
+                return nodes;
+        }
+    }
+
+    private static <N> List<N> reversePostOrder(DirectedGraph<N> graph) {
+        Set<N> visited = new HashSet<>();
+        List<N> postOrder = new ArrayList<>(graph.size());
+        // Heads first, then anything unreachable from them
+        Set<N> roots = new LinkedHashSet<>(graph.getHeads());
+        graph.forEach(roots::add);
+        for (N root : roots) {
+            if (!visited.add(root)) {
+                continue;
+            }
+            Deque<N> nodes = new ArrayDeque<>();
+            Deque<Iterator<N>> successors = new ArrayDeque<>();
+            nodes.push(root);
+            successors.push(graph.getSuccsOf(root).iterator());
+            while (!nodes.isEmpty()) {
+                if (successors.peek().hasNext()) {
+                    N successor = successors.peek().next();
+                    if (visited.add(successor)) {
+                        nodes.push(successor);
+                        successors.push(graph.getSuccsOf(successor).iterator());
+                    }
+                } else {
+                    postOrder.add(nodes.pop());
+                    successors.pop();
+                }
+            }
+        }
+        List<N> reversed = new ArrayList<>(postOrder.size());
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            reversed.add(postOrder.get(i));
+        }
+        return reversed;
+    }
+
+    private static <N> List<N> loopNestOrder(DirectedGraph<N> graph) {
+        List<N> rpo = reversePostOrder(graph);
+        Map<N, Integer> component = stronglyConnectedComponents(graph, rpo);
+        Map<N, Integer> rpoIndex = new HashMap<>();
+        for (int i = 0; i < rpo.size(); i++) {
+            rpoIndex.put(rpo.get(i), i);
+        }
+        List<N> ordered = new ArrayList<>(rpo);
+        ordered.sort((a, b) -> {
+            int byComponent = Integer.compare(component.get(a), component.get(b));
+            return byComponent != 0 ? byComponent : Integer.compare(rpoIndex.get(a), rpoIndex.get(b));
+        });
+        return ordered;
+    }
+
+    /**
+     * Iterative Tarjan. Components are numbered in topological order of the condensed graph.
+     */
+    private static <N> Map<N, Integer> stronglyConnectedComponents(DirectedGraph<N> graph, List<N> roots) {
+        Map<N, Integer> index = new HashMap<>();
+        Map<N, Integer> lowLink = new HashMap<>();
+        Deque<N> stack = new ArrayDeque<>();
+        Set<N> onStack = new HashSet<>();
+        List<List<N>> components = new ArrayList<>();
+
+        for (N root : roots) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            Deque<N> nodes = new ArrayDeque<>();
+            Deque<Iterator<N>> successors = new ArrayDeque<>();
+            index.put(root, index.size());
+            lowLink.put(root, index.get(root));
+            stack.push(root);
+            onStack.add(root);
+            nodes.push(root);
+            successors.push(graph.getSuccsOf(root).iterator());
+            while (!nodes.isEmpty()) {
+                N node = nodes.peek();
+                if (successors.peek().hasNext()) {
+                    N successor = successors.peek().next();
+                    if (!index.containsKey(successor)) {
+                        index.put(successor, index.size());
+                        lowLink.put(successor, index.get(successor));
+                        stack.push(successor);
+                        onStack.add(successor);
+                        nodes.push(successor);
+                        successors.push(graph.getSuccsOf(successor).iterator());
+                    } else if (onStack.contains(successor)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(successor)));
+                    }
+                    continue;
+                }
+                nodes.pop();
+                successors.pop();
+                if (!nodes.isEmpty()) {
+                    N parent = nodes.peek();
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                }
+                if (lowLink.get(node).equals(index.get(node))) {
+                    List<N> members = new ArrayList<>();
+                    N member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        members.add(member);
+                    } while (member != node);
+                    components.add(members);
+                }
+            }
+        }
+
+        // Tarjan completes components in reverse topological order
+        Map<N, Integer> componentOf = new HashMap<>();
+        for (int i = 0; i < components.size(); i++) {
+            for (N member : components.get(i)) {
+                componentOf.put(member, components.size() - 1 - i);
+            }
+        }
+        return componentOf;
+    }
+}
@@ -1,6 +1,7 @@
 package soot;
 
 import soot.tagkit.LineNumberTag;
+import soot.tagkit.Tag;
 
 /**
  * Utils file for working with {@link Unit}s
@@ -15,12 +16,12 @@ public class UnitUtils {
      * @return the line number, or -1 if not found
      */
     public static int getLineNumberFromUnit(Unit unit) {
-        return unit.getTags().stream()
-                .filter(tag -> tag instanceof LineNumberTag)
-                .findFirst()
-                .map(tag -> (LineNumberTag) tag)
-                // If no line numbers configured, return dummy one
-                .orElseGet(() -> new LineNumberTag(-1))
-                .getLineNumber();
+        for (Tag tag : unit.getTags()) {
+            if (tag instanceof LineNumberTag) {
+                return ((LineNumberTag) tag).getLineNumber();
+            }
+        }
+        // If no line numbers configured, return dummy one
+        return -1;
     }
 }
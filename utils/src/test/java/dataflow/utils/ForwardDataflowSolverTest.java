@@ -0,0 +1,215 @@
+package dataflow.utils;
+
+import junit.framework.TestCase;
+import soot.toolkits.graph.DirectedGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class ForwardDataflowSolverTest extends TestCase {
+
+    /**
+     * 0 -> 1 -> 2 -> 3 -> 4, with the loop 3 -> 1 and the branch 1 -> 4. Node ids are listed out of order, so no
+     * order gets the graph sorted for free.
+     */
+    private static final int[][] EDGES = {{0, 1}, {1, 2}, {2, 3}, {3, 4}, {3, 1}, {1, 4}};
+    private static final List<Integer> NODES = Arrays.asList(4, 2, 0, 3, 1);
+
+    private DirectedGraph<Integer> graph;
+
+    @Override
+    protected void setUp() {
+        graph = new EdgeListGraph(NODES, EDGES);
+    }
+
+    public void testEveryOrderReachesTheSameFixpoint() {
+        ReachingNodes expected = new ReachingNodes(graph, WorklistOrder.REVERSE_POST_ORDER);
+        for (WorklistOrder order : WorklistOrder.values()) {
+            ReachingNodes analysis = new ReachingNodes(graph, order);
+            for (Integer node : graph) {
+                assertEquals(order + " at " + node, expected.getFlowAfter(node), analysis.getFlowAfter(node));
+            }
+        }
+        assertEquals(new TreeSet<>(Arrays.asList(0, 1, 2, 3)), expected.getFlowBefore(4));
+    }
+
+    public void testReversePostOrderVisitsAcyclicGraphOnce() {
+        DirectedGraph<Integer> acyclic = new EdgeListGraph(NODES, new int[][]{{0, 1}, {1, 2}, {2, 3}, {3, 4}, {1, 4}});
+        ReachingNodes analysis = new ReachingNodes(acyclic, WorklistOrder.REVERSE_POST_ORDER);
+        assertEquals(acyclic.size(), analysis.getVisits());
+        assertEquals(1, analysis.getIterations());
+    }
+
+    public void testLoopNodesAreVisitedAgain() {
+        ReachingNodes analysis = new ReachingNodes(graph, WorklistOrder.LOOP_NEST);
+        assertEquals(1, analysis.getVisits(0));
+        assertTrue(analysis.getVisits(1) > 1);
+        assertEquals(analysis.getVisits(1), analysis.getIterations());
+    }
+
+    public void testRunsMeasureFlowSizeAndNestedRuns() {
+        // Each run analyzes the graph again when visiting node 2, down to two levels of nesting
+        ReachingNodes analysis = new ReachingNodes(graph, WorklistOrder.REVERSE_POST_ORDER, 2);
+        int visitsOfNode2 = analysis.getVisits(2);
+        assertEquals(visitsOfNode2 * (1 + visitsOfNode2), analysis.getNestedRuns());
+        assertEquals(NODES.size(), analysis.getMaxFlowSize());
+        assertTrue(analysis.getElapsedNanos() > 0);
+    }
+
+    public void testRunsStopWhenOutOfVisits() {
+        AnalysisBudget budget = new AnalysisBudget();
+        budget.set(AnalysisBudget.Limit.METHOD_VISITS, 3);
+        ReachingNodes analysis = new ReachingNodes(graph, WorklistOrder.REVERSE_POST_ORDER, 0, budget);
+        assertEquals(3, analysis.getVisits());
+        assertEquals(AnalysisBudget.Limit.METHOD_VISITS, analysis.getExhausted());
+
+        ReachingNodes unlimited = new ReachingNodes(graph, WorklistOrder.REVERSE_POST_ORDER);
+        assertNull(unlimited.getExhausted());
+        assertNull(unlimited.getNestedExhausted());
+    }
+
+    public void testNestedRunsStopWhenTooDeep() {
+        AnalysisBudget budget = new AnalysisBudget();
+        budget.set(AnalysisBudget.Limit.DEPTH, 2);
+        ReachingNodes analysis = new ReachingNodes(graph, WorklistOrder.REVERSE_POST_ORDER, 2, budget);
+        assertNull(analysis.getExhausted());
+        assertEquals(AnalysisBudget.Limit.DEPTH, analysis.getNestedExhausted());
+        assertEquals(new TreeSet<>(Arrays.asList(0, 1, 2, 3)), analysis.getFlowBefore(4));
+    }
+
+    public void testCalleesBudget() {
+        AnalysisBudget budget = new AnalysisBudget();
+        assertTrue(budget.allowsCallees(1000));
+        budget.configureFrom(Collections.singletonMap("callees", "4"));
+        assertTrue(budget.allowsCallees(4));
+        assertFalse(budget.allowsCallees(5));
+    }
+
+    public void testUnknownOrderOptionIsRejected() {
+        assertEquals(WorklistOrder.REVERSE_POST_ORDER, WorklistOrder.fromOption(null));
+        assertEquals(WorklistOrder.FIFO, WorklistOrder.fromOption("fifo"));
+        try {
+            WorklistOrder.fromOption("random");
+            fail("Unknown orders should be rejected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    /**
+     * The nodes on some path to each node. Visiting node 2 runs a nested analysis, up to the given nesting depth, with
+     * the same budget.
+     */
+    private static class ReachingNodes extends ForwardDataflowSolver<Integer, Set<Integer>> {
+
+        private final int nestingDepth;
+        private final AnalysisBudget budget;
+
+        ReachingNodes(DirectedGraph<Integer> graph, WorklistOrder order) {
+            this(graph, order, 0);
+        }
+
+        ReachingNodes(DirectedGraph<Integer> graph, WorklistOrder order, int nestingDepth) {
+            this(graph, order, nestingDepth, new AnalysisBudget());
+        }
+
+        ReachingNodes(DirectedGraph<Integer> graph, WorklistOrder order, int nestingDepth, AnalysisBudget budget) {
+            super(graph, order, budget);
+            this.nestingDepth = nestingDepth;
+            this.budget = budget;
+            doAnalysis();
+        }
+
+        @Override
+        protected void flowThrough(Set<Integer> in, Integer node, Set<Integer> out) {
+            if (node == 2 && nestingDepth > 0) {
+                new ReachingNodes(graph, getOrder(), nestingDepth - 1, budget);
+            }
+            out.clear();
+            out.addAll(in);
+            out.add(node);
+        }
+
+        @Override
+        protected Set<Integer> newInitialFlow() {
+            return new TreeSet<>();
+        }
+
+        @Override
+        protected int sizeOf(Set<Integer> flow) {
+            return flow.size();
+        }
+
+        @Override
+        protected void merge(Set<Integer> in1, Set<Integer> in2, Set<Integer> out) {
+            Set<Integer> merged = new TreeSet<>(in1);
+            merged.addAll(in2);
+            copy(merged, out);
+        }
+
+        @Override
+        protected void copy(Set<Integer> source, Set<Integer> dest) {
+            if (source != dest) {
+                dest.clear();
+                dest.addAll(source);
+            }
+        }
+    }
+
+    private static class EdgeListGraph implements DirectedGraph<Integer> {
+        private final List<Integer> nodes;
+        private final int[][] edges;
+
+        EdgeListGraph(List<Integer> nodes, int[][] edges) {
+            this.nodes = nodes;
+            this.edges = edges;
+        }
+
+        @Override
+        public List<Integer> getHeads() {
+            return Collections.singletonList(0);
+        }
+
+        @Override
+        public List<Integer> getTails() {
+            return Collections.singletonList(4);
+        }
+
+        @Override
+        public List<Integer> getPredsOf(Integer node) {
+            List<Integer> predecessors = new ArrayList<>();
+            for (int[] edge : edges) {
+                if (edge[1] == node) {
+                    predecessors.add(edge[0]);
+                }
+            }
+            return predecessors;
+        }
+
+        @Override
+        public List<Integer> getSuccsOf(Integer node) {
+            List<Integer> successors = new ArrayList<>();
+            for (int[] edge : edges) {
+                if (edge[0] == node) {
+                    successors.add(edge[1]);
+                }
+            }
+            return successors;
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return nodes.iterator();
+        }
+    }
+}
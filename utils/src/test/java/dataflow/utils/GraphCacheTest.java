@@ -0,0 +1,108 @@
+package dataflow.utils;
+
+import junit.framework.TestCase;
+import soot.SootMethod;
+import soot.VoidType;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.toolkits.graph.BriefUnitGraph;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GraphCacheTest extends TestCase {
+
+    private AtomicInteger builds;
+    private GraphCache<BriefUnitGraph> cache;
+
+    @Override
+    protected void setUp() {
+        builds = new AtomicInteger();
+        // Brief graphs need no throw analysis, so no classes have to be loaded in the Scene
+        cache = new GraphCache<>(body -> {
+            builds.incrementAndGet();
+            return new BriefUnitGraph(body);
+        });
+        cache.setMaxWeight(10);
+    }
+
+    private static JimpleBody bodyOf(int units) {
+        JimpleBody body = Jimple.v().newBody(new SootMethod("test", Collections.emptyList(), VoidType.v()));
+        for (int i = 0; i < units; i++) {
+            body.getUnits().add(Jimple.v().newNopStmt());
+        }
+        return body;
+    }
+
+    public void testGraphIsBuiltOnce() {
+        JimpleBody body = bodyOf(4);
+        BriefUnitGraph graph = cache.graphOf(body);
+
+        assertSame(graph, cache.graphOf(body));
+        assertEquals(1, builds.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(4, cache.getWeight());
+    }
+
+    public void testLeastRecentlyUsedGraphIsEvicted() {
+        JimpleBody first = bodyOf(4);
+        JimpleBody second = bodyOf(4);
+        BriefUnitGraph firstGraph = cache.graphOf(first);
+        cache.graphOf(second);
+        cache.graphOf(first);
+        cache.graphOf(bodyOf(4));
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(8, cache.getWeight());
+        assertSame(firstGraph, cache.graphOf(first));
+        cache.graphOf(second);
+        assertEquals(2, cache.getEvictions());
+    }
+
+    public void testInvalidatedBodyGetsNewGraph() {
+        JimpleBody body = bodyOf(4);
+        BriefUnitGraph graph = cache.graphOf(body);
+        body.getUnits().add(Jimple.v().newNopStmt());
+        cache.invalidate(body);
+
+        assertNotSame(graph, cache.graphOf(body));
+        assertEquals(2, builds.get());
+        assertEquals(5, cache.getWeight());
+    }
+
+    public void testZeroWeightCachesNothing() {
+        cache.setMaxWeight(0);
+        JimpleBody body = bodyOf(4);
+
+        assertNotSame(cache.graphOf(body), cache.graphOf(body));
+        assertEquals(0, cache.size());
+        assertEquals(0.0, cache.getHitRate());
+    }
+
+    public void testDerivedDataIsDroppedWithGraph() {
+        JimpleBody body = bodyOf(4);
+        BriefUnitGraph graph = cache.graphOf(body);
+        Object derived = cache.derivedOf(graph, "key", ignored -> new Object());
+
+        assertSame(derived, cache.derivedOf(graph, "key", ignored -> new Object()));
+        assertNotSame(derived, cache.derivedOf(graph, "other", ignored -> new Object()));
+        cache.invalidate(body);
+        assertNotSame(derived, cache.derivedOf(cache.graphOf(body), "key", ignored -> new Object()));
+    }
+
+    public void testConcurrentRequestsBuildOnce() throws InterruptedException {
+        JimpleBody body = bodyOf(4);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> cache.graphOf(body));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, builds.get());
+        assertEquals(threads.length, cache.getHits() + cache.getMisses());
+    }
+}
@@ -0,0 +1,117 @@
+package dataflow.utils;
+
+import junit.framework.TestCase;
+import soot.IntType;
+import soot.Local;
+import soot.SootMethod;
+import soot.VoidType;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static dataflow.utils.PackedLatticeStateTest.Level.*;
+
+public class PackedLatticeStateTest extends TestCase {
+
+    enum Level {BOTTOM, LEFT, RIGHT, TOP}
+
+    private LocalNumbering numbering;
+
+    @Override
+    protected void setUp() {
+        JimpleBody body = Jimple.v().newBody(new SootMethod("test", Collections.emptyList(), VoidType.v()));
+        // Enough locals to span more than one word
+        for (int i = 0; i < 40; i++) {
+            body.getLocals().add(Jimple.v().newLocal("l" + i, IntType.v()));
+        }
+        numbering = LocalNumbering.of(body);
+    }
+
+    public void testNewStateIsBottom() {
+        PackedLatticeState<Level> state = new PackedLatticeState<>(numbering, Level.class);
+        for (int i = 0; i < numbering.size(); i++) {
+            assertEquals(BOTTOM, state.get(i));
+        }
+        assertEquals(0, state.countNonBottom());
+    }
+
+    public void testSetDoesNotTouchNeighbours() {
+        PackedLatticeState<Level> state = new PackedLatticeState<>(numbering, Level.class);
+        state.set(31, TOP);
+        state.set(32, LEFT);
+        state.set("l33", RIGHT);
+
+        assertEquals(BOTTOM, state.get(30));
+        assertEquals(TOP, state.get(31));
+        assertEquals(LEFT, state.get(numbering.localAt(32)));
+        assertEquals(RIGHT, state.get(33));
+        assertEquals(3, state.countNonBottom());
+
+        state.set(31, LEFT);
+        assertEquals(LEFT, state.get(31));
+    }
+
+    public void testJoinTakesSupremeOfEachLocal() {
+        PackedLatticeState<Level> first = new PackedLatticeState<>(numbering, Level.class);
+        PackedLatticeState<Level> second = new PackedLatticeState<>(numbering, Level.class);
+        first.set(0, LEFT);
+        first.set(1, LEFT);
+        first.set(2, TOP);
+        second.set(1, RIGHT);
+        second.set(3, RIGHT);
+
+        PackedLatticeState<Level> out = new PackedLatticeState<>(numbering, Level.class);
+        first.join(second, out);
+
+        assertEquals(LEFT, out.get(0));
+        assertEquals(TOP, out.get(1));
+        assertEquals(TOP, out.get(2));
+        assertEquals(RIGHT, out.get(3));
+        assertEquals(BOTTOM, out.get(4));
+    }
+
+    public void testCopiesAreEqualAndIndependent() {
+        PackedLatticeState<Level> state = new PackedLatticeState<>(numbering, Level.class);
+        state.set(35, RIGHT);
+        PackedLatticeState<Level> copy = state.copy();
+        assertEquals(state, copy);
+
+        copy.set(35, TOP);
+        assertFalse(state.equals(copy));
+        assertEquals(RIGHT, state.get(35));
+    }
+
+    public void testUnknownLocalsReadAsBottom() {
+        PackedLatticeState<Level> state = new PackedLatticeState<>(numbering, Level.class);
+        Local foreign = Jimple.v().newLocal("foreign", IntType.v());
+        state.set(foreign, TOP);
+        assertEquals(BOTTOM, state.get(foreign));
+        assertEquals(BOTTOM, state.get("foreign"));
+    }
+
+    public void testDerivedValuesAreNumberedAfterLocals() {
+        Map<String, Local> derived = new LinkedHashMap<>();
+        derived.put("l1.f", numbering.localAt(1));
+        derived.put("l1.f.g", numbering.localAt(1));
+        derived.put("C.s", null);
+        JimpleBody body = Jimple.v().newBody(new SootMethod("test", Collections.emptyList(), VoidType.v()));
+        for (int i = 0; i < numbering.size(); i++) {
+            body.getLocals().add(numbering.localAt(i));
+        }
+        LocalNumbering withDerived = LocalNumbering.of(body, derived);
+        assertEquals(43, withDerived.size());
+        assertEquals(41, withDerived.indexOf("l1.f.g"));
+        assertEquals("C.s", withDerived.nameAt(42));
+
+        PackedLatticeState<Level> state = new PackedLatticeState<>(withDerived, Level.class);
+        state.set(1, LEFT);
+        state.set("l1.f.g", RIGHT);
+        state.set("C.s", TOP);
+        assertEquals(LEFT, state.get(1));
+        assertEquals(TOP, state.getWithDerived(1));
+        assertEquals(BOTTOM, state.getWithDerived(0));
+    }
+}
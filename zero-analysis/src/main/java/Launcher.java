@@ -1,39 +1,70 @@
 import dataflow.DivisionByZeroAnalysis;
+import dataflow.utils.AnalysisPhase;
+import dataflow.utils.ConvergenceStats;
+import dataflow.utils.GraphCache;
+import dataflow.utils.MetricsReport;
+import dataflow.utils.PhaseMetrics;
+import dataflow.utils.WorklistOrder;
 import org.slf4j.Logger;
 import soot.*;
 import soot.tagkit.LineNumberTag;
 import soot.tagkit.StringTag;
-import soot.toolkits.graph.ExceptionalUnitGraph;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
 public class Launcher {
 
+    private static final Logger LOGGER = getLogger(Launcher.class);
+
     public static void main(String[] args) {
-        PackManager.v().getPack("jtp").add(new Transform("jtp.DivisionByZeroAnalysis", new BodyTransformer() {
+        MetricsReport.dumpAtExitIfRequested();
+        Transform divisionByZero = new Transform("jtp.DivisionByZeroAnalysis", new BodyTransformer() {
 
-            private final Logger LOGGER = getLogger(Launcher.class);
+            private final AtomicBoolean loaded = new AtomicBoolean();
 
             @Override
             protected void internalTransform(Body body, String phaseName, Map<String, String> options) {
-                DivisionByZeroAnalysis results = new DivisionByZeroAnalysis(new ExceptionalUnitGraph(body));
-                for (Unit unit : body.getUnits()) {
-                    if (results.unitIsOffending(unit)) {
-                        unit.getTags()
-                                .stream()
-                                .filter(tag -> tag instanceof LineNumberTag)
-                                .map(tag -> (LineNumberTag) tag)
-                                .findFirst()
-                                .ifPresent(lineNumberTag -> {
-                                    LOGGER.error("Found a possible division by zero in line {}", lineNumberTag.getLineNumber());
-                                });
-                        unit.addTag(new StringTag("Possible division by zero here"));
+                // Soot is done loading once the first body gets here
+                if (!loaded.get() && loaded.compareAndSet(false, true)) {
+                    PhaseMetrics.shared().end(AnalysisPhase.SOOT_LOAD);
+                }
+                GraphCache.shared().configureFrom(options);
+                DivisionByZeroAnalysis results;
+                try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.ANALYSIS)) {
+                    results = new DivisionByZeroAnalysis(GraphCache.shared().graphOf(body),
+                            WorklistOrder.fromOption(options.get("order")));
+                }
+                try (PhaseMetrics.Scope ignored = PhaseMetrics.shared().time(AnalysisPhase.REPORTING)) {
+                    for (Unit unit : body.getUnits()) {
+                        if (results.unitIsOffending(unit)) {
+                            unit.getTags()
+                                    .stream()
+                                    .filter(tag -> tag instanceof LineNumberTag)
+                                    .map(tag -> (LineNumberTag) tag)
+                                    .findFirst()
+                                    .ifPresent(lineNumberTag -> {
+                                        LOGGER.error("Found a possible division by zero in line {}",
+                                                lineNumberTag.getLineNumber());
+                                    });
+                            unit.addTag(new StringTag("Possible division by zero here"));
+                        }
                     }
                 }
             }
-        }));
+        });
+        divisionByZero.setDeclaredOptions("enabled order " + GraphCache.OPTION);
+        divisionByZero.setDefaultOptions("enabled:true order:rpo " + GraphCache.OPTION + ":"
+                + GraphCache.DEFAULT_MAX_WEIGHT);
+        PackManager.v().getPack("jtp").add(divisionByZero);
+        PhaseMetrics.shared().begin(AnalysisPhase.SOOT_LOAD);
         soot.Main.main(args);
+        PhaseMetrics.shared().end(AnalysisPhase.SOOT_LOAD);
+        LOGGER.info("Solver convergence: {}", ConvergenceStats.shared());
+        ConvergenceStats.shared().byMethod().forEach((method, stats) -> LOGGER.debug("{}: {}", method, stats));
+        LOGGER.info("Graph cache: {}", GraphCache.shared());
+        LOGGER.info("Phases: {}", PhaseMetrics.shared());
     }
 }
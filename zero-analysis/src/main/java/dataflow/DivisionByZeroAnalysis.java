@@ -1,38 +1,43 @@
 package dataflow;
 
-import dataflow.abs.VariableToLatticeMap;
 import dataflow.abs.ZeroLattice;
+import dataflow.utils.ConvergenceStats;
+import dataflow.utils.ForwardDataflowSolver;
+import dataflow.utils.LocalNumbering;
+import dataflow.utils.PackedLatticeState;
+import dataflow.utils.WorklistOrder;
 import soot.Local;
 import soot.Unit;
 import soot.jimple.DefinitionStmt;
 import soot.toolkits.graph.UnitGraph;
-import soot.toolkits.scalar.ForwardFlowAnalysis;
 
 import java.util.HashMap;
 
 /**
  * Division by zero analysis
  */
-public class DivisionByZeroAnalysis extends ForwardFlowAnalysis<Unit, VariableToLatticeMap> {
+public class DivisionByZeroAnalysis extends ForwardDataflowSolver<Unit, PackedLatticeState<ZeroLattice>> {
 
-    private VariableToLatticeMap localsAsLattice = new VariableToLatticeMap();
+    private final PackedLatticeState<ZeroLattice> localsAsLattice;
     private HashMap<Unit, Boolean> possibleDivisionByZero = new HashMap<>();
 
     public DivisionByZeroAnalysis(UnitGraph graph) {
-        super(graph);
+        this(graph, WorklistOrder.REVERSE_POST_ORDER);
+    }
 
-        // Starting variable to lattice map
-        for (Local local : graph.getBody().getLocals()) {
-            localsAsLattice.put(local.getName(), ZeroLattice.BOTTOM);
-        }
+    public DivisionByZeroAnalysis(UnitGraph graph, WorklistOrder order) {
+        super(graph, order);
+
+        // Starting variable to lattice map, with every local in bottom
+        localsAsLattice = new PackedLatticeState<>(LocalNumbering.of(graph.getBody()), ZeroLattice.class);
 
         doAnalysis();
+        ConvergenceStats.shared().record(graph.getBody().getMethod().getSignature(), this);
     }
 
-    protected void flowThrough(VariableToLatticeMap in, Unit unit, VariableToLatticeMap out) {
+    protected void flowThrough(PackedLatticeState<ZeroLattice> in, Unit unit, PackedLatticeState<ZeroLattice> out) {
         // Local all values from input
-        out.clear();
-        out.putAll(in);
+        in.copyTo(out);
 
         if (unit instanceof DefinitionStmt) {
             DefinitionStmt definition = (DefinitionStmt) unit;
@@ -47,31 +52,27 @@ public class DivisionByZeroAnalysis extends ForwardFlowAnalysis<Unit, VariableTo
             }
 
             // Set in flowed values
-            out.put(variable.getName(), resolvedValue);
+            out.set(variable, resolvedValue);
         }
     }
 
-    protected VariableToLatticeMap newInitialFlow() {
-        VariableToLatticeMap newInstance = new VariableToLatticeMap();
-        newInstance.putAll(localsAsLattice);
-        return newInstance;
+    @Override
+    protected int sizeOf(PackedLatticeState<ZeroLattice> flow) {
+        return flow.countNonBottom();
     }
 
-    protected void merge(VariableToLatticeMap input1, VariableToLatticeMap input2, VariableToLatticeMap output) {
-        output.clear();
-        output.putAll(input1);
+    protected PackedLatticeState<ZeroLattice> newInitialFlow() {
+        return localsAsLattice.copy();
+    }
 
-        // Merge input2 already defined variables by taking the supreme of both
-        for (String variable : input2.keySet()) {
-            ZeroLattice currentValue = output.get(variable);
-            ZeroLattice supreme = currentValue.supreme(input2.get(variable));
-            output.put(variable, supreme);
-        }
+    protected void merge(PackedLatticeState<ZeroLattice> input1, PackedLatticeState<ZeroLattice> input2,
+                         PackedLatticeState<ZeroLattice> output) {
+        // Merge both inputs by taking the supreme of each variable
+        input1.join(input2, output);
     }
 
-    protected void copy(VariableToLatticeMap source, VariableToLatticeMap dest) {
-        dest.clear();
-        dest.putAll(source);
+    protected void copy(PackedLatticeState<ZeroLattice> source, PackedLatticeState<ZeroLattice> dest) {
+        source.copyTo(dest);
     }
 
     public boolean unitIsOffending(Unit unit) {
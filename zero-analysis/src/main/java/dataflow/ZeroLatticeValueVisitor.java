@@ -2,27 +2,26 @@ package dataflow;
 
 import dataflow.abs.ZeroLattice;
 import dataflow.utils.AbstractValueVisitor;
+import dataflow.utils.PackedLatticeState;
 import dataflow.utils.ValueVisitor;
 import soot.Local;
 
-import java.util.Map;
-
 import static dataflow.abs.ZeroLattice.*;
 
 public class ZeroLatticeValueVisitor extends AbstractValueVisitor<ZeroLattice> {
 
-    private final Map<String, ZeroLattice> variables;
+    private final PackedLatticeState<ZeroLattice> variables;
     private ZeroLattice resolvedValue = ZeroLattice.BOTTOM;
     private Boolean possibleDivisionByZero;
 
-    public ZeroLatticeValueVisitor(Map<String, ZeroLattice> variables) {
+    public ZeroLatticeValueVisitor(PackedLatticeState<ZeroLattice> variables) {
         this.variables = variables;
         this.possibleDivisionByZero = false;
     }
 
     @Override
     public void visitLocal(Local variable) {
-        resolvedValue = variables.get(variable.getName());
+        resolvedValue = variables.get(variable);
     }
 
     @Override
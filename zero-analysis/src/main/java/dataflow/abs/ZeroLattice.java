@@ -1,7 +1,8 @@
 package dataflow.abs;
 
 /**
- * Lattice used in the DivisionByZeroAnalysis.
+ * Lattice used in the DivisionByZeroAnalysis. Constants are declared as bottom, the two incomparable values, and top,
+ * which is the layout {@link dataflow.utils.PackedLatticeState} relies on.
  */
 public enum ZeroLattice {
 